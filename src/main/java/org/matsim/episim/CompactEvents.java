@@ -0,0 +1,461 @@
+/*-
+ * #%L
+ * MATSim Episim
+ * %%
+ * Copyright (C) 2020 matsim-org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.matsim.episim;
+
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.events.*;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.facilities.ActivityFacility;
+import org.matsim.vehicles.Vehicle;
+
+import javax.annotation.Nullable;
+import java.time.DayOfWeek;
+import java.util.*;
+
+/**
+ * Events of all weekdays stored as parallel primitive arrays, instead of individual {@link Event} objects.
+ * Ids and activity types are referenced by their index into lookup tables shared by all days.
+ * Days with identical events share the same {@link Day} instance.
+ *
+ * @see ReplayHandler
+ * @see ReplayEventsFile
+ */
+public final class CompactEvents {
+
+	static final byte ACTIVITY_START = 0;
+	static final byte ACTIVITY_END = 1;
+	static final byte ENTERS_VEHICLE = 2;
+	static final byte LEAVES_VEHICLE = 3;
+
+	final Id<Person>[] persons;
+	final Id<ActivityFacility>[] facilities;
+	final Id<Vehicle>[] vehicles;
+	final Id<Link>[] links;
+
+	/**
+	 * Activity types, all strings are canonicalized with {@link String#intern()}.
+	 */
+	final String[] actTypes;
+
+	/**
+	 * How facility ids have been created, null if unknown.
+	 */
+	@Nullable
+	final EpisimConfigGroup.FacilitiesHandling facilitiesHandling;
+
+	private final Map<DayOfWeek, Day> days;
+
+	CompactEvents(Id<Person>[] persons, Id<ActivityFacility>[] facilities, Id<Vehicle>[] vehicles, Id<Link>[] links,
+				  String[] actTypes, Map<DayOfWeek, Day> days, @Nullable EpisimConfigGroup.FacilitiesHandling facilitiesHandling) {
+		this.persons = persons;
+		this.facilities = facilities;
+		this.vehicles = vehicles;
+		this.links = links;
+		this.actTypes = actTypes;
+		this.days = new EnumMap<>(days);
+		this.facilitiesHandling = facilitiesHandling;
+
+		for (int i = 0; i < actTypes.length; i++)
+			actTypes[i] = actTypes[i].intern();
+	}
+
+	/**
+	 * Convert events into their compact form. Days with the same list instance will share their arrays.
+	 *
+	 * @param events ordered events for weekdays
+	 */
+	public static CompactEvents of(Map<DayOfWeek, List<Event>> events) {
+
+		Builder builder = new Builder(null);
+		Map<List<Event>, Day> converted = new IdentityHashMap<>();
+
+		for (Map.Entry<DayOfWeek, List<Event>> e : events.entrySet()) {
+			Day day = converted.computeIfAbsent(e.getValue(), list -> {
+				list.forEach(builder::add);
+				return builder.finishDay();
+			});
+			builder.put(e.getKey(), day);
+		}
+
+		return builder.build();
+	}
+
+	/**
+	 * Events for one weekday.
+	 */
+	public Day get(DayOfWeek day) {
+		return days.get(day);
+	}
+
+	/**
+	 * Weekdays with events.
+	 */
+	public Set<DayOfWeek> getDays() {
+		return Collections.unmodifiableSet(days.keySet());
+	}
+
+	/**
+	 * Creates {@link Event} objects for all days. Days sharing the same {@link Day} will also share the same list.
+	 *
+	 * @param scenario optional scenario, used to set coordinates of activities that have none.
+	 */
+	public Map<DayOfWeek, List<Event>> toEvents(@Nullable Scenario scenario) {
+
+		Map<Day, List<Event>> created = new IdentityHashMap<>();
+		Map<DayOfWeek, List<Event>> result = new EnumMap<>(DayOfWeek.class);
+
+		for (Map.Entry<DayOfWeek, Day> e : days.entrySet()) {
+			result.put(e.getKey(), created.computeIfAbsent(e.getValue(), day -> {
+				List<Event> list = new ArrayList<>(day.size());
+				int s = 0;
+				for (int i = 0; i < day.size(); i++) {
+					list.add(createEvent(day, i, s, scenario));
+					if (day.kind[i] == ACTIVITY_START) s++;
+				}
+				return list;
+			}));
+		}
+
+		return result;
+	}
+
+	/**
+	 * Create the event object at index {@code i}.
+	 *
+	 * @param start number of activity start events before {@code i}
+	 */
+	Event createEvent(Day day, int i, int start, @Nullable Scenario scenario) {
+
+		Id<Person> person = persons[day.person[i]];
+		Id<Link> link = day.link[i] >= 0 ? links[day.link[i]] : null;
+
+		switch (day.kind[i]) {
+			case ACTIVITY_START:
+				Coord coord = null;
+				if (!Double.isNaN(day.x[start]))
+					coord = new Coord(day.x[start], day.y[start]);
+				else if (link != null && scenario != null && scenario.getNetwork().getLinks().containsKey(link))
+					coord = scenario.getNetwork().getLinks().get(link).getToNode().getCoord();
+
+				return new ActivityStartEvent(day.time[i], person, link, facilities[day.container[i]], actTypes[day.actType[i]], coord);
+			case ACTIVITY_END:
+				return new ActivityEndEvent(day.time[i], person, link, facilities[day.container[i]], actTypes[day.actType[i]]);
+			case ENTERS_VEHICLE:
+				return new PersonEntersVehicleEvent(day.time[i], person, vehicles[day.container[i]]);
+			case LEAVES_VEHICLE:
+				return new PersonLeavesVehicleEvent(day.time[i], person, vehicles[day.container[i]]);
+			default:
+				throw new IllegalStateException("Unknown event kind: " + day.kind[i]);
+		}
+	}
+
+	/**
+	 * Ordered events of one day as parallel arrays.
+	 * Container refers to a facility for activity events and to a vehicle otherwise.
+	 * Coordinates are only stored for activity start events, missing ones are {@link Double#NaN}.
+	 */
+	public static final class Day {
+
+		final byte[] kind;
+		final double[] time;
+		final int[] person;
+		final int[] container;
+		final short[] actType;
+		final int[] link;
+		final double[] x;
+		final double[] y;
+
+		Day(int size, int starts) {
+			kind = new byte[size];
+			time = new double[size];
+			person = new int[size];
+			container = new int[size];
+			actType = new short[size];
+			link = new int[size];
+			x = new double[starts];
+			y = new double[starts];
+		}
+
+		private Day(byte[] kind, double[] time, int[] person, int[] container, short[] actType, int[] link, double[] x, double[] y) {
+			this.kind = kind;
+			this.time = time;
+			this.person = person;
+			this.container = container;
+			this.actType = actType;
+			this.link = link;
+			this.x = x;
+			this.y = y;
+		}
+
+		/**
+		 * Number of events.
+		 */
+		public int size() {
+			return kind.length;
+		}
+
+		/**
+		 * Number of activity start events.
+		 */
+		int starts() {
+			return x.length;
+		}
+	}
+
+	/**
+	 * Appends events one by one into the compact form, without keeping any {@link Event} objects.
+	 * Events are collected for one day at a time, which is completed with {@link #finishDay()}.
+	 */
+	static final class Builder {
+
+		private final Index<Id<Person>> persons = new Index<>();
+		private final Index<Id<ActivityFacility>> facilities = new Index<>();
+		private final Index<Id<Vehicle>> vehicles = new Index<>();
+		private final Index<Id<Link>> links = new Index<>();
+		private final Index<String> actTypes = new Index<>();
+
+		private final Map<DayOfWeek, Day> days = new EnumMap<>(DayOfWeek.class);
+
+		@Nullable
+		private final EpisimConfigGroup.FacilitiesHandling facilitiesHandling;
+
+		/**
+		 * Columns of the current day, which grow as needed.
+		 */
+		private byte[] kind = new byte[1024];
+		private double[] time = new double[1024];
+		private int[] person = new int[1024];
+		private int[] container = new int[1024];
+		private short[] actType = new short[1024];
+		private int[] link = new int[1024];
+		private double[] x = new double[1024];
+		private double[] y = new double[1024];
+		private int size;
+		private int starts;
+
+		/**
+		 * @param facilitiesHandling how facility ids of the added events have been created, null if unknown
+		 */
+		Builder(@Nullable EpisimConfigGroup.FacilitiesHandling facilitiesHandling) {
+			this.facilitiesHandling = facilitiesHandling;
+		}
+
+		void activityStart(double time, Id<Person> person, Id<Link> link, Id<ActivityFacility> facility, String actType, @Nullable Coord coord) {
+			int i = next(ACTIVITY_START, time, person);
+			this.container[i] = facilities.add(facility);
+			this.actType[i] = type(actType);
+			this.link[i] = links.add(link);
+
+			if (starts == x.length) {
+				x = Arrays.copyOf(x, starts * 2);
+				y = Arrays.copyOf(y, starts * 2);
+			}
+
+			x[starts] = coord != null ? coord.getX() : Double.NaN;
+			y[starts] = coord != null ? coord.getY() : Double.NaN;
+			starts++;
+		}
+
+		void activityEnd(double time, Id<Person> person, Id<Link> link, Id<ActivityFacility> facility, String actType) {
+			int i = next(ACTIVITY_END, time, person);
+			this.container[i] = facilities.add(facility);
+			this.actType[i] = type(actType);
+			this.link[i] = links.add(link);
+		}
+
+		void entersVehicle(double time, Id<Person> person, Id<Vehicle> vehicle) {
+			int i = next(ENTERS_VEHICLE, time, person);
+			this.container[i] = vehicles.add(vehicle);
+		}
+
+		void leavesVehicle(double time, Id<Person> person, Id<Vehicle> vehicle) {
+			int i = next(LEAVES_VEHICLE, time, person);
+			this.container[i] = vehicles.add(vehicle);
+		}
+
+		/**
+		 * Append an event object to the current day.
+		 */
+		void add(Event event) {
+			if (event instanceof ActivityStartEvent) {
+				ActivityStartEvent e = (ActivityStartEvent) event;
+				activityStart(e.getTime(), e.getPersonId(), e.getLinkId(), e.getFacilityId(), e.getActType(), e.getCoord());
+			} else if (event instanceof ActivityEndEvent) {
+				ActivityEndEvent e = (ActivityEndEvent) event;
+				activityEnd(e.getTime(), e.getPersonId(), e.getLinkId(), e.getFacilityId(), e.getActType());
+			} else if (event instanceof PersonEntersVehicleEvent) {
+				PersonEntersVehicleEvent e = (PersonEntersVehicleEvent) event;
+				entersVehicle(e.getTime(), e.getPersonId(), e.getVehicleId());
+			} else if (event instanceof PersonLeavesVehicleEvent) {
+				PersonLeavesVehicleEvent e = (PersonLeavesVehicleEvent) event;
+				leavesVehicle(e.getTime(), e.getPersonId(), e.getVehicleId());
+			} else
+				throw new IllegalArgumentException("Unsupported event type: " + event.getEventType());
+		}
+
+		/**
+		 * Append all events of a day from another instance, with ids mapped to this builder.
+		 *
+		 * @return the completed day
+		 */
+		Day copy(CompactEvents source, Day day) {
+
+			int[] p = remap(persons, source.persons);
+			int[] f = remap(facilities, source.facilities);
+			int[] v = remap(vehicles, source.vehicles);
+			int[] l = remap(links, source.links);
+			int[] a = remap(actTypes, source.actTypes);
+
+			int s = 0;
+			for (int j = 0; j < day.size(); j++) {
+				int i = next(day.kind[j], day.time[j], null);
+				person[i] = p[day.person[j]];
+				boolean activity = day.kind[j] == ACTIVITY_START || day.kind[j] == ACTIVITY_END;
+				container[i] = activity ? f[day.container[j]] : v[day.container[j]];
+				actType[i] = day.actType[j] >= 0 ? (short) a[day.actType[j]] : -1;
+				link[i] = day.link[j] >= 0 ? l[day.link[j]] : -1;
+
+				if (day.kind[j] == ACTIVITY_START) {
+					if (starts == x.length) {
+						x = Arrays.copyOf(x, starts * 2);
+						y = Arrays.copyOf(y, starts * 2);
+					}
+					x[starts] = day.x[s];
+					y[starts] = day.y[s];
+					starts++;
+					s++;
+				}
+			}
+
+			return finishDay();
+		}
+
+		/**
+		 * Complete the current day and start a new one.
+		 */
+		Day finishDay() {
+			Day day = new Day(Arrays.copyOf(kind, size), Arrays.copyOf(time, size), Arrays.copyOf(person, size),
+					Arrays.copyOf(container, size), Arrays.copyOf(actType, size), Arrays.copyOf(link, size),
+					Arrays.copyOf(x, starts), Arrays.copyOf(y, starts));
+
+			size = 0;
+			starts = 0;
+			return day;
+		}
+
+		/**
+		 * Whether events for {@code day} are already defined.
+		 */
+		boolean contains(DayOfWeek day) {
+			return days.containsKey(day);
+		}
+
+		void put(DayOfWeek dow, Day day) {
+			days.put(dow, day);
+		}
+
+		@SuppressWarnings("unchecked")
+		CompactEvents build() {
+			if (size > 0)
+				throw new IllegalStateException("Current day has not been finished.");
+
+			return new CompactEvents(persons.values.toArray(new Id[0]), facilities.values.toArray(new Id[0]),
+					vehicles.values.toArray(new Id[0]), links.values.toArray(new Id[0]), actTypes.values.toArray(new String[0]),
+					days, facilitiesHandling);
+		}
+
+		/**
+		 * Appends a new event and returns its index.
+		 */
+		private int next(byte kind, double time, @Nullable Id<Person> person) {
+			if (size == this.kind.length) {
+				int n = size * 2;
+				this.kind = Arrays.copyOf(this.kind, n);
+				this.time = Arrays.copyOf(this.time, n);
+				this.person = Arrays.copyOf(this.person, n);
+				this.container = Arrays.copyOf(this.container, n);
+				this.actType = Arrays.copyOf(this.actType, n);
+				this.link = Arrays.copyOf(this.link, n);
+			}
+
+			int i = size++;
+			this.kind[i] = kind;
+			this.time[i] = time;
+			this.person[i] = persons.add(person);
+			this.actType[i] = -1;
+			this.link[i] = -1;
+			return i;
+		}
+
+		private short type(String actType) {
+			int idx = actTypes.add(actType);
+			if (idx > Short.MAX_VALUE)
+				throw new IllegalStateException("Too many activity types: " + actTypes.size());
+
+			return (short) idx;
+		}
+
+		private static <T> int[] remap(Index<T> index, T[] values) {
+			int[] result = new int[values.length];
+			for (int i = 0; i < values.length; i++)
+				result[i] = index.add(values[i]);
+
+			return result;
+		}
+	}
+
+	/**
+	 * Maps objects to consecutive indices in order of insertion.
+	 */
+	private static final class Index<T> {
+
+		private final Object2IntMap<T> index = new Object2IntOpenHashMap<>();
+		private final List<T> values = new ArrayList<>();
+
+		private Index() {
+			index.defaultReturnValue(-1);
+		}
+
+		private int add(@Nullable T value) {
+			if (value == null)
+				return -1;
+
+			int idx = index.getInt(value);
+			if (idx == -1) {
+				idx = values.size();
+				index.put(value, idx);
+				values.add(value);
+			}
+
+			return idx;
+		}
+
+		private int size() {
+			return values.size();
+		}
+	}
+
+}
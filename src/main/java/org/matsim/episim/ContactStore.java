@@ -0,0 +1,465 @@
+/*-
+ * #%L
+ * MATSim Episim
+ * %%
+ * Copyright (C) 2020 matsim-org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.matsim.episim;
+
+import it.unimi.dsi.fastutil.doubles.DoubleList;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.ints.IntList;
+import it.unimi.dsi.fastutil.longs.Long2IntMap;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+
+import javax.annotation.Nullable;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Traced contacts of all persons in a {@link PersonStore}, stored as one edge list of int ids per day.
+ * Each day holds one edge per pair of persons with the time of their latest contact on that day.
+ * Pairs keep the sequence number of their first contact as long as they have a contact in the window, which gives the order of
+ * the contact persons, like an insertion ordered map per person.
+ * Only the days within the tracing window are kept, so memory depends on the distinct contacts within the window and not on the
+ * whole history or how often persons meet.
+ * <p>
+ * Persons get an id when they have their first contact. Ids are compacted whenever days are dropped, so that persons
+ * without contacts in the window are not kept alive. For each day, an index of the edges by person is built
+ * when the day is queried for the first time after contacts were added.
+ * <p>
+ * All methods are synchronized, because the index is built lazily by readers.
+ */
+final class ContactStore {
+
+	private static final double DAY = 24. * 3600;
+
+	/**
+	 * Registered persons by their id.
+	 */
+	private final List<EpisimPerson> persons = new ArrayList<>();
+	private final Object2IntMap<EpisimPerson> ids = new Object2IntOpenHashMap<>();
+
+	/**
+	 * Edges of each day, ordered by day.
+	 */
+	private final List<Day> days = new ArrayList<>();
+
+	/**
+	 * Sequence number of the next new pair.
+	 */
+	private long nextSequence;
+
+	/**
+	 * All contacts before this time have been removed.
+	 */
+	private double clearedUntil = Double.NEGATIVE_INFINITY;
+
+	ContactStore() {
+		ids.defaultReturnValue(-1);
+	}
+
+	private int register(EpisimPerson person) {
+		int id = ids.getInt(person);
+		if (id == -1) {
+			id = persons.size();
+			persons.add(person);
+			ids.put(person, id);
+		}
+
+		return id;
+	}
+
+	/**
+	 * Add a contact of {@code person} with {@code other}. The contact is only stored in this direction.
+	 */
+	synchronized void add(EpisimPerson person, EpisimPerson other, double time) {
+		int from = register(person);
+		int to = register(other);
+
+		Day d = getDay(time);
+		d.add(from, to, time, sequence(from, to));
+	}
+
+	/**
+	 * Day for a contact at {@code time}, which is created if needed.
+	 */
+	private Day getDay(double time) {
+		int day = (int) Math.floor(time / DAY);
+
+		// contacts older than the last clearing need to be cleared again
+		if (time < clearedUntil)
+			clearedUntil = Double.NEGATIVE_INFINITY;
+
+		// contacts are mostly added in order, so the matching day is searched from the end
+		int i = days.size() - 1;
+		while (i >= 0 && days.get(i).day > day)
+			i--;
+
+		if (i >= 0 && days.get(i).day == day)
+			return days.get(i);
+
+		Day d = new Day(day);
+		days.add(i + 1, d);
+		return d;
+	}
+
+	/**
+	 * Sequence number of a pair, a new one is assigned if the pair has no contact in any of the days.
+	 */
+	private long sequence(int from, int to) {
+		for (int i = days.size() - 1; i >= 0; i--) {
+			Day d = days.get(i);
+			int e = d.edge(from, to);
+			if (e != -1)
+				return d.sequence[e];
+		}
+
+		return nextSequence++;
+	}
+
+	/**
+	 * All persons {@code person} had contact with at or after {@code after}, each person only once and in order of the first contact
+	 * of the pair that is still stored.
+	 */
+	synchronized List<EpisimPerson> get(EpisimPerson person, double after) {
+		List<EpisimPerson> result = new ArrayList<>();
+		collect(person, after, result, null);
+		return result;
+	}
+
+	/**
+	 * All stored contacts of {@code person} in the same order as {@link #get(EpisimPerson, double)}, used when writing the state of a person.
+	 *
+	 * @param others receives the contact persons
+	 * @param times  receives the time of the latest contact with each person
+	 */
+	synchronized void getContacts(EpisimPerson person, List<EpisimPerson> others, DoubleList times) {
+		collect(person, Double.NEGATIVE_INFINITY, others, times);
+	}
+
+	/**
+	 * Collect the contact persons of {@code person}, each only once and ordered by the sequence number of the pair.
+	 */
+	private void collect(EpisimPerson person, double after, List<EpisimPerson> others, @Nullable DoubleList times) {
+		int id = ids.getInt(person);
+		if (id == -1)
+			return;
+
+		// edges by their day and index
+		IntList edgeDays = new IntArrayList();
+		IntList edges = new IntArrayList();
+
+		for (int i = 0; i < days.size(); i++) {
+			Day d = days.get(i);
+			if ((d.day + 1) * DAY <= after)
+				continue;
+
+			d.index(persons.size());
+			if (id + 1 >= d.offsets.length)
+				continue;
+
+			for (int j = d.offsets[id]; j < d.offsets[id + 1]; j++) {
+				int e = d.order[j];
+				if (d.time[e] < after)
+					continue;
+
+				edgeDays.add(i);
+				edges.add(e);
+			}
+		}
+
+		int[] order = new int[edges.size()];
+		for (int i = 0; i < order.length; i++)
+			order[i] = i;
+
+		IntArrays.quickSort(order, (a, b) -> Long.compare(
+				days.get(edgeDays.getInt(a)).sequence[edges.getInt(a)], days.get(edgeDays.getInt(b)).sequence[edges.getInt(b)]));
+
+		// edges of the same pair on different days have the same sequence number and are next to each other
+		long last = -1;
+		for (int k : order) {
+			Day d = days.get(edgeDays.getInt(k));
+			int e = edges.getInt(k);
+
+			if (d.sequence[e] == last) {
+				// the time of a pair is its latest contact over all days
+				if (times != null)
+					times.set(times.size() - 1, Math.max(times.getDouble(times.size() - 1), d.time[e]));
+
+				continue;
+			}
+
+			last = d.sequence[e];
+			others.add(persons.get(d.to[e]));
+			if (times != null)
+				times.add(d.time[e]);
+		}
+	}
+
+	/**
+	 * Remove all contacts before a certain time. Whole days are dropped, only the first remaining day may need to be filtered.
+	 */
+	synchronized void clear(double before) {
+		if (before <= clearedUntil)
+			return;
+
+		int n = 0;
+		while (n < days.size() && (days.get(n).day + 1) * DAY <= before)
+			n++;
+
+		days.subList(0, n).clear();
+
+		if (!days.isEmpty() && days.get(0).day * DAY < before) {
+			days.get(0).removeBefore(before);
+			if (days.get(0).size == 0)
+				days.remove(0);
+		}
+
+		if (n > 0)
+			compact();
+
+		clearedUntil = before;
+	}
+
+	/**
+	 * Assign new ids to the persons that still have contacts, in order of their old ids.
+	 */
+	private void compact() {
+		int[] remap = new int[persons.size()];
+		Arrays.fill(remap, -1);
+
+		for (Day d : days) {
+			for (int i = 0; i < d.size; i++) {
+				remap[d.from[i]] = 0;
+				remap[d.to[i]] = 0;
+			}
+		}
+
+		List<EpisimPerson> kept = new ArrayList<>();
+		ids.clear();
+		for (int i = 0; i < remap.length; i++) {
+			if (remap[i] == -1)
+				continue;
+
+			remap[i] = kept.size();
+			ids.put(persons.get(i), remap[i]);
+			kept.add(persons.get(i));
+		}
+
+		persons.clear();
+		persons.addAll(kept);
+
+		for (Day d : days)
+			d.remap(remap);
+	}
+
+	/**
+	 * Remove all contacts.
+	 */
+	synchronized void clear() {
+		days.clear();
+		persons.clear();
+		ids.clear();
+		nextSequence = 0;
+		clearedUntil = Double.NEGATIVE_INFINITY;
+	}
+
+	/**
+	 * Number of stored contacts, a contact is counted once per direction and day.
+	 */
+	synchronized int size() {
+		int size = 0;
+		for (Day d : days)
+			size += d.size;
+
+		return size;
+	}
+
+	/**
+	 * Writes all contacts in the order they were added together with their sequence number, persons are written by their index.
+	 */
+	synchronized void write(DataOutput out) throws IOException {
+		out.writeInt(days.size());
+		for (Day d : days) {
+			out.writeInt(d.size);
+			for (int i = 0; i < d.size; i++) {
+				out.writeInt(persons.get(d.from[i]).getIndex());
+				out.writeInt(persons.get(d.to[i]).getIndex());
+				out.writeDouble(d.time[i]);
+				out.writeLong(d.sequence[i]);
+			}
+		}
+	}
+
+	/**
+	 * Replaces all contacts with the ones written by {@link #write(DataOutput)}.
+	 *
+	 * @param persons all persons by their index
+	 */
+	synchronized void read(DataInput in, EpisimPerson[] persons) throws IOException {
+		clear();
+
+		int n = in.readInt();
+		for (int i = 0; i < n; i++) {
+			int size = in.readInt();
+			for (int j = 0; j < size; j++) {
+				int from = register(persons[in.readInt()]);
+				int to = register(persons[in.readInt()]);
+				double time = in.readDouble();
+				long sequence = in.readLong();
+
+				getDay(time).add(from, to, time, sequence);
+				nextSequence = Math.max(nextSequence, sequence + 1);
+			}
+		}
+	}
+
+	/**
+	 * Edge list of one day.
+	 */
+	private static final class Day {
+
+		private final int day;
+
+		private int size;
+		private int[] from = new int[16];
+		private int[] to = new int[16];
+		private double[] time = new double[16];
+		private long[] sequence = new long[16];
+
+		/**
+		 * Edge of each pair of persons, see {@link #key(int, int)}.
+		 */
+		private final Long2IntMap edges = new Long2IntOpenHashMap();
+
+		/**
+		 * Edges ordered by person, the edges of person {@code i} are at {@code order[offsets[i]] until order[offsets[i + 1]]}.
+		 * Only valid if {@link #indexed} equals {@link #size}. Persons registered after the index was built have no edges on this day.
+		 */
+		private int[] offsets;
+		private int[] order;
+		private int indexed = -1;
+
+		private Day(int day) {
+			this.day = day;
+			edges.defaultReturnValue(-1);
+		}
+
+		private static long key(int person, int other) {
+			return ((long) person << 32) | (other & 0xffffffffL);
+		}
+
+		/**
+		 * Edge of a pair on this day or -1.
+		 */
+		private int edge(int person, int other) {
+			return edges.get(key(person, other));
+		}
+
+		/**
+		 * Add a contact, or update the time of an existing contact of the same pair if it is later.
+		 */
+		private void add(int person, int other, double t, long seq) {
+			int e = edges.putIfAbsent(key(person, other), size);
+			if (e != -1) {
+				time[e] = Math.max(time[e], t);
+				return;
+			}
+
+			if (size == from.length) {
+				int capacity = size + (size >> 1);
+				from = Arrays.copyOf(from, capacity);
+				to = Arrays.copyOf(to, capacity);
+				time = Arrays.copyOf(time, capacity);
+				sequence = Arrays.copyOf(sequence, capacity);
+			}
+
+			from[size] = person;
+			to[size] = other;
+			time[size] = t;
+			sequence[size] = seq;
+			size++;
+		}
+
+		/**
+		 * Build the index with a counting sort, which keeps the order in which contacts were added.
+		 */
+		private void index(int numPersons) {
+			// persons registered later have no edges on this day
+			if (indexed == size)
+				return;
+
+			offsets = new int[numPersons + 1];
+			for (int i = 0; i < size; i++)
+				offsets[from[i] + 1]++;
+
+			for (int i = 0; i < numPersons; i++)
+				offsets[i + 1] += offsets[i];
+
+			order = new int[size];
+			int[] next = Arrays.copyOf(offsets, numPersons);
+			for (int i = 0; i < size; i++)
+				order[next[from[i]]++] = i;
+
+			indexed = size;
+		}
+
+		private void remap(int[] ids) {
+			for (int i = 0; i < size; i++) {
+				from[i] = ids[from[i]];
+				to[i] = ids[to[i]];
+			}
+
+			indexEdges();
+		}
+
+		/**
+		 * Rebuild all indices after edges have been changed.
+		 */
+		private void indexEdges() {
+			edges.clear();
+			for (int i = 0; i < size; i++)
+				edges.put(key(from[i], to[i]), i);
+
+			indexed = -1;
+		}
+
+		private void removeBefore(double before) {
+			int n = 0;
+			for (int i = 0; i < size; i++) {
+				if (time[i] >= before) {
+					from[n] = from[i];
+					to[n] = to[i];
+					time[n] = time[i];
+					sequence[n] = sequence[i];
+					n++;
+				}
+			}
+
+			size = n;
+			indexEdges();
+		}
+	}
+}
@@ -55,6 +55,7 @@ public final class EpisimConfigGroup extends ReflectiveConfigGroup {
 	private static final Joiner.MapJoiner JOINER = Joiner.on(";").withKeyValueSeparator("=");
 
 	private static final String WRITE_EVENTS = "writeEvents";
+	private static final String EVENTS_FORMAT = "eventsFormat";
 	private static final String CALIBRATION_PARAMETER = "calibrationParameter";
 	private static final String HOSPITAL_FACTOR = "hospitalFactor";
 	private static final String INITIAL_INFECTIONS = "initialInfections";
@@ -73,6 +74,8 @@ public final class EpisimConfigGroup extends ReflectiveConfigGroup {
 	private static final String AGE_SUSCEPTIBILITY = "ageSusceptibility";
 	private static final String AGE_INFECTIVITY = "ageInfectivity";
 	private static final String DAYS_INFECTIOUS = "daysInfectious";
+	private static final String CONTACT_THREADS = "contactThreads";
+	private static final String SKIP_CONTAINERS = "skipContainers";
 
 	private static final Logger log = LogManager.getLogger(EpisimConfigGroup.class);
 	private static final String GROUPNAME = "episim";
@@ -107,6 +110,10 @@ public final class EpisimConfigGroup extends ReflectiveConfigGroup {
 	 * Which events to write in the output.
 	 */
 	private WriteEvents writeEvents = WriteEvents.episim;
+	/**
+	 * File format of the written episim events.
+	 */
+	private EventsFormat eventsFormat = EventsFormat.xml;
 	// this is current default for 25% scenarios
 	private double calibrationParameter = 0.000002;
 	private double hospitalFactor = 1.;
@@ -145,6 +152,15 @@ public final class EpisimConfigGroup extends ReflectiveConfigGroup {
 	private Class<? extends ShutdownPolicy> policyClass = FixedPolicy.class;
 	private double maxContacts = 3.;
 	private int daysInfectious = 4;
+	/**
+	 * Number of threads used to evaluate contacts. With more than one thread, containers are processed in parallel,
+	 * as well as the daily state updates of the persons.
+	 */
+	private int contactThreads = 1;
+	/**
+	 * Leave containers without drawing contacts, if no infection or tracing is possible there.
+	 */
+	private boolean skipContainers = false;
 	/**
 	 * Child susceptibility used in AgeDependentInfectionModelWithSeasonality.
 	 * Taken from https://doi.org/10.1101/2020.06.03.20121145
@@ -200,6 +216,16 @@ public final class EpisimConfigGroup extends ReflectiveConfigGroup {
 		this.writeEvents = writeEvents;
 	}
 
+	@StringGetter(EVENTS_FORMAT)
+	public EventsFormat getEventsFormat() {
+		return eventsFormat;
+	}
+
+	@StringSetter(EVENTS_FORMAT)
+	public void setEventsFormat(EventsFormat eventsFormat) {
+		this.eventsFormat = eventsFormat;
+	}
+
 	@StringGetter(CALIBRATION_PARAMETER)
 	public double getCalibrationParameter() {
 		return this.calibrationParameter;
@@ -502,6 +528,37 @@ public final class EpisimConfigGroup extends ReflectiveConfigGroup {
 		this.daysInfectious = daysInfectious;
 	}
 
+	@StringGetter(CONTACT_THREADS)
+	public int getContactThreads() {
+		return contactThreads;
+	}
+
+	/**
+	 * Set the number of threads for the contact model and the daily state updates. Results depend on whether this is one or larger than one,
+	 * but not on the exact number of threads.
+	 */
+	@StringSetter(CONTACT_THREADS)
+	public void setContactThreads(int contactThreads) {
+		if (contactThreads < 1)
+			throw new IllegalArgumentException("Number of contact threads must be at least 1");
+
+		this.contactThreads = contactThreads;
+	}
+
+	@StringGetter(SKIP_CONTAINERS)
+	public boolean isSkipContainers() {
+		return skipContainers;
+	}
+
+	/**
+	 * When enabled, a person leaving a container where it can not infect, be infected or be traced does not draw its contacts at all.
+	 * This is much faster for large containers, but the random numbers differ and results are not the same as without this option.
+	 */
+	@StringSetter(SKIP_CONTAINERS)
+	public void setSkipContainers(boolean skipContainers) {
+		this.skipContainers = skipContainers;
+	}
+
 	@StringGetter(AGE_SUSCEPTIBILITY)
 	String getAgeSusceptibilityString() {
 		return JOINER.join(ageSusceptibility);
@@ -853,6 +910,22 @@ public final class EpisimConfigGroup extends ReflectiveConfigGroup {
 		all
 	}
 
+	/**
+	 * Defines the file format of episim events.
+	 */
+	public enum EventsFormat {
+		/**
+		 * All events are written into one xml file per day.
+		 */
+		xml,
+
+		/**
+		 * Episim events are written into one columnar binary file per day, see {@link org.matsim.episim.events.ColumnarEventsWriter}.
+		 * Input events are still written as xml.
+		 */
+		binary
+	}
+
 	/**
 	 * Defines how the snapshot seed should be processed.
 	 */
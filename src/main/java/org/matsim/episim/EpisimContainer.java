@@ -20,20 +20,25 @@
  */
 package org.matsim.episim;
 
-import it.unimi.dsi.fastutil.ints.Int2DoubleMap;
-import it.unimi.dsi.fastutil.ints.Int2DoubleOpenHashMap;
-import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
-import it.unimi.dsi.fastutil.ints.IntSet;
+import it.unimi.dsi.fastutil.ints.Int2IntMap;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntList;
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.population.Person;
 import org.matsim.core.gbl.Gbl;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
-import java.util.ArrayList;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.SplittableRandom;
 
 import static org.matsim.episim.EpisimUtils.readChars;
 import static org.matsim.episim.EpisimUtils.writeChars;
@@ -47,16 +52,49 @@ public class EpisimContainer<T> {
 	private final Id<T> containerId;
 
 	/**
-	 * Persons currently in this container. Stored only as Ids.
+	 * Persons currently in this container, each occupying one slot. Persons are kept in the order they entered, which
+	 * determines the order of contacts drawn by the contact models.
+	 * Slots of leaving persons are set to null and only reclaimed by {@link #compact()}, so that removals do not have to move the others.
 	 */
-	private final IntSet persons = new IntOpenHashSet(4);
+	private EpisimPerson[] occupants = new EpisimPerson[4];
 
 	/**
-	 * Person list needed to draw random persons within container.
+	 * Number of used slots, including the empty ones of persons that left.
 	 */
-	private final List<EpisimPerson> personsAsList = new ArrayList<>();
+	private int end;
 
-	private final Int2DoubleMap containerEnterTimes = new Int2DoubleOpenHashMap(4);
+	/**
+	 * Number of empty slots before {@link #end}.
+	 */
+	private int removed;
+
+	/**
+	 * Fenwick tree over the slots counting the contained persons, used to find the slot of a person by its rank.
+	 * Its size is the capacity of the slot arrays plus one.
+	 */
+	private int[] tree = new int[5];
+
+	/**
+	 * View on the contained persons, without the empty slots.
+	 */
+	private final List<EpisimPerson> persons = new Persons();
+
+	/**
+	 * Slot of each contained person, by the index of its id.
+	 */
+	private final Int2IntMap slots = new Int2IntOpenHashMap(4);
+
+	/**
+	 * Entering time of each person, by slot.
+	 */
+	private double[] containerEnterTimes = new double[4];
+
+	/**
+	 * Position in trajectory of each person while in this container, by slot.
+	 * This is the same as {@link EpisimPerson#getCurrentPositionInTrajectory()}, but does not change when the person already moves on,
+	 * which is the case when containers are processed in parallel.
+	 */
+	private int[] positions = new int[4];
 
 	/**
 	 * The maximum number of persons simultaneously in this container. Negative if unknown.
@@ -79,8 +117,22 @@ public class EpisimContainer<T> {
 	 */
 	private double numSpaces = 1;
 
+	/**
+	 * Dense index of this container among containers of the same type. Negative if not registered.
+	 */
+	private int index = -1;
+
+	/**
+	 * Number of susceptible, contagious and traceable persons in this container. Persons showing symptoms are counted as contagious.
+	 * Contained persons report changes of their status via {@link #updateStatus(EpisimPerson, EpisimPerson.DiseaseStatus, boolean)}.
+	 */
+	private int numSusceptible;
+	private int numContagious;
+	private int numTraceable;
+
 	EpisimContainer(Id<T> containerId) {
 		this.containerId = containerId;
+		this.slots.defaultReturnValue(-1);
 	}
 
 	/**
@@ -88,16 +140,13 @@ public class EpisimContainer<T> {
 	 */
 	void read(ObjectInput in, Map<Id<Person>, EpisimPerson> persons) throws IOException {
 
-		this.persons.clear();
-		this.personsAsList.clear();
-		this.containerEnterTimes.clear();
+		clearPersons();
 
 		int n = in.readInt();
 		for (int i = 0; i < n; i++) {
 			Id<Person> id = Id.create(readChars(in), Person.class);
-			this.persons.add(id.index());
-			personsAsList.add(persons.get(id));
-			containerEnterTimes.put(id.index(), in.readDouble());
+			EpisimPerson person = persons.get(id);
+			addOccupant(person, in.readDouble(), person.getCurrentPositionInTrajectory());
 		}
 	}
 
@@ -106,22 +155,77 @@ public class EpisimContainer<T> {
 	 */
 	void write(ObjectOutput out) throws IOException {
 
-		out.writeInt(containerEnterTimes.size());
-		for (EpisimPerson p : personsAsList) {
-			writeChars(out, p.getPersonId().toString());
-			out.writeDouble(containerEnterTimes.get(p.getPersonId().index()));
+		out.writeInt(end - removed);
+		for (int i = 0; i < end; i++) {
+			if (occupants[i] == null) continue;
+			writeChars(out, occupants[i].getPersonId().toString());
+			out.writeDouble(containerEnterTimes[i]);
+		}
+	}
+
+	/**
+	 * Writes contained persons by their index.
+	 */
+	void writeState(DataOutput out) throws IOException {
+
+		out.writeInt(end - removed);
+		for (int i = 0; i < end; i++) {
+			if (occupants[i] == null) continue;
+			out.writeInt(occupants[i].getIndex());
+			out.writeDouble(containerEnterTimes[i]);
+		}
+	}
+
+	/**
+	 * Reads state written by {@link #writeState(DataOutput)}.
+	 *
+	 * @param persons all persons by their index
+	 */
+	void readState(DataInput in, EpisimPerson[] persons) throws IOException {
+
+		clearPersons();
+
+		int n = in.readInt();
+		for (int i = 0; i < n; i++) {
+			EpisimPerson person = persons[in.readInt()];
+			addOccupant(person, in.readDouble(), person.getCurrentPositionInTrajectory());
 		}
 	}
 
 	void addPerson(EpisimPerson person, double now) {
+		addOccupant(person, now, person.getCurrentPositionInTrajectory());
+		person.setCurrentContainer(this);
+	}
+
+	/**
+	 * Adds a person without changing its current container.
+	 *
+	 * @param positionInTrajectory position of the person in its trajectory during the stay
+	 */
+	void addOccupant(EpisimPerson person, double now, int positionInTrajectory) {
 		final int index = person.getPersonId().index();
 
-		assert !persons.contains(index) : "Person already contained in this container.";
+		assert !slots.containsKey(index) : "Person already contained in this container.";
+
+		if (end == occupants.length) {
+			// reclaim the empty slots if there are enough of them, otherwise grow
+			if (removed * 4 >= end)
+				compact();
+			else {
+				occupants = Arrays.copyOf(occupants, end * 2);
+				containerEnterTimes = Arrays.copyOf(containerEnterTimes, end * 2);
+				positions = Arrays.copyOf(positions, end * 2);
+				buildTree();
+			}
+		}
 
-		persons.add(index);
-		personsAsList.add(person);
-		containerEnterTimes.put(index, now);
-		person.setCurrentContainer(this);
+		int slot = end++;
+		occupants[slot] = person;
+		slots.put(index, slot);
+		containerEnterTimes[slot] = now;
+		positions[slot] = positionInTrajectory;
+		updateTree(slot, 1);
+		count(person, 1);
 	}
 
 	/**
@@ -130,19 +234,208 @@ public class EpisimContainer<T> {
 	 * @throws RuntimeException if the person was not in the container.
 	 */
 	void removePerson(EpisimPerson person) {
-		int index = person.getPersonId().index();
-
-		containerEnterTimes.remove(index);
-		persons.remove(index);
+		removeOccupant(person);
 		person.removeCurrentContainer(this);
-		boolean wasRemoved = personsAsList.remove(person);
-		Gbl.assertIf(wasRemoved);
+	}
+
+	/**
+	 * Removes a person without changing its current container.
+	 */
+	void removeOccupant(EpisimPerson person) {
+		int slot = slots.remove(person.getPersonId().index());
+		Gbl.assertIf(slot >= 0);
+
+		// the slot is left empty, so that the order of the other persons is not changed
+		occupants[slot] = null;
+		removed++;
+		updateTree(slot, -1);
+		count(person, -1);
+
+		// amortized over the removals since the last compaction
+		if (removed > end - removed)
+			compact();
+	}
+
+	/**
+	 * Moves all persons to the front, removing the empty slots while keeping their order.
+	 */
+	private void compact() {
+		int n = 0;
+		for (int i = 0; i < end; i++) {
+			EpisimPerson person = occupants[i];
+			if (person == null) continue;
+
+			if (i != n) {
+				occupants[n] = person;
+				containerEnterTimes[n] = containerEnterTimes[i];
+				positions[n] = positions[i];
+				slots.put(person.getPersonId().index(), n);
+			}
+			n++;
+		}
+
+		Arrays.fill(occupants, n, end, null);
+		end = n;
+		removed = 0;
+		buildTree();
+	}
+
+	/**
+	 * Rebuilds the Fenwick tree for the current slots in linear time.
+	 */
+	private void buildTree() {
+		int capacity = occupants.length;
+		if (tree.length != capacity + 1)
+			tree = new int[capacity + 1];
+		else
+			Arrays.fill(tree, 0);
+
+		for (int i = 1; i <= capacity; i++) {
+			if (occupants[i - 1] != null)
+				tree[i]++;
+
+			int parent = i + (i & -i);
+			if (parent <= capacity)
+				tree[parent] += tree[i];
+		}
+	}
+
+	private void updateTree(int slot, int d) {
+		for (int i = slot + 1; i < tree.length; i += i & -i)
+			tree[i] += d;
+	}
+
+	/**
+	 * Number of persons in the slots before {@code slot}.
+	 */
+	private int rank(int slot) {
+		if (removed == 0)
+			return slot;
+
+		int r = 0;
+		for (int i = slot; i > 0; i -= i & -i)
+			r += tree[i];
+		return r;
+	}
+
+	/**
+	 * Slot of the person with the given rank, i.e. its position in {@link #getPersons()}.
+	 */
+	private int select(int rank) {
+		if (removed == 0)
+			return rank;
+
+		// capacity is always a power of two
+		int slot = 0;
+		for (int step = occupants.length; step > 0; step >>= 1) {
+			if (slot + step < tree.length && tree[slot + step] <= rank) {
+				slot += step;
+				rank -= tree[slot];
+			}
+		}
+		return slot;
+	}
+
+	/**
+	 * Update the status counts for one person entering ({@code d = 1}) or leaving ({@code d = -1}).
+	 */
+	private void count(EpisimPerson person, int d) {
+		count(person.getDiseaseStatus(), person.isTraceable(), d);
+	}
+
+	private void count(EpisimPerson.DiseaseStatus status, boolean traceable, int d) {
+		switch (status) {
+			case susceptible:
+				numSusceptible += d;
+				break;
+			case contagious:
+			case showingSymptoms:
+				numContagious += d;
+				break;
+			default:
+				break;
+		}
+
+		if (traceable)
+			numTraceable += d;
+	}
+
+	/**
+	 * Update the status counts after the disease status or traceability of a person has changed. Does nothing if the person is not
+	 * in this container. Synchronized because the daily state updates of persons may run in parallel.
+	 *
+	 * @param oldStatus    disease status before the change
+	 * @param oldTraceable traceability before the change
+	 */
+	synchronized void updateStatus(EpisimPerson person, EpisimPerson.DiseaseStatus oldStatus, boolean oldTraceable) {
+		if (!slots.containsKey(person.getPersonId().index()))
+			return;
+
+		count(oldStatus, oldTraceable, -1);
+		count(person, 1);
+	}
+
+	/**
+	 * Draws a random person that has not been drawn yet. Repeated calls draw the persons in the same order as repeatedly removing
+	 * a random element from a copy of {@link #getPersons()}, but without copying the persons.
+	 *
+	 * @param drawn ascending slots of the persons that can not be drawn anymore, the slot of the drawn person will be inserted
+	 */
+	public EpisimPerson drawPerson(IntList drawn, SplittableRandom rnd) {
+
+		int rank = rnd.nextInt(end - removed - drawn.size());
+
+		// skip over the persons already drawn to find the person with this rank among the remaining ones
+		int i = 0;
+		for (; i < drawn.size() && rank(drawn.getInt(i)) <= rank; i++)
+			rank++;
+
+		int slot = select(rank);
+		drawn.add(i, slot);
+		return occupants[slot];
+	}
+
+	/**
+	 * Slot of a person, or -1 if the person is not in this container. Slots are ascending in the order of {@link #getPersons()},
+	 * but may change when persons enter or leave.
+	 */
+	public int getSlot(EpisimPerson person) {
+		return slots.get(person.getPersonId().index());
+	}
+
+	/**
+	 * Update the stored trajectory position of a contained person, after it has been changed outside of an event.
+	 */
+	void updatePositionInTrajectory(EpisimPerson person) {
+		int slot = slots.get(person.getPersonId().index());
+		if (slot >= 0)
+			positions[slot] = person.getCurrentPositionInTrajectory();
+	}
+
+	/**
+	 * Position in the trajectory of a person during its stay in this container,
+	 * or its current position if the person is not in this container.
+	 */
+	public int getPositionInTrajectory(EpisimPerson person) {
+		int slot = slots.get(person.getPersonId().index());
+		return slot >= 0 ? positions[slot] : person.getCurrentPositionInTrajectory();
 	}
 
 	public Id<T> getContainerId() {
 		return containerId;
 	}
 
+	/**
+	 * Dense index of this container among all facilities or all vehicles, or -1 if not yet assigned.
+	 */
+	public int getIndex() {
+		return index;
+	}
+
+	void setIndex(int index) {
+		this.index = index;
+	}
+
 	/**
 	 * @return maximum group size in container.
 	 */
@@ -192,20 +485,97 @@ public class EpisimContainer<T> {
 	}
 
 	void clearPersons() {
-		this.persons.clear();
-		this.personsAsList.clear();
-		this.containerEnterTimes.clear();
+		Arrays.fill(this.occupants, 0, this.end, null);
+		Arrays.fill(this.tree, 0);
+		this.end = 0;
+		this.removed = 0;
+		this.slots.clear();
+		this.numSusceptible = 0;
+		this.numContagious = 0;
+		this.numTraceable = 0;
 	}
 
 	/**
 	 * Returns the time the person entered the container, or {@link Double#NEGATIVE_INFINITY} if it never entered.
 	 */
 	public double getContainerEnteringTime(Id<Person> personId) {
-		return containerEnterTimes.getOrDefault(personId.index(), Double.NEGATIVE_INFINITY);
+		int slot = slots.get(personId.index());
+		return slot >= 0 ? containerEnterTimes[slot] : Double.NEGATIVE_INFINITY;
+	}
+
+	/**
+	 * Number of susceptible persons in this container.
+	 */
+	public int getNumSusceptible() {
+		return numSusceptible;
+	}
+
+	/**
+	 * Number of contagious persons or persons showing symptoms in this container.
+	 */
+	public int getNumContagious() {
+		return numContagious;
 	}
 
+	/**
+	 * Number of traceable persons in this container.
+	 */
+	public int getNumTraceable() {
+		return numTraceable;
+	}
+
+	/**
+	 * Persons in this container in the order they entered. The returned list is an unmodifiable view.
+	 */
 	public List<EpisimPerson> getPersons() {
-		// Using Collections.unmodifiableList(...) puts huge pressure on the GC if its called hundred thousand times per second
-		return personsAsList;
+		// The view is created only once, creating a new list puts huge pressure on the GC if its called hundred thousand times per second
+		return persons;
+	}
+
+	/**
+	 * Contained persons without the empty slots.
+	 */
+	private final class Persons extends AbstractList<EpisimPerson> {
+
+		@Override
+		public EpisimPerson get(int index) {
+			if (index < 0 || index >= size())
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+
+			return occupants[select(index)];
+		}
+
+		@Override
+		public int size() {
+			return end - removed;
+		}
+
+		@Override
+		public Iterator<EpisimPerson> iterator() {
+			return new Iterator<>() {
+				private int slot = skip(0);
+
+				private int skip(int from) {
+					while (from < end && occupants[from] == null)
+						from++;
+					return from;
+				}
+
+				@Override
+				public boolean hasNext() {
+					return slot < end;
+				}
+
+				@Override
+				public EpisimPerson next() {
+					if (slot >= end)
+						throw new NoSuchElementException();
+
+					EpisimPerson person = occupants[slot];
+					slot = skip(slot + 1);
+					return person;
+				}
+			};
+		}
 	}
 }
@@ -23,7 +23,9 @@ package org.matsim.episim;
 import com.google.inject.AbstractModule;
 import com.google.inject.Provides;
 import com.google.inject.Singleton;
+import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.population.Person;
 import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.config.Config;
 import org.matsim.core.config.ConfigUtils;
@@ -84,6 +86,13 @@ public class EpisimModule extends AbstractModule {
 		return ScenarioUtils.loadScenario(config);
 	}
 
+	@Provides
+	@Singleton
+	public PersonStore personStore(Scenario scenario) {
+		// the scenario is loaded first, so that the number of persons is known
+		return new PersonStore(Id.getNumberOfIds(Person.class));
+	}
+
 	@Provides
 	@Singleton
 	public EpisimConfigGroup episimConfigGroup(Config config) {
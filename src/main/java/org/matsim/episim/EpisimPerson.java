@@ -21,31 +21,36 @@
 package org.matsim.episim;
 
 import com.google.common.annotations.Beta;
-import it.unimi.dsi.fastutil.objects.Object2DoubleLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
+import it.unimi.dsi.fastutil.doubles.DoubleList;
 import it.unimi.dsi.fastutil.objects.Object2DoubleMap;
 import it.unimi.dsi.fastutil.objects.Object2DoubleOpenHashMap;
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.population.Person;
 import org.matsim.episim.events.EpisimPersonStatusEvent;
+import org.matsim.episim.model.InteractionRules;
 import org.matsim.episim.model.VirusStrain;
 import org.matsim.facilities.ActivityFacility;
 import org.matsim.utils.objectattributes.attributable.Attributable;
 import org.matsim.utils.objectattributes.attributable.Attributes;
 import org.matsim.vehicles.Vehicle;
 
+import javax.annotation.Nullable;
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
 import java.time.DayOfWeek;
 import java.util.*;
 import java.util.function.BiFunction;
-import java.util.stream.Collectors;
 
 import static org.matsim.episim.EpisimUtils.readChars;
 import static org.matsim.episim.EpisimUtils.writeChars;
 
 /**
  * Persons current state in the simulation.
+ * Primitive state is held in a {@link PersonStore}, which is shared by all persons of a simulation.
  */
 public final class EpisimPerson implements Attributable {
 
@@ -55,36 +60,33 @@ public final class EpisimPerson implements Attributable {
 	private final Attributes attributes;
 
 	/**
-	 * Whole trajectory over all days of the week.
+	 * Home facility given by the {@code homeFacilityRefId} attribute, null if not present, e.g. for external agents.
 	 */
-	private final List<Activity> trajectory = new ArrayList<>();
+	@Nullable
+	private final Id<ActivityFacility> homeFacilityId;
 
 	/**
-	 * The position in the trajectory at the start for each day of the week.
+	 * Subpopulation attribute of this person, null if not present.
 	 */
-	private final int[] startOfDay = new int[7];
+	@Nullable
+	private final String subpopulation;
 
 	/**
-	 * The position in the trajectory for the end of the day.
+	 * Whole trajectory over all days of the week.
 	 */
-	private final int[] endOfDay = new int[7];
+	private final List<Activity> trajectory = new ArrayList<>();
 
 	/**
 	 * The first visited {@link org.matsim.facilities.ActivityFacility} for each day.
 	 */
 	private final Id<ActivityFacility>[] firstFacilityId = new Id[7];
 
-	// Fields above are initialized from the sim and not persisted
-
 	/**
-	 * Traced contacts with other persons.
+	 * Dense index of this person, assigned by the {@link InfectionEventHandler}. Negative if not registered.
 	 */
-	private final Object2DoubleMap<EpisimPerson> traceableContactPersons = new Object2DoubleLinkedOpenHashMap<>(4);
+	private int index = -1;
 
-	/**
-	 * Stores first time of status changes to specific type.
-	 */
-	private final EnumMap<DiseaseStatus, Double> statusChanges = new EnumMap<>(DiseaseStatus.class);
+	// Fields above are initialized from the sim and not persisted
 
 	/**
 	 * Total spent time during activities.
@@ -107,55 +109,14 @@ public final class EpisimPerson implements Attributable {
 	private String infectionType = null;
 
 	/**
-	 * Current {@link DiseaseStatus}.
-	 */
-	private DiseaseStatus status = DiseaseStatus.susceptible;
-	/**
-	 * Current {@link QuarantineStatus}.
-	 */
-	private QuarantineStatus quarantineStatus = QuarantineStatus.no;
-
-	/**
-	 * Strain of the virus the person was infected with.
-	 */
-	private VirusStrain virusStrain = VirusStrain.SARS_CoV_2;
-
-	/**
-	 * Current {@link VaccinationStatus}.
-	 */
-	private VaccinationStatus vaccinationStatus = VaccinationStatus.no;
-
-	/**
-	 * Current {@link TestStatus}.
-	 */
-	private TestStatus testStatus = TestStatus.untested;
-
-	/**
-	 * Iteration when this person was vaccinated. Negative if person was never vaccinated.
-	 */
-	private int vaccinationDate = -1;
-
-	/**
-	 * Iteration when this person got into quarantine. Negative if person was never quarantined.
-	 */
-	private int quarantineDate = -1;
-
-	/**
-	 * Iteration when this person was tested. Negative if person was never tested.
-	 */
-	private int testDate = -1;
-
-	private int currentPositionInTrajectory;
-
-	/**
-	 * Age of the person in years.
+	 * Store holding the state of this person, e.g. disease, quarantine, vaccination and test status.
 	 */
-	private final int age;
+	private PersonStore store;
 
 	/**
-	 * Whether this person can be traced.
+	 * Position of this person in the {@link #store}.
 	 */
-	private boolean traceable;
+	private int slot;
 
 	/**
 	 * Lookup age from attributes.
@@ -173,20 +134,45 @@ public final class EpisimPerson implements Attributable {
 		return age;
 	}
 
-	EpisimPerson(Id<Person> personId, Attributes attrs, EpisimReporting reporting) {
-		this(personId, attrs, true, reporting);
-	}
-
-	EpisimPerson(Id<Person> personId, Attributes attrs, boolean traceable, EpisimReporting reporting) {
+	/**
+	 * Create a person with its state in {@code store}.
+	 */
+	EpisimPerson(Id<Person> personId, Attributes attrs, boolean traceable, EpisimReporting reporting, PersonStore store) {
 		this.personId = personId;
 		this.attributes = attrs;
-		this.traceable = traceable;
-		this.age = getAge(attrs);
 		this.reporting = reporting;
+		this.store = store;
+		this.slot = store.add((String) attrs.getAttribute("district"));
+		store.traceable[slot] = traceable;
+		store.age[slot] = getAge(attrs);
+
+		Object hhid = attrs.getAttribute("hhid");
+		store.household[slot] = store.resolveHousehold(hhid != null ? hhid.toString() : null);
+
+		Object homeFacility = attrs.getAttribute("homeFacilityRefId");
+		this.homeFacilityId = homeFacility != null ? Id.create(homeFacility.toString(), ActivityFacility.class) : null;
+
+		Object subpopulation = attrs.getAttribute("subpopulation");
+		this.subpopulation = subpopulation != null ? subpopulation.toString().intern() : null;
+	}
+
+	PersonStore getStore() {
+		return store;
+	}
+
+	int getSlot() {
+		return slot;
+	}
+
+	/**
+	 * Set the slot after the store has been reordered.
+	 */
+	void setSlot(int slot) {
+		this.slot = slot;
 	}
 
 	/**
-	 * Reads persons state from stream.
+	 * Reads persons state from stream. Counts of the store need to be updated afterwards with {@link PersonStore#recount()}.
 	 *
 	 * @param persons map of all persons in the simulation
 	 */
@@ -195,17 +181,17 @@ public final class EpisimPerson implements Attributable {
 			  Map<Id<Vehicle>, InfectionEventHandler.EpisimVehicle> vehicles) throws IOException {
 
 		int n = in.readInt();
-		traceableContactPersons.clear();
 		for (int i = 0; i < n; i++) {
 			Id<Person> id = Id.create(readChars(in), Person.class);
-			traceableContactPersons.put(persons.get(id), in.readDouble());
+			store.contacts.add(this, persons.get(id), in.readDouble());
 		}
 
 		n = in.readInt();
-		statusChanges.clear();
+		int offset = slot * PersonStore.DISEASE_STATUS.length;
+		Arrays.fill(store.statusChanges, offset, offset + PersonStore.DISEASE_STATUS.length, Double.NaN);
 		for (int i = 0; i < n; i++) {
 			int status = in.readInt();
-			statusChanges.put(DiseaseStatus.values()[status], in.readDouble());
+			store.statusChanges[offset + status] = in.readDouble();
 		}
 
 		// Current container is set
@@ -223,7 +209,7 @@ public final class EpisimPerson implements Attributable {
 			currentContainer = null;
 
 		if (in.readBoolean()){
-			infectionContainer = Id.create(readChars(in), ActivityFacility.class);
+			updateInfectionContainer(Id.create(readChars(in), ActivityFacility.class));
 		}
 
 		if (in.readBoolean()) {
@@ -237,16 +223,16 @@ public final class EpisimPerson implements Attributable {
 			spentTime.put(act, in.readDouble());
 		}
 
-		status = DiseaseStatus.values()[in.readInt()];
-		virusStrain = VirusStrain.values()[in.readInt()];
-		quarantineStatus = QuarantineStatus.values()[in.readInt()];
-		quarantineDate = in.readInt();
-		vaccinationStatus = VaccinationStatus.values()[in.readInt()];
-		vaccinationDate = in.readInt();
-		testStatus = TestStatus.values()[in.readInt()];
-		testDate = in.readInt();
-		currentPositionInTrajectory = in.readInt();
-		traceable = in.readBoolean();
+		store.diseaseStatus[slot] = (byte) in.readInt();
+		store.virusStrain[slot] = (byte) in.readInt();
+		store.quarantineStatus[slot] = (byte) in.readInt();
+		store.quarantineDate[slot] = in.readInt();
+		store.vaccinationStatus[slot] = (byte) in.readInt();
+		store.vaccinationDate[slot] = in.readInt();
+		store.testStatus[slot] = (byte) in.readInt();
+		store.testDate[slot] = in.readInt();
+		store.positionInTrajectory[slot] = in.readInt();
+		store.traceable[slot] = in.readBoolean();
 	}
 
 	/**
@@ -254,16 +240,27 @@ public final class EpisimPerson implements Attributable {
 	 */
 	void write(ObjectOutput out) throws IOException {
 
-		out.writeInt(traceableContactPersons.size());
-		for (Map.Entry<EpisimPerson, Double> kv : traceableContactPersons.entrySet()) {
-			writeChars(out, kv.getKey().getPersonId().toString());
-			out.writeDouble(kv.getValue());
+		List<EpisimPerson> contacts = new ArrayList<>();
+		DoubleList times = new DoubleArrayList();
+		store.contacts.getContacts(this, contacts, times);
+
+		out.writeInt(contacts.size());
+		for (int i = 0; i < contacts.size(); i++) {
+			writeChars(out, contacts.get(i).getPersonId().toString());
+			out.writeDouble(times.getDouble(i));
 		}
 
-		out.writeInt(statusChanges.size());
-		for (Map.Entry<DiseaseStatus, Double> e : statusChanges.entrySet()) {
-			out.writeInt(e.getKey().ordinal());
-			out.writeDouble(e.getValue());
+		int offset = slot * PersonStore.DISEASE_STATUS.length;
+		int changes = 0;
+		for (int i = 0; i < PersonStore.DISEASE_STATUS.length; i++) {
+			if (!Double.isNaN(store.statusChanges[offset + i])) changes++;
+		}
+
+		out.writeInt(changes);
+		for (int i = 0; i < PersonStore.DISEASE_STATUS.length; i++) {
+			if (Double.isNaN(store.statusChanges[offset + i])) continue;
+			out.writeInt(i);
+			out.writeDouble(store.statusChanges[offset + i]);
 		}
 
 		out.writeBoolean(currentContainer != null);
@@ -289,41 +286,114 @@ public final class EpisimPerson implements Attributable {
 			out.writeDouble(kv.getDoubleValue());
 		}
 
-		out.writeInt(status.ordinal());
-		out.writeInt(virusStrain.ordinal());
-		out.writeInt(quarantineStatus.ordinal());
-		out.writeInt(quarantineDate);
-		out.writeInt(vaccinationStatus.ordinal());
-		out.writeInt(vaccinationDate);
-		out.writeInt(testStatus.ordinal());
-		out.writeInt(testDate);
-		out.writeInt(currentPositionInTrajectory);
-		out.writeBoolean(traceable);
+		out.writeInt(store.diseaseStatus[slot]);
+		out.writeInt(store.virusStrain[slot]);
+		out.writeInt(store.quarantineStatus[slot]);
+		out.writeInt(store.quarantineDate[slot]);
+		out.writeInt(store.vaccinationStatus[slot]);
+		out.writeInt(store.vaccinationDate[slot]);
+		out.writeInt(store.testStatus[slot]);
+		out.writeInt(store.testDate[slot]);
+		out.writeInt(store.positionInTrajectory[slot]);
+		out.writeBoolean(store.traceable[slot]);
+	}
+
+	/**
+	 * Writes the state that is not held in the {@link PersonStore}, referencing persons and containers by their index.
+	 *
+	 * @param strings table for activity types and infection containers
+	 * @see InfectionEventHandler#writeState(DataOutput)
+	 */
+	void writeState(DataOutput out, StringTable strings) throws IOException {
+
+		// vehicles are encoded as negative numbers
+		if (currentContainer == null)
+			out.writeInt(Integer.MIN_VALUE);
+		else if (currentContainer instanceof InfectionEventHandler.EpisimVehicle)
+			out.writeInt(-currentContainer.getIndex() - 1);
+		else
+			out.writeInt(currentContainer.getIndex());
+
+		out.writeBoolean(infectionContainer != null);
+		if (infectionContainer != null)
+			strings.write(out, infectionContainer.toString());
+
+		out.writeBoolean(infectionType != null);
+		if (infectionType != null)
+			strings.write(out, infectionType);
+
+		out.writeInt(spentTime.size());
+		for (Object2DoubleMap.Entry<String> kv : spentTime.object2DoubleEntrySet()) {
+			strings.write(out, kv.getKey());
+			out.writeDouble(kv.getDoubleValue());
+		}
+	}
+
+	/**
+	 * Reads state written by {@link #writeState(DataOutput, StringTable)}.
+	 */
+	void readState(DataInput in, StringTable strings,
+				   InfectionEventHandler.EpisimFacility[] facilities, InfectionEventHandler.EpisimVehicle[] vehicles) throws IOException {
+
+		int container = in.readInt();
+		if (container == Integer.MIN_VALUE)
+			currentContainer = null;
+		else if (container < 0)
+			currentContainer = vehicles[-container - 1];
+		else
+			currentContainer = facilities[container];
+
+		updateInfectionContainer(in.readBoolean() ? Id.create(strings.read(in), ActivityFacility.class) : null);
+		infectionType = in.readBoolean() ? strings.read(in) : null;
+
+		int n = in.readInt();
+		spentTime.clear();
+		for (int i = 0; i < n; i++) {
+			String act = strings.read(in);
+			spentTime.put(act, in.readDouble());
+		}
 	}
 
 	public Id<Person> getPersonId() {
 		return personId;
 	}
 
+	/**
+	 * Dense index of this person within the simulation, or -1 if not yet assigned.
+	 */
+	public int getIndex() {
+		return index;
+	}
+
+	void setIndex(int index) {
+		this.index = index;
+	}
+
 	public DiseaseStatus getDiseaseStatus() {
-		return status;
+		return PersonStore.DISEASE_STATUS[store.diseaseStatus[slot]];
 	}
 
 	public void setDiseaseStatus(double now, DiseaseStatus status) {
-		this.status = status;
-		if (!statusChanges.containsKey(status))
-			statusChanges.put(status, now);
+		DiseaseStatus oldStatus = getDiseaseStatus();
+		store.setDiseaseStatus(slot, status);
+
+		if (currentContainer != null)
+			currentContainer.updateStatus(this, oldStatus, isTraceable());
+
+		int idx = slot * PersonStore.DISEASE_STATUS.length + status.ordinal();
+		if (Double.isNaN(store.statusChanges[idx]))
+			store.statusChanges[idx] = now;
 
 		reporting.reportPersonStatus(this, new EpisimPersonStatusEvent(now, personId, status));
 	}
 
 	public QuarantineStatus getQuarantineStatus() {
-		return quarantineStatus;
+		return PersonStore.QUARANTINE_STATUS[store.quarantineStatus[slot]];
 	}
 
 	public void setQuarantineStatus(QuarantineStatus quarantineStatus, int iteration) {
-		this.quarantineStatus = quarantineStatus;
-		this.quarantineDate = iteration;
+		store.setQuarantineStatus(slot, quarantineStatus);
+		store.quarantineDate[slot] = iteration;
 
 		// this function should receive now instead of iteration
 		// only for testing currently
@@ -331,31 +401,31 @@ public final class EpisimPerson implements Attributable {
 	}
 
 	public void setVirusStrain(VirusStrain virusStrain) {
-		this.virusStrain = virusStrain;
+		store.virusStrain[slot] = (byte) virusStrain.ordinal();
 	}
 
 	public VirusStrain getVirusStrain() {
-		return virusStrain;
+		return PersonStore.VIRUS_STRAIN[store.virusStrain[slot]];
 	}
 
 	public VaccinationStatus getVaccinationStatus() {
-		return vaccinationStatus;
+		return PersonStore.VACCINATION_STATUS[store.vaccinationStatus[slot]];
 	}
 
 	public void setVaccinationStatus(VaccinationStatus vaccinationStatus, int iteration) {
 		if (vaccinationStatus != VaccinationStatus.yes) throw new IllegalArgumentException("Vaccination can only be set to yes.");
 
-		this.vaccinationStatus = vaccinationStatus;
-		this.vaccinationDate = iteration;
+		store.setVaccinationStatus(slot, vaccinationStatus);
+		store.vaccinationDate[slot] = iteration;
 	}
 
 	public TestStatus getTestStatus() {
-		return testStatus;
+		return PersonStore.TEST_STATUS[store.testStatus[slot]];
 	}
 
 	public void setTestStatus(TestStatus testStatus, int iteration) {
-		this.testStatus = testStatus;
-		this.testDate = iteration;
+		store.testStatus[slot] = (byte) testStatus.ordinal();
+		store.setTestDate(slot, iteration);
 	}
 
 	/**
@@ -367,9 +437,10 @@ public final class EpisimPerson implements Attributable {
 	 * @throws IllegalStateException when the requested status was never set
 	 */
 	public int daysSince(DiseaseStatus status, int currentDay) {
-		if (!statusChanges.containsKey(status)) throw new IllegalStateException("Person was never " + status);
+		double time = store.statusChanges[slot * PersonStore.DISEASE_STATUS.length + status.ordinal()];
+		if (Double.isNaN(time)) throw new IllegalStateException("Person was never " + status);
 
-		double day = Math.floor(statusChanges.get(status) / 86400d);
+		double day = Math.floor(time / 86400d);
 
 		return currentDay - (int) day;
 	}
@@ -378,7 +449,7 @@ public final class EpisimPerson implements Attributable {
 	 * Return whether a person had (or currently has) a certain disease status.
 	 */
 	public boolean hadDiseaseStatus(DiseaseStatus status) {
-		return statusChanges.containsKey(status);
+		return !Double.isNaN(store.statusChanges[slot * PersonStore.DISEASE_STATUS.length + status.ordinal()]);
 	}
 
 	/**
@@ -392,6 +463,7 @@ public final class EpisimPerson implements Attributable {
 
 		// yyyy since this API is so unstable, I would prefer to have the class non-public.  kai, apr'20
 		// -> api now marked as unstable and containing an api note, because it is used by the models it has to be public. chr, apr'20
+		int quarantineDate = store.quarantineDate[slot];
 		if (quarantineDate < 0) throw new IllegalStateException("Person was never quarantined");
 
 		return currentDay - quarantineDate;
@@ -404,6 +476,7 @@ public final class EpisimPerson implements Attributable {
 	 */
 	public int daysSince(VaccinationStatus status, int currentDay) {
 		if (status != VaccinationStatus.yes) throw new IllegalArgumentException("Only supports querying when person was vaccinated");
+		int vaccinationDate = store.vaccinationDate[slot];
 		if (vaccinationDate < 0) throw new IllegalStateException("Person was never vaccinated");
 
 		return currentDay - vaccinationDate;
@@ -415,6 +488,7 @@ public final class EpisimPerson implements Attributable {
 	 * @param currentDay current day (iteration)
 	 */
 	public int daysSinceTest(int currentDay) {
+		int testDate = store.testDate[slot];
 		if (testDate < 0)
 			return Integer.MAX_VALUE;
 
@@ -425,7 +499,7 @@ public final class EpisimPerson implements Attributable {
 		// check if both persons have tracing capability
 		if (isTraceable() && personWrapper.isTraceable()) {
 			// Always use the latest tracking date
-			traceableContactPersons.put(personWrapper, now);
+			store.contacts.add(this, personWrapper, now);
 			reporting.reportTracing(now, this, personWrapper);
 		}
 	}
@@ -434,37 +508,22 @@ public final class EpisimPerson implements Attributable {
 	 * Get all traced contacts that happened after certain time.
 	 */
 	public List<EpisimPerson> getTraceableContactPersons(double after) {
-		return traceableContactPersons.object2DoubleEntrySet()
-				.stream().filter(p -> p.getDoubleValue() >= after)
-				.map(Map.Entry::getKey)
-				.collect(Collectors.toList());
-
-		// yyyy if the computationally intensive operation is to search by time, we should sort traceableContactPersons by time.  To simplify this, I
-		// would argue that it is not a problem to have a person in there multiple times.  kai, may'20
-
-	}
-
-	/**
-	 * Remove old contact tracing data before a certain date.
-	 */
-	public void clearTraceableContractPersons(double before) {
-
-		int oldSize = traceableContactPersons.size();
-
-		if (oldSize == 0) return;
-
-		traceableContactPersons.keySet().removeIf(k -> traceableContactPersons.getDouble(k) < before);
+		return store.contacts.get(this, after);
 	}
 
 	/**
 	 * Returns whether the person can be traced.
 	 */
 	public boolean isTraceable() {
-		return traceable;
+		return store.traceable[slot];
 	}
 
 	public void setTraceable(boolean traceable) {
-		this.traceable = traceable;
+		boolean oldTraceable = isTraceable();
+		store.traceable[slot] = traceable;
+
+		if (currentContainer != null)
+			currentContainer.updateStatus(this, getDiseaseStatus(), oldTraceable);
 	}
 
 	void addToTrajectory(Activity trajectoryElement) {
@@ -476,31 +535,31 @@ public final class EpisimPerson implements Attributable {
 	}
 
 	public int getCurrentPositionInTrajectory() {
-		return this.currentPositionInTrajectory;
+		return store.positionInTrajectory[slot];
 	}
 
 	void incrementCurrentPositionInTrajectory() {
-		this.currentPositionInTrajectory++;
+		store.positionInTrajectory[slot]++;
 	}
 
 	void resetCurrentPositionInTrajectory(DayOfWeek day) {
-		currentPositionInTrajectory = startOfDay[day.getValue() - 1];
+		store.positionInTrajectory[slot] = getStartOfDay(day);
 	}
 
 	void setStartOfDay(DayOfWeek day, int position) {
-		startOfDay[day.getValue() - 1] = position;
+		store.startOfDay[slot * 7 + day.getValue() - 1] = position;
 	}
 
 	int getStartOfDay(DayOfWeek day) {
-		return startOfDay[day.getValue() - 1];
+		return store.startOfDay[slot * 7 + day.getValue() - 1];
 	}
 
 	void setEndOfDay(DayOfWeek day, int position) {
-		endOfDay[day.getValue() - 1] = position;
+		store.endOfDay[slot * 7 + day.getValue() - 1] = position;
 	}
 
 	int getEndOfDay(DayOfWeek day) {
-		return endOfDay[day.getValue() - 1];
+		return store.endOfDay[slot * 7 + day.getValue() - 1];
 	}
 
 	/**
@@ -537,8 +596,8 @@ public final class EpisimPerson implements Attributable {
 	 * Defines that day {@code target} has the same trajectory as {@code source}.
 	 */
 	void duplicateDay(DayOfWeek target, DayOfWeek source) {
-		startOfDay[target.getValue() - 1] = startOfDay[source.getValue() - 1];
-		endOfDay[target.getValue() - 1] = endOfDay[source.getValue() - 1];
+		setStartOfDay(target, getStartOfDay(source));
+		setEndOfDay(target, getEndOfDay(source));
 		firstFacilityId[target.getValue() - 1] = firstFacilityId[source.getValue() - 1];
 	}
 
@@ -564,7 +623,43 @@ public final class EpisimPerson implements Attributable {
 		return attributes;
 	}
 
+	/**
+	 * Household of this person given by the {@code hhid} attribute, as dense index. Negative if unknown.
+	 */
+	public int getHouseholdId() {
+		return store.household[slot];
+	}
+
+	/**
+	 * Whether this person and {@code other} belong to the same household. Persons with unknown household are in no common household.
+	 */
+	public boolean isSameHousehold(EpisimPerson other) {
+		int household = getHouseholdId();
+		return household >= 0 && household == other.getHouseholdId();
+	}
+
+	/**
+	 * Whether this person has a home facility given by the {@code homeFacilityRefId} attribute.
+	 */
+	public boolean hasHomeFacility() {
+		return homeFacilityId != null;
+	}
+
+	/**
+	 * Whether {@code container} is the home facility of this person.
+	 */
+	public boolean isAtHome(EpisimContainer<?> container) {
+		// ids are cached by matsim and can be compared by identity
+		return homeFacilityId != null && container.getContainerId() == (Object) homeFacilityId;
+	}
+
+	@Nullable
+	public String getSubpopulation() {
+		return subpopulation;
+	}
+
 	public int getAge() {
+		int age = store.age[slot];
 		assert age != -1 : "Person=" + getPersonId().toString() + " has no age. Age dependent progression is not possible.";
 		assert age >= 0 && age <= 120 : "Age of person=" + getPersonId().toString() + " is not plausible. Age is=" + age;
 
@@ -594,7 +689,12 @@ public final class EpisimPerson implements Attributable {
 	}
 
 	public void setInfectionContainer(EpisimContainer<?> container) {
-		this.infectionContainer = (Id<ActivityFacility>) container.getContainerId();
+		updateInfectionContainer((Id<ActivityFacility>) container.getContainerId());
+	}
+
+	private void updateInfectionContainer(@Nullable Id<ActivityFacility> container) {
+		store.updateInfectedAt(this, infectionContainer, container);
+		this.infectionContainer = container;
 	}
 
 	public Id<ActivityFacility> getInfectionContainer() {
@@ -661,12 +761,18 @@ public final class EpisimPerson implements Attributable {
 		public final String actType;
 		public final EpisimConfigGroup.InfectionParams params;
 
+		/**
+		 * Flags of the activity type used by {@link InteractionRules}.
+		 */
+		public final int flags;
+
 		/**
 		 * Constructor.
 		 */
 		public Activity(String actType, EpisimConfigGroup.InfectionParams params) {
 			this.actType = actType;
 			this.params = params;
+			this.flags = InteractionRules.flags(actType);
 		}
 
 		@Override
@@ -34,7 +34,7 @@ import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.config.Config;
 import org.matsim.core.config.ConfigUtils;
 import org.matsim.core.events.handler.BasicEventHandler;
-import org.matsim.core.utils.io.IOUtils;
+import org.matsim.episim.events.ColumnarEventsWriter;
 import org.matsim.episim.events.EpisimContactEvent;
 import org.matsim.episim.events.EpisimInfectionEvent;
 import org.matsim.episim.events.EpisimPersonStatusEvent;
@@ -43,6 +43,7 @@ import org.matsim.episim.model.VirusStrain;
 import org.matsim.episim.policy.Restriction;
 import org.matsim.episim.reporting.EpisimWriter;
 
+import javax.annotation.Nullable;
 import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -75,6 +76,7 @@ public final class EpisimReporting implements BasicEventHandler, Closeable, Exte
 	 */
 	private final Path eventPath;
 	private final EpisimConfigGroup.WriteEvents writeEvents;
+	private final EpisimConfigGroup.EventsFormat eventsFormat;
 
 	/**
 	 * Aggregated cumulative cases by status and district. Contains only a subset of relevant {@link org.matsim.episim.EpisimPerson.DiseaseStatus}.
@@ -98,6 +100,10 @@ public final class EpisimReporting implements BasicEventHandler, Closeable, Exte
 	 */
 	private int iteration;
 	private BufferedWriter events;
+	/**
+	 * Episim events of the current day, if they are written in the binary format.
+	 */
+	private ColumnarEventsWriter columnarEvents;
 	private BufferedWriter infectionReport;
 	private BufferedWriter infectionEvents;
 	private BufferedWriter restrictionReport;
@@ -108,6 +114,11 @@ public final class EpisimReporting implements BasicEventHandler, Closeable, Exte
 
 	private String memorizedDate = null;
 
+	/**
+	 * If set, person status events of the current thread are collected instead of being reported.
+	 */
+	private final ThreadLocal<StatusBuffer> statusBuffer = new ThreadLocal<>();
+
 
 	@Inject
 	EpisimReporting(Config config, EpisimWriter writer, EventsManager manager) {
@@ -149,6 +160,7 @@ public final class EpisimReporting implements BasicEventHandler, Closeable, Exte
 
 		sampleSize = episimConfig.getSampleSize();
 		writeEvents = episimConfig.getWriteEvents();
+		eventsFormat = episimConfig.getEventsFormat();
 
 		// Init cumulative cases
 		cumulativeCases.put(EpisimPerson.DiseaseStatus.contagious, new Object2IntOpenHashMap<>());
@@ -212,8 +224,9 @@ public final class EpisimReporting implements BasicEventHandler, Closeable, Exte
 
 	/**
 	 * Creates infections reports for the day. Grouped by district, but always containing a "total" entry.
+	 * The number of persons in each state is taken from the counts maintained by the {@link PersonStore}.
 	 */
-	Map<String, InfectionReport> createReports(Collection<EpisimPerson> persons, int iteration) {
+	Map<String, InfectionReport> createReports(PersonStore store, int iteration) {
 
 		Map<String, InfectionReport> reports = new LinkedHashMap<>();
 
@@ -223,85 +236,46 @@ public final class EpisimReporting implements BasicEventHandler, Closeable, Exte
 		InfectionReport report = new InfectionReport("total", time, date, iteration);
 		reports.put("total", report);
 
-		for (EpisimPerson person : persons) {
-			String districtName = (String) person.getAttributes().getAttribute("district");
+		for (int d = 0; d < store.getNumDistricts(); d++) {
 
 			// Also aggregate by district
-			InfectionReport district = reports.computeIfAbsent(districtName == null ? "unknown"
-					: districtName, name -> new InfectionReport(name, report.time, report.date, report.day));
-			switch (person.getDiseaseStatus()) {
-				case susceptible:
-					report.nSusceptible++;
-					district.nSusceptible++;
-					break;
-				case infectedButNotContagious:
-					report.nInfectedButNotContagious++;
-					district.nInfectedButNotContagious++;
-					report.nTotalInfected++;
-					district.nTotalInfected++;
-					break;
-				case contagious:
-					report.nContagious++;
-					district.nContagious++;
-					report.nTotalInfected++;
-					district.nTotalInfected++;
-					break;
-				case showingSymptoms:
-					report.nShowingSymptoms++;
-					district.nShowingSymptoms++;
-					report.nTotalInfected++;
-					district.nTotalInfected++;
-					break;
-				case seriouslySick:
-				case seriouslySickAfterCritical:
-					report.nSeriouslySick++;
-					district.nSeriouslySick++;
-					report.nTotalInfected++;
-					district.nTotalInfected++;
-					break;
-				case critical:
-					report.nCritical++;
-					district.nCritical++;
-					report.nTotalInfected++;
-					district.nTotalInfected++;
-					break;
-				case recovered:
-					report.nRecovered++;
-					district.nRecovered++;
-					break;
-				default:
-					throw new IllegalStateException("Unexpected value: " + person.getDiseaseStatus());
-			}
-			switch (person.getQuarantineStatus()) {
-				// For now there is no separation in the report between full and home
-				case atHome:
-					report.nInQuarantineHome++;
-					district.nInQuarantineHome++;
-					break;
-				case full:
-					report.nInQuarantineFull++;
-					district.nInQuarantineFull++;
-					break;
-				case no:
-					break;
-				default:
-					throw new IllegalStateException("Unexpected value: " + person.getQuarantineStatus());
-			}
-
-			switch (person.getVaccinationStatus()) {
-				case yes:
-					report.nVaccinated++;
-					district.nVaccinated++;
-				case no:
-					break;
-				default:
-					throw new IllegalArgumentException("Unexpected value: " + person.getVaccinationStatus());
-			}
-
-			if (person.daysSinceTest(iteration) == 0) {
-				report.nTested++;
-				district.nTested++;
-			}
+			InfectionReport district = new InfectionReport(store.getDistrictName(d), report.time, report.date, report.day);
+
+			district.nSusceptible = store.count(d, EpisimPerson.DiseaseStatus.susceptible);
+			district.nInfectedButNotContagious = store.count(d, EpisimPerson.DiseaseStatus.infectedButNotContagious);
+			district.nContagious = store.count(d, EpisimPerson.DiseaseStatus.contagious);
+			district.nShowingSymptoms = store.count(d, EpisimPerson.DiseaseStatus.showingSymptoms);
+			district.nSeriouslySick = store.count(d, EpisimPerson.DiseaseStatus.seriouslySick)
+					+ store.count(d, EpisimPerson.DiseaseStatus.seriouslySickAfterCritical);
+			district.nCritical = store.count(d, EpisimPerson.DiseaseStatus.critical);
+			district.nTotalInfected = district.nInfectedButNotContagious + district.nContagious + district.nShowingSymptoms
+					+ district.nSeriouslySick + district.nCritical;
+			district.nRecovered = store.count(d, EpisimPerson.DiseaseStatus.recovered);
+
+			// For now there is no separation in the report between full and home
+			district.nInQuarantineHome = store.count(d, EpisimPerson.QuarantineStatus.atHome);
+			district.nInQuarantineFull = store.count(d, EpisimPerson.QuarantineStatus.full);
+			district.nVaccinated = store.count(d, EpisimPerson.VaccinationStatus.yes);
+			district.nTested = store.countTested(d, iteration);
+
+			// districts without any persons are left out
+			if (district.nTotal() == 0)
+				continue;
+
+			report.nSusceptible += district.nSusceptible;
+			report.nInfectedButNotContagious += district.nInfectedButNotContagious;
+			report.nContagious += district.nContagious;
+			report.nShowingSymptoms += district.nShowingSymptoms;
+			report.nSeriouslySick += district.nSeriouslySick;
+			report.nCritical += district.nCritical;
+			report.nTotalInfected += district.nTotalInfected;
+			report.nRecovered += district.nRecovered;
+			report.nInQuarantineHome += district.nInQuarantineHome;
+			report.nInQuarantineFull += district.nInQuarantineFull;
+			report.nVaccinated += district.nVaccinated;
+			report.nTested += district.nTested;
+
+			reports.put(district.name, district);
 		}
 
 		for (String district : reports.keySet()) {
@@ -407,6 +381,16 @@ public final class EpisimReporting implements BasicEventHandler, Closeable, Exte
 	 */
 	public void reportInfection(EpisimPerson personWrapper, EpisimPerson infector, double now, String infectionType,
 								VirusStrain strain, double prob, EpisimContainer<?> container) {
+		reportInfection(personWrapper, infector, now, infectionType, strain, prob, container, container.getPersons().size());
+	}
+
+	/**
+	 * Report the occurrence of an infection, with group size at the time of infection.
+	 *
+	 * @see #reportInfection(EpisimPerson, EpisimPerson, double, String, VirusStrain, double, EpisimContainer)
+	 */
+	public void reportInfection(EpisimPerson personWrapper, EpisimPerson infector, double now, String infectionType,
+								VirusStrain strain, double prob, EpisimContainer<?> container, int groupSize) {
 
 		int cnt = specificInfectionsCnt.getOpaque();
 		// This counter is used by many threads, for better performance we use very weak memory guarantees here
@@ -418,7 +402,7 @@ public final class EpisimReporting implements BasicEventHandler, Closeable, Exte
 
 		strains.mergeInt(strain, 1, Integer::sum);
 		manager.processEvent(new EpisimInfectionEvent(now, personWrapper.getPersonId(), infector.getPersonId(),
-				personWrapper.getCurrentContainer().getContainerId(), infectionType, container.getPersons().size(), strain, prob));
+				container.getContainerId(), infectionType, groupSize, strain, prob));
 
 
 		String[] array = new String[InfectionEventsWriterFields.values().length];
@@ -427,7 +411,7 @@ public final class EpisimReporting implements BasicEventHandler, Closeable, Exte
 		array[InfectionEventsWriterFields.infected.ordinal()] = personWrapper.getPersonId().toString();
 		array[InfectionEventsWriterFields.infectionType.ordinal()] = infectionType;
 		array[InfectionEventsWriterFields.date.ordinal()] = memorizedDate;
-		array[InfectionEventsWriterFields.groupSize.ordinal()] = Long.toString(container.getPersons().size());
+		array[InfectionEventsWriterFields.groupSize.ordinal()] = Long.toString(groupSize);
 		array[InfectionEventsWriterFields.facility.ordinal()] = container.getContainerId().toString();
 		array[InfectionEventsWriterFields.virusStrain.ordinal()] = strain.toString();
 		array[InfectionEventsWriterFields.probability.ordinal()] = Double.toString(prob);
@@ -451,6 +435,18 @@ public final class EpisimReporting implements BasicEventHandler, Closeable, Exte
 
 	}
 
+	/**
+	 * Report a contact that has been recorded earlier, with group size at the time of contact.
+	 */
+	public void reportContact(double now, EpisimPerson person, EpisimPerson contactPerson, EpisimContainer<?> container,
+							  String actType, double duration, int groupSize) {
+
+		if (writeEvents == EpisimConfigGroup.WriteEvents.tracing || writeEvents == EpisimConfigGroup.WriteEvents.all) {
+			manager.processEvent(new EpisimContactEvent(now, person.getPersonId(), contactPerson.getPersonId(), container.getContainerId(),
+					actType, duration, groupSize));
+		}
+	}
+
 
 	/**
 	 * Report the successful tracing between two persons.
@@ -507,6 +503,13 @@ public final class EpisimReporting implements BasicEventHandler, Closeable, Exte
 	 */
 	public void reportPersonStatus(EpisimPerson person, EpisimPersonStatusEvent event) {
 
+		StatusBuffer buffer = statusBuffer.get();
+		if (buffer != null) {
+			buffer.persons.add(person);
+			buffer.events.add(event);
+			return;
+		}
+
 		EpisimPerson.DiseaseStatus newStatus = event.getDiseaseStatus();
 
 		if (newStatus == EpisimPerson.DiseaseStatus.seriouslySick || newStatus == EpisimPerson.DiseaseStatus.contagious ||
@@ -518,6 +521,28 @@ public final class EpisimReporting implements BasicEventHandler, Closeable, Exte
 		manager.processEvent(event);
 	}
 
+	/**
+	 * Collect person status events of the current thread into {@code buffer}, until this is called with null.
+	 */
+	void bufferPersonStatus(@Nullable StatusBuffer buffer) {
+		if (buffer == null)
+			statusBuffer.remove();
+		else
+			statusBuffer.set(buffer);
+	}
+
+	/**
+	 * Report all events collected in {@code buffer} in the order they occurred and clear the buffer.
+	 */
+	void reportPersonStatus(StatusBuffer buffer) {
+		for (int i = 0; i < buffer.events.size(); i++) {
+			reportPersonStatus(buffer.persons.get(i), buffer.events.get(i));
+		}
+
+		buffer.persons.clear();
+		buffer.events.clear();
+	}
+
 	/**
 	 * Write container statistic to file.
 	 */
@@ -586,6 +611,14 @@ public final class EpisimReporting implements BasicEventHandler, Closeable, Exte
 		// Events on 0th day are not needed
 		if (iteration == 0) return;
 
+		// Episim events reaching this point are all meant to be written
+		if (eventsFormat == EpisimConfigGroup.EventsFormat.binary && ColumnarEventsWriter.supports(event)) {
+			if (columnarEvents != null)
+				columnarEvents.append(event);
+
+			return;
+		}
+
 		// Crucial episim events are always written, others only if enabled
 		if (event instanceof EpisimPersonStatusEvent || event instanceof EpisimInfectionEvent
 				|| (writeEvents == EpisimConfigGroup.WriteEvents.tracing && event instanceof EpisimTracingEvent)
@@ -599,6 +632,10 @@ public final class EpisimReporting implements BasicEventHandler, Closeable, Exte
 			writer.append(events, event,
 					EpisimUtils.getCorrectedTime(episimConfig.getStartOffset(), event.getTime(), iteration));
 
+			// keeps the order between the xml and binary file
+			if (columnarEvents != null)
+				columnarEvents.skip();
+
 		}
 
 	}
@@ -610,7 +647,16 @@ public final class EpisimReporting implements BasicEventHandler, Closeable, Exte
 		if (iteration == 0 || writeEvents == EpisimConfigGroup.WriteEvents.none)
 			return;
 
-		events = IOUtils.getBufferedWriter(eventPath.resolve(String.format("day_%03d.xml.gz", iteration)).toString());
+		if (eventsFormat == EpisimConfigGroup.EventsFormat.binary) {
+			columnarEvents = new ColumnarEventsWriter(writer.openStream(
+					eventPath.resolve(String.format("day_%03d", iteration) + ColumnarEventsWriter.SUFFIX).toString()));
+
+			// only input events are left for the xml file
+			if (writeEvents != EpisimConfigGroup.WriteEvents.input && writeEvents != EpisimConfigGroup.WriteEvents.all)
+				return;
+		}
+
+		events = writer.open(eventPath.resolve(String.format("day_%03d.xml.gz", iteration)).toString());
 		writer.append(events, "<?xml version=\"1.0\" encoding=\"utf-8\"?>\n<events version=\"1.0\">\n");
 	}
 
@@ -623,6 +669,11 @@ public final class EpisimReporting implements BasicEventHandler, Closeable, Exte
 			writer.append(events, "</events>");
 			writer.close(events);
 		}
+
+		if (columnarEvents != null) {
+			columnarEvents.close();
+			columnarEvents = null;
+		}
 	}
 
 
@@ -737,4 +788,14 @@ public final class EpisimReporting implements BasicEventHandler, Closeable, Exte
 			nTested *= factor;
 		}
 	}
+
+	/**
+	 * Person status events collected by one thread, see {@link #bufferPersonStatus(StatusBuffer)}.
+	 */
+	static final class StatusBuffer {
+
+		private final List<EpisimPerson> persons = new ArrayList<>();
+		private final List<EpisimPersonStatusEvent> events = new ArrayList<>();
+
+	}
 }
@@ -24,6 +24,8 @@ import com.google.inject.Inject;
 import com.google.inject.Provider;
 import org.apache.commons.compress.archivers.*;
 import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.io.IOUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.matsim.core.api.experimental.events.EventsManager;
@@ -33,17 +35,22 @@ import org.matsim.core.controler.ControlerUtils;
 import org.matsim.core.gbl.Gbl;
 import org.matsim.episim.model.ProgressionModel;
 
-import java.io.BufferedReader;
-import java.io.Externalizable;
-import java.io.File;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import javax.annotation.Nullable;
+import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
 import java.time.DayOfWeek;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.Deflater;
 
 /**
  * Main entry point and runner of one epidemic simulation.
@@ -55,6 +62,11 @@ public final class EpisimRunner {
 
 	private static final Logger log = LogManager.getLogger(EpisimRunner.class);
 
+	/**
+	 * Archive entry with the binary state of the {@link InfectionEventHandler}.
+	 */
+	private static final String STATE_ENTRY = "state.bin";
+
 	private final Config config;
 	private final EventsManager manager;
 	private final Provider<InfectionEventHandler> handlerProvider;
@@ -62,6 +74,12 @@ public final class EpisimRunner {
 	private final Provider<EpisimReporting> reportingProvider;
 	private final Provider<ProgressionModel> progressionProvider;
 
+	/**
+	 * Executor for writing snapshots in the background, created when needed.
+	 */
+	private ExecutorService snapshotWriter;
+	private Future<?> pendingSnapshot;
+
 	@Inject
 	public EpisimRunner(Config config, EventsManager manager, Provider<InfectionEventHandler> handlerProvider, Provider<ReplayHandler> replay,
 						Provider<EpisimReporting> reportingProvider, Provider<ProgressionModel> progressionProvider) {
@@ -79,32 +97,37 @@ public final class EpisimRunner {
 	 * @param maxIterations maximum number of iterations (inclusive)
 	 */
 	public void run(int maxIterations) {
+		run(maxIterations, null);
+	}
+
+	/**
+	 * Main loop that performs the iterations of the simulation, continuing from an in-memory snapshot if given.
+	 *
+	 * @param maxIterations maximum number of iterations (inclusive)
+	 * @param snapshot      state created by {@link #runPrefix(int)}, takes precedence over {@link EpisimConfigGroup#getStartFromSnapshot()}
+	 */
+	public void run(int maxIterations, @Nullable Snapshot snapshot) {
 
 		// Construct these dependencies as late as possible, so all other configs etc have been fully configured
 		final ReplayHandler replay = replayProvider.get();
 		final InfectionEventHandler handler = handlerProvider.get();
 		final EpisimReporting reporting = reportingProvider.get();
 
-		// reporting will write events if necessary
 		EpisimConfigGroup episimConfig = ConfigUtils.addOrGetModule(config, EpisimConfigGroup.class);
 
-		if (episimConfig.getWriteEvents() != EpisimConfigGroup.WriteEvents.none)
-			manager.addHandler(reporting);
-
-		ControlerUtils.checkConfigConsistencyAndWriteToLog(config, "Just before starting iterations");
-
-		handler.init(replay.getEvents());
+		init(replay, handler, reporting);
 
 		Path output = Path.of(config.controler().getOutputDirectory());
 
 		int iteration = 1;
-		if (episimConfig.getStartFromSnapshot() != null) {
+		if (snapshot != null || episimConfig.getStartFromSnapshot() != null) {
 			reporting.close();
-			iteration = readSnapshot(output, Path.of(episimConfig.getStartFromSnapshot()));
+			iteration = snapshot != null ? restoreSnapshot(output, snapshot) : readSnapshot(output, Path.of(episimConfig.getStartFromSnapshot()));
 			try {
 				reporting.append(episimConfig.getStartDate().plusDays(iteration - 1).toString());
 			} catch (IOException e) {
 				log.error("Snapshot output could not be created", e);
+				handler.close();
 				return;
 			}
 		}
@@ -131,9 +154,78 @@ public final class EpisimRunner {
 			// TODO Auto-generated catch block
 			e.printStackTrace();
 		}
+		awaitSnapshot();
+		if (snapshotWriter != null)
+			snapshotWriter.shutdown();
+
+		handler.close();
 		reporting.close();
 	}
 
+	/**
+	 * Simulate all days before {@code branchIteration} and capture the resulting state in memory.
+	 * The snapshot can be used to continue multiple runs, which only differ after this day, via {@link #run(int, Snapshot)}.
+	 *
+	 * @param branchIteration first iteration that is not simulated
+	 */
+	public Snapshot runPrefix(int branchIteration) {
+
+		final ReplayHandler replay = replayProvider.get();
+		final InfectionEventHandler handler = handlerProvider.get();
+		final EpisimReporting reporting = reportingProvider.get();
+
+		init(replay, handler, reporting);
+
+		Path output = Path.of(config.controler().getOutputDirectory());
+
+		for (int iteration = 1; iteration < branchIteration; iteration++) {
+
+			if (iteration % 10 == 0)
+				Gbl.printMemoryUsage();
+
+			if (!doStep(replay, handler, reporting, iteration)) {
+				log.warn("Simulation finished before day {}", branchIteration);
+				break;
+			}
+		}
+
+		handler.close();
+
+		try {
+			Map<String, byte[]> entries = captureState(branchIteration);
+
+			// outputs are complete only after closing
+			reporting.close();
+
+			// output stays in the prefix directory and is copied from there, only the state is held in memory
+			List<OutputFile> files = new ArrayList<>();
+			listOutput(output.toFile(), output.toString(), config.controler().getRunId(), files);
+
+			log.info("Captured state for day {}, with output in {}", branchIteration, output);
+
+			return new Snapshot(branchIteration, files, entries);
+
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not capture snapshot", e);
+		}
+	}
+
+	/**
+	 * Prepare the handlers for the first iteration.
+	 */
+	private void init(ReplayHandler replay, InfectionEventHandler handler, EpisimReporting reporting) {
+
+		// reporting will write events if necessary
+		EpisimConfigGroup episimConfig = ConfigUtils.addOrGetModule(config, EpisimConfigGroup.class);
+
+		if (episimConfig.getWriteEvents() != EpisimConfigGroup.WriteEvents.none)
+			manager.addHandler(reporting);
+
+		ControlerUtils.checkConfigConsistencyAndWriteToLog(config, "Just before starting iterations");
+
+		handler.init(replay.getCompactEvents());
+	}
+
 	/**
 	 * Perform one iteration of simulation.
 	 *
@@ -159,54 +251,155 @@ public final class EpisimRunner {
 
 
 	/**
-	 * Write snapshot into output directory.
+	 * Write snapshot into output directory. The state is captured in memory and then written in the background,
+	 * while the simulation continues.
 	 *
 	 * @param output    target output directory
 	 * @param iteration current iteration
 	 */
 	private void writeSnapshot(Path output, int iteration) {
 
+		EpisimConfigGroup episimConfig = ConfigUtils.addOrGetModule(config, EpisimConfigGroup.class);
+
+		String date = episimConfig.getStartDate().plusDays(iteration - 1).toString();
+
+		Path path = output.resolve(String.format("episim-snapshot-%03d-%s.zip", iteration, date));
+
+		// only one snapshot is written at a time
+		awaitSnapshot();
+
+		Map<String, byte[]> entries;
+		List<OutputFile> files = new ArrayList<>();
+
+		try {
+			entries = captureState(iteration);
+
+			// output files may still be appended to, only the current content is copied
+			listOutput(output.toFile(), output.toString(), config.controler().getRunId(), files);
+
+		} catch (IOException e) {
+			log.error("Could not capture snapshot", e);
+			return;
+		}
+
+		if (snapshotWriter == null)
+			snapshotWriter = Executors.newSingleThreadExecutor(r -> {
+				Thread thread = new Thread(r, "snapshot-writer");
+				thread.setDaemon(true);
+				return thread;
+			});
+
+		pendingSnapshot = snapshotWriter.submit(() -> writeArchive(path, files, entries, iteration));
+	}
+
+	/**
+	 * Serialize the state of all handlers into memory.
+	 *
+	 * @param iteration iteration to start from when restoring the state
+	 */
+	private Map<String, byte[]> captureState(int iteration) throws IOException {
+
 		InfectionEventHandler handler = handlerProvider.get();
 		EpisimReporting reporting = reportingProvider.get();
 		ProgressionModel progressionModel = progressionProvider.get();
 
-		EpisimConfigGroup episimConfig = ConfigUtils.addOrGetModule(config, EpisimConfigGroup.class);
+		Map<String, byte[]> entries = new LinkedHashMap<>();
 
-		String date = episimConfig.getStartDate().plusDays(iteration - 1).toString();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream oos = new ObjectOutputStream(bytes);
+		oos.writeInt(iteration);
+		oos.close();
+		entries.put("iteration", bytes.toByteArray());
 
-		Path path = output.resolve(String.format("episim-snapshot-%03d-%s.zip", iteration, date));
+		bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			handler.writeState(out);
+		}
+		entries.put(STATE_ENTRY, bytes.toByteArray());
 
-		log.info("Writing snapshot to {}", path);
+		entries.put("reporting", serialize(reporting));
 
-		try (var out = Files.newOutputStream(path)) {
+		if (progressionModel instanceof Externalizable)
+			entries.put("progression", serialize((Externalizable) progressionModel));
 
-			ArchiveOutputStream archive = new ArchiveStreamFactory()
-					.createArchiveOutputStream("zip", out);
+		return entries;
+	}
 
-			// Copy whole output to the snapshot
-			EpisimUtils.compressDirectory(output.toString(), output.toString(), config.controler().getRunId(), archive);
+	/**
+	 * Write captured state and output into the snapshot archive.
+	 */
+	private static void writeArchive(Path path, List<OutputFile> files, Map<String, byte[]> entries, int iteration) {
+
+		log.info("Writing snapshot to {}", path);
 
-			archive.putArchiveEntry(new ZipArchiveEntry("iteration"));
-			ObjectOutputStream oos = new ObjectOutputStream(archive);
-			oos.writeInt(iteration);
-			oos.flush();
-			archive.closeArchiveEntry();
+		try (ZipArchiveOutputStream archive = new ZipArchiveOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
 
-			writeObject(handler, "state", archive);
-			writeObject(reporting, "reporting", archive);
+			// most of the content are already compressed outputs or primitive arrays
+			archive.setLevel(Deflater.BEST_SPEED);
 
-			if (progressionModel instanceof Externalizable)
-				writeObject((Externalizable) progressionModel, "progression", archive);
+			for (OutputFile file : files) {
+				ZipArchiveEntry entry = new ZipArchiveEntry(file.name);
+				entry.setTime(file.file.lastModified());
+				archive.putArchiveEntry(entry);
+				try (InputStream in = Files.newInputStream(file.file.toPath())) {
+					IOUtils.copyLarge(in, archive, 0, file.size);
+				}
+				archive.closeArchiveEntry();
+			}
+
+			for (Map.Entry<String, byte[]> e : entries.entrySet()) {
+				archive.putArchiveEntry(new ZipArchiveEntry(e.getKey()));
+				archive.write(e.getValue());
+				archive.closeArchiveEntry();
+			}
 
 			archive.finish();
-			archive.close();
 
-		} catch (IOException | ArchiveException e) {
+		} catch (IOException e) {
 			log.error("Could not write snapshot", e);
+			return;
 		}
 
 		log.info("Snapshot for day {} written successfully", iteration);
+	}
 
+	/**
+	 * Wait until the snapshot currently being written is finished.
+	 */
+	private void awaitSnapshot() {
+		if (pendingSnapshot == null)
+			return;
+
+		try {
+			pendingSnapshot.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			log.error("Could not write snapshot", e.getCause());
+		}
+
+		pendingSnapshot = null;
+	}
+
+	/**
+	 * Collect files in the output directory with their current size, in the same way as {@link EpisimUtils#compressDirectory(String, String, String, ArchiveOutputStream)}.
+	 */
+	private static void listOutput(File root, String sourceDir, String runId, List<OutputFile> files) {
+		File[] fileList = new File(sourceDir).listFiles();
+		if (fileList == null) return;
+		for (File file : fileList) {
+			// Zip files (i.e. other snapshots or large files) are not added
+			if (file.getName().endsWith(".zip") || file.getName().endsWith(".txt.gz"))
+				continue;
+
+			if (file.isDirectory()) {
+				listOutput(root, sourceDir + "/" + file.getName(), runId, files);
+			} else {
+				// Remove runId from the output name
+				String name = file.getName().replace(runId + ".", "");
+				files.add(new OutputFile(file, "output" + sourceDir.replace(root.toString(), "") + "/" + name, file.length()));
+			}
+		}
 	}
 
 	/**
@@ -220,10 +413,6 @@ public final class EpisimRunner {
 		if (!Files.exists(path))
 			throw new IllegalArgumentException("Snapshot " + path + " does not exist.");
 
-		InfectionEventHandler handler = handlerProvider.get();
-		EpisimReporting reporting = reportingProvider.get();
-		ProgressionModel progressionModel = progressionProvider.get();
-
 		int iteration = -1;
 		try (var in = Files.newInputStream(path)) {
 
@@ -234,56 +423,150 @@ public final class EpisimRunner {
 
 			ArchiveEntry entry;
 			while ((entry = archive.getNextEntry()) != null) {
-				String name = entry.getName();
+				iteration = readEntry(output, entry.getName(), archive, iteration);
+			}
 
-				// copy to output
-				if (name.startsWith("output"))
-					Files.copy(archive, output.resolve(name.replace("output/", "")), StandardCopyOption.REPLACE_EXISTING);
+			archive.close();
 
-				if (name.equals("iteration")) {
-					ObjectInputStream ois = new ObjectInputStream(archive);
-					iteration = ois.readInt();
-				}
+			return iteration;
 
-				if (name.equals("state")) {
-					ObjectInputStream ois = new ObjectInputStream(archive);
-					handler.readExternal(ois);
-				}
+		} catch (IOException | ArchiveException | ClassNotFoundException e) {
+			throw new IllegalStateException("Could not read snapshot", e);
+		}
 
-				if (name.equals("reporting")) {
-					ObjectInputStream ois = new ObjectInputStream(archive);
-					reporting.readExternal(ois);
-				}
+	}
 
-				if (name.equals("progression")) {
-					ObjectInputStream ois = new ObjectInputStream(archive);
-					if (progressionModel instanceof Externalizable)
-						((Externalizable) progressionModel).readExternal(ois);
-					else
-						log.warn("Progression state present, but model is not Externalizable");
+	/**
+	 * Initialize simulation state from a snapshot in memory.
+	 *
+	 * @return starting iteration
+	 */
+	private int restoreSnapshot(Path output, Snapshot snapshot) {
+
+		log.info("Restoring state of day {} into {}", snapshot.iteration, output);
+
+		int iteration = -1;
+		try {
+			for (OutputFile file : snapshot.files) {
+				Path target = output.resolve(file.name.replace("output/", ""));
+				Files.createDirectories(target.getParent());
+
+				// only the content present when the snapshot was taken
+				try (InputStream in = Files.newInputStream(file.file.toPath());
+					 OutputStream out = Files.newOutputStream(target)) {
+					IOUtils.copyLarge(in, out, 0, file.size);
 				}
 			}
 
-			archive.close();
+			for (Map.Entry<String, byte[]> e : snapshot.entries.entrySet()) {
+				iteration = readEntry(output, e.getKey(), new ByteArrayInputStream(e.getValue()), iteration);
+			}
+		} catch (IOException | ClassNotFoundException e) {
+			throw new IllegalStateException("Could not restore snapshot", e);
+		}
 
-			return iteration;
+		return iteration;
+	}
 
-		} catch (IOException | ArchiveException | ClassNotFoundException e) {
-			throw new IllegalStateException("Could not read snapshot", e);
+	/**
+	 * Read one entry of a snapshot.
+	 *
+	 * @param iteration iteration read so far
+	 * @return starting iteration, if contained in this entry
+	 */
+	private int readEntry(Path output, String name, InputStream in, int iteration) throws IOException, ClassNotFoundException {
+
+		InfectionEventHandler handler = handlerProvider.get();
+		EpisimReporting reporting = reportingProvider.get();
+		ProgressionModel progressionModel = progressionProvider.get();
+
+		// copy to output
+		if (name.startsWith("output"))
+			Files.copy(in, output.resolve(name.replace("output/", "")), StandardCopyOption.REPLACE_EXISTING);
+
+		if (name.equals("iteration")) {
+			ObjectInputStream ois = new ObjectInputStream(in);
+			iteration = ois.readInt();
+		}
+
+		if (name.equals(STATE_ENTRY)) {
+			handler.readState(new DataInputStream(in));
+		}
+
+		// snapshots written by older versions
+		if (name.equals("state")) {
+			ObjectInputStream ois = new ObjectInputStream(in);
+			handler.readExternal(ois);
+		}
+
+		if (name.equals("reporting")) {
+			ObjectInputStream ois = new ObjectInputStream(in);
+			reporting.readExternal(ois);
+		}
+
+		if (name.equals("progression")) {
+			ObjectInputStream ois = new ObjectInputStream(in);
+			if (progressionModel instanceof Externalizable)
+				((Externalizable) progressionModel).readExternal(ois);
+			else
+				log.warn("Progression state present, but model is not Externalizable");
 		}
 
+		return iteration;
 	}
 
 	/**
-	 * Helper method to write object into archive,
+	 * Helper method to serialize an object into memory.
 	 */
-	private void writeObject(Externalizable obj, String name, ArchiveOutputStream archive) throws IOException {
-		archive.putArchiveEntry(new ZipArchiveEntry(name));
-		ObjectOutputStream oos = new ObjectOutputStream(archive);
+	private static byte[] serialize(Externalizable obj) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream oos = new ObjectOutputStream(bytes);
 		obj.writeExternal(oos);
-		oos.flush();
-		archive.closeArchiveEntry();
+		oos.close();
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * State of a simulation captured in memory, together with references to the output written so far.
+	 * The output is copied from the directory of the prefix run, which must not be modified while the snapshot is in use.
+	 * Instances are immutable and can be restored by multiple runners at the same time.
+	 */
+	public static final class Snapshot {
+
+		private final int iteration;
+		private final List<OutputFile> files;
+		private final Map<String, byte[]> entries;
+
+		private Snapshot(int iteration, List<OutputFile> files, Map<String, byte[]> entries) {
+			this.iteration = iteration;
+			this.files = List.copyOf(files);
+			this.entries = Collections.unmodifiableMap(entries);
+		}
+
+		/**
+		 * First iteration simulated after restoring this snapshot.
+		 */
+		public int getIteration() {
+			return iteration;
+		}
 	}
+
+	/**
+	 * File of the output directory and its size at the time the snapshot was taken.
+	 */
+	private static final class OutputFile {
+
+		private final File file;
+		private final String name;
+		private final long size;
+
+		private OutputFile(File file, String name, long size) {
+			this.file = file;
+			this.name = name;
+			this.size = size;
+		}
+	}
+
 	public static void runCommand(String command, String dirStr) throws IOException {
 		System.out.println("*********************************************************");
 		System.out.println("command:" + command);
@@ -40,6 +40,7 @@ import org.matsim.episim.policy.FixedPolicy;
 
 import java.io.*;
 import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -57,6 +58,11 @@ import java.util.*;
  */
 public final class EpisimUtils {
 
+	/**
+	 * Number of values written at once by the array methods.
+	 */
+	private static final int BLOCK_SIZE = 8192;
+
 	private EpisimUtils() {
 	}
 
@@ -143,9 +149,7 @@ public final class EpisimUtils {
 	 */
 	public static long getSeed(SplittableRandom rnd) {
 		try {
-			Field field = rnd.getClass().getDeclaredField("seed");
-			field.setAccessible(true);
-			return (long) field.get(rnd);
+			return (long) SeedField.FIELD.get(rnd);
 		} catch (ReflectiveOperationException e) {
 			throw new IllegalStateException("Could not extract seed", e);
 		}
@@ -156,9 +160,7 @@ public final class EpisimUtils {
 	 */
 	public static void setSeed(SplittableRandom rnd, long seed) {
 		try {
-			Field field = rnd.getClass().getDeclaredField("seed");
-			field.setAccessible(true);
-			field.set(rnd, seed);
+			SeedField.FIELD.setLong(rnd, seed);
 		} catch (ReflectiveOperationException e) {
 			throw new IllegalStateException("Could not extract seed", e);
 		}
@@ -287,6 +289,58 @@ public final class EpisimUtils {
 		return new String(content, 0, length, StandardCharsets.ISO_8859_1);
 	}
 
+	/**
+	 * Writes the first {@code n} values of an array in blocks.
+	 */
+	public static void writeInts(DataOutput out, int[] values, int n) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(BLOCK_SIZE * Integer.BYTES);
+		for (int i = 0; i < n; i += BLOCK_SIZE) {
+			int length = Math.min(BLOCK_SIZE, n - i);
+			buffer.clear();
+			buffer.asIntBuffer().put(values, i, length);
+			out.write(buffer.array(), 0, length * Integer.BYTES);
+		}
+	}
+
+	/**
+	 * Reads {@code n} values written by {@link #writeInts(DataOutput, int[], int)}.
+	 */
+	public static void readInts(DataInput in, int[] values, int n) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(BLOCK_SIZE * Integer.BYTES);
+		for (int i = 0; i < n; i += BLOCK_SIZE) {
+			int length = Math.min(BLOCK_SIZE, n - i);
+			in.readFully(buffer.array(), 0, length * Integer.BYTES);
+			buffer.clear();
+			buffer.asIntBuffer().get(values, i, length);
+		}
+	}
+
+	/**
+	 * Writes the first {@code n} values of an array in blocks.
+	 */
+	public static void writeDoubles(DataOutput out, double[] values, int n) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(BLOCK_SIZE * Double.BYTES);
+		for (int i = 0; i < n; i += BLOCK_SIZE) {
+			int length = Math.min(BLOCK_SIZE, n - i);
+			buffer.clear();
+			buffer.asDoubleBuffer().put(values, i, length);
+			out.write(buffer.array(), 0, length * Double.BYTES);
+		}
+	}
+
+	/**
+	 * Reads {@code n} values written by {@link #writeDoubles(DataOutput, double[], int)}.
+	 */
+	public static void readDoubles(DataInput in, double[] values, int n) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(BLOCK_SIZE * Double.BYTES);
+		for (int i = 0; i < n; i += BLOCK_SIZE) {
+			int length = Math.min(BLOCK_SIZE, n - i);
+			in.readFully(buffer.array(), 0, length * Double.BYTES);
+			buffer.clear();
+			buffer.asDoubleBuffer().get(values, i, length);
+		}
+	}
+
 	/**
 	 * Draw a gaussian distributed random number (mean=0, var=1).
 	 *
@@ -545,4 +599,21 @@ public final class EpisimUtils {
 
 		return outDoorFraction;
 	}
+
+	/**
+	 * Seed field of {@link SplittableRandom}, looked up only once because the seed is set frequently for parallel contact evaluation.
+	 */
+	private static final class SeedField {
+
+		private static final Field FIELD;
+
+		static {
+			try {
+				FIELD = SplittableRandom.class.getDeclaredField("seed");
+				FIELD.setAccessible(true);
+			} catch (NoSuchFieldException e) {
+				throw new IllegalStateException("Could not access seed", e);
+			}
+		}
+	}
 }
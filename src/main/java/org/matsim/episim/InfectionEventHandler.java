@@ -34,9 +34,9 @@ import org.matsim.api.core.v01.Scenario;
 import org.matsim.api.core.v01.events.*;
 import org.matsim.api.core.v01.population.Activity;
 import org.matsim.api.core.v01.population.Person;
-import org.matsim.core.api.internal.HasPersonId;
 import org.matsim.core.config.Config;
 import org.matsim.core.config.ConfigUtils;
+import org.matsim.episim.model.ContactBuffer;
 import org.matsim.episim.model.ContactModel;
 import org.matsim.episim.model.InitialInfectionHandler;
 import org.matsim.episim.model.ProgressionModel;
@@ -48,6 +48,9 @@ import org.matsim.facilities.ActivityFacility;
 import org.matsim.utils.objectattributes.attributable.Attributes;
 import org.matsim.vehicles.Vehicle;
 
+import javax.annotation.Nullable;
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.Externalizable;
 import java.io.IOException;
 import java.io.ObjectInput;
@@ -55,6 +58,8 @@ import java.io.ObjectOutput;
 import java.time.DayOfWeek;
 import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import static org.matsim.episim.EpisimUtils.readChars;
 import static org.matsim.episim.EpisimUtils.writeChars;
@@ -86,6 +91,11 @@ public final class InfectionEventHandler implements Externalizable {
 
 	private static final Logger log = LogManager.getLogger(InfectionEventHandler.class);
 
+	/**
+	 * Version of the binary state written by {@link #writeState(DataOutput)}.
+	 */
+	private static final int STATE_VERSION = 3;
+
 	private final Map<Id<Person>, EpisimPerson> personMap = new IdMap<>(Person.class);
 	private final Map<Id<Vehicle>, EpisimVehicle> vehicleMap = new IdMap<>(Vehicle.class);
 	private final Map<Id<ActivityFacility>, EpisimFacility> pseudoFacilityMap = new IdMap<>(ActivityFacility.class,
@@ -155,12 +165,60 @@ public final class InfectionEventHandler implements Externalizable {
 	 */
 	private EpisimReporting.InfectionReport report;
 
+	/**
+	 * Dense registry of all persons and containers, indexed by {@link EpisimPerson#getIndex()} and {@link EpisimContainer#getIndex()}.
+	 * Built during {@link #init(Map)}, after all persons and containers are known.
+	 */
+	private EpisimPerson[] persons;
+	private EpisimFacility[] facilities;
+	private EpisimVehicle[] vehicles;
+
+	/**
+	 * Index of the first facility for each weekday and person, at position {@code (day - 1) * persons.length + person}.
+	 */
+	private int[] firstFacilities;
+
+	/**
+	 * State of all persons. Persons are added in order of creation, the store is reordered by their index
+	 * when the registry is built.
+	 */
+	private final PersonStore personStore;
+
+	/**
+	 * Events for which the lookup tables below have been built.
+	 */
+	private CompactEvents replaySource;
+	private EpisimPerson[] replayPersons;
+	private EpisimFacility[] replayFacilities;
+	private EpisimVehicle[] replayVehicles;
+
+	/**
+	 * Pool for parallel contact evaluation, null if contacts are evaluated sequentially.
+	 */
+	private final ForkJoinPool pool;
+
+	/**
+	 * Contact model instances for each thread of the {@link #pool}.
+	 */
+	private final ThreadLocal<Worker> workers;
+
+	/**
+	 * Events of each day grouped by container, only used for parallel contact evaluation.
+	 */
+	private final Map<CompactEvents.Day, Partition> partitions = new IdentityHashMap<>();
+
+	/**
+	 * Restrictions in place for the current iteration.
+	 */
+	private Map<String, Restriction> iterationRestrictions;
+
 	@Inject
 	public InfectionEventHandler(Config config, Scenario scenario, ProgressionModel progressionModel, EpisimReporting reporting,
 								 InitialInfectionHandler initialInfections, ContactModel contactModel, VaccinationModel vaccinationModel,
-								 TestingModel testingModel,
+								 TestingModel testingModel, PersonStore personStore,
 								 SplittableRandom rnd) {
 		this.config = config;
+		this.personStore = personStore;
 		this.episimConfig = ConfigUtils.addOrGetModule(config, EpisimConfigGroup.class);
 		this.tracingConfig = ConfigUtils.addOrGetModule(config, TracingConfigGroup.class);
 		this.vaccinationConfig = ConfigUtils.addOrGetModule(config, VaccinationConfigGroup.class);
@@ -176,6 +234,28 @@ public final class InfectionEventHandler implements Externalizable {
 		this.initialInfections.setInfectionsLeft(episimConfig.getInitialInfections());
 		this.vaccinationModel = vaccinationModel;
 		this.testingModel = testingModel;
+
+		if (episimConfig.getContactThreads() > 1 && !contactModel.supportsParallel()) {
+			log.warn("{} does not support parallel contact evaluation, contacts will be evaluated sequentially",
+					contactModel.getClass().getSimpleName());
+			this.pool = null;
+			this.workers = null;
+		} else if (episimConfig.getContactThreads() > 1) {
+			log.info("Evaluating contacts in parallel with {} threads", episimConfig.getContactThreads());
+			this.pool = new ForkJoinPool(episimConfig.getContactThreads());
+			this.workers = ThreadLocal.withInitial(() -> new Worker(contactModel));
+		} else {
+			this.pool = null;
+			this.workers = null;
+		}
+	}
+
+	/**
+	 * Releases the threads used for parallel evaluation. The handler can not be used for further iterations afterwards.
+	 */
+	public void close() {
+		if (pool != null)
+			pool.shutdown();
 	}
 
 	/**
@@ -185,6 +265,13 @@ public final class InfectionEventHandler implements Externalizable {
 		return report;
 	}
 
+	/**
+	 * Store holding the primitive state of all persons.
+	 */
+	PersonStore getPersonStore() {
+		return personStore;
+	}
+
 	/**
 	 * Returns true if more iterations won't change the results anymore and the simulation is finished.
 	 */
@@ -199,21 +286,31 @@ public final class InfectionEventHandler implements Externalizable {
 	 * @param events All events in the simulation
 	 */
 	public void init(Map<DayOfWeek, List<Event>> events) {
+		init(CompactEvents.of(events));
+	}
+
+	/**
+	 * Initializes all needed data structures from the compact events, without creating any event objects.
+	 *
+	 * @see #init(Map)
+	 */
+	public void init(CompactEvents events) {
 
 		iteration = 0;
 
+		long startOffset = episimConfig.getStartOffset();
+
 		Object2IntMap<EpisimContainer<?>> groupSize = new Object2IntOpenHashMap<>();
 		Object2IntMap<EpisimContainer<?>> totalUsers = new Object2IntOpenHashMap<>();
 		Object2IntMap<EpisimContainer<?>> maxGroupSize = new Object2IntOpenHashMap<>();
 
 		Map<EpisimContainer<?>, Object2IntMap<String>> activityUsage = new HashMap<>();
 
-		Map<List<Event>, DayOfWeek> sameDay = new IdentityHashMap<>(7);
+		Map<CompactEvents.Day, DayOfWeek> sameDay = new IdentityHashMap<>(7);
 
-		for (Map.Entry<DayOfWeek, List<Event>> entry : events.entrySet()) {
+		for (DayOfWeek day : events.getDays()) {
 
-			DayOfWeek day = entry.getKey();
-			List<Event> eventsForDay = entry.getValue();
+			CompactEvents.Day eventsForDay = events.get(day);
 
 			if (sameDay.containsKey(eventsForDay)) {
 				DayOfWeek same = sameDay.get(eventsForDay);
@@ -226,47 +323,47 @@ public final class InfectionEventHandler implements Externalizable {
 
 			this.personMap.values().forEach(p -> p.setStartOfDay(day, p.getCurrentPositionInTrajectory()));
 
-			for (Event event : eventsForDay) {
+			for (int i = 0; i < eventsForDay.size(); i++) {
+
+				byte kind = eventsForDay.kind[i];
+				double now = EpisimUtils.getCorrectedTime(startOffset, eventsForDay.time[i], iteration);
 
-				EpisimPerson person = null;
 				EpisimFacility facility = null;
 
 				// Add all person and facilities
-				if (event instanceof HasPersonId) {
-					person = this.personMap.computeIfAbsent(((HasPersonId) event).getPersonId(), this::createPerson);
-
-					// If a person was added late, previous days are initialized at home
-					for (int i = 1; i < day.getValue(); i++) {
-						DayOfWeek it = DayOfWeek.of(i);
-						if (person.getFirstFacilityId(it) == null) {
-							person.setStartOfDay(it, person.getCurrentPositionInTrajectory());
-							person.setEndOfDay(it, person.getCurrentPositionInTrajectory());
-							person.setFirstFacilityId(createHomeFacility(person).getContainerId(), it);
-							EpisimPerson.Activity home = paramsMap.computeIfAbsent("home", this::createActivityType);
-							person.addToTrajectory(home);
-							//person.incrementCurrentPositionInTrajectory();
-							// start of current day also needs to be shifted
-							//person.setStartOfDay(day, person.getCurrentPositionInTrajectory());
-						}
+				EpisimPerson person = this.personMap.computeIfAbsent(events.persons[eventsForDay.person[i]], this::createPerson);
+
+				// If a person was added late, previous days are initialized at home
+				for (int d = 1; d < day.getValue(); d++) {
+					DayOfWeek it = DayOfWeek.of(d);
+					if (person.getFirstFacilityId(it) == null) {
+						person.setStartOfDay(it, person.getCurrentPositionInTrajectory());
+						person.setEndOfDay(it, person.getCurrentPositionInTrajectory());
+						person.setFirstFacilityId(createHomeFacility(person).getContainerId(), it);
+						EpisimPerson.Activity home = paramsMap.computeIfAbsent("home", this::createActivityType);
+						person.addToTrajectory(home);
+						//person.incrementCurrentPositionInTrajectory();
+						// start of current day also needs to be shifted
+						//person.setStartOfDay(day, person.getCurrentPositionInTrajectory());
 					}
 				}
 
-				if (event instanceof HasFacilityId) {
-					Id<ActivityFacility> episimFacilityId = ((HasFacilityId) event).getFacilityId();
+				if (kind == CompactEvents.ACTIVITY_START || kind == CompactEvents.ACTIVITY_END) {
+					Id<ActivityFacility> episimFacilityId = events.facilities[eventsForDay.container[i]];
 					facility = this.pseudoFacilityMap.computeIfAbsent(episimFacilityId, EpisimFacility::new);
 				}
 
-				if (event instanceof ActivityStartEvent) {
+				if (kind == CompactEvents.ACTIVITY_START) {
 
-					String actType = ((ActivityStartEvent) event).getActType();
+					String actType = events.actTypes[eventsForDay.actType[i]];
 
 					EpisimPerson.Activity act = paramsMap.computeIfAbsent(actType, this::createActivityType);
 					totalUsers.mergeInt(facility, 1, Integer::sum);
 
-					handleEvent((ActivityStartEvent) event);
+					handleActivityStart(person, facility, actType, now);
 
-				} else if (event instanceof ActivityEndEvent) {
-					String actType = ((ActivityEndEvent) event).getActType();
+				} else if (kind == CompactEvents.ACTIVITY_END) {
+					String actType = events.actTypes[eventsForDay.actType[i]];
 
 					EpisimPerson.Activity act = paramsMap.computeIfAbsent(actType, this::createActivityType);
 					activityUsage.computeIfAbsent(facility, k -> new Object2IntOpenHashMap<>()).mergeInt(actType, 1, Integer::sum);
@@ -286,23 +383,23 @@ public final class InfectionEventHandler implements Externalizable {
 						person.setFirstFacilityId(facility.getContainerId(), day);
 					}
 
-					handleEvent((ActivityEndEvent) event);
+					handleActivityEnd(person, actType, now);
 				}
 
-				if (event instanceof PersonEntersVehicleEvent) {
-					EpisimVehicle vehicle = this.vehicleMap.computeIfAbsent(((PersonEntersVehicleEvent) event).getVehicleId(), EpisimVehicle::new);
+				if (kind == CompactEvents.ENTERS_VEHICLE) {
+					EpisimVehicle vehicle = this.vehicleMap.computeIfAbsent(events.vehicles[eventsForDay.container[i]], EpisimVehicle::new);
 
 					maxGroupSize.mergeInt(vehicle, groupSize.mergeInt(vehicle, 1, Integer::sum), Integer::max);
 					totalUsers.mergeInt(vehicle, 1, Integer::sum);
 
-					handleEvent((PersonEntersVehicleEvent) event);
+					handleEntersVehicle(person, vehicle, now);
 
-				} else if (event instanceof PersonLeavesVehicleEvent) {
-					EpisimVehicle vehicle = this.vehicleMap.computeIfAbsent(((PersonLeavesVehicleEvent) event).getVehicleId(), EpisimVehicle::new);
+				} else if (kind == CompactEvents.LEAVES_VEHICLE) {
+					EpisimVehicle vehicle = this.vehicleMap.computeIfAbsent(events.vehicles[eventsForDay.container[i]], EpisimVehicle::new);
 					groupSize.mergeInt(vehicle, -1, Integer::sum);
 					activityUsage.computeIfAbsent(vehicle, k -> new Object2IntOpenHashMap<>()).mergeInt("tr", 1, Integer::sum);
 
-					handleEvent((PersonLeavesVehicleEvent) event);
+					handleLeavesVehicle(person, vehicle, now);
 				}
 			}
 
@@ -354,12 +451,13 @@ public final class InfectionEventHandler implements Externalizable {
 			}
 		}
 
+		buildRegistry();
+
 		// Go through each day again to compute max group sizes
 		sameDay.clear();
-		for (Map.Entry<DayOfWeek, List<Event>> entry : events.entrySet()) {
+		for (DayOfWeek day : events.getDays()) {
 
-			DayOfWeek day = entry.getKey();
-			List<Event> eventsForDay = entry.getValue();
+			CompactEvents.Day eventsForDay = events.get(day);
 
 			if (sameDay.containsKey(eventsForDay)) {
 				continue;
@@ -367,25 +465,30 @@ public final class InfectionEventHandler implements Externalizable {
 
 			personMap.values().forEach(p -> {
 				checkAndHandleEndOfNonCircularTrajectory(p, day);
-				p.resetCurrentPositionInTrajectory(day);
+				resetTrajectory(p, day);
 			});
 
 			pseudoFacilityMap.forEach((k, v) -> maxGroupSize.mergeInt(v, v.getPersons().size(), Integer::max));
 
-			for (Event event : eventsForDay) {
-				if (event instanceof HasFacilityId && event instanceof HasPersonId) {
-					Id<ActivityFacility> episimFacilityId = ((HasFacilityId) event).getFacilityId();
-					EpisimFacility facility = pseudoFacilityMap.get(episimFacilityId);
+			for (int i = 0; i < eventsForDay.size(); i++) {
+				byte kind = eventsForDay.kind[i];
+				if (kind == CompactEvents.ACTIVITY_START || kind == CompactEvents.ACTIVITY_END) {
+					EpisimFacility facility = pseudoFacilityMap.get(events.facilities[eventsForDay.container[i]]);
 
 					// happens on filtered events that are not relevant
 					if (facility == null)
 						continue;
 
-					if (event instanceof ActivityStartEvent) {
-						handleEvent((ActivityStartEvent) event);
+					EpisimPerson person = personMap.get(events.persons[eventsForDay.person[i]]);
+					String actType = events.actTypes[eventsForDay.actType[i]];
+					double now = EpisimUtils.getCorrectedTime(startOffset, eventsForDay.time[i], iteration);
+
+					if (kind == CompactEvents.ACTIVITY_START) {
+						handleActivityStart(person, facility, actType, now);
 						maxGroupSize.mergeInt(facility, facility.getPersons().size(), Integer::max);
-					} else if (event instanceof ActivityEndEvent) {
-						handleEvent((ActivityEndEvent) event);
+					} else {
+						assert person.getCurrentContainer() == facility : "Person=" + person.getPersonId() + " is not at facility=" + facility.getContainerId();
+						handleActivityEnd(person, actType, now);
 					}
 				}
 			}
@@ -468,12 +571,7 @@ public final class InfectionEventHandler implements Externalizable {
 		// find the facility
 		EpisimFacility episimFacility = this.pseudoFacilityMap.get(episimFacilityId);
 
-		// add person to facility
-		episimFacility.addPerson(episimPerson, now);
-
-		handlePersonTrajectory(episimPerson.getPersonId(), activityStartEvent.getActType());
-
-		contactModel.notifyEnterFacility(episimPerson, episimFacility, now);
+		handleActivityStart(episimPerson, episimFacility, activityStartEvent.getActType(), now);
 	}
 
 	public void handleEvent(ActivityEndEvent activityEndEvent) {
@@ -484,20 +582,11 @@ public final class InfectionEventHandler implements Externalizable {
 
 		EpisimPerson episimPerson = this.personMap.get(activityEndEvent.getPersonId());
 
-		EpisimFacility episimFacility = (EpisimFacility) episimPerson.getCurrentContainer();
-		assert (episimFacility.equals(pseudoFacilityMap.get(activityEndEvent.getFacilityId()))) :
+		assert (episimPerson.getCurrentContainer().equals(pseudoFacilityMap.get(activityEndEvent.getFacilityId()))) :
 				"Person=" + episimPerson.getPersonId().toString() + " has activity end event at facility=" +
-						activityEndEvent.getFacilityId() + " but actually is at facility=" + episimFacility.getContainerId().toString();
-
+						activityEndEvent.getFacilityId() + " but actually is at facility=" + episimPerson.getCurrentContainer().getContainerId().toString();
 
-		contactModel.infectionDynamicsFacility(episimPerson, episimFacility, now, activityEndEvent.getActType());
-
-		double timeSpent = now - episimFacility.getContainerEnteringTime(episimPerson.getPersonId());
-		episimPerson.addSpentTime(activityEndEvent.getActType(), timeSpent);
-
-		episimFacility.removePerson(episimPerson);
-
-		handlePersonTrajectory(episimPerson.getPersonId(), activityEndEvent.getActType());
+		handleActivityEnd(episimPerson, activityEndEvent.getActType(), now);
 	}
 
 	public void handleEvent(PersonEntersVehicleEvent entersVehicleEvent) {
@@ -512,10 +601,7 @@ public final class InfectionEventHandler implements Externalizable {
 		// find the vehicle:
 		EpisimVehicle episimVehicle = this.vehicleMap.get(entersVehicleEvent.getVehicleId());
 
-		// add person to vehicle and memorize entering time:
-		episimVehicle.addPerson(episimPerson, now);
-
-		contactModel.notifyEnterVehicle(episimPerson, episimVehicle, now);
+		handleEntersVehicle(episimPerson, episimVehicle, now);
 	}
 
 	public void handleEvent(PersonLeavesVehicleEvent leavesVehicleEvent) {
@@ -529,6 +615,247 @@ public final class InfectionEventHandler implements Externalizable {
 
 		EpisimPerson episimPerson = this.personMap.get(leavesVehicleEvent.getPersonId());
 
+		handleLeavesVehicle(episimPerson, episimVehicle, now);
+	}
+
+	/**
+	 * Assign dense indices to all persons and containers.
+	 */
+	private void buildRegistry() {
+
+		persons = personMap.values().toArray(new EpisimPerson[0]);
+		for (int i = 0; i < persons.length; i++)
+			persons[i].setIndex(i);
+
+		personStore.reorder(persons);
+
+		facilities = pseudoFacilityMap.values().toArray(new EpisimFacility[0]);
+		for (int i = 0; i < facilities.length; i++)
+			facilities[i].setIndex(i);
+
+		vehicles = vehicleMap.values().toArray(new EpisimVehicle[0]);
+		for (int i = 0; i < vehicles.length; i++)
+			vehicles[i].setIndex(i);
+
+		firstFacilities = new int[7 * persons.length];
+		for (DayOfWeek day : DayOfWeek.values()) {
+			int offset = (day.getValue() - 1) * persons.length;
+			for (EpisimPerson person : persons) {
+				Id<ActivityFacility> id = person.getFirstFacilityId(day);
+				firstFacilities[offset + person.getIndex()] = id != null ? pseudoFacilityMap.get(id).getIndex() : -1;
+			}
+		}
+
+		log.info("Registered {} persons, {} facilities and {} vehicles", persons.length, facilities.length, vehicles.length);
+	}
+
+	/**
+	 * First facility of a person at given day.
+	 */
+	private EpisimFacility getFirstFacility(EpisimPerson person, DayOfWeek day) {
+		return facilities[firstFacilities[(day.getValue() - 1) * persons.length + person.getIndex()]];
+	}
+
+	/**
+	 * Replay all events of one day. Compared to the individual {@code handleEvent} methods,
+	 * persons and containers are looked up by their index and event objects are only created if they need to be written.
+	 */
+	void replay(CompactEvents events, CompactEvents.Day day) {
+
+		if (replaySource != events)
+			resolve(events);
+
+		if (pool != null) {
+			replayParallel(events, day);
+			return;
+		}
+
+		boolean writeInput = episimConfig.getWriteEvents() == EpisimConfigGroup.WriteEvents.all
+				|| episimConfig.getWriteEvents() == EpisimConfigGroup.WriteEvents.input;
+
+		long startOffset = episimConfig.getStartOffset();
+
+		int start = 0;
+		for (int i = 0; i < day.size(); i++) {
+
+			double now = EpisimUtils.getCorrectedTime(startOffset, day.time[i], iteration);
+
+			if (writeInput)
+				reporting.handleEvent(events.createEvent(day, i, start, scenario));
+
+			EpisimPerson person = replayPersons[day.person[i]];
+
+			switch (day.kind[i]) {
+				case CompactEvents.ACTIVITY_START:
+					handleActivityStart(person, replayFacilities[day.container[i]], events.actTypes[day.actType[i]], now);
+					start++;
+					break;
+				case CompactEvents.ACTIVITY_END:
+					assert person.getCurrentContainer() == replayFacilities[day.container[i]] :
+							"Person=" + person.getPersonId() + " is not at facility=" + events.facilities[day.container[i]];
+					handleActivityEnd(person, events.actTypes[day.actType[i]], now);
+					break;
+				case CompactEvents.ENTERS_VEHICLE:
+					handleEntersVehicle(person, replayVehicles[day.container[i]], now);
+					break;
+				case CompactEvents.LEAVES_VEHICLE:
+					handleLeavesVehicle(person, replayVehicles[day.container[i]], now);
+					break;
+				default:
+					throw new IllegalStateException("Unknown event kind: " + day.kind[i]);
+			}
+		}
+	}
+
+	/**
+	 * Build lookup tables from the indices used by the compact events.
+	 */
+	private void resolve(CompactEvents events) {
+
+		replayPersons = new EpisimPerson[events.persons.length];
+		for (int i = 0; i < replayPersons.length; i++)
+			replayPersons[i] = personMap.get(events.persons[i]);
+
+		replayFacilities = new EpisimFacility[events.facilities.length];
+		for (int i = 0; i < replayFacilities.length; i++)
+			replayFacilities[i] = pseudoFacilityMap.get(events.facilities[i]);
+
+		replayVehicles = new EpisimVehicle[events.vehicles.length];
+		for (int i = 0; i < replayVehicles.length; i++)
+			replayVehicles[i] = vehicleMap.get(events.vehicles[i]);
+
+		partitions.clear();
+		replaySource = events;
+	}
+
+	/**
+	 * Replay one day with contacts evaluated in parallel for each container. This happens in three steps:
+	 * <ol>
+	 *     <li>Persons move through their trajectories in order of events, without changing the containers.</li>
+	 *     <li>Containers replay their events in parallel. Each container uses its own random stream, derived from a seed for the day,
+	 *     so that results do not depend on the number of threads. Effects on persons are recorded in a {@link ContactBuffer}.</li>
+	 *     <li>Recorded effects of all containers are applied ordered by time.</li>
+	 * </ol>
+	 */
+	private void replayParallel(CompactEvents events, CompactEvents.Day day) {
+
+		boolean writeInput = episimConfig.getWriteEvents() == EpisimConfigGroup.WriteEvents.all
+				|| episimConfig.getWriteEvents() == EpisimConfigGroup.WriteEvents.input;
+
+		long startOffset = episimConfig.getStartOffset();
+
+		// position in trajectory at each event
+		int[] positions = new int[day.size()];
+
+		// entering time of persons that entered a container during this day
+		double[] entered = new double[persons.length];
+		Arrays.fill(entered, Double.NaN);
+
+		int start = 0;
+		for (int i = 0; i < day.size(); i++) {
+
+			double now = EpisimUtils.getCorrectedTime(startOffset, day.time[i], iteration);
+
+			if (writeInput)
+				reporting.handleEvent(events.createEvent(day, i, start, scenario));
+
+			EpisimPerson person = replayPersons[day.person[i]];
+			EpisimContainer<?> container;
+			String actType;
+
+			switch (day.kind[i]) {
+				case CompactEvents.ACTIVITY_START:
+					container = replayFacilities[day.container[i]];
+					handlePersonTrajectory(person, events.actTypes[day.actType[i]]);
+					positions[i] = person.getCurrentPositionInTrajectory();
+					person.setCurrentContainer(container);
+					entered[person.getIndex()] = now;
+					start++;
+					break;
+				case CompactEvents.ACTIVITY_END:
+					container = person.getCurrentContainer();
+					assert container == replayFacilities[day.container[i]] :
+							"Person=" + person.getPersonId() + " is not at facility=" + events.facilities[day.container[i]];
+					actType = events.actTypes[day.actType[i]];
+					positions[i] = person.getCurrentPositionInTrajectory();
+					person.addSpentTime(actType, now - getEnteringTime(person, container, entered));
+					person.removeCurrentContainer(container);
+					handlePersonTrajectory(person, actType);
+					break;
+				case CompactEvents.ENTERS_VEHICLE:
+					container = replayVehicles[day.container[i]];
+					positions[i] = person.getCurrentPositionInTrajectory();
+					person.setCurrentContainer(container);
+					entered[person.getIndex()] = now;
+					break;
+				case CompactEvents.LEAVES_VEHICLE:
+					container = replayVehicles[day.container[i]];
+					positions[i] = person.getCurrentPositionInTrajectory();
+					person.addSpentTime("pt", now - getEnteringTime(person, container, entered));
+					person.removeCurrentContainer(container);
+					break;
+				default:
+					throw new IllegalStateException("Unknown event kind: " + day.kind[i]);
+			}
+		}
+
+		Partition partition = partitions.computeIfAbsent(day, d -> new Partition(events, d));
+		ParallelDay parallel = new ParallelDay(events, day, partition, positions, rnd.nextLong());
+
+		pool.invoke(new ContainerTask(parallel, 0, partition.size()));
+
+		ContactBuffer effects = new ContactBuffer();
+		for (ContactBuffer result : parallel.results) {
+			if (result != null)
+				effects.addAll(result);
+		}
+
+		effects.apply(reporting);
+	}
+
+	/**
+	 * Entering time of a person into container, which is either known from this day or stored in the container.
+	 */
+	private static double getEnteringTime(EpisimPerson person, EpisimContainer<?> container, double[] entered) {
+		double time = entered[person.getIndex()];
+		return Double.isNaN(time) ? container.getContainerEnteringTime(person.getPersonId()) : time;
+	}
+
+	private void handleActivityStart(EpisimPerson episimPerson, EpisimFacility episimFacility, String actType, double now) {
+
+		// trajectory needs to be updated first, the facility stores the current position
+		handlePersonTrajectory(episimPerson, actType);
+
+		// add person to facility
+		episimFacility.addPerson(episimPerson, now);
+
+		contactModel.notifyEnterFacility(episimPerson, episimFacility, now);
+	}
+
+	private void handleActivityEnd(EpisimPerson episimPerson, String actType, double now) {
+
+		EpisimFacility episimFacility = (EpisimFacility) episimPerson.getCurrentContainer();
+
+		contactModel.infectionDynamicsFacility(episimPerson, episimFacility, now, actType);
+
+		double timeSpent = now - episimFacility.getContainerEnteringTime(episimPerson.getPersonId());
+		episimPerson.addSpentTime(actType, timeSpent);
+
+		episimFacility.removePerson(episimPerson);
+
+		handlePersonTrajectory(episimPerson, actType);
+	}
+
+	private void handleEntersVehicle(EpisimPerson episimPerson, EpisimVehicle episimVehicle, double now) {
+
+		// add person to vehicle and memorize entering time:
+		episimVehicle.addPerson(episimPerson, now);
+
+		contactModel.notifyEnterVehicle(episimPerson, episimVehicle, now);
+	}
+
+	private void handleLeavesVehicle(EpisimPerson episimPerson, EpisimVehicle episimVehicle, double now) {
+
 		contactModel.infectionDynamicsVehicle(episimPerson, episimVehicle, now);
 
 		double timeSpent = now - episimVehicle.getContainerEnteringTime(episimPerson.getPersonId());
@@ -556,7 +883,7 @@ public final class InfectionEventHandler implements Externalizable {
 
 		boolean traceable = localRnd.nextDouble() < tracingConfig.getEquipmentRate();
 
-		return new EpisimPerson(id, attrs, traceable, reporting);
+		return new EpisimPerson(id, attrs, traceable, reporting, personStore);
 	}
 
 	/**
@@ -579,8 +906,7 @@ public final class InfectionEventHandler implements Externalizable {
 	}
 
 
-	private void handlePersonTrajectory(Id<Person> personId, String trajectoryElement) {
-		EpisimPerson person = personMap.get(personId);
+	private void handlePersonTrajectory(EpisimPerson person, String trajectoryElement) {
 
 		if (person.getCurrentPositionInTrajectory() + 1 == person.getTrajectory().size()) {
 			return;
@@ -594,6 +920,15 @@ public final class InfectionEventHandler implements Externalizable {
 		person.addToTrajectory(act);
 	}
 
+	/**
+	 * Reset the trajectory of a person for the next day, the position stored in its container is updated accordingly.
+	 */
+	private void resetTrajectory(EpisimPerson person, DayOfWeek day) {
+		person.resetCurrentPositionInTrajectory(day);
+		if (person.isInContainer())
+			person.getCurrentContainer().updatePositionInTrajectory(person);
+	}
+
 	/**
 	 * Insert agents that appear in the population, but not in the event file, into their home container.
 	 */
@@ -652,13 +987,20 @@ public final class InfectionEventHandler implements Externalizable {
 
 		progressionModel.setIteration(iteration);
 		testingModel.setIteration(iteration);
+		personStore.setTestDay(iteration);
 		progressionModel.beforeStateUpdates(personMap, iteration, this.report);
 		testingModel.beforeStateUpdates(personMap, iteration, this.report);
-		for (EpisimPerson person : personMap.values()) {
-			checkAndHandleEndOfNonCircularTrajectory(person, day);
-			person.resetCurrentPositionInTrajectory(day);
-			progressionModel.updateState(person, iteration);
-			testingModel.performTesting(person, iteration);
+
+		// both models need to support it, so that progression and testing are always performed alternately for each person
+		if (pool != null && progressionModel.supportsParallel() && testingModel.supportsParallel()) {
+			updateStatesParallel(day, iteration);
+		} else {
+			for (EpisimPerson person : persons) {
+				checkAndHandleEndOfNonCircularTrajectory(person, day);
+				resetTrajectory(person, day);
+				progressionModel.updateState(person, iteration);
+				testingModel.performTesting(person, iteration);
+			}
 		}
 
 		int available = EpisimUtils.findValidEntry(vaccinationConfig.getVaccinationCapacity(), 0, date);
@@ -668,7 +1010,7 @@ public final class InfectionEventHandler implements Externalizable {
 
 		int infected = this.initialInfections.handleInfections(personMap, iteration);
 
-		Map<String, EpisimReporting.InfectionReport> reports = reporting.createReports(personMap.values(), iteration);
+		Map<String, EpisimReporting.InfectionReport> reports = reporting.createReports(personStore, iteration);
 		this.report = reports.get("total");
 
 		reporting.reporting(reports, iteration, report.date);
@@ -678,27 +1020,63 @@ public final class InfectionEventHandler implements Externalizable {
 		ImmutableMap<String, Restriction> im = ImmutableMap.copyOf(this.restrictions);
 		policy.updateRestrictions(report, im);
 		contactModel.setRestrictionsForIteration(iteration, im);
+		iterationRestrictions = im;
 		reporting.reportRestrictions(restrictions, iteration, report.date);
 
 	}
 
+	/**
+	 * Same as the sequential update in {@link #reset(int)}, but progression and testing are performed in parallel for chunks of persons.
+	 * Each chunk has its own random number generator and status events are reported in the order of the persons afterwards.
+	 */
+	private void updateStatesParallel(DayOfWeek day, int iteration) {
+
+		// containers can only be changed sequentially
+		for (EpisimPerson person : persons) {
+			checkAndHandleEndOfNonCircularTrajectory(person, day);
+			resetTrajectory(person, day);
+		}
+
+		long seed = rnd.nextLong();
+
+		StateUpdate[] chunks = new StateUpdate[(persons.length + StateUpdate.SIZE - 1) / StateUpdate.SIZE];
+		for (int i = 0; i < chunks.length; i++) {
+
+			// progression and testing share the generator, as the sequential models do
+			SplittableRandom chunkRnd = new SplittableRandom(mixSeed(seed, i));
+
+			int from = i * StateUpdate.SIZE;
+			chunks[i] = new StateUpdate(from, Math.min(from + StateUpdate.SIZE, persons.length),
+					progressionModel.createWorker(chunkRnd), testingModel.createWorker(chunkRnd));
+		}
+
+		pool.invoke(new UpdateTask(chunks, iteration, 0, chunks.length));
+
+		for (StateUpdate chunk : chunks) {
+
+			reporting.reportPersonStatus(chunk.events);
+			progressionModel.merge(chunk.progression);
+			testingModel.merge(chunk.testing);
+		}
+	}
+
 	/**
 	 * Handle plans with "holes" in their trajectory.
 	 *
 	 * @param day day that is about to start
 	 */
 	private void checkAndHandleEndOfNonCircularTrajectory(EpisimPerson person, DayOfWeek day) {
-		Id<ActivityFacility> firstFacilityId = person.getFirstFacilityId(day);
+		EpisimFacility firstFacility = getFirstFacility(person, day);
 
 		// now is the start of current day, when this is called iteration still has the value of the last day
 		double now = EpisimUtils.getCorrectedTime(episimConfig.getStartOffset(), 0, iteration + 1);
 
 		if (person.isInContainer()) {
 			EpisimContainer<?> container = person.getCurrentContainer();
-			Id<?> lastFacilityId = container.getContainerId();
 
-			if (container instanceof EpisimFacility && this.pseudoFacilityMap.containsKey(lastFacilityId) && !firstFacilityId.equals(lastFacilityId)) {
-				EpisimFacility lastFacility = this.pseudoFacilityMap.get(lastFacilityId);
+			// registered containers have an index
+			if (container instanceof EpisimFacility && container.getIndex() >= 0 && container != firstFacility) {
+				EpisimFacility lastFacility = (EpisimFacility) container;
 
 				// index of last activity at previous day
 				int index = person.getEndOfDay(day.minus(1));
@@ -714,24 +1092,21 @@ public final class InfectionEventHandler implements Externalizable {
 				}
 
 				lastFacility.removePerson(person);
-				EpisimFacility firstFacility = this.pseudoFacilityMap.get(firstFacilityId);
 				firstFacility.addPerson(person, now);
 
 				contactModel.notifyEnterFacility(person, firstFacility, now);
 
-			} else if (container instanceof EpisimVehicle && this.vehicleMap.containsKey(lastFacilityId)) {
-				EpisimVehicle lastVehicle = this.vehicleMap.get(lastFacilityId);
+			} else if (container instanceof EpisimVehicle && container.getIndex() >= 0) {
+				EpisimVehicle lastVehicle = (EpisimVehicle) container;
 				contactModel.infectionDynamicsVehicle(person, lastVehicle, now);
 				person.addSpentTime("pt", now - lastVehicle.getContainerEnteringTime(person.getPersonId()));
 
 				lastVehicle.removePerson(person);
-				EpisimFacility firstFacility = this.pseudoFacilityMap.get(firstFacilityId);
 				firstFacility.addPerson(person, now);
 
 				contactModel.notifyEnterFacility(person, firstFacility, now);
 			}
 		} else {
-			EpisimFacility firstFacility = this.pseudoFacilityMap.get(firstFacilityId);
 			firstFacility.addPerson(person, now);
 
 			contactModel.notifyEnterFacility(person, firstFacility, now);
@@ -794,12 +1169,17 @@ public final class InfectionEventHandler implements Externalizable {
 			restrictions.put(act, Restriction.fromConfig(ConfigFactory.parseString(readChars(in))));
 		}
 
+		// contacts are added again while reading the persons
+		personStore.contacts.clear();
+
 		int persons = in.readInt();
 		for (int i = 0; i < persons; i++) {
 			Id<Person> id = Id.create(readChars(in), Person.class);
 			personMap.get(id).read(in, personMap, pseudoFacilityMap, vehicleMap);
 		}
 
+		personStore.recount();
+
 		int vehicles = in.readInt();
 		for (int i = 0; i < vehicles; i++) {
 			Id<Vehicle> id = Id.create(readChars(in), Vehicle.class);
@@ -818,6 +1198,359 @@ public final class InfectionEventHandler implements Externalizable {
 		policy.restore(episimConfig.getStartDate().plusDays(iteration), im);
 
 		contactModel.setRestrictionsForIteration(iteration, im);
+		iterationRestrictions = im;
+	}
+
+	/**
+	 * Writes the state in a binary format, where persons and containers are referenced by their index.
+	 * Person state is written column-wise from the {@link PersonStore}. Can only be read by a simulation with the same population and events.
+	 *
+	 * @see #readState(DataInput)
+	 */
+	void writeState(DataOutput out) throws IOException {
+
+		out.writeInt(STATE_VERSION);
+		out.writeLong(EpisimUtils.getSeed(rnd));
+		out.writeInt(initialInfections.getInfectionsLeft());
+		out.writeInt(iteration);
+
+		out.writeInt(restrictions.size());
+		for (Map.Entry<String, Restriction> e : restrictions.entrySet()) {
+			writeChars(out, e.getKey());
+			writeChars(out, e.getValue().asMap().toString());
+		}
+
+		out.writeLong(checksum(persons));
+		out.writeLong(checksum(facilities));
+		out.writeLong(checksum(vehicles));
+
+		personStore.writeColumns(out);
+		personStore.contacts.write(out);
+
+		StringTable strings = new StringTable();
+		for (EpisimPerson person : persons)
+			person.writeState(out, strings);
+
+		for (EpisimFacility facility : facilities)
+			facility.writeState(out);
+
+		for (EpisimVehicle vehicle : vehicles)
+			vehicle.writeState(out);
+	}
+
+	/**
+	 * Restores state written by {@link #writeState(DataOutput)}.
+	 */
+	void readState(DataInput in) throws IOException {
+
+		int version = in.readInt();
+		if (version != STATE_VERSION)
+			throw new IllegalStateException("Unsupported snapshot version " + version);
+
+		long storedSeed = in.readLong();
+		if (episimConfig.getSnapshotSeed() == EpisimConfigGroup.SnapshotSeed.restore) {
+			EpisimUtils.setSeed(rnd, storedSeed);
+		} else if (episimConfig.getSnapshotSeed() == EpisimConfigGroup.SnapshotSeed.reseed) {
+			log.info("Reseeding snapshot with {}", config.global().getRandomSeed());
+			EpisimUtils.setSeed(rnd, config.global().getRandomSeed());
+		}
+
+		initialInfections.setInfectionsLeft(in.readInt());
+		iteration = in.readInt();
+
+		int r = in.readInt();
+		for (int i = 0; i < r; i++) {
+			String act = readChars(in);
+			restrictions.put(act, Restriction.fromConfig(ConfigFactory.parseString(readChars(in))));
+		}
+
+		if (in.readLong() != checksum(persons) || in.readLong() != checksum(facilities) || in.readLong() != checksum(vehicles))
+			throw new IllegalStateException("Snapshot was created with a different population or events");
+
+		personStore.readColumns(in);
+		personStore.contacts.read(in, persons);
+
+		StringTable strings = new StringTable();
+		for (EpisimPerson person : persons)
+			person.readState(in, strings, facilities, vehicles);
+
+		for (EpisimFacility facility : facilities)
+			facility.readState(in, persons);
+
+		for (EpisimVehicle vehicle : vehicles)
+			vehicle.readState(in, persons);
+
+		ImmutableMap<String, Restriction> im = ImmutableMap.copyOf(this.restrictions);
+
+		policy.restore(episimConfig.getStartDate().plusDays(iteration), im);
+
+		contactModel.setRestrictionsForIteration(iteration, im);
+		iterationRestrictions = im;
+	}
+
+	/**
+	 * Checksum over the ids of persons or containers in the order of their index.
+	 */
+	private static long checksum(Object[] elements) {
+		long sum = elements.length;
+		for (Object e : elements) {
+			Id<?> id = e instanceof EpisimPerson ? ((EpisimPerson) e).getPersonId() : ((EpisimContainer<?>) e).getContainerId();
+			sum = 31 * sum + id.toString().hashCode();
+		}
+
+		return sum;
+	}
+
+	/**
+	 * Contact model instance used by one thread, with its own random number generator.
+	 */
+	private static final class Worker {
+
+		private final SplittableRandom rnd = new SplittableRandom(0);
+		private final ContactBuffer buffer = new ContactBuffer();
+		private final ContactModel model;
+
+		private Map<String, Restriction> restrictions;
+
+		private Worker(ContactModel contactModel) {
+			this.model = contactModel.createWorker(rnd, buffer);
+		}
+	}
+
+	/**
+	 * Event indices of one day grouped by container. Containers are identified by a key, which is the facility index of the
+	 * compact events for activities, followed by the vehicle indices.
+	 */
+	private static final class Partition {
+
+		/**
+		 * Start of each container in {@link #events}, with one additional entry at the end.
+		 */
+		private final int[] offsets;
+		private final int[] events;
+
+		private Partition(CompactEvents source, CompactEvents.Day day) {
+
+			int numFacilities = source.facilities.length;
+			offsets = new int[numFacilities + source.vehicles.length + 1];
+			events = new int[day.size()];
+
+			for (int i = 0; i < day.size(); i++)
+				offsets[key(day, i, numFacilities) + 1]++;
+
+			for (int k = 1; k < offsets.length; k++)
+				offsets[k] += offsets[k - 1];
+
+			int[] next = Arrays.copyOf(offsets, offsets.length - 1);
+			for (int i = 0; i < day.size(); i++)
+				events[next[key(day, i, numFacilities)]++] = i;
+		}
+
+		private static int key(CompactEvents.Day day, int i, int numFacilities) {
+			byte kind = day.kind[i];
+			return kind == CompactEvents.ACTIVITY_START || kind == CompactEvents.ACTIVITY_END ? day.container[i] : numFacilities + day.container[i];
+		}
+
+		/**
+		 * Number of containers.
+		 */
+		private int size() {
+			return offsets.length - 1;
+		}
+	}
+
+	/**
+	 * State of one day that is replayed in parallel.
+	 */
+	private final class ParallelDay {
+
+		private final CompactEvents events;
+		private final CompactEvents.Day day;
+		private final Partition partition;
+		private final int[] positions;
+		private final long seed;
+
+		/**
+		 * Recorded effects for each container, null if there are none.
+		 */
+		private final ContactBuffer[] results;
+
+		private ParallelDay(CompactEvents events, CompactEvents.Day day, Partition partition, int[] positions, long seed) {
+			this.events = events;
+			this.day = day;
+			this.partition = partition;
+			this.positions = positions;
+			this.seed = seed;
+			this.results = new ContactBuffer[partition.size()];
+		}
+
+		/**
+		 * Replay all events of one container.
+		 */
+		private void process(int key, Worker worker) {
+
+			int from = partition.offsets[key];
+			int to = partition.offsets[key + 1];
+			if (from == to)
+				return;
+
+			if (worker.restrictions != iterationRestrictions) {
+				worker.model.setRestrictionsForIteration(iteration, iterationRestrictions);
+				worker.restrictions = iterationRestrictions;
+			}
+
+			EpisimUtils.setSeed(worker.rnd, mixSeed(seed, key));
+
+			long startOffset = episimConfig.getStartOffset();
+			ContactModel model = worker.model;
+
+			for (int j = from; j < to; j++) {
+				int i = partition.events[j];
+
+				double now = EpisimUtils.getCorrectedTime(startOffset, day.time[i], iteration);
+				EpisimPerson person = replayPersons[day.person[i]];
+
+				switch (day.kind[i]) {
+					case CompactEvents.ACTIVITY_START:
+						EpisimFacility facility = replayFacilities[day.container[i]];
+						facility.addOccupant(person, now, positions[i]);
+						model.notifyEnterFacility(person, facility, now);
+						break;
+					case CompactEvents.ACTIVITY_END:
+						facility = replayFacilities[day.container[i]];
+						model.infectionDynamicsFacility(person, facility, now, events.actTypes[day.actType[i]]);
+						facility.removeOccupant(person);
+						break;
+					case CompactEvents.ENTERS_VEHICLE:
+						EpisimVehicle vehicle = replayVehicles[day.container[i]];
+						vehicle.addOccupant(person, now, positions[i]);
+						model.notifyEnterVehicle(person, vehicle, now);
+						break;
+					case CompactEvents.LEAVES_VEHICLE:
+						vehicle = replayVehicles[day.container[i]];
+						model.infectionDynamicsVehicle(person, vehicle, now);
+						vehicle.removeOccupant(person);
+						break;
+					default:
+						throw new IllegalStateException("Unknown event kind: " + day.kind[i]);
+				}
+			}
+
+			if (!worker.buffer.isEmpty())
+				results[key] = worker.buffer.drain();
+		}
+	}
+
+	/**
+	 * Processes a range of containers, which is split as long as it contains enough events.
+	 */
+	private final class ContainerTask extends RecursiveAction {
+
+		/**
+		 * Ranges with fewer events are not split further.
+		 */
+		private static final int MIN_EVENTS = 4096;
+
+		private final ParallelDay parallel;
+		private final int from;
+		private final int to;
+
+		private ContainerTask(ParallelDay parallel, int from, int to) {
+			this.parallel = parallel;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			int[] offsets = parallel.partition.offsets;
+			if (to - from > 1 && offsets[to] - offsets[from] > MIN_EVENTS) {
+				int mid = (from + to) >>> 1;
+				invokeAll(new ContainerTask(parallel, from, mid), new ContainerTask(parallel, mid, to));
+				return;
+			}
+
+			Worker worker = workers.get();
+			for (int key = from; key < to; key++)
+				parallel.process(key, worker);
+		}
+	}
+
+	/**
+	 * Daily state update of a consecutive range of persons, performed by its own progression and testing models.
+	 */
+	private final class StateUpdate {
+
+		/**
+		 * Number of persons per chunk. This is fixed, so that results do not depend on the number of threads.
+		 */
+		private static final int SIZE = 4096;
+
+		private final int from;
+		private final int to;
+		private final ProgressionModel progression;
+		private final TestingModel testing;
+		private final EpisimReporting.StatusBuffer events = new EpisimReporting.StatusBuffer();
+
+		private StateUpdate(int from, int to, ProgressionModel progression, TestingModel testing) {
+			this.from = from;
+			this.to = to;
+			this.progression = progression;
+			this.testing = testing;
+		}
+
+		private void run(int iteration) {
+			reporting.bufferPersonStatus(events);
+			try {
+				for (int i = from; i < to; i++) {
+					progression.updateState(persons[i], iteration);
+					testing.performTesting(persons[i], iteration);
+				}
+			} finally {
+				reporting.bufferPersonStatus(null);
+			}
+		}
+	}
+
+	/**
+	 * Task that processes a range of {@link StateUpdate}s.
+	 */
+	private static final class UpdateTask extends RecursiveAction {
+
+		private final StateUpdate[] chunks;
+		private final int iteration;
+		private final int from;
+		private final int to;
+
+		private UpdateTask(StateUpdate[] chunks, int iteration, int from, int to) {
+			this.chunks = chunks;
+			this.iteration = iteration;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > 1) {
+				int mid = (from + to) >>> 1;
+				invokeAll(new UpdateTask(chunks, iteration, from, mid), new UpdateTask(chunks, iteration, mid, to));
+				return;
+			}
+
+			for (int i = from; i < to; i++)
+				chunks[i].run(iteration);
+		}
+	}
+
+	/**
+	 * Derive an independent seed for a container or chunk of persons from the seed of the day.
+	 */
+	private static long mixSeed(long seed, int key) {
+		// finalizer of splitmix64
+		long z = seed ^ (key * 0x9e3779b97f4a7c15L);
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
 	}
 
 	/**
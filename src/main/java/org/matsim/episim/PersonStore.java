@@ -0,0 +1,488 @@
+/*-
+ * #%L
+ * MATSim Episim
+ * %%
+ * Copyright (C) 2020 matsim-org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.matsim.episim;
+
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import org.matsim.api.core.v01.Id;
+import org.matsim.episim.model.VirusStrain;
+import org.matsim.facilities.ActivityFacility;
+
+import javax.annotation.Nullable;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Column store for the state of {@link EpisimPerson}s. Each person occupies one slot, the state of all persons is held in
+ * primitive arrays indexed by that slot. Enums are stored by their ordinal.
+ * <p>
+ * All persons of a simulation share one store, which is reordered by the index of the persons via {@link #reorder(EpisimPerson[])},
+ * so that sweeps over all persons access the arrays linearly.
+ * <p>
+ * The store also counts the persons per district in each disease, quarantine and vaccination status. Status changes need
+ * to go through the setters of this class to keep the counts up to date, which are safe to be called from multiple threads
+ * for different persons.
+ * <p>
+ * One store is bound per simulation in the {@link EpisimModule}, models can inject it to look up persons.
+ */
+public final class PersonStore {
+
+	static final EpisimPerson.DiseaseStatus[] DISEASE_STATUS = EpisimPerson.DiseaseStatus.values();
+	static final EpisimPerson.QuarantineStatus[] QUARANTINE_STATUS = EpisimPerson.QuarantineStatus.values();
+	static final EpisimPerson.VaccinationStatus[] VACCINATION_STATUS = EpisimPerson.VaccinationStatus.values();
+	static final EpisimPerson.TestStatus[] TEST_STATUS = EpisimPerson.TestStatus.values();
+	static final VirusStrain[] VIRUS_STRAIN = VirusStrain.values();
+
+	private static final int DAYS = 7;
+
+	/**
+	 * District of persons without the district attribute.
+	 */
+	static final String UNKNOWN_DISTRICT = "unknown";
+
+	byte[] diseaseStatus;
+	byte[] quarantineStatus;
+	byte[] vaccinationStatus;
+	byte[] testStatus;
+	byte[] virusStrain;
+
+	/**
+	 * Iteration of the last change, negative if never set.
+	 */
+	int[] quarantineDate;
+	int[] vaccinationDate;
+	int[] testDate;
+
+	int[] positionInTrajectory;
+	int[] age;
+	boolean[] traceable;
+
+	/**
+	 * Start and end of each weekday in the trajectory, 7 entries per person.
+	 */
+	int[] startOfDay;
+	int[] endOfDay;
+
+	/**
+	 * First time of change to each disease status, {@link Double#NaN} if never set. One entry per status and person.
+	 */
+	double[] statusChanges;
+
+	/**
+	 * District of each person, as index into {@link #districts}.
+	 */
+	int[] district;
+
+	private final List<String> districts = new ArrayList<>();
+	private final Object2IntMap<String> districtIndex = new Object2IntOpenHashMap<>();
+
+	/**
+	 * Household of each person, as index into {@link #households}. Negative if unknown.
+	 */
+	int[] household;
+
+	private final List<String> households = new ArrayList<>();
+	private final Object2IntMap<String> householdIndex = new Object2IntOpenHashMap<>();
+
+	/**
+	 * Number of persons per district and status, at position {@code district * values + ordinal}.
+	 */
+	private AtomicIntegerArray diseaseCounts = new AtomicIntegerArray(0);
+	private AtomicIntegerArray quarantineCounts = new AtomicIntegerArray(0);
+	private AtomicIntegerArray vaccinationCounts = new AtomicIntegerArray(0);
+
+	/**
+	 * Number of persons per district that have been tested at {@link #testDay}.
+	 */
+	private AtomicIntegerArray testCounts = new AtomicIntegerArray(0);
+	private int testDay = Integer.MIN_VALUE;
+
+	private int size;
+
+	/**
+	 * Traced contacts between persons.
+	 */
+	final ContactStore contacts = new ContactStore();
+
+	/**
+	 * Persons by the facility or vehicle they have been infected in, ordered by their index and maintained through {@link #updateInfectedAt}.
+	 */
+	private final Map<Id<ActivityFacility>, SortedSet<EpisimPerson>> infectedAt = new HashMap<>();
+
+	PersonStore(int capacity) {
+		allocate(Math.max(capacity, 1));
+	}
+
+	/**
+	 * Adds a person with default state.
+	 *
+	 * @param district district of the person, may be null if unknown
+	 * @return slot of the new person
+	 */
+	int add(@Nullable String district) {
+		if (size == diseaseStatus.length)
+			allocate(size + (size >> 1) + 1);
+
+		int slot = size++;
+
+		diseaseStatus[slot] = (byte) EpisimPerson.DiseaseStatus.susceptible.ordinal();
+		quarantineStatus[slot] = (byte) EpisimPerson.QuarantineStatus.no.ordinal();
+		vaccinationStatus[slot] = (byte) EpisimPerson.VaccinationStatus.no.ordinal();
+		testStatus[slot] = (byte) EpisimPerson.TestStatus.untested.ordinal();
+		virusStrain[slot] = (byte) VirusStrain.SARS_CoV_2.ordinal();
+		quarantineDate[slot] = -1;
+		vaccinationDate[slot] = -1;
+		testDate[slot] = -1;
+		age[slot] = -1;
+		household[slot] = -1;
+		Arrays.fill(statusChanges, slot * DISEASE_STATUS.length, (slot + 1) * DISEASE_STATUS.length, Double.NaN);
+
+		int d = resolveDistrict(district);
+		this.district[slot] = d;
+		diseaseCounts.incrementAndGet(d * DISEASE_STATUS.length + diseaseStatus[slot]);
+		quarantineCounts.incrementAndGet(d * QUARANTINE_STATUS.length + quarantineStatus[slot]);
+		vaccinationCounts.incrementAndGet(d * VACCINATION_STATUS.length + vaccinationStatus[slot]);
+
+		return slot;
+	}
+
+	/**
+	 * Index of a district, which is registered if not yet known.
+	 */
+	private int resolveDistrict(@Nullable String name) {
+		if (name == null)
+			name = UNKNOWN_DISTRICT;
+
+		if (districtIndex.containsKey(name))
+			return districtIndex.getInt(name);
+
+		int d = districts.size();
+		districts.add(name);
+		districtIndex.put(name, d);
+
+		int n = districts.size();
+		diseaseCounts = resize(diseaseCounts, n * DISEASE_STATUS.length);
+		quarantineCounts = resize(quarantineCounts, n * QUARANTINE_STATUS.length);
+		vaccinationCounts = resize(vaccinationCounts, n * VACCINATION_STATUS.length);
+		testCounts = resize(testCounts, n);
+
+		return d;
+	}
+
+	void setDiseaseStatus(int slot, EpisimPerson.DiseaseStatus status) {
+		int offset = district[slot] * DISEASE_STATUS.length;
+		diseaseCounts.decrementAndGet(offset + diseaseStatus[slot]);
+		diseaseCounts.incrementAndGet(offset + status.ordinal());
+		diseaseStatus[slot] = (byte) status.ordinal();
+	}
+
+	void setQuarantineStatus(int slot, EpisimPerson.QuarantineStatus status) {
+		int offset = district[slot] * QUARANTINE_STATUS.length;
+		quarantineCounts.decrementAndGet(offset + quarantineStatus[slot]);
+		quarantineCounts.incrementAndGet(offset + status.ordinal());
+		quarantineStatus[slot] = (byte) status.ordinal();
+	}
+
+	void setVaccinationStatus(int slot, EpisimPerson.VaccinationStatus status) {
+		int offset = district[slot] * VACCINATION_STATUS.length;
+		vaccinationCounts.decrementAndGet(offset + vaccinationStatus[slot]);
+		vaccinationCounts.incrementAndGet(offset + status.ordinal());
+		vaccinationStatus[slot] = (byte) status.ordinal();
+	}
+
+	void setTestDate(int slot, int date) {
+		if (testDate[slot] == testDay)
+			testCounts.decrementAndGet(district[slot]);
+		if (date == testDay)
+			testCounts.incrementAndGet(district[slot]);
+
+		testDate[slot] = date;
+	}
+
+	/**
+	 * Start counting the tests of a new day. Test dates are never in the future, so nobody has been tested at that day yet.
+	 */
+	void setTestDay(int day) {
+		if (day == testDay)
+			return;
+
+		testDay = day;
+		for (int i = 0; i < testCounts.length(); i++)
+			testCounts.set(i, 0);
+	}
+
+	/**
+	 * Recompute all counts from the state of the persons. Needed after the state was changed without the setters,
+	 * e.g. when reading a snapshot or after copying persons into this store.
+	 */
+	void recount() {
+		diseaseCounts = new AtomicIntegerArray(diseaseCounts.length());
+		quarantineCounts = new AtomicIntegerArray(quarantineCounts.length());
+		vaccinationCounts = new AtomicIntegerArray(vaccinationCounts.length());
+		testCounts = new AtomicIntegerArray(testCounts.length());
+
+		for (int i = 0; i < size; i++) {
+			int d = district[i];
+			diseaseCounts.incrementAndGet(d * DISEASE_STATUS.length + diseaseStatus[i]);
+			quarantineCounts.incrementAndGet(d * QUARANTINE_STATUS.length + quarantineStatus[i]);
+			vaccinationCounts.incrementAndGet(d * VACCINATION_STATUS.length + vaccinationStatus[i]);
+			if (testDate[i] == testDay)
+				testCounts.incrementAndGet(d);
+		}
+	}
+
+	/**
+	 * Writes the columns of all persons as blocks of primitive values.
+	 */
+	void writeColumns(DataOutput out) throws IOException {
+		out.writeInt(size);
+		out.write(diseaseStatus, 0, size);
+		out.write(virusStrain, 0, size);
+		out.write(quarantineStatus, 0, size);
+		out.write(vaccinationStatus, 0, size);
+		out.write(testStatus, 0, size);
+		EpisimUtils.writeInts(out, quarantineDate, size);
+		EpisimUtils.writeInts(out, vaccinationDate, size);
+		EpisimUtils.writeInts(out, testDate, size);
+		EpisimUtils.writeInts(out, positionInTrajectory, size);
+		for (int i = 0; i < size; i++)
+			out.writeBoolean(traceable[i]);
+
+		EpisimUtils.writeDoubles(out, statusChanges, size * DISEASE_STATUS.length);
+	}
+
+	/**
+	 * Reads the columns written by {@link #writeColumns(DataOutput)}, the number of persons has to match.
+	 * Counts are updated afterwards.
+	 */
+	void readColumns(DataInput in) throws IOException {
+		int n = in.readInt();
+		if (n != size)
+			throw new IllegalStateException("Snapshot contains " + n + " persons, but there are " + size);
+
+		in.readFully(diseaseStatus, 0, size);
+		in.readFully(virusStrain, 0, size);
+		in.readFully(quarantineStatus, 0, size);
+		in.readFully(vaccinationStatus, 0, size);
+		in.readFully(testStatus, 0, size);
+		EpisimUtils.readInts(in, quarantineDate, size);
+		EpisimUtils.readInts(in, vaccinationDate, size);
+		EpisimUtils.readInts(in, testDate, size);
+		EpisimUtils.readInts(in, positionInTrajectory, size);
+		for (int i = 0; i < size; i++)
+			traceable[i] = in.readBoolean();
+
+		EpisimUtils.readDoubles(in, statusChanges, size * DISEASE_STATUS.length);
+
+		recount();
+	}
+
+	/**
+	 * Index of a household, which is registered if not yet known.
+	 *
+	 * @return -1 if {@code name} is null
+	 */
+	int resolveHousehold(@Nullable String name) {
+		if (name == null)
+			return -1;
+
+		if (householdIndex.containsKey(name))
+			return householdIndex.getInt(name);
+
+		int h = households.size();
+		households.add(name);
+		householdIndex.put(name, h);
+		return h;
+	}
+
+	/**
+	 * Number of known districts.
+	 */
+	int getNumDistricts() {
+		return districts.size();
+	}
+
+	String getDistrictName(int district) {
+		return districts.get(district);
+	}
+
+	int count(int district, EpisimPerson.DiseaseStatus status) {
+		return diseaseCounts.get(district * DISEASE_STATUS.length + status.ordinal());
+	}
+
+	int count(int district, EpisimPerson.QuarantineStatus status) {
+		return quarantineCounts.get(district * QUARANTINE_STATUS.length + status.ordinal());
+	}
+
+	int count(int district, EpisimPerson.VaccinationStatus status) {
+		return vaccinationCounts.get(district * VACCINATION_STATUS.length + status.ordinal());
+	}
+
+	/**
+	 * Number of persons in a district tested at {@code day}.
+	 */
+	int countTested(int district, int day) {
+		return day == testDay ? testCounts.get(district) : 0;
+	}
+
+	/**
+	 * Moves a person from the infection location {@code from} to {@code to} in the index. Either may be null.
+	 * Infections are only applied on the main thread, so this method is not synchronized. The person needs to have its final index.
+	 */
+	void updateInfectedAt(EpisimPerson person, @Nullable Id<ActivityFacility> from, @Nullable Id<ActivityFacility> to) {
+		if (from == to)
+			return;
+
+		if (from != null) {
+			SortedSet<EpisimPerson> set = infectedAt.get(from);
+			if (set != null) {
+				set.remove(person);
+				if (set.isEmpty())
+					infectedAt.remove(from);
+			}
+		}
+
+		if (to != null)
+			infectedAt.computeIfAbsent(to, k -> new TreeSet<>(Comparator.comparingInt(EpisimPerson::getIndex))).add(person);
+	}
+
+	/**
+	 * Persons infected at a facility or vehicle, ordered by their index. The returned set is a view and must not be modified.
+	 */
+	public SortedSet<EpisimPerson> getInfectedAt(Id<ActivityFacility> location) {
+		SortedSet<EpisimPerson> set = infectedAt.get(location);
+		return set != null ? Collections.unmodifiableSortedSet(set) : Collections.emptySortedSet();
+	}
+
+	/**
+	 * Remove the traced contacts of all persons before a certain time. Must not be called concurrently to the state updates
+	 * of persons, which read the contacts.
+	 */
+	public void clearContacts(double before) {
+		contacts.clear(before);
+	}
+
+	/**
+	 * Number of occupied slots.
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Reorders the slots, so that the state of {@code persons[i]} is afterwards located at slot {@code i}.
+	 * All persons of this store need to be given.
+	 */
+	void reorder(EpisimPerson[] persons) {
+		if (persons.length != size)
+			throw new IllegalArgumentException("Store contains " + size + " persons, but " + persons.length + " were given");
+
+		int[] order = new int[size];
+		for (int i = 0; i < size; i++) {
+			if (persons[i].getStore() != this)
+				throw new IllegalArgumentException("Person " + persons[i].getPersonId() + " is not part of this store");
+
+			order[i] = persons[i].getSlot();
+		}
+
+		diseaseStatus = gather(diseaseStatus, order, 1);
+		quarantineStatus = gather(quarantineStatus, order, 1);
+		vaccinationStatus = gather(vaccinationStatus, order, 1);
+		testStatus = gather(testStatus, order, 1);
+		virusStrain = gather(virusStrain, order, 1);
+		quarantineDate = gather(quarantineDate, order, 1);
+		vaccinationDate = gather(vaccinationDate, order, 1);
+		testDate = gather(testDate, order, 1);
+		positionInTrajectory = gather(positionInTrajectory, order, 1);
+		age = gather(age, order, 1);
+		district = gather(district, order, 1);
+		household = gather(household, order, 1);
+		startOfDay = gather(startOfDay, order, DAYS);
+		endOfDay = gather(endOfDay, order, DAYS);
+
+		boolean[] t = new boolean[size];
+		double[] changes = new double[size * DISEASE_STATUS.length];
+		for (int i = 0; i < size; i++) {
+			t[i] = traceable[order[i]];
+			System.arraycopy(statusChanges, order[i] * DISEASE_STATUS.length, changes, i * DISEASE_STATUS.length, DISEASE_STATUS.length);
+		}
+		traceable = t;
+		statusChanges = changes;
+
+		for (int i = 0; i < size; i++)
+			persons[i].setSlot(i);
+	}
+
+	private static byte[] gather(byte[] array, int[] order, int width) {
+		byte[] result = new byte[order.length * width];
+		for (int i = 0; i < order.length; i++)
+			System.arraycopy(array, order[i] * width, result, i * width, width);
+
+		return result;
+	}
+
+	private static int[] gather(int[] array, int[] order, int width) {
+		int[] result = new int[order.length * width];
+		for (int i = 0; i < order.length; i++)
+			System.arraycopy(array, order[i] * width, result, i * width, width);
+
+		return result;
+	}
+
+	private void allocate(int capacity) {
+		diseaseStatus = resize(diseaseStatus, capacity);
+		quarantineStatus = resize(quarantineStatus, capacity);
+		vaccinationStatus = resize(vaccinationStatus, capacity);
+		testStatus = resize(testStatus, capacity);
+		virusStrain = resize(virusStrain, capacity);
+		quarantineDate = resize(quarantineDate, capacity);
+		vaccinationDate = resize(vaccinationDate, capacity);
+		testDate = resize(testDate, capacity);
+		positionInTrajectory = resize(positionInTrajectory, capacity);
+		age = resize(age, capacity);
+		traceable = traceable == null ? new boolean[capacity] : Arrays.copyOf(traceable, capacity);
+		startOfDay = resize(startOfDay, capacity * DAYS);
+		endOfDay = resize(endOfDay, capacity * DAYS);
+		statusChanges = statusChanges == null ? new double[capacity * DISEASE_STATUS.length] :
+				Arrays.copyOf(statusChanges, capacity * DISEASE_STATUS.length);
+		district = resize(district, capacity);
+		household = resize(household, capacity);
+	}
+
+	private static AtomicIntegerArray resize(AtomicIntegerArray array, int length) {
+		AtomicIntegerArray result = new AtomicIntegerArray(length);
+		for (int i = 0; i < array.length(); i++)
+			result.set(i, array.get(i));
+
+		return result;
+	}
+
+	private static byte[] resize(byte[] array, int capacity) {
+		return array == null ? new byte[capacity] : Arrays.copyOf(array, capacity);
+	}
+
+	private static int[] resize(int[] array, int capacity) {
+		return array == null ? new int[capacity] : Arrays.copyOf(array, capacity);
+	}
+}
@@ -0,0 +1,278 @@
+/*-
+ * #%L
+ * MATSim Episim
+ * %%
+ * Copyright (C) 2020 matsim-org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.matsim.episim;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.facilities.ActivityFacility;
+import org.matsim.vehicles.Vehicle;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.DayOfWeek;
+import java.util.*;
+
+/**
+ * Pre-compiled, columnar binary representation of the events replayed by the {@link ReplayHandler}.
+ * Events are stored already filtered, with mapped facility ids and sorted by time, so that no xml parsing is needed at startup.
+ * <p>
+ * The file consists of a dictionary section with all ids and activity types, followed by one block per distinct {@link CompactEvents.Day}.
+ * Each block stores its weekdays and the columns kind (byte), time (double), person (int), container (int),
+ * activity type (short), link (int) and the coordinates of activity start events (double).
+ * Columns are read via memory-mapped regions, so the file size is not limited by a single mapping.
+ * The dictionary also records the {@link EpisimConfigGroup.FacilitiesHandling} used to create the facility ids.
+ * Files of version 1 stored times as float and are still readable.
+ *
+ * @see #write(Path, CompactEvents)
+ * @see #read(Path)
+ */
+public final class ReplayEventsFile {
+
+	/**
+	 * File extension that identifies compiled event files.
+	 */
+	public static final String EXTENSION = ".events.bin";
+
+	private static final Logger log = LogManager.getLogger(ReplayEventsFile.class);
+
+	private static final int MAGIC = 0x45505345;
+	private static final int VERSION = 2;
+
+	private ReplayEventsFile() {
+	}
+
+	/**
+	 * Whether the given path points to a compiled event file.
+	 */
+	public static boolean isCompiled(String path) {
+		return path.endsWith(EXTENSION);
+	}
+
+	/**
+	 * Write events for all weekdays into a compiled file. Days sharing the same {@link CompactEvents.Day} are stored only once.
+	 */
+	public static void write(Path path, CompactEvents events) throws IOException {
+
+		// group days by identical arrays
+		Map<CompactEvents.Day, EnumSet<DayOfWeek>> blocks = new IdentityHashMap<>();
+		List<CompactEvents.Day> order = new ArrayList<>();
+		for (DayOfWeek day : DayOfWeek.values()) {
+			CompactEvents.Day d = events.get(day);
+			if (d == null) continue;
+
+			blocks.computeIfAbsent(d, k -> {
+				order.add(k);
+				return EnumSet.noneOf(DayOfWeek.class);
+			}).add(day);
+		}
+
+		ByteArrayOutputStream dict = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(dict)) {
+			writeStrings(out, events.persons);
+			writeStrings(out, events.facilities);
+			writeStrings(out, events.vehicles);
+			writeStrings(out, events.links);
+			writeStrings(out, events.actTypes);
+			EpisimUtils.writeChars(out, events.facilitiesHandling != null ? events.facilitiesHandling.name() : "");
+		}
+
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 1 << 16))) {
+
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(dict.size());
+			dict.writeTo(out);
+
+			out.writeInt(order.size());
+			for (CompactEvents.Day d : order) {
+
+				int mask = 0;
+				for (DayOfWeek day : blocks.get(d))
+					mask |= 1 << day.ordinal();
+
+				int n = d.size();
+
+				out.writeByte(mask);
+				out.writeInt(n);
+				out.writeInt(d.starts());
+
+				out.write(d.kind);
+
+				for (int i = 0; i < n; i++)
+					out.writeDouble(d.time[i]);
+
+				for (int i = 0; i < n; i++)
+					out.writeInt(d.person[i]);
+
+				for (int i = 0; i < n; i++)
+					out.writeInt(d.container[i]);
+
+				for (int i = 0; i < n; i++)
+					out.writeShort(d.actType[i]);
+
+				for (int i = 0; i < n; i++)
+					out.writeInt(d.link[i]);
+
+				for (int i = 0; i < d.starts(); i++)
+					out.writeDouble(d.x[i]);
+
+				for (int i = 0; i < d.starts(); i++)
+					out.writeDouble(d.y[i]);
+
+				log.info("Wrote {} events for {}", n, blocks.get(d));
+			}
+		}
+	}
+
+	/**
+	 * Read a compiled event file.
+	 *
+	 * @return events for each weekday contained in the file, days from the same block share the same arrays.
+	 */
+	public static CompactEvents read(Path path) throws IOException {
+
+		Map<DayOfWeek, CompactEvents.Day> days = new EnumMap<>(DayOfWeek.class);
+
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+
+			ByteBuffer header = map(channel, 0, 16);
+			if (header.getInt() != MAGIC)
+				throw new IllegalStateException("Not a compiled event file: " + path);
+
+			int version = header.getInt();
+			if (version != VERSION && version != 1)
+				throw new IllegalStateException("Unsupported version " + version + " of compiled event file: " + path);
+
+			long pos = 16;
+			long dictSize = header.getLong();
+
+			ByteBuffer dict = map(channel, pos, dictSize);
+			pos += dictSize;
+
+			Id<Person>[] persons = readIds(dict, Person.class);
+			Id<ActivityFacility>[] facilities = readIds(dict, ActivityFacility.class);
+			Id<Vehicle>[] vehicles = readIds(dict, Vehicle.class);
+			Id<Link>[] links = readIds(dict, Link.class);
+			String[] actTypes = readStrings(dict);
+
+			EpisimConfigGroup.FacilitiesHandling handling = null;
+			if (version > 1) {
+				String name = readString(dict);
+				if (!name.isEmpty())
+					handling = EpisimConfigGroup.FacilitiesHandling.valueOf(name);
+			}
+
+			int numBlocks = map(channel, pos, 4).getInt();
+			pos += 4;
+
+			for (int b = 0; b < numBlocks; b++) {
+
+				ByteBuffer blockHeader = map(channel, pos, 9);
+				pos += 9;
+
+				int mask = blockHeader.get();
+				int n = blockHeader.getInt();
+				int starts = blockHeader.getInt();
+
+				CompactEvents.Day d = new CompactEvents.Day(n, starts);
+
+				map(channel, pos, n).get(d.kind);
+				pos += n;
+
+				if (version == 1) {
+					FloatBuffer time = map(channel, pos, 4L * n).asFloatBuffer();
+					for (int i = 0; i < n; i++)
+						d.time[i] = time.get();
+					pos += 4L * n;
+				} else {
+					map(channel, pos, 8L * n).asDoubleBuffer().get(d.time);
+					pos += 8L * n;
+				}
+
+				map(channel, pos, 4L * n).asIntBuffer().get(d.person);
+				pos += 4L * n;
+				map(channel, pos, 4L * n).asIntBuffer().get(d.container);
+				pos += 4L * n;
+				map(channel, pos, 2L * n).asShortBuffer().get(d.actType);
+				pos += 2L * n;
+				map(channel, pos, 4L * n).asIntBuffer().get(d.link);
+				pos += 4L * n;
+				map(channel, pos, 8L * starts).asDoubleBuffer().get(d.x);
+				pos += 8L * starts;
+				map(channel, pos, 8L * starts).asDoubleBuffer().get(d.y);
+				pos += 8L * starts;
+
+				for (DayOfWeek day : DayOfWeek.values()) {
+					if ((mask & (1 << day.ordinal())) != 0)
+						days.put(day, d);
+				}
+			}
+
+			return new CompactEvents(persons, facilities, vehicles, links, actTypes, days, handling);
+		}
+	}
+
+	private static MappedByteBuffer map(FileChannel channel, long pos, long size) throws IOException {
+		return channel.map(FileChannel.MapMode.READ_ONLY, pos, size);
+	}
+
+	private static void writeStrings(DataOutput out, Object[] values) throws IOException {
+		out.writeInt(values.length);
+		for (Object value : values)
+			EpisimUtils.writeChars(out, value.toString());
+	}
+
+	private static String[] readStrings(ByteBuffer buffer) {
+		int n = buffer.getInt();
+		String[] result = new String[n];
+		for (int i = 0; i < n; i++)
+			result[i] = readString(buffer);
+
+		return result;
+	}
+
+	private static String readString(ByteBuffer buffer) {
+		byte[] content = new byte[buffer.getInt()];
+		buffer.get(content);
+		return new String(content, StandardCharsets.ISO_8859_1);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> Id<T>[] readIds(ByteBuffer buffer, Class<T> type) {
+		String[] names = readStrings(buffer);
+		Id<T>[] result = new Id[names.length];
+		for (int i = 0; i < names.length; i++)
+			result[i] = Id.create(names[i], type);
+
+		return result;
+	}
+
+}
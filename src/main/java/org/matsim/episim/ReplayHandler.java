@@ -45,6 +45,10 @@ import org.matsim.core.router.TripStructureUtils;
 import org.matsim.facilities.ActivityFacility;
 
 import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.DayOfWeek;
 import java.util.*;
 
@@ -81,7 +85,7 @@ public final class ReplayHandler {
 
 
 	private final Scenario scenario;
-	private final Map<DayOfWeek, List<Event>> events = new EnumMap<>(DayOfWeek.class);
+	private final CompactEvents events;
 
 	/**
 	 * Constructor with optional scenario. Events will be read from given {@link EpisimConfigGroup#getInputEventsFiles()}.
@@ -91,24 +95,53 @@ public final class ReplayHandler {
 		this.scenario = scenario;
 		this.episimConfig = config;
 
+		if (config.getFacilitiesHandling() == null)
+			throw new IllegalStateException("No facilities handling defined in episim config.");
+
+		CompactEvents.Builder builder = new CompactEvents.Builder(config.getFacilitiesHandling());
+		CompactEvents compiled = null;
+
 		for (EpisimConfigGroup.EventFileParams input : config.getInputEventsFiles()) {
 
+			if (ReplayEventsFile.isCompiled(input.getPath())) {
+				compiled = readCompiled(input, config.getFacilitiesHandling());
+
+				// compiled events can be used directly if there is nothing else to merge
+				if (config.getInputEventsFiles().size() == 1)
+					break;
+
+				Map<CompactEvents.Day, CompactEvents.Day> copied = new IdentityHashMap<>();
+				for (DayOfWeek day : input.getDays()) {
+					if (builder.contains(day))
+						throw new IllegalStateException("Events for day " + day + " already defined!");
+
+					builder.put(day, copied.computeIfAbsent(compiled.get(day), d -> builder.copy(compiled, d)));
+				}
+
+				compiled = null;
+				continue;
+			}
+
 			rnd = new SplittableRandom(0);
 
-			List<Event> eventsForDay = new ArrayList<>();
 			EventsManager manager = EventsUtils.createEventsManager();
-			manager.addHandler(new EventReader(eventsForDay));
+			manager.addHandler(new EventReader(builder));
 			EventsUtils.readEvents(manager, input.getPath());
 			manager.finishProcessing();
 
-			log.info("Read in {} events for {}, with time range {} - {}", eventsForDay.size(), input.getDays(), eventsForDay.get(0).getTime(),
-					eventsForDay.get(eventsForDay.size() - 1).getTime());
+			CompactEvents.Day eventsForDay = builder.finishDay();
+
+			if (eventsForDay.size() > 0)
+				log.info("Read in {} events for {}, with time range {} - {}", eventsForDay.size(), input.getDays(), eventsForDay.time[0],
+						eventsForDay.time[eventsForDay.size() - 1]);
+			else
+				log.warn("Read in no events for {} from {}", input.getDays(), input.getPath());
 
 			for (DayOfWeek day : input.getDays()) {
-				if (events.containsKey(day))
+				if (builder.contains(day))
 					throw new IllegalStateException("Events for day " + day + " already defined!");
 
-				events.put(day, eventsForDay);
+				builder.put(day, eventsForDay);
 			}
 
 			started.clear();
@@ -118,8 +151,10 @@ public final class ReplayHandler {
 			log.warn("Adjusted {} leisure activities", adjusted);
 		}
 
-		if (events.size() != 7) {
-			EnumSet<DayOfWeek> missing = EnumSet.complementOf(EnumSet.copyOf(events.keySet()));
+		this.events = compiled != null ? compiled : builder.build();
+
+		if (this.events.getDays().size() != 7) {
+			EnumSet<DayOfWeek> missing = EnumSet.complementOf(EnumSet.copyOf(this.events.getDays()));
 			throw new IllegalStateException("Event definition missing for days: " + missing);
 		}
 	}
@@ -131,43 +166,70 @@ public final class ReplayHandler {
 	 * @param events ordered events for all weekdays
 	 */
 	public ReplayHandler(Map<DayOfWeek, List<Event>> events) {
-		this.events.putAll(events);
+		this.events = CompactEvents.of(events);
 		this.scenario = null;
 		this.episimConfig = null;
 	}
 
+	/**
+	 * Read events from a file created by {@link ReplayEventsFile#write(Path, CompactEvents)}.
+	 *
+	 * @param handling facilities handling of the config, which must match the one used to compile the file
+	 */
+	private static CompactEvents readCompiled(EpisimConfigGroup.EventFileParams input, EpisimConfigGroup.FacilitiesHandling handling) {
+
+		CompactEvents compiled;
+		try {
+			compiled = ReplayEventsFile.read(Paths.get(input.getPath()));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+
+		if (compiled.facilitiesHandling == null)
+			log.warn("Compiled events file {} does not record its facilities handling, it can not be validated against {}", input.getPath(), handling);
+		else if (compiled.facilitiesHandling != handling)
+			throw new IllegalStateException("Compiled events file " + input.getPath() + " was created with facilities handling "
+					+ compiled.facilitiesHandling + ", but config uses " + handling);
+
+		for (DayOfWeek day : input.getDays()) {
+			if (!compiled.getDays().contains(day))
+				throw new IllegalStateException("Compiled events file " + input.getPath() + " does not contain day " + day);
+		}
+
+		log.info("Read in compiled events for {} from {}", input.getDays(), input.getPath());
+		return compiled;
+	}
+
 	/**
 	 * Replays event add modifies attributes based on current iteration.
 	 */
 	public void replayEvents(final InfectionEventHandler infectionHandler, DayOfWeek day) {
-		for (final Event e : events.get(day)) {
-			if (e instanceof ActivityStartEvent) {
-				infectionHandler.handleEvent((ActivityStartEvent) e);
-			} else if (e instanceof ActivityEndEvent) {
-				infectionHandler.handleEvent((ActivityEndEvent) e);
-			} else if (e instanceof PersonEntersVehicleEvent) {
-				infectionHandler.handleEvent((PersonEntersVehicleEvent) e);
-			} else {
-				infectionHandler.handleEvent((PersonLeavesVehicleEvent) e);
-			}
-		}
+		infectionHandler.replay(events, events.get(day));
 	}
 
 	/**
-	 * All available events.
+	 * All available events. The event objects are created from the compact representation on each call,
+	 * so the result should only be kept as long as needed.
 	 */
 	public Map<DayOfWeek, List<Event>> getEvents() {
-		return new EnumMap<>(events);
+		return events.toEvents(scenario);
+	}
+
+	/**
+	 * All available events as primitive arrays.
+	 */
+	public CompactEvents getCompactEvents() {
+		return events;
 	}
 
 	/**
-	 * Helper class to read events one time.
+	 * Helper class to read events one time. Events are appended directly to the compact representation.
 	 */
 	private final class EventReader implements BasicEventHandler {
 
-		private final List<Event> events;
+		private final CompactEvents.Builder events;
 
-		private EventReader(List<Event> events) {
+		private EventReader(CompactEvents.Builder events) {
 			this.events = events;
 		}
 
@@ -192,9 +254,7 @@ public final class ReplayHandler {
 					started.add(e.getPersonId());
 				}
 
-				event = new ActivityStartEvent(e.getTime(), e.getPersonId(), e.getLinkId(),
-						                       createEpisimFacilityId(e),
-						                       e.getActType().intern(), coord);
+				events.activityStart(e.getTime(), e.getPersonId(), e.getLinkId(), createEpisimFacilityId(e), e.getActType(), coord);
 			} else if (event instanceof ActivityEndEvent) {
 				ActivityEndEvent e = (ActivityEndEvent) event;
 
@@ -217,20 +277,18 @@ public final class ReplayHandler {
 					}
 				}
 
-				event = new ActivityEndEvent(time, e.getPersonId(), e.getLinkId(),
-						createEpisimFacilityId(e),
-						actType);
+				events.activityEnd(time, e.getPersonId(), e.getLinkId(), createEpisimFacilityId(e), actType);
 			} else if (event instanceof PersonEntersVehicleEvent) {
-				if (!shouldHandlePersonEvent((PersonEntersVehicleEvent) event)) {
-					return;
+				PersonEntersVehicleEvent e = (PersonEntersVehicleEvent) event;
+				if (shouldHandlePersonEvent(e)) {
+					events.entersVehicle(e.getTime(), e.getPersonId(), e.getVehicleId());
 				}
 			} else if (event instanceof PersonLeavesVehicleEvent) {
-				if (!shouldHandlePersonEvent((PersonLeavesVehicleEvent) event)) {
-					return;
+				PersonLeavesVehicleEvent e = (PersonLeavesVehicleEvent) event;
+				if (shouldHandlePersonEvent(e)) {
+					events.leavesVehicle(e.getTime(), e.getPersonId(), e.getVehicleId());
 				}
 			}
-
-			events.add(event);
 		}
 
 
@@ -0,0 +1,66 @@
+/*-
+ * #%L
+ * MATSim Episim
+ * %%
+ * Copyright (C) 2020 matsim-org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.matsim.episim;
+
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes each distinct string only once into a stream, repeated occurrences are written as reference to the first one.
+ * The same instance must not be used for writing and reading.
+ */
+final class StringTable {
+
+	private final Object2IntMap<String> index = new Object2IntOpenHashMap<>();
+	private final List<String> values = new ArrayList<>();
+
+	StringTable() {
+		index.defaultReturnValue(-1);
+	}
+
+	void write(DataOutput out, String value) throws IOException {
+		int ref = index.getInt(value);
+		out.writeInt(ref);
+
+		if (ref == -1) {
+			EpisimUtils.writeChars(out, value);
+			index.put(value, index.size());
+		}
+	}
+
+	String read(DataInput in) throws IOException {
+		int ref = in.readInt();
+		if (ref >= 0)
+			return values.get(ref);
+
+		// activity types are interned throughout the simulation
+		String value = EpisimUtils.readChars(in).intern();
+		values.add(value);
+		return value;
+	}
+
+}
@@ -22,10 +22,9 @@ package org.matsim.episim.analysis;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.matsim.core.api.experimental.events.EventsManager;
-import org.matsim.core.events.EventsUtils;
 import org.matsim.episim.EpisimPerson.DiseaseStatus;
 import org.matsim.episim.events.*;
+import org.matsim.run.AnalysisCommand;
 import tech.tablesaw.api.DateColumn;
 import tech.tablesaw.api.DoubleColumn;
 import tech.tablesaw.plotly.Plot;
@@ -91,8 +90,7 @@ public class KNRValuesFromEvents{
 
 	public static void main(String[] args){
 
-		EventsManager manager = EventsUtils.createEventsManager();
-		manager.addHandler( new Handler() );
+		Handler handler = new Handler();
 
 		log.info("Reading " + dirs.length + " files");
 		log.info(dirs);
@@ -109,18 +107,12 @@ public class KNRValuesFromEvents{
 				log.info("skipping directory " + scenario);
 				continue;
 			}
-			File[] eventFiles = eventsDir.listFiles();
-			for (File file : eventFiles) {
-				if (file.getName().contains("xml.gz")){
-					final String absolutePath = file.getAbsolutePath();
-					new EpisimEventsReader(manager).readFile( absolutePath );
-				}
-			}
+			int days = AnalysisCommand.forEachEvent( eventsDir.toPath().getParent(), file -> {}, handler );
 
 			DateColumn dateColumn = DateColumn.create( "date" );
 			DoubleColumn rColumn = DoubleColumn.create( "r" );
 
-			for(int ii = 0; ii <= eventFiles.length; ii++) {
+			for(int ii = 0; ii <= days; ii++) {
 				// (I think that this is a cheap trick to get the dates.  kai, oct'20)
 
 				int noOfInfectors = 0;
@@ -28,9 +28,6 @@ import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.core.config.Configurator;
-import org.matsim.core.api.experimental.events.EventsManager;
-import org.matsim.core.events.EventsUtils;
-import org.matsim.core.utils.io.UncheckedIOException;
 import org.matsim.episim.EpisimPerson.DiseaseStatus;
 import org.matsim.episim.events.*;
 import org.matsim.run.AnalysisCommand;
@@ -125,31 +122,17 @@ public class RValuesFromEvents implements Callable<Integer> {
 
 		String id = AnalysisCommand.getScenarioPrefix(scenario);
 
-		EventsManager manager = EventsUtils.createEventsManager();
 		InfectionsHandler infHandler = new InfectionsHandler();
 		RHandler rHandler = new RHandler();
 
-		manager.addHandler(infHandler);
-		manager.addHandler(rHandler);
-
-		List<Path> eventFiles = Files.list(eventFolder)
-				.filter(p -> p.getFileName().toString().contains("xml.gz"))
-				.collect(Collectors.toList());
-
-		for (Path p : eventFiles) {
-			try {
-				new EpisimEventsReader(manager).readFile(p.toString());
-			} catch (UncheckedIOException e) {
-				log.warn("Caught UncheckedIOException. Could not read file {}", p);
-			}
-		}
+		int days = AnalysisCommand.forEachEvent(scenario, p -> {}, infHandler, rHandler);
 
 
 		BufferedWriter bw = Files.newBufferedWriter(scenario.resolve(id + "infectionsPerActivity.txt"));
 		bw.write("day\tdate\tactivity\tinfections\tinfectionsShare\tscenario");
 
 		int rollingAveragae = 3;
-		for (int i = 0 + rollingAveragae; i <= eventFiles.size() - rollingAveragae; i++) {
+		for (int i = 0 + rollingAveragae; i <= days - rollingAveragae; i++) {
 			for (Entry<String, Int2IntMap> e : infHandler.infectionsPerActivity.entrySet()) {
 				if (!e.getKey().equals("total")) {
 					int infections = 0;
@@ -184,7 +167,7 @@ public class RValuesFromEvents implements Callable<Integer> {
 		bw.write("day\tdate\trValue\tnewContagious\tscenario\t");
 		bw.write(AnalysisCommand.TSV.join(ACTIVITY_TYPES));
 
-		for (int i = 0; i <= eventFiles.size(); i++) {
+		for (int i = 0; i <= days; i++) {
 			int noOfInfectors = 0;
 			// infected persons per activity
 			Object2IntMap<String> noOfInfected = new Object2IntOpenHashMap<>();
@@ -0,0 +1,272 @@
+package org.matsim.episim.events;
+
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.events.handler.BasicEventHandler;
+import org.matsim.episim.EpisimContainer;
+import org.matsim.episim.EpisimPerson;
+import org.matsim.episim.model.VirusStrain;
+import org.matsim.facilities.ActivityFacility;
+
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.matsim.episim.events.ColumnarEventsWriter.*;
+
+/**
+ * Reads files written by {@link ColumnarEventsWriter} and passes the events to an {@link EventsManager}.
+ * The events of a file are held in memory and processed in the order they were written, optionally merged with the xml file of the same day.
+ */
+public final class ColumnarEventsReader {
+
+	private static final EpisimPerson.DiseaseStatus[] DISEASE_STATUS = EpisimPerson.DiseaseStatus.values();
+	private static final EpisimPerson.QuarantineStatus[] QUARANTINE_STATUS = EpisimPerson.QuarantineStatus.values();
+	private static final VirusStrain[] VIRUS_STRAIN = VirusStrain.values();
+
+	private final EventsManager manager;
+
+	/**
+	 * Decoded dictionary of the file currently read.
+	 */
+	private final List<String> dictionary = new ArrayList<>();
+
+	/**
+	 * Events of the file currently read and their sequence numbers.
+	 */
+	private final List<Event> events = new ArrayList<>();
+	private final LongArrayList sequences = new LongArrayList();
+
+	public ColumnarEventsReader(EventsManager manager) {
+		this.manager = manager;
+	}
+
+	/**
+	 * Whether a file name belongs to a columnar event file.
+	 */
+	public static boolean isColumnar(Path path) {
+		return path.getFileName().toString().endsWith(SUFFIX);
+	}
+
+	public void readFile(String filename) {
+		readFile(Path.of(filename), null);
+	}
+
+	/**
+	 * Reads a columnar file together with the xml file written for the same day. Events of both files are passed to the manager
+	 * in the order they were written.
+	 *
+	 * @param xml xml event file of the same day, or null
+	 */
+	public void readFile(Path filename, @Nullable Path xml) {
+
+		read(filename);
+
+		// batches are grouped by type, the sequence numbers restore the original order
+		int[] order = new int[events.size()];
+		for (int i = 0; i < order.length; i++)
+			order[i] = i;
+
+		IntArrays.quickSort(order, (a, b) -> Long.compare(sequences.getLong(a), sequences.getLong(b)));
+
+		Merger merger = new Merger(order);
+		if (xml != null) {
+			EventsManager xmlEvents = EventsUtils.createEventsManager();
+			xmlEvents.addHandler(merger);
+			xmlEvents.initProcessing();
+			new EpisimEventsReader(xmlEvents).readFile(xml.toString());
+			xmlEvents.finishProcessing();
+		}
+
+		merger.flush(true);
+
+		events.clear();
+		sequences.clear();
+	}
+
+	private void read(Path filename) {
+
+		dictionary.clear();
+		events.clear();
+		sequences.clear();
+
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(Files.newInputStream(filename), 65536), 65536))) {
+
+			if (in.readInt() != MAGIC)
+				throw new IllegalStateException("Not a columnar events file: " + filename);
+
+			int version = in.readInt();
+			if (version != VERSION)
+				throw new IllegalStateException("Unsupported version " + version + " of " + filename);
+
+			byte type;
+			while ((type = in.readByte()) != END) {
+				switch (type) {
+					case DICTIONARY:
+						int n = in.readInt();
+						for (int i = 0; i < n; i++)
+							dictionary.add(in.readUTF().intern());
+						break;
+					case INFECTION:
+						readInfections(in);
+						break;
+					case STATUS:
+						readStatus(in);
+						break;
+					case CONTACT:
+						readContacts(in);
+						break;
+					case TRACING:
+						readTracing(in);
+						break;
+					default:
+						throw new IllegalStateException("Unknown block type " + type + " in " + filename);
+				}
+			}
+
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private void readInfections(DataInputStream in) throws IOException {
+		int n = in.readInt();
+		readSequences(in, n);
+		double[] time = readDoubles(in, n);
+		double[] probability = readDoubles(in, n);
+		int[] person = readInts(in, n);
+		int[] infector = readInts(in, n);
+		int[] container = readInts(in, n);
+		int[] infectionType = readInts(in, n);
+		int[] groupSize = readInts(in, n);
+		int[] strain = readInts(in, n);
+
+		for (int i = 0; i < n; i++) {
+			events.add(new EpisimInfectionEvent(time[i], personId(person[i]), personId(infector[i]),
+					Id.create(dictionary.get(container[i]), EpisimContainer.class), string(infectionType[i]), groupSize[i],
+					strain[i] >= 0 ? VIRUS_STRAIN[strain[i]] : null, probability[i]));
+		}
+	}
+
+	private void readStatus(DataInputStream in) throws IOException {
+		int n = in.readInt();
+		readSequences(in, n);
+		double[] time = readDoubles(in, n);
+		int[] person = readInts(in, n);
+		int[] diseaseStatus = readInts(in, n);
+		int[] quarantineStatus = readInts(in, n);
+
+		for (int i = 0; i < n; i++) {
+			if (diseaseStatus[i] >= 0)
+				events.add(new EpisimPersonStatusEvent(time[i], personId(person[i]), DISEASE_STATUS[diseaseStatus[i]]));
+			else
+				events.add(new EpisimPersonStatusEvent(time[i], personId(person[i]), QUARANTINE_STATUS[quarantineStatus[i]]));
+		}
+	}
+
+	private void readContacts(DataInputStream in) throws IOException {
+		int n = in.readInt();
+		readSequences(in, n);
+		double[] time = readDoubles(in, n);
+		double[] duration = readDoubles(in, n);
+		int[] person = readInts(in, n);
+		int[] contactPerson = readInts(in, n);
+		int[] container = readInts(in, n);
+		int[] actType = readInts(in, n);
+		int[] groupSize = readInts(in, n);
+
+		for (int i = 0; i < n; i++) {
+			events.add(new EpisimContactEvent(time[i], personId(person[i]), personId(contactPerson[i]),
+					Id.create(dictionary.get(container[i]), ActivityFacility.class), string(actType[i]), duration[i], groupSize[i]));
+		}
+	}
+
+	private void readTracing(DataInputStream in) throws IOException {
+		int n = in.readInt();
+		readSequences(in, n);
+		double[] time = readDoubles(in, n);
+		int[] person = readInts(in, n);
+		int[] contactPerson = readInts(in, n);
+
+		for (int i = 0; i < n; i++) {
+			events.add(new EpisimTracingEvent(time[i], personId(person[i]), personId(contactPerson[i])));
+		}
+	}
+
+	private String string(int ref) {
+		return ref >= 0 ? dictionary.get(ref) : null;
+	}
+
+	private Id<Person> personId(int ref) {
+		return ref >= 0 ? Id.createPersonId(dictionary.get(ref)) : null;
+	}
+
+	private void readSequences(DataInputStream in, int n) throws IOException {
+		for (int i = 0; i < n; i++)
+			sequences.add(in.readLong());
+	}
+
+	private static double[] readDoubles(DataInputStream in, int n) throws IOException {
+		double[] values = new double[n];
+		for (int i = 0; i < n; i++)
+			values[i] = in.readDouble();
+
+		return values;
+	}
+
+	private static int[] readInts(DataInputStream in, int n) throws IOException {
+		int[] values = new int[n];
+		for (int i = 0; i < n; i++)
+			values[i] = in.readInt();
+
+		return values;
+	}
+
+	/**
+	 * Passes the xml events to the manager and inserts the columnar events before them according to their sequence number.
+	 */
+	private final class Merger implements BasicEventHandler {
+
+		private final int[] order;
+		private int next;
+
+		/**
+		 * Number of events already passed to the manager.
+		 */
+		private long processed;
+
+		private Merger(int[] order) {
+			this.order = order;
+		}
+
+		@Override
+		public void handleEvent(Event event) {
+			// columnar events that were written before this one
+			flush(false);
+			manager.processEvent(event);
+			processed++;
+		}
+
+		/**
+		 * Process the columnar events that were written before the next xml event, or all remaining ones.
+		 */
+		private void flush(boolean all) {
+			while (next < order.length && (all || sequences.getLong(order[next]) <= processed)) {
+				manager.processEvent(events.get(order[next++]));
+				processed++;
+			}
+		}
+	}
+}
@@ -0,0 +1,269 @@
+package org.matsim.episim.events;
+
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.Event;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes episim events into a gzipped binary file, as an alternative to the xml event files.
+ * Events are collected per type into batches, which are written column by column. Ids and other strings are dictionary encoded,
+ * so that each distinct string is written only once per file.
+ * <p>
+ * Each event is stored with its sequence number within the day. Events written to another file of the same day are counted with
+ * {@link #skip()}, so that readers can restore the order in which all events were written.
+ * <p>
+ * Only the event types of episim are supported, see {@link #supports(Event)}. Files can be read with {@link ColumnarEventsReader}.
+ */
+public final class ColumnarEventsWriter implements Closeable {
+
+	/**
+	 * File name suffix of columnar event files.
+	 */
+	public static final String SUFFIX = ".bin.gz";
+
+	static final int MAGIC = 0x45504556;
+	static final int VERSION = 2;
+
+	/**
+	 * Block types within the file. Each block starts with one of these bytes.
+	 */
+	static final byte END = 0;
+	static final byte DICTIONARY = 1;
+	static final byte INFECTION = 2;
+	static final byte STATUS = 3;
+	static final byte CONTACT = 4;
+	static final byte TRACING = 5;
+
+	/**
+	 * Maximum number of events per batch.
+	 */
+	private static final int BATCH_SIZE = 8192;
+
+	private final DataOutputStream out;
+
+	private final Object2IntMap<String> dictionary = new Object2IntOpenHashMap<>();
+
+	/**
+	 * Strings added to the dictionary, but not written yet.
+	 */
+	private final List<String> pending = new ArrayList<>();
+
+	/**
+	 * Sequence number of the next event.
+	 */
+	private long sequence;
+
+	// time, probability | person, infector, container, infectionType, groupSize, virusStrain
+	private final Batch infections = new Batch(INFECTION, 2, 6);
+	// time | person, diseaseStatus, quarantineStatus
+	private final Batch status = new Batch(STATUS, 1, 3);
+	// time, duration | person, contactPerson, container, actType, groupSize
+	private final Batch contacts = new Batch(CONTACT, 2, 5);
+	// time | person, contactPerson
+	private final Batch tracing = new Batch(TRACING, 1, 2);
+
+	/**
+	 * Creates a new file at {@code path}, existing files are overwritten.
+	 */
+	public ColumnarEventsWriter(Path path) {
+		this(gzip(path));
+	}
+
+	/**
+	 * Writes into the given stream, which is closed together with this writer. The stream is responsible for the compression.
+	 */
+	public ColumnarEventsWriter(OutputStream stream) {
+		dictionary.defaultReturnValue(-1);
+		try {
+			out = new DataOutputStream(new BufferedOutputStream(stream, 65536));
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static OutputStream gzip(Path path) {
+		try {
+			return new GZIPOutputStream(Files.newOutputStream(path), 65536);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Whether an event can be written by this class.
+	 */
+	public static boolean supports(Event event) {
+		return event instanceof EpisimInfectionEvent || event instanceof EpisimPersonStatusEvent
+				|| event instanceof EpisimContactEvent || event instanceof EpisimTracingEvent;
+	}
+
+	/**
+	 * Adds one event to the file.
+	 *
+	 * @throws IllegalArgumentException if the event is not supported
+	 */
+	public synchronized void append(Event event) {
+
+		if (event instanceof EpisimPersonStatusEvent) {
+			EpisimPersonStatusEvent e = (EpisimPersonStatusEvent) event;
+			int i = status.size;
+			status.doubles[0][i] = e.getTime();
+			status.ints[0][i] = encode(e.getPersonId());
+			status.ints[1][i] = e.getDiseaseStatus() != null ? e.getDiseaseStatus().ordinal() : -1;
+			status.ints[2][i] = e.getQuarantineStatus() != null ? e.getQuarantineStatus().ordinal() : -1;
+			commit(status);
+
+		} else if (event instanceof EpisimContactEvent) {
+			EpisimContactEvent e = (EpisimContactEvent) event;
+			int i = contacts.size;
+			contacts.doubles[0][i] = e.getTime();
+			contacts.doubles[1][i] = e.getDuration();
+			contacts.ints[0][i] = encode(e.getPersonId());
+			contacts.ints[1][i] = encode(e.getContactPersonId());
+			contacts.ints[2][i] = encode(e.getContainerId());
+			contacts.ints[3][i] = encode(e.getActType());
+			contacts.ints[4][i] = e.getGroupSize();
+			commit(contacts);
+
+		} else if (event instanceof EpisimInfectionEvent) {
+			EpisimInfectionEvent e = (EpisimInfectionEvent) event;
+			int i = infections.size;
+			infections.doubles[0][i] = e.getTime();
+			infections.doubles[1][i] = e.getProbability();
+			infections.ints[0][i] = encode(e.getPersonId());
+			infections.ints[1][i] = encode(e.getInfectorId());
+			infections.ints[2][i] = encode(e.getContainerId());
+			infections.ints[3][i] = encode(e.getInfectionType());
+			infections.ints[4][i] = e.getGroupSize();
+			infections.ints[5][i] = e.getVirusStrain() != null ? e.getVirusStrain().ordinal() : -1;
+			commit(infections);
+
+		} else if (event instanceof EpisimTracingEvent) {
+			EpisimTracingEvent e = (EpisimTracingEvent) event;
+			int i = tracing.size;
+			tracing.doubles[0][i] = e.getTime();
+			tracing.ints[0][i] = encode(e.getPersonId());
+			tracing.ints[1][i] = encode(e.getContactPersonId());
+			commit(tracing);
+
+		} else
+			throw new IllegalArgumentException("Unsupported event type: " + event.getEventType());
+	}
+
+	/**
+	 * Counts an event that was written to another file of the same day.
+	 */
+	public synchronized void skip() {
+		sequence++;
+	}
+
+	private int encode(Id<?> id) {
+		return id == null ? -1 : encode(id.toString());
+	}
+
+	private int encode(String value) {
+		if (value == null)
+			return -1;
+
+		int ref = dictionary.getInt(value);
+		if (ref == -1) {
+			ref = dictionary.size();
+			dictionary.put(value, ref);
+			pending.add(value);
+		}
+
+		return ref;
+	}
+
+	private void commit(Batch batch) {
+		batch.sequences[batch.size] = sequence++;
+		if (++batch.size == BATCH_SIZE)
+			write(batch);
+	}
+
+	/**
+	 * Writes a batch together with all new dictionary entries.
+	 */
+	private void write(Batch batch) {
+		if (batch.size == 0)
+			return;
+
+		try {
+			if (!pending.isEmpty()) {
+				out.writeByte(DICTIONARY);
+				out.writeInt(pending.size());
+				for (String value : pending)
+					out.writeUTF(value);
+
+				pending.clear();
+			}
+
+			out.writeByte(batch.type);
+			out.writeInt(batch.size);
+
+			for (int i = 0; i < batch.size; i++)
+				out.writeLong(batch.sequences[i]);
+
+			for (double[] column : batch.doubles)
+				for (int i = 0; i < batch.size; i++)
+					out.writeDouble(column[i]);
+
+			for (int[] column : batch.ints)
+				for (int i = 0; i < batch.size; i++)
+					out.writeInt(column[i]);
+
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+
+		batch.size = 0;
+	}
+
+	@Override
+	public synchronized void close() {
+		write(infections);
+		write(status);
+		write(contacts);
+		write(tracing);
+
+		try {
+			out.writeByte(END);
+			out.close();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Events of one type, stored by column.
+	 */
+	private static final class Batch {
+
+		private final byte type;
+		private final long[] sequences = new long[BATCH_SIZE];
+		private final double[][] doubles;
+		private final int[][] ints;
+		private int size;
+
+		private Batch(byte type, int nDoubles, int nInts) {
+			this.type = type;
+			this.doubles = new double[nDoubles][BATCH_SIZE];
+			this.ints = new int[nInts][BATCH_SIZE];
+		}
+	}
+}
@@ -66,6 +66,21 @@ public final class EpisimContactEvent extends Event implements HasPersonId {
 		return duration;
 	}
 
+	public Id<?> getContainerId() {
+		return containerId;
+	}
+
+	public String getActType() {
+		return actType;
+	}
+
+	/**
+	 * Number of persons in the container at the time of contact.
+	 */
+	public int getGroupSize() {
+		return groupSize;
+	}
+
 	@Override
 	public Map<String, String> getAttributes() {
 		Map<String, String> attr = super.getAttributes();
@@ -34,7 +34,7 @@ import java.util.Map;
 public final class EpisimPersonStatusEvent extends Event implements HasPersonId {
 	public static final String EVENT_TYPE = "episimPersonStatus";
 	public static final String DISEASE_STATUS = "diseaseStatus";
-	private static final String QUARANTINE_STATUS = "quarantineStatus";
+	public static final String QUARANTINE_STATUS = "quarantineStatus";
 
 	private final Id<Person> personId;
 	private final EpisimPerson.DiseaseStatus diseaseStatus;
@@ -74,6 +74,10 @@ public final class EpisimPersonStatusEvent extends Event implements HasPersonId
 		return diseaseStatus;
 	}
 
+	public EpisimPerson.QuarantineStatus getQuarantineStatus() {
+		return quarantineStatus;
+	}
+
 	@Override
 	public Map<String, String> getAttributes() {
 		Map<String, String> attr = super.getAttributes();
@@ -29,6 +29,7 @@ import org.matsim.episim.*;
 import org.matsim.episim.policy.Restriction;
 import org.matsim.vis.snapshotwriters.AgentSnapshotInfo;
 
+import javax.annotation.Nullable;
 import java.util.Map;
 import java.util.SplittableRandom;
 
@@ -44,6 +45,7 @@ public abstract class AbstractContactModel implements ContactModel {
 
 	protected final Scenario scenario = null;
 	protected final SplittableRandom rnd;
+	protected final Config config;
 	protected final EpisimConfigGroup episimConfig;
 	protected final EpisimReporting reporting;
 
@@ -65,13 +67,47 @@ public abstract class AbstractContactModel implements ContactModel {
 	 */
 	protected final InfectionModel infectionModel;
 
+	/**
+	 * Buffer for effects on persons, only present for worker instances.
+	 *
+	 * @see #createWorker(SplittableRandom, ContactBuffer)
+	 */
+	@Nullable
+	private final ContactBuffer contactBuffer;
+
+	/**
+	 * Whether contacts are written to the events.
+	 */
+	private final boolean writeContacts;
+
+	/**
+	 * Re-used buffer for the contact type of written contacts.
+	 */
+	private final StringBuilder contactType = new StringBuilder();
+
 	protected int iteration;
 	private Map<String, Restriction> restrictions;
 
+	/**
+	 * Restrictions of the current iteration, compiled in {@link #setRestrictionsForIteration(int, Map)}.
+	 */
+	private CompiledRestrictions compiledRestrictions;
+
 
 	AbstractContactModel(SplittableRandom rnd, Config config, InfectionModel infectionModel, EpisimReporting reporting) {
+		this(rnd, config, infectionModel, reporting, null);
+	}
+
+	/**
+	 * Constructor for worker instances, which record their effects into {@code contactBuffer}.
+	 */
+	AbstractContactModel(SplittableRandom rnd, Config config, InfectionModel infectionModel, EpisimReporting reporting, @Nullable ContactBuffer contactBuffer) {
 		this.rnd = rnd;
+		this.config = config;
+		this.contactBuffer = contactBuffer;
 		this.episimConfig = ConfigUtils.addOrGetModule(config, EpisimConfigGroup.class);
+		this.writeContacts = episimConfig.getWriteEvents() == EpisimConfigGroup.WriteEvents.tracing
+				|| episimConfig.getWriteEvents() == EpisimConfigGroup.WriteEvents.all;
 		this.infectionModel = infectionModel;
 		this.reporting = reporting;
 		this.trParams = new EpisimPerson.Activity("tr", episimConfig.selectInfectionParams("tr"));
@@ -110,6 +146,31 @@ public abstract class AbstractContactModel implements ContactModel {
 		return (hasDiseaseStatusRelevantForInfectionDynamics(person1) && hasDiseaseStatusRelevantForInfectionDynamics(person2));
 	}
 
+	/**
+	 * Whether the evaluation of a leaving person can be skipped, because there is no other person in the container it could infect or
+	 * be infected by. This uses the status counts of the container and does not draw any random numbers.
+	 * Unless {@link EpisimConfigGroup#isSkipContainers()} is set, the random numbers for the contacts still need to be drawn by the
+	 * caller, so that results do not change. Only the evaluation of each contact is skipped then, which saves little time.
+	 *
+	 * @param trackingEnabled whether contacts need to be traced
+	 */
+	protected final boolean canSkipContainer(EpisimPerson personLeavingContainer, EpisimContainer<?> container, boolean trackingEnabled) {
+
+		// contacts need to be written or traced
+		if (writeContacts || (trackingEnabled && personLeavingContainer.isTraceable() && container.getNumTraceable() > 1))
+			return false;
+
+		switch (personLeavingContainer.getDiseaseStatus()) {
+			case susceptible:
+				return container.getNumContagious() == 0;
+			case contagious:
+			case showingSymptoms:
+				return container.getNumSusceptible() == 0;
+			default:
+				return true;
+		}
+	}
+
 	/**
 	 * Attention: In order to re-use the underlying object, this function returns a buffer.
 	 * Be aware that the old result will be overwritten, when the function is called multiple times.
@@ -130,12 +191,13 @@ public abstract class AbstractContactModel implements ContactModel {
 
 	/**
 	 * Get the relevant infection parameter based on container and activity and person.
+	 * The params of the activity have already been selected when the activity was created.
 	 */
-	protected EpisimConfigGroup.InfectionParams getInfectionParams(EpisimContainer<?> container, EpisimPerson person, String activity) {
+	protected EpisimConfigGroup.InfectionParams getInfectionParams(EpisimContainer<?> container, EpisimPerson person, EpisimPerson.Activity activity) {
 		if (container instanceof EpisimVehicle) {
 			return trParams.params;
 		} else if (container instanceof EpisimFacility) {
-			EpisimConfigGroup.InfectionParams params = episimConfig.selectInfectionParams(activity);
+			EpisimConfigGroup.InfectionParams params = activity.params;
 
 			// Select different infection params for home quarantined persons
 			if (person.getQuarantineStatus() == EpisimPerson.QuarantineStatus.atHome && params.getContainerName().equals("home")) {
@@ -149,10 +211,10 @@ public abstract class AbstractContactModel implements ContactModel {
 	}
 
 	protected void trackContactPerson(EpisimPerson personLeavingContainer, EpisimPerson otherPerson, double now, double jointTimeInContainer,
-									  StringBuilder infectionType) {
+									  EpisimPerson.Activity leavingActivity, EpisimPerson.Activity otherActivity) {
 
 		// Don't track certain activities
-		if (infectionType.indexOf("pt") >= 0 || infectionType.indexOf("shop") >= 0) {
+		if (!InteractionRules.isTraceable(leavingActivity, otherActivity)) {
 			return;
 		}
 
@@ -161,12 +223,41 @@ public abstract class AbstractContactModel implements ContactModel {
 			return;
 		}
 
+		if (contactBuffer != null) {
+			contactBuffer.addTracing(now, personLeavingContainer, otherPerson);
+			return;
+		}
+
 		personLeavingContainer.addTraceableContactPerson(otherPerson, now);
 		otherPerson.addTraceableContactPerson(personLeavingContainer, now);
 	}
 
-	private boolean activityRelevantForInfectionDynamics(EpisimPerson person, EpisimContainer<?> container, Map<String, Restriction> restrictions, SplittableRandom rnd) {
-		EpisimPerson.Activity act = person.getTrajectory().get(person.getCurrentPositionInTrajectory());
+	/**
+	 * Report a contact, or record it if this is a worker instance. The infection type is only created if contacts are written.
+	 */
+	protected void reportContact(double now, EpisimPerson person, EpisimPerson contactPerson, EpisimContainer<?> container,
+								 String leavingActivity, String otherActivity, double duration) {
+		if (!writeContacts)
+			return;
+
+		StringBuilder actType = getInfectionType(contactType, container, leavingActivity, otherActivity);
+
+		if (contactBuffer == null)
+			reporting.reportContact(now, person, contactPerson, container, actType, duration);
+		else
+			contactBuffer.addContact(now, person, contactPerson, container, actType.toString(), duration);
+	}
+
+	/**
+	 * Activity a person is performing in a container. The position is taken from the container, because the person itself
+	 * might already be further in its trajectory when containers are processed in parallel.
+	 */
+	protected static EpisimPerson.Activity getCurrentActivity(EpisimContainer<?> container, EpisimPerson person) {
+		return person.getTrajectory().get(container.getPositionInTrajectory(person));
+	}
+
+	private boolean activityRelevantForInfectionDynamics(EpisimPerson person, EpisimContainer<?> container, CompiledRestrictions restrictions, SplittableRandom rnd) {
+		EpisimPerson.Activity act = getCurrentActivity(container, person);
 
 		// Check if person is home quarantined
 		if (person.getQuarantineStatus() == EpisimPerson.QuarantineStatus.atHome && !act.actType.startsWith("home"))
@@ -174,14 +265,14 @@ public abstract class AbstractContactModel implements ContactModel {
 
 
 		// enforce max group sizes
-		Restriction r = restrictions.get(act.params.getContainerName());
-		if (r.getMaxGroupSize() != null && r.getMaxGroupSize() > -1 && container.getMaxGroupSize() > 0 &&
-				container.getMaxGroupSize() > r.getMaxGroupSize())
+		CompiledRestrictions.Entry r = restrictions.get(act.params);
+		if (r.maxGroupSize > -1 && container.getMaxGroupSize() > 0 &&
+				container.getMaxGroupSize() > r.maxGroupSize)
 			return false;
 
 		// reduce group size probabilistically
-		Integer reducedGroupSize = r.getReducedGroupSize();
-		if (reducedGroupSize != null && reducedGroupSize > -1 && reducedGroupSize != Integer.MAX_VALUE) {
+		int reducedGroupSize = r.reducedGroupSize;
+		if (reducedGroupSize > -1) {
 			double current = (container.getPersons().size() * episimConfig.getSampleSize()) / container.getNumSpaces();
 
 			// always false if current < reduced size
@@ -191,35 +282,40 @@ public abstract class AbstractContactModel implements ContactModel {
 			if (out) return false;
 		}
 
-		if (r.isClosed(container.getContainerId()))
+		if (r.restriction.isClosed(container.getContainerId()))
 			return false;
 
-		return actIsRelevant(act, restrictions, rnd);
+		return actIsRelevant(r, rnd);
 	}
 
-	private boolean actIsRelevant(EpisimPerson.Activity act, Map<String, Restriction> restrictions, SplittableRandom rnd) {
+	private static boolean actIsRelevant(CompiledRestrictions.Entry r, SplittableRandom rnd) {
 
-		Restriction r = restrictions.get(act.params.getContainerName());
 		// avoid use of rnd if outcome is known beforehand
-		if (r.getRemainingFraction() == 1)
+		if (r.remainingFraction == 1)
 			return true;
-		if (r.getRemainingFraction() == 0)
+		if (r.remainingFraction == 0)
 			return false;
 
-		return rnd.nextDouble() < r.getRemainingFraction();
+		return rnd.nextDouble() < r.remainingFraction;
+
+	}
 
+	private boolean actIsRelevant(EpisimPerson.Activity act, CompiledRestrictions restrictions, SplittableRandom rnd) {
+		return actIsRelevant(restrictions.get(act.params), rnd);
 	}
 
-	private boolean tripRelevantForInfectionDynamics(EpisimPerson person, Map<String, Restriction> restrictions, SplittableRandom rnd) {
+	private boolean tripRelevantForInfectionDynamics(EpisimPerson person, EpisimContainer<?> container, CompiledRestrictions restrictions, SplittableRandom rnd) {
+		int position = container.getPositionInTrajectory(person);
+
 		EpisimPerson.Activity lastAct = null;
-		if (person.getCurrentPositionInTrajectory() != 0) {
-			lastAct = person.getTrajectory().get(person.getCurrentPositionInTrajectory() - 1);
+		if (position != 0) {
+			lastAct = person.getTrajectory().get(position - 1);
 		}
 
 		if (person.getQuarantineStatus() != EpisimPerson.QuarantineStatus.no)
 			return false;
 
-		EpisimPerson.Activity nextAct = person.getTrajectory().get(person.getCurrentPositionInTrajectory());
+		EpisimPerson.Activity nextAct = person.getTrajectory().get(position);
 
 		// last activity is only considered if present
 		return actIsRelevant(trParams, restrictions, rnd) && actIsRelevant(nextAct, restrictions, rnd)
@@ -247,34 +343,45 @@ public abstract class AbstractContactModel implements ContactModel {
 
 	/**
 	 * Checks whether a person would be present in the container.
+	 *
+	 * @param restrictions must be the restrictions of the current iteration, see {@link #getRestrictions()}
+	 * @throws IllegalArgumentException if other restrictions are given
 	 */
 	protected final boolean checkPersonInContainer(EpisimPerson person, EpisimContainer<?> container, Map<String, Restriction> restrictions, SplittableRandom rnd) {
+
+		// only the restrictions of the current iteration are compiled
+		if (restrictions != this.restrictions)
+			throw new IllegalArgumentException("Restrictions must be set with setRestrictionsForIteration before they can be used.");
+
 		if (person.getQuarantineStatus() == EpisimPerson.QuarantineStatus.full) {
 			return false;
 		}
 
-		if (container instanceof EpisimFacility && activityRelevantForInfectionDynamics(person, container, restrictions, rnd)) {
+		CompiledRestrictions compiled = compiledRestrictions;
+
+		if (container instanceof EpisimFacility && activityRelevantForInfectionDynamics(person, container, compiled, rnd)) {
 			return true;
 		}
-		return container instanceof EpisimVehicle && tripRelevantForInfectionDynamics(person, restrictions, rnd);
+		return container instanceof EpisimVehicle && tripRelevantForInfectionDynamics(person, container, compiled, rnd);
 	}
 
 	/**
 	 * Calculate the joint time persons have been in a container.
 	 * This takes possible closing hours into account.
 	 */
-	protected double calculateJointTimeInContainer(double now, EpisimPerson person, double containerEnterTimeOfPersonLeaving, double containerEnterTimeOfOtherPerson) {
-		EpisimPerson.Activity act = person.getTrajectory().get(person.getCurrentPositionInTrajectory());
-		Restriction r = getRestrictions().get(act.params.getContainerName());
+	protected double calculateJointTimeInContainer(double now, EpisimContainer<?> container, EpisimPerson person,
+												   double containerEnterTimeOfPersonLeaving, double containerEnterTimeOfOtherPerson) {
+		EpisimPerson.Activity act = getCurrentActivity(container, person);
+		CompiledRestrictions.Entry r = compiledRestrictions.get(act.params);
 
 		double max = Math.max(containerEnterTimeOfPersonLeaving, containerEnterTimeOfOtherPerson);
 
 		// no closing hour set
-		if (!r.hasClosingHours()) {
+		if (!r.hasClosingHours) {
 			return now - max;
 		}
 
-		double overlap = r.overlapWithClosingHour(max, now);
+		double overlap = r.restriction.overlapWithClosingHour(max, now);
 		if (overlap > 0) {
 			double jointTime = now - max - overlap;
 			// joint time can now be negative and will be set to 0
@@ -286,12 +393,14 @@ public abstract class AbstractContactModel implements ContactModel {
 	}
 
 	/**
-	 * Set the iteration number and restrictions that are in place.
+	 * Set the iteration number and restrictions that are in place. The restrictions are compiled here, changes made to them
+	 * afterwards are not seen until this method is called again.
 	 */
 	@Override
 	public void setRestrictionsForIteration(int iteration, Map<String, Restriction> restrictions) {
 		this.iteration = iteration;
 		this.restrictions = restrictions;
+		this.compiledRestrictions = new CompiledRestrictions(episimConfig, restrictions);
 		this.infectionModel.setIteration(iteration);
 	}
 
@@ -312,7 +421,8 @@ public abstract class AbstractContactModel implements ContactModel {
 		if (infector.getQuarantineStatus() == EpisimPerson.QuarantineStatus.full) {
 			throw new IllegalStateException("Infector is in ful quarantine.");
 		}
-		if (!personWrapper.getCurrentContainer().equals(infector.getCurrentContainer())) {
+		// persons may already be elsewhere when containers are processed in parallel
+		if (contactBuffer == null && !personWrapper.getCurrentContainer().equals(infector.getCurrentContainer())) {
 			throw new IllegalStateException("Person and infector are not in same container!");
 		}
 
@@ -325,11 +435,12 @@ public abstract class AbstractContactModel implements ContactModel {
 
 		String infType = infectionType.toString();
 
-		reporting.reportInfection(personWrapper, infector, now, infType, infector.getVirusStrain(), prob, container);
-		personWrapper.setDiseaseStatus(now, EpisimPerson.DiseaseStatus.infectedButNotContagious);
-		personWrapper.setVirusStrain(infector.getVirusStrain());
-		personWrapper.setInfectionContainer(container);
-		personWrapper.setInfectionType(infType);
+		if (contactBuffer != null) {
+			contactBuffer.addInfection(now, personWrapper, infector, container, infType, prob);
+			return;
+		}
+
+		applyInfection(reporting, personWrapper, infector, now, infType, prob, container, container.getPersons().size());
 
 		// TODO: Currently not in use, is it still needed?
 		// Necessary for the otfvis visualization (although it is unfortunately not working).  kai, apr'20
@@ -341,6 +452,18 @@ public abstract class AbstractContactModel implements ContactModel {
 		}
 	}
 
+	/**
+	 * Infects a person and reports the infection.
+	 */
+	static void applyInfection(EpisimReporting reporting, EpisimPerson personWrapper, EpisimPerson infector, double now, String infType,
+							   double prob, EpisimContainer<?> container, int groupSize) {
+		reporting.reportInfection(personWrapper, infector, now, infType, infector.getVirusStrain(), prob, container, groupSize);
+		personWrapper.setDiseaseStatus(now, EpisimPerson.DiseaseStatus.infectedButNotContagious);
+		personWrapper.setVirusStrain(infector.getVirusStrain());
+		personWrapper.setInfectionContainer(container);
+		personWrapper.setInfectionType(infType);
+	}
+
 	public Map<String, Restriction> getRestrictions() {
 		return restrictions;
 	}
@@ -1,5 +1,7 @@
 package org.matsim.episim.model;
 
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
 import it.unimi.dsi.fastutil.objects.Object2LongMap;
 import it.unimi.dsi.fastutil.objects.Object2LongOpenHashMap;
 import org.matsim.api.core.v01.Id;
@@ -9,11 +11,13 @@ import org.matsim.episim.EpisimPerson;
 import org.matsim.episim.EpisimReporting;
 import org.matsim.episim.EpisimUtils;
 
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 import java.io.Externalizable;
 import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
+import java.util.Arrays;
 import java.util.SplittableRandom;
 
 /**
@@ -22,25 +26,78 @@ import java.util.SplittableRandom;
  */
 abstract class AbstractProgressionModel implements ProgressionModel, Externalizable {
 
+	private static final EpisimPerson.DiseaseStatus[] STATUS = EpisimPerson.DiseaseStatus.values();
+
 	protected final SplittableRandom rnd;
 	protected final EpisimConfigGroup episimConfig;
 
 	/**
-	 * Stores the next state and after which day. (int & int) = 64bit
+	 * Stores the scheduled transition of each person: next state, days to stay in the current state and the iteration
+	 * when the transition is due. (16bit & 16bit & 32bit) = 64bit. A due day of 0 means it is not known yet.
+	 * <p>
+	 * The due day is computed once when the transition is scheduled.
 	 */
 	private final Object2LongMap<Id<Person>> nextStateAndDay = new Object2LongOpenHashMap<>();
 
+	/**
+	 * Due day of the scheduled transition by person index, 0 if there is none or it is not known.
+	 * Persons whose transition is not due yet are skipped with this array, without looking up {@link #nextStateAndDay}.
+	 */
+	private int[] dueDays = new int[0];
+
+	/**
+	 * Pairs of person index and due day scheduled by a worker, applied to the parent on {@link #merge(ProgressionModel)}.
+	 */
+	private final IntList dueDayChanges = new IntArrayList();
+
+	/**
+	 * Model this instance is a worker of, or null. Workers only read the transitions of their parent and store changes in their own map.
+	 */
+	@Nullable
+	private final AbstractProgressionModel parent;
+
 	@Inject
 	AbstractProgressionModel(SplittableRandom rnd, EpisimConfigGroup episimConfig) {
 		this.rnd = rnd;
 		this.episimConfig = episimConfig;
+		this.parent = null;
+	}
+
+	/**
+	 * Constructor for a worker of {@code parent}.
+	 *
+	 * @see #createWorker(SplittableRandom)
+	 */
+	AbstractProgressionModel(AbstractProgressionModel parent, SplittableRandom rnd) {
+		this.rnd = rnd;
+		this.episimConfig = parent.episimConfig;
+		this.parent = parent;
+	}
+
+	/**
+	 * Whether this instance is a worker of another model.
+	 */
+	protected final boolean isWorker() {
+		return parent != null;
 	}
 
 	/**
-	 * Stores two ints in one long value.
+	 * Stores a scheduled transition in one long value.
 	 */
-	private static long compoundLong(int x, int y) {
-		return (((long) x) << 32) | (y & 0xffffffffL);
+	private static long schedule(int state, int days, int dueDay) {
+		return (((long) state) << 48) | (((long) Math.max(0, Math.min(days, 0xffff))) << 32) | (dueDay & 0xffffffffL);
+	}
+
+	private static int state(long value) {
+		return (int) (value >>> 48);
+	}
+
+	private static int days(long value) {
+		return (int) (value >>> 32) & 0xffff;
+	}
+
+	private static int dueDay(long value) {
+		return (int) value;
 	}
 
 	@Override
@@ -52,9 +109,6 @@ abstract class AbstractProgressionModel implements ProgressionModel, Externaliza
 		if (status == EpisimPerson.DiseaseStatus.susceptible)
 			return;
 
-		double now = EpisimUtils.getCorrectedTime(episimConfig.getStartOffset(), 0, day);
-		Id<Person> id = person.getPersonId();
-
 		if (status == EpisimPerson.DiseaseStatus.recovered) {
 			// one day after recovering person is released from quarantine
 			if (person.getQuarantineStatus() != EpisimPerson.QuarantineStatus.no)
@@ -63,29 +117,47 @@ abstract class AbstractProgressionModel implements ProgressionModel, Externaliza
 			return;
 		}
 
+		// workers only change the persons they are updating, so the parents due days are valid for all others
+		int[] due = parent != null ? parent.dueDays : dueDays;
+		int index = person.getIndex();
+		if (index >= 0 && index < due.length && due[index] > day)
+			return;
+
+		updateTransition(person, status, day);
+	}
+
+	/**
+	 * Performs the transition of a person that is due or schedules the next one.
+	 */
+	private void updateTransition(EpisimPerson person, EpisimPerson.DiseaseStatus status, int day) {
+
+		double now = EpisimUtils.getCorrectedTime(episimConfig.getStartOffset(), 0, day);
+		Id<Person> id = person.getPersonId();
+
 		// 0 is empty transition
-		long value = nextStateAndDay.getOrDefault(id, 0);
+		long value = getNextStateAndDay(id);
 
 		if (value != 0) {
 
-			// reverse of compound long
-			int transitionDay = (int) value;
-			int nextState = (int) (value >> 32);
+			int dueDay = dueDay(value);
 
-			int daysSince = person.daysSince(status, day);
-			if (daysSince >= transitionDay) {
-				EpisimPerson.DiseaseStatus next = EpisimPerson.DiseaseStatus.values()[nextState];
+			// restored transitions need to be scheduled relative to the status change
+			if (dueDay == 0)
+				dueDay = day - person.daysSince(status, day) + days(value);
+
+			if (day >= dueDay) {
+				EpisimPerson.DiseaseStatus next = STATUS[state(value)];
 				person.setDiseaseStatus(now, next);
 				onTransition(person, now, day, status, next);
 
 				if (next != EpisimPerson.DiseaseStatus.recovered) {
-					if (updateNext(person, id, next))
-						updateState(person, day);
+					if (updateNext(person, id, next, day))
+						updateTransition(person, next, day);
 				}
 			}
 		} else {
-			if (updateNext(person, id, status))
-				updateState(person, day);
+			if (updateNext(person, id, status, day))
+				updateTransition(person, status, day);
 		}
 	}
 
@@ -94,16 +166,59 @@ abstract class AbstractProgressionModel implements ProgressionModel, Externaliza
 	 *
 	 * @return true when there should be an immediate update again
 	 */
-	private boolean updateNext(EpisimPerson person, Id<Person> id, EpisimPerson.DiseaseStatus from) {
+	private boolean updateNext(EpisimPerson person, Id<Person> id, EpisimPerson.DiseaseStatus from, int day) {
 		EpisimPerson.DiseaseStatus next = decideNextState(person);
 		int nextTransitionDay = decideTransitionDay(person, from, next);
 
-		nextStateAndDay.put(id, compoundLong(next.ordinal(), nextTransitionDay));
+		int dueDay = day - person.daysSince(from, day) + nextTransitionDay;
+		nextStateAndDay.put(id, schedule(next.ordinal(), nextTransitionDay, dueDay));
+
+		if (parent != null) {
+			dueDayChanges.add(person.getIndex());
+			dueDayChanges.add(dueDay);
+		} else
+			setDueDay(person.getIndex(), dueDay);
 
 		// allow multiple updates on the same day
 		return nextTransitionDay == 0;
 	}
 
+	private void setDueDay(int index, int dueDay) {
+		// persons without index are always looked up
+		if (index < 0)
+			return;
+
+		if (index >= dueDays.length)
+			dueDays = Arrays.copyOf(dueDays, Math.max(index + 1, dueDays.length * 2));
+
+		dueDays[index] = dueDay;
+	}
+
+	/**
+	 * Next state and day of a person, with changes of a worker taking precedence over its parent.
+	 */
+	private long getNextStateAndDay(Id<Person> id) {
+		if (parent != null && !nextStateAndDay.containsKey(id))
+			return parent.nextStateAndDay.getLong(id);
+
+		return nextStateAndDay.getLong(id);
+	}
+
+	@Override
+	public void merge(ProgressionModel worker) {
+		AbstractProgressionModel w = (AbstractProgressionModel) worker;
+		if (w.parent != this)
+			throw new IllegalArgumentException("Worker was not created by this model");
+
+		nextStateAndDay.putAll(w.nextStateAndDay);
+		w.nextStateAndDay.clear();
+
+		for (int i = 0; i < w.dueDayChanges.size(); i += 2)
+			setDueDay(w.dueDayChanges.getInt(i), w.dueDayChanges.getInt(i + 1));
+
+		w.dueDayChanges.clear();
+	}
+
 	/**
 	 * Choose the next state a person will attain.
 	 */
@@ -122,18 +237,16 @@ abstract class AbstractProgressionModel implements ProgressionModel, Externaliza
 
 	@Override
 	public EpisimPerson.DiseaseStatus getNextDiseaseStatus(Id<Person> personId) {
-		long value = nextStateAndDay.getOrDefault(personId, 0);
-		int nextState = (int) (value >> 32);
-		return EpisimPerson.DiseaseStatus.values()[nextState];
+		return STATUS[state(getNextStateAndDay(personId))];
 	}
 
 	@Override
 	public int getNextTransitionDays(Id<Person> personId) {
-		long value = nextStateAndDay.getOrDefault(personId, 0);
+		long value = getNextStateAndDay(personId);
 		if (value == 0)
 			return -1;
 
-		return (int) value;
+		return days(value);
 	}
 
 	@Override
@@ -146,7 +259,9 @@ abstract class AbstractProgressionModel implements ProgressionModel, Externaliza
 		out.writeInt(nextStateAndDay.size());
 		for (Object2LongMap.Entry<Id<Person>> entry : nextStateAndDay.object2LongEntrySet()) {
 			EpisimUtils.writeChars(out, entry.getKey().toString());
-			out.writeLong(entry.getLongValue());
+			// the due day is not written, it will be derived from the status changes
+			long value = entry.getLongValue();
+			out.writeLong((((long) state(value)) << 32) | days(value));
 		}
 	}
 
@@ -155,7 +270,11 @@ abstract class AbstractProgressionModel implements ProgressionModel, Externaliza
 		int n = in.readInt();
 		for (int i = 0; i < n; i++) {
 			Id<Person> key = Id.createPersonId(EpisimUtils.readChars(in));
-			nextStateAndDay.put(key, in.readLong());
+			long value = in.readLong();
+			nextStateAndDay.put(key, schedule((int) (value >> 32), (int) value, 0));
 		}
+
+		// due days of restored transitions are derived when they are updated
+		Arrays.fill(dueDays, 0);
 	}
 }
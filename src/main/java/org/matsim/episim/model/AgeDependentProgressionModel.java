@@ -35,8 +35,23 @@ public class AgeDependentProgressionModel extends ConfigurableProgressionModel {
 	 * Constructor as in {@link ConfigurableProgressionModel}.
 	 */
 	@Inject
-	public AgeDependentProgressionModel(SplittableRandom rnd, EpisimConfigGroup episimConfig, TracingConfigGroup tracingConfig) {
-		super(rnd, episimConfig, tracingConfig);
+	public AgeDependentProgressionModel(SplittableRandom rnd, EpisimConfigGroup episimConfig, TracingConfigGroup tracingConfig,
+										PersonStore personStore) {
+		super(rnd, episimConfig, tracingConfig, personStore);
+	}
+
+	private AgeDependentProgressionModel(AgeDependentProgressionModel parent, SplittableRandom rnd) {
+		super(parent, rnd);
+	}
+
+	@Override
+	public ProgressionModel createWorker(SplittableRandom rnd) {
+		return new AgeDependentProgressionModel(this, rnd);
+	}
+
+	@Override
+	public boolean supportsParallel() {
+		return getClass() == AgeDependentProgressionModel.class;
 	}
 
 	@Override
@@ -0,0 +1,100 @@
+/*-
+ * #%L
+ * MATSim Episim
+ * %%
+ * Copyright (C) 2020 matsim-org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.matsim.episim.model;
+
+import org.matsim.episim.EpisimConfigGroup;
+import org.matsim.episim.policy.Restriction;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Restrictions of one iteration compiled into primitive values for each container type.
+ * Container types are looked up by the identity of their {@link EpisimConfigGroup.InfectionParams}, which are already
+ * resolved for each {@link org.matsim.episim.EpisimPerson.Activity}.
+ */
+final class CompiledRestrictions {
+
+	private final Map<EpisimConfigGroup.InfectionParams, Entry> entries = new IdentityHashMap<>();
+
+	/**
+	 * Entries by container name, used for params that are not part of the config.
+	 */
+	private final Map<String, Entry> byName = new HashMap<>();
+
+	CompiledRestrictions(EpisimConfigGroup episimConfig, Map<String, Restriction> restrictions) {
+		restrictions.forEach((name, r) -> byName.put(name, new Entry(r)));
+
+		for (EpisimConfigGroup.InfectionParams params : episimConfig.getInfectionParams()) {
+			Entry entry = byName.get(params.getContainerName());
+			if (entry != null)
+				entries.put(params, entry);
+		}
+	}
+
+	/**
+	 * Get the compiled restriction for a container type.
+	 *
+	 * @throws IllegalStateException if there is no restriction for this container type
+	 */
+	Entry get(EpisimConfigGroup.InfectionParams params) {
+		Entry entry = entries.get(params);
+		if (entry == null)
+			entry = byName.get(params.getContainerName());
+		if (entry == null)
+			throw new IllegalStateException("No restriction for container " + params.getContainerName());
+
+		return entry;
+	}
+
+	/**
+	 * Values of one {@link Restriction}.
+	 */
+	static final class Entry {
+
+		final Restriction restriction;
+
+		final double remainingFraction;
+
+		/**
+		 * Maximum group size, negative if not set.
+		 */
+		final int maxGroupSize;
+
+		/**
+		 * Reduced group size, negative if not set or not restricted.
+		 */
+		final int reducedGroupSize;
+
+		final boolean hasClosingHours;
+
+		private Entry(Restriction r) {
+			this.restriction = r;
+			this.remainingFraction = r.getRemainingFraction() != null ? r.getRemainingFraction() : 1;
+			this.maxGroupSize = r.getMaxGroupSize() != null ? r.getMaxGroupSize() : -1;
+
+			Integer reduced = r.getReducedGroupSize();
+			this.reducedGroupSize = reduced != null && reduced != Integer.MAX_VALUE ? reduced : -1;
+			this.hasClosingHours = r.hasClosingHours();
+		}
+	}
+}
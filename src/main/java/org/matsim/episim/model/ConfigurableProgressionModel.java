@@ -21,6 +21,7 @@ import java.io.ObjectOutput;
 import java.time.DayOfWeek;
 import java.time.LocalDate;
 import java.util.*;
+import java.util.function.Consumer;
 
 import static org.matsim.episim.EpisimUtils.readChars;
 import static org.matsim.episim.EpisimUtils.writeChars;
@@ -80,6 +81,11 @@ public class ConfigurableProgressionModel extends AbstractProgressionModel {
 	private final Transition[] tMatrix;
 	private final TracingConfigGroup tracingConfig;
 
+	/**
+	 * Store of all persons, used to look up the persons infected at a location.
+	 */
+	private final PersonStore personStore;
+
 	/**
 	 * Counts how many infections occurred at each location.
 	 */
@@ -115,10 +121,17 @@ public class ConfigurableProgressionModel extends AbstractProgressionModel {
 	 */
 	private long prevShowingSymptoms;
 
+	/**
+	 * Actions of a worker that need to be performed on the model it belongs to.
+	 */
+	private final List<Consumer<ConfigurableProgressionModel>> deferred = new ArrayList<>();
+
 	@Inject
-	public ConfigurableProgressionModel(SplittableRandom rnd, EpisimConfigGroup episimConfig, TracingConfigGroup tracingConfig) {
+	public ConfigurableProgressionModel(SplittableRandom rnd, EpisimConfigGroup episimConfig, TracingConfigGroup tracingConfig,
+										PersonStore personStore) {
 		super(rnd, episimConfig);
 		this.tracingConfig = tracingConfig;
+		this.personStore = personStore;
 
 		Config config = episimConfig.getProgressionConfig();
 
@@ -132,6 +145,56 @@ public class ConfigurableProgressionModel extends AbstractProgressionModel {
 		tMatrix = t.asArray();
 	}
 
+	/**
+	 * Constructor for a worker of {@code parent}.
+	 * Subclasses supporting parallel updates need to provide the same constructor and override {@link #createWorker(SplittableRandom)}.
+	 */
+	protected ConfigurableProgressionModel(ConfigurableProgressionModel parent, SplittableRandom rnd) {
+		super(parent, rnd);
+		this.tracingConfig = parent.tracingConfig;
+		this.personStore = parent.personStore;
+		this.tMatrix = parent.tMatrix;
+		this.tracingCapacity = parent.tracingCapacity;
+		this.tracingProb = parent.tracingProb;
+		this.tracingDelay = parent.tracingDelay;
+	}
+
+	@Override
+	public ProgressionModel createWorker(SplittableRandom rnd) {
+		if (!supportsParallel())
+			throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support parallel state updates.");
+
+		return new ConfigurableProgressionModel(this, rnd);
+	}
+
+	@Override
+	public boolean supportsParallel() {
+		// subclasses would lose their behaviour
+		return getClass() == ConfigurableProgressionModel.class;
+	}
+
+	@Override
+	public void merge(ProgressionModel worker) {
+		super.merge(worker);
+
+		ConfigurableProgressionModel w = (ConfigurableProgressionModel) worker;
+		for (Consumer<ConfigurableProgressionModel> action : w.deferred) {
+			action.accept(this);
+		}
+
+		w.deferred.clear();
+	}
+
+	/**
+	 * Perform an action that affects other persons or shared state. Workers defer it until they are merged.
+	 */
+	private void onModel(Consumer<ConfigurableProgressionModel> action) {
+		if (isWorker())
+			deferred.add(action);
+		else
+			action.accept(this);
+	}
+
 	@Override
 	public void setIteration(int day) {
 
@@ -171,11 +234,8 @@ public class ConfigurableProgressionModel extends AbstractProgressionModel {
 		if (person.hadDiseaseStatus(DiseaseStatus.showingSymptoms) && tracingDelay > 0 &&
 				person.daysSince(DiseaseStatus.showingSymptoms, day) == tracingDelay) {
 
-			performTracing(person, now - tracingDelay * DAY, day);
+			onModel(m -> m.performTracing(person, now - tracingDelay * DAY, day));
 		}
-
-		// clear tracing if not relevant anymore
-		person.clearTraceableContractPersons(now - (tracingDelay + tracingConfig.getTracingDayDistance() + 1) * DAY);
 	}
 
 	/**
@@ -208,7 +268,7 @@ public class ConfigurableProgressionModel extends AbstractProgressionModel {
 			person.setQuarantineStatus(EpisimPerson.QuarantineStatus.full, day);
 			// Perform tracing immediately if there is no delay, otherwise needs to be done when person shows symptoms
 			if (tracingDelay == 0) {
-				performTracing(person, now, day);
+				onModel(m -> m.performTracing(person, now, day));
 			}
 
 			// count infections at locations
@@ -219,7 +279,8 @@ public class ConfigurableProgressionModel extends AbstractProgressionModel {
 					String container = person.getInfectionContainer().toString();
 					if (!container.startsWith("home") && !container.startsWith("tr") &&
 							!person.getInfectionType().contains("shop") && !person.getInfectionType().contains("pt")) {
-						locations.mergeInt(person.getInfectionContainer(), 1, Integer::sum);
+						Id<ActivityFacility> location = person.getInfectionContainer();
+						onModel(m -> m.locations.mergeInt(location, 1, Integer::sum));
 					}
 				}
 			}
@@ -246,19 +307,16 @@ public class ConfigurableProgressionModel extends AbstractProgressionModel {
 				if (tracingCapacity <= 0)
 					break;
 
-				for (EpisimPerson p : persons.values()) {
-
-					if (p.getInfectionContainer() == e.getKey()) {
+				for (EpisimPerson p : personStore.getInfectedAt(e.getKey())) {
 
-						quarantinePerson(p, day);
+					quarantinePerson(p, day);
 
-						if (tracingConfig.getStrategy() == TracingConfigGroup.Strategy.LOCATION) {
-							tracingCapacity--;
-						} else if (tracingConfig.getStrategy() == TracingConfigGroup.Strategy.LOCATION_WITH_TESTING) {
-							// assumes that all contact persons get tested
-							// then quarantines all of their contacts
-							performTracing(p, now, day);
-						}
+					if (tracingConfig.getStrategy() == TracingConfigGroup.Strategy.LOCATION) {
+						tracingCapacity--;
+					} else if (tracingConfig.getStrategy() == TracingConfigGroup.Strategy.LOCATION_WITH_TESTING) {
+						// assumes that all contact persons get tested
+						// then quarantines all of their contacts
+						performTracing(p, now, day);
 					}
 				}
 
@@ -302,6 +360,9 @@ public class ConfigurableProgressionModel extends AbstractProgressionModel {
 
 			}
 		}
+
+		// clear tracing if not relevant anymore, this is done once for all persons before the state updates
+		personStore.clearContacts(now - (tracingDelay + tracingConfig.getTracingDayDistance() + 1) * DAY);
 	}
 
 	@Override
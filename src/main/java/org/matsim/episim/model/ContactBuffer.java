@@ -0,0 +1,129 @@
+/*-
+ * #%L
+ * MATSim Episim
+ * %%
+ * Copyright (C) 2020 matsim-org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.matsim.episim.model;
+
+import org.matsim.episim.EpisimContainer;
+import org.matsim.episim.EpisimPerson;
+import org.matsim.episim.EpisimReporting;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Records the effects of a {@link ContactModel} on persons and reporting, instead of applying them directly.
+ * This is used when containers are processed in parallel, where persons may be shared between threads.
+ * The recorded effects are applied afterwards on a single thread, see {@link #apply(EpisimReporting)}.
+ */
+public final class ContactBuffer {
+
+	private static final byte INFECTION = 0;
+	private static final byte CONTACT = 1;
+	private static final byte TRACING = 2;
+
+	private final List<Entry> entries = new ArrayList<>();
+
+	void addInfection(double now, EpisimPerson target, EpisimPerson infector, EpisimContainer<?> container, String infectionType, double prob) {
+		entries.add(new Entry(INFECTION, now, target, infector, container, infectionType, prob, container.getPersons().size()));
+	}
+
+	void addContact(double now, EpisimPerson person, EpisimPerson contactPerson, EpisimContainer<?> container, String actType, double duration) {
+		entries.add(new Entry(CONTACT, now, person, contactPerson, container, actType, duration, container.getPersons().size()));
+	}
+
+	void addTracing(double now, EpisimPerson person, EpisimPerson contactPerson) {
+		entries.add(new Entry(TRACING, now, person, contactPerson, null, null, 0, 0));
+	}
+
+	public boolean isEmpty() {
+		return entries.isEmpty();
+	}
+
+	/**
+	 * Moves all entries of this buffer into a new one.
+	 */
+	public ContactBuffer drain() {
+		ContactBuffer result = new ContactBuffer();
+		result.entries.addAll(entries);
+		entries.clear();
+		return result;
+	}
+
+	/**
+	 * Appends all entries of {@code other} to this buffer.
+	 */
+	public void addAll(ContactBuffer other) {
+		entries.addAll(other.entries);
+	}
+
+	/**
+	 * Applies all effects ordered by time, entries with the same time keep their order.
+	 * Infections of persons that are not susceptible anymore, e.g. because they have been infected at another place before, are discarded.
+	 */
+	public void apply(EpisimReporting reporting) {
+
+		entries.sort(Comparator.comparingDouble(e -> e.time));
+
+		for (Entry e : entries) {
+			switch (e.type) {
+				case INFECTION:
+					if (e.person.getDiseaseStatus() == EpisimPerson.DiseaseStatus.susceptible)
+						AbstractContactModel.applyInfection(reporting, e.person, e.other, e.time, e.actType, e.value, e.container, e.groupSize);
+					break;
+				case CONTACT:
+					reporting.reportContact(e.time, e.person, e.other, e.container, e.actType, e.value, e.groupSize);
+					break;
+				case TRACING:
+					e.person.addTraceableContactPerson(e.other, e.time);
+					e.other.addTraceableContactPerson(e.person, e.time);
+					break;
+				default:
+					throw new IllegalStateException("Unknown entry type: " + e.type);
+			}
+		}
+
+		entries.clear();
+	}
+
+	private static final class Entry {
+
+		private final byte type;
+		private final double time;
+		private final EpisimPerson person;
+		private final EpisimPerson other;
+		private final EpisimContainer<?> container;
+		private final String actType;
+		private final double value;
+		private final int groupSize;
+
+		private Entry(byte type, double time, EpisimPerson person, EpisimPerson other, EpisimContainer<?> container,
+					  String actType, double value, int groupSize) {
+			this.type = type;
+			this.time = time;
+			this.person = person;
+			this.other = other;
+			this.container = container;
+			this.actType = actType;
+			this.value = value;
+			this.groupSize = groupSize;
+		}
+	}
+}
@@ -25,6 +25,7 @@ import org.matsim.episim.InfectionEventHandler;
 import org.matsim.episim.policy.Restriction;
 
 import java.util.Map;
+import java.util.SplittableRandom;
 
 /**
  * This class models the contacts of persons staying in the same place for a certain time.
@@ -45,7 +46,28 @@ public interface ContactModel {
 
 	/**
 	 * Set the current iteration and restrictions in place.
+	 * Implementations may read the restrictions only once, so this method needs to be called again after the map or any of its
+	 * restrictions have been changed.
 	 */
 	void setRestrictionsForIteration(int iteration, Map<String, Restriction> restrictions);
 
+	/**
+	 * Create an independent instance of this model, which can be used in parallel to other instances.
+	 * Workers only operate on their containers and record all other effects into {@code buffer}.
+	 *
+	 * @param rnd    random number generator to be used by the worker and its sub models
+	 * @param buffer buffer for infections, contacts and traced persons
+	 * @throws UnsupportedOperationException if this model can not be evaluated in parallel
+	 */
+	default ContactModel createWorker(SplittableRandom rnd, ContactBuffer buffer) {
+		throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support parallel contact evaluation.");
+	}
+
+	/**
+	 * Whether {@link #createWorker(SplittableRandom, ContactBuffer)} is supported by this model and the models it depends on.
+	 */
+	default boolean supportsParallel() {
+		return false;
+	}
+
 }
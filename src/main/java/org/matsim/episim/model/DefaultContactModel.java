@@ -21,14 +21,14 @@
 package org.matsim.episim.model;
 
 import com.google.inject.Inject;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.matsim.core.config.Config;
 import org.matsim.core.config.ConfigUtils;
 import org.matsim.episim.*;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.SplittableRandom;
 
 import static org.matsim.episim.EpisimPerson.DiseaseStatus;
@@ -47,9 +47,9 @@ public final class DefaultContactModel extends AbstractContactModel {
 	private final int trackingAfterDay;
 
 	/**
-	 * In order to avoid recreating a the list of other persons in the container every time it is stored as instance variable.
+	 * Slots of persons already drawn from the container. In order to avoid recreating the list every time it is stored as instance variable.
 	 */
-	private final List<EpisimPerson> otherPersonsInContainer = new ArrayList<>();
+	private final IntList drawnSlots = new IntArrayList();
 	/**
 	 * This buffer is used to store the infection type.
 	 */
@@ -64,6 +64,21 @@ public final class DefaultContactModel extends AbstractContactModel {
 		this.trackingAfterDay = ConfigUtils.addOrGetModule(config, TracingConfigGroup.class).getPutTraceablePersonsInQuarantineAfterDay();
 	}
 
+	private DefaultContactModel(SplittableRandom rnd, Config config, EpisimReporting reporting, InfectionModel infectionModel, ContactBuffer contactBuffer) {
+		super(rnd, config, infectionModel, reporting, contactBuffer);
+		this.trackingAfterDay = ConfigUtils.addOrGetModule(config, TracingConfigGroup.class).getPutTraceablePersonsInQuarantineAfterDay();
+	}
+
+	@Override
+	public ContactModel createWorker(SplittableRandom rnd, ContactBuffer contactBuffer) {
+		return new DefaultContactModel(rnd, config, reporting, infectionModel.createWorker(rnd), contactBuffer);
+	}
+
+	@Override
+	public boolean supportsParallel() {
+		return infectionModel.supportsParallel();
+	}
+
 	@Override
 	public void infectionDynamicsVehicle(EpisimPerson personLeavingVehicle, InfectionEventHandler.EpisimVehicle vehicle, double now) {
 		infectionDynamicsGeneralized(personLeavingVehicle, vehicle, now);
@@ -81,38 +96,50 @@ public final class DefaultContactModel extends AbstractContactModel {
 			return;
 		}
 
+		// start tracking late as possible because of computational costs
+		boolean trackingEnabled = iteration >= trackingAfterDay;
+
 		if (!personRelevantForTrackingOrInfectionDynamics(personLeavingContainer, container, getRestrictions(), rnd)) {
 			return;
 		}
 
-		// start tracking late as possible because of computational costs
-		boolean trackingEnabled = iteration >= trackingAfterDay;
+		// in most containers no transmission is possible at all, the random numbers are still drawn unless configured otherwise
+		boolean skip = canSkipContainer(personLeavingContainer, container, trackingEnabled);
+		if (skip && episimConfig.isSkipContainers())
+			return;
 
 		EpisimConfigGroup.InfectionParams leavingParams = null;
 
-		otherPersonsInContainer.addAll(container.getPersons());
-		otherPersonsInContainer.remove(personLeavingContainer);
+		// the leaving person is never drawn as contact person
+		drawnSlots.clear();
+		int slot = container.getSlot(personLeavingContainer);
+		if (slot >= 0)
+			drawnSlots.add(slot);
 
 		// For the time being, will just assume that the first 10 persons are the ones we interact with.  Note that because of
 		// shuffle, those are 10 different persons every day.
 
 		// persons are scaled to number of agents with sample size, but at least 3 for the small development scenarios
 //		int contactWith = Math.min(otherPersonsInContainer.size(), Math.max((int) (episimConfig.getSampleSize() * 10), 3));
-		int contactWith = Math.min(otherPersonsInContainer.size(), (int)episimConfig.getMaxContacts());
+		int contactWith = Math.min(container.getPersons().size() - drawnSlots.size(), (int) episimConfig.getMaxContacts());
 		for (int ii = 0; ii < contactWith; ii++) {
 
 			// we are essentially looking at the situation when the person leaves the container.  Interactions with other persons who have
 			// already left the container were treated then.  In consequence, we have some "circle of persons around us" (yyyy which should
 			//  depend on the density), and then a probability of infection in either direction.
 
-			// Draw the contact person and remove it -> we don't want to draw it multiple times
-			EpisimPerson contactPerson = otherPersonsInContainer.remove(rnd.nextInt(otherPersonsInContainer.size()));
+			// Draw the contact person without copying all persons in the container -> we don't want to draw it multiple times
+			EpisimPerson contactPerson = container.drawPerson(drawnSlots, rnd);
 
 
 			if (!personRelevantForTrackingOrInfectionDynamics(contactPerson, container, getRestrictions(), rnd)) {
 				continue;
 			}
 
+			if (skip) {
+				continue;
+			}
+
 			// we have thrown the random numbers, so we can bail out in some cases if we are not tracking:
 			if (!trackingEnabled) {
 				if (personLeavingContainer.getDiseaseStatus() == DiseaseStatus.infectedButNotContagious) {
@@ -126,32 +153,28 @@ public final class DefaultContactModel extends AbstractContactModel {
 				}
 			}
 
-			String leavingPersonsActivity = personLeavingContainer.getTrajectory().get(personLeavingContainer.getCurrentPositionInTrajectory()).actType;
-			String otherPersonsActivity = contactPerson.getTrajectory().get(contactPerson.getCurrentPositionInTrajectory()).actType;
-
-			StringBuilder infectionType = getInfectionType(buffer, container, leavingPersonsActivity, otherPersonsActivity);
+			EpisimPerson.Activity leavingActivity = getCurrentActivity(container, personLeavingContainer);
+			EpisimPerson.Activity otherActivity = getCurrentActivity(container, contactPerson);
+			String leavingPersonsActivity = leavingActivity.actType;
+			String otherPersonsActivity = otherActivity.actType;
 
 			double containerEnterTimeOfPersonLeaving = container.getContainerEnteringTime(personLeavingContainer.getPersonId());
 			double containerEnterTimeOfOtherPerson = container.getContainerEnteringTime(contactPerson.getPersonId());
-			double jointTimeInContainer = calculateJointTimeInContainer(now, personLeavingContainer, containerEnterTimeOfPersonLeaving, containerEnterTimeOfOtherPerson);
+			double jointTimeInContainer = calculateJointTimeInContainer(now, container, personLeavingContainer, containerEnterTimeOfPersonLeaving, containerEnterTimeOfOtherPerson);
 
 			//forbid certain cross-activity interactions, keep track of contacts
 			if (container instanceof InfectionEventHandler.EpisimFacility) {
-				//home can only interact with home, leisure or work
-				if (infectionType.indexOf("home") >= 0 && infectionType.indexOf("leis") == -1 && infectionType.indexOf("work") == -1
-						&& !(leavingPersonsActivity.startsWith("home") && otherPersonsActivity.startsWith("home"))) {
-					continue;
-				} else if (infectionType.indexOf("edu") >= 0 && infectionType.indexOf("work") == -1 && !(leavingPersonsActivity.startsWith("edu") && otherPersonsActivity.startsWith("edu"))) {
-					//edu can only interact with work or edu
+				//home can only interact with home, leisure or work, edu can only interact with work or edu
+				if (!InteractionRules.canInteract(leavingActivity, otherActivity)) {
 					continue;
 				}
 				if (trackingEnabled) {
-					trackContactPerson(personLeavingContainer, contactPerson, now, jointTimeInContainer, infectionType);
+					trackContactPerson(personLeavingContainer, contactPerson, now, jointTimeInContainer, leavingActivity, otherActivity);
 				}
 
 				// Only a subset of contacts are reported at the moment
 				// tracking has to be enabled to report more contacts
-				reporting.reportContact(now, personLeavingContainer, contactPerson, container, infectionType, jointTimeInContainer);
+				reportContact(now, personLeavingContainer, contactPerson, container, leavingPersonsActivity, otherPersonsActivity, jointTimeInContainer);
 			}
 
 			if (!AbstractContactModel.personsCanInfectEachOther(personLeavingContainer, contactPerson)) {
@@ -184,10 +207,10 @@ public final class DefaultContactModel extends AbstractContactModel {
 
 			// Parameter will only be retrieved one time
 			if (leavingParams == null)
-				leavingParams = getInfectionParams(container, personLeavingContainer, leavingPersonsActivity);
+				leavingParams = getInfectionParams(container, personLeavingContainer, leavingActivity);
 
 			// activity params of the contact person and leaving person
-			EpisimConfigGroup.InfectionParams contactParams = getInfectionParams(container, contactPerson, otherPersonsActivity);
+			EpisimConfigGroup.InfectionParams contactParams = getInfectionParams(container, contactPerson, otherActivity);
 
 			double contactIntensity = Math.min(leavingParams.getContactIntensity(), contactParams.getContactIntensity());
 
@@ -197,19 +220,16 @@ public final class DefaultContactModel extends AbstractContactModel {
 				double prob = infectionModel.calcInfectionProbability(personLeavingContainer, contactPerson, getRestrictions(),
 						leavingParams, contactParams, contactIntensity, jointTimeInContainer);
 				if (rnd.nextDouble() < prob)
-					infectPerson(personLeavingContainer, contactPerson, now, infectionType, prob, container);
+					infectPerson(personLeavingContainer, contactPerson, now, getInfectionType(buffer, container, leavingPersonsActivity, otherPersonsActivity), prob, container);
 
 			} else {
 				double prob = infectionModel.calcInfectionProbability(contactPerson, personLeavingContainer, getRestrictions(),
 						contactParams, leavingParams, contactIntensity, jointTimeInContainer);
 
 				if (rnd.nextDouble() < prob)
-					infectPerson(contactPerson, personLeavingContainer, now, infectionType, prob, container);
+					infectPerson(contactPerson, personLeavingContainer, now, getInfectionType(buffer, container, leavingPersonsActivity, otherPersonsActivity), prob, container);
 			}
 		}
-
-		// Clear cached container
-		otherPersonsInContainer.clear();
 	}
 
 
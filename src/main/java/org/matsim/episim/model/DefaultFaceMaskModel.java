@@ -24,4 +24,14 @@ public class DefaultFaceMaskModel implements FaceMaskModel {
 	public FaceMask getWornMask(EpisimPerson person, EpisimConfigGroup.InfectionParams act, Restriction restriction) {
 		return restriction.determineMask(rnd);
 	}
+
+	@Override
+	public FaceMaskModel createWorker(SplittableRandom rnd) {
+		return new DefaultFaceMaskModel(rnd);
+	}
+
+	@Override
+	public boolean supportsParallel() {
+		return true;
+	}
 }
@@ -10,6 +10,7 @@ import org.matsim.episim.VirusStrainConfigGroup;
 import org.matsim.episim.policy.Restriction;
 
 import java.util.Map;
+import java.util.SplittableRandom;
 
 /**
  * This infection model calculates the joint time two persons have been at the same place and calculates a infection probability according to:
@@ -20,6 +21,7 @@ import java.util.Map;
 public final class DefaultInfectionModel implements InfectionModel {
 
 	private final FaceMaskModel maskModel;
+	private final Config config;
 	private final EpisimConfigGroup episimConfig;
 	private final VaccinationConfigGroup vaccinationConfig;
 	private final VirusStrainConfigGroup virusStrainConfig;
@@ -28,6 +30,7 @@ public final class DefaultInfectionModel implements InfectionModel {
 	@Inject
 	public DefaultInfectionModel(FaceMaskModel faceMaskModel, Config config) {
 		this.maskModel = faceMaskModel;
+		this.config = config;
 		this.episimConfig = ConfigUtils.addOrGetModule(config, EpisimConfigGroup.class);
 		this.vaccinationConfig = ConfigUtils.addOrGetModule(config, VaccinationConfigGroup.class);
 		this.virusStrainConfig = ConfigUtils.addOrGetModule(config, VirusStrainConfigGroup.class);
@@ -39,6 +42,16 @@ public final class DefaultInfectionModel implements InfectionModel {
 		this.iteration = iteration;
 	}
 
+	@Override
+	public InfectionModel createWorker(SplittableRandom rnd) {
+		return new DefaultInfectionModel(maskModel.createWorker(rnd), config);
+	}
+
+	@Override
+	public boolean supportsParallel() {
+		return maskModel.supportsParallel();
+	}
+
 	@Override
 	public double calcInfectionProbability(EpisimPerson target, EpisimPerson infector, Map<String, Restriction> restrictions,
 										   EpisimConfigGroup.InfectionParams act1, EpisimConfigGroup.InfectionParams act2,
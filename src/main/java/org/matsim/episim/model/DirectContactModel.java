@@ -161,10 +161,10 @@ public final class DirectContactModel extends AbstractContactModel {
 				&& contactPerson.getDiseaseStatus() == DiseaseStatus.susceptible)
 			return;
 
-		String leavingPersonsActivity = personLeavingContainer.getTrajectory().get(personLeavingContainer.getCurrentPositionInTrajectory()).actType;
-		String otherPersonsActivity = contactPerson.getTrajectory().get(contactPerson.getCurrentPositionInTrajectory()).actType;
-
-		StringBuilder infectionType = getInfectionType(buffer, container, leavingPersonsActivity, otherPersonsActivity);
+		EpisimPerson.Activity leavingActivity = getCurrentActivity(container, personLeavingContainer);
+		EpisimPerson.Activity otherActivity = getCurrentActivity(container, contactPerson);
+		String leavingPersonsActivity = leavingActivity.actType;
+		String otherPersonsActivity = otherActivity.actType;
 
 		// use joint time in group as time
 		// TODO: this model does not support closing hours at the moment
@@ -178,23 +178,17 @@ public final class DirectContactModel extends AbstractContactModel {
 
 		//forbid certain cross-activity interactions, keep track of contacts
 		if (container instanceof EpisimFacility) {
-			//home can only interact with home, leisure or work
-			if (infectionType.indexOf("home") >= 0 && infectionType.indexOf("leis") == -1 && infectionType.indexOf("work") == -1
-					&& !(leavingPersonsActivity.startsWith("home") && otherPersonsActivity.startsWith("home"))) {
-				// yyyyyy we need to move out of these string convention based rules in code.  kai, aug'20
-				return;
-			} else if (infectionType.indexOf("edu") >= 0 && infectionType.indexOf("work") == -1 && !(leavingPersonsActivity.startsWith("edu") && otherPersonsActivity.startsWith("edu"))) {
-				//edu can only interact with work or edu
-				// yyyyyy we need to move out of these string convention based rules in code.  kai, aug'20
+			//home can only interact with home, leisure or work, edu can only interact with work or edu
+			if (!InteractionRules.canInteract(leavingActivity, otherActivity)) {
 				return;
 			}
 			if (trackingEnabled) {
-				trackContactPerson(personLeavingContainer, contactPerson, now, jointTimeInContainer, infectionType);
+				trackContactPerson(personLeavingContainer, contactPerson, now, jointTimeInContainer, leavingActivity, otherActivity);
 			}
 
 			// Only a subset of contacts are reported at the moment
 			// tracking has to be enabled to report more contacts
-			reporting.reportContact(now, personLeavingContainer, contactPerson, container, infectionType, jointTimeInContainer);
+			reportContact(now, personLeavingContainer, contactPerson, container, leavingPersonsActivity, otherPersonsActivity, jointTimeInContainer);
 		}
 
 		if (!AbstractContactModel.personsCanInfectEachOther(personLeavingContainer, contactPerson)) {
@@ -213,10 +207,10 @@ public final class DirectContactModel extends AbstractContactModel {
 			throw new IllegalStateException("joint time in container is not plausible for personLeavingContainer=" + personLeavingContainer.getPersonId() + " and contactPerson=" + contactPerson.getPersonId() + ". Joint time is=" + jointTimeInContainer);
 		}
 
-		EpisimConfigGroup.InfectionParams leavingParams = getInfectionParams(container, personLeavingContainer, leavingPersonsActivity);
+		EpisimConfigGroup.InfectionParams leavingParams = getInfectionParams(container, personLeavingContainer, leavingActivity);
 
 		// activity params of the contact person and leaving person
-		EpisimConfigGroup.InfectionParams contactParams = getInfectionParams(container, contactPerson, otherPersonsActivity);
+		EpisimConfigGroup.InfectionParams contactParams = getInfectionParams(container, contactPerson, otherActivity);
 
 		double contactIntensity = Math.min(leavingParams.getContactIntensity(), contactParams.getContactIntensity());
 
@@ -226,14 +220,14 @@ public final class DirectContactModel extends AbstractContactModel {
 			double prob = infectionModel.calcInfectionProbability(personLeavingContainer, contactPerson, getRestrictions(),
 					leavingParams, contactParams, contactIntensity, jointTimeInContainer);
 			if (rnd.nextDouble() < prob)
-				infectPerson(personLeavingContainer, contactPerson, now, infectionType, prob, container);
+				infectPerson(personLeavingContainer, contactPerson, now, getInfectionType(buffer, container, leavingPersonsActivity, otherPersonsActivity), prob, container);
 
 		} else {
 			double prob = infectionModel.calcInfectionProbability(contactPerson, personLeavingContainer, getRestrictions(),
 					contactParams, leavingParams, contactIntensity, jointTimeInContainer);
 
 			if (rnd.nextDouble() < prob)
-				infectPerson(contactPerson, personLeavingContainer, now, infectionType, prob, container);
+				infectPerson(contactPerson, personLeavingContainer, now, getInfectionType(buffer, container, leavingPersonsActivity, otherPersonsActivity), prob, container);
 		}
 //		}
 	}
@@ -4,6 +4,8 @@ import org.matsim.episim.EpisimConfigGroup;
 import org.matsim.episim.EpisimPerson;
 import org.matsim.episim.policy.Restriction;
 
+import java.util.SplittableRandom;
+
 /**
  * Model which decides which mask a person is wearing during activity.
  */
@@ -14,4 +16,20 @@ public interface FaceMaskModel {
 	 */
 	FaceMask getWornMask(EpisimPerson person, EpisimConfigGroup.InfectionParams act, Restriction restriction);
 
+	/**
+	 * Create an independent instance of this model using {@code rnd}, needed for parallel contact evaluation.
+	 *
+	 * @throws UnsupportedOperationException if not supported by this model
+	 */
+	default FaceMaskModel createWorker(SplittableRandom rnd) {
+		throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support parallel contact evaluation.");
+	}
+
+	/**
+	 * Whether {@link #createWorker(SplittableRandom)} is supported by this model.
+	 */
+	default boolean supportsParallel() {
+		return false;
+	}
+
 }
@@ -21,14 +21,14 @@
 package org.matsim.episim.model;
 
 import com.google.inject.Inject;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.matsim.core.config.Config;
 import org.matsim.core.config.ConfigUtils;
 import org.matsim.episim.*;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.SplittableRandom;
 
 import static org.matsim.episim.EpisimPerson.DiseaseStatus;
@@ -47,9 +47,9 @@ public final class HouseholdSecularContactModel extends AbstractContactModel {
 	private final int trackingAfterDay;
 
 	/**
-	 * In order to avoid recreating a the list of other persons in the container every time it is stored as instance variable.
+	 * Slots of persons already drawn from the container. In order to avoid recreating the list every time it is stored as instance variable.
 	 */
-	private final List<EpisimPerson> otherPersonsInContainer = new ArrayList<>();
+	private final IntList drawnSlots = new IntArrayList();
 	/**
 	 * This buffer is used to store the infection type.
 	 */
@@ -77,22 +77,22 @@ public final class HouseholdSecularContactModel extends AbstractContactModel {
 	 * This method checks whether person1 and person2 have relevant disease status for infection dynamics.
 	 * If not or if both have the same disease status, the return value is false.
 	 */
-	private static boolean personsCanInfectEachOther(EpisimPerson person1, EpisimPerson person2, String act1,String act2) {
+	private static boolean personsCanInfectEachOther(EpisimPerson person1, EpisimPerson person2, EpisimContainer<?> container, String act1, String act2) {
 		if (person1.getDiseaseStatus() == person2.getDiseaseStatus()) return false;
 		// at least one of the persons must be susceptible
 		if (person1.getDiseaseStatus() != EpisimPerson.DiseaseStatus.susceptible && person2.getDiseaseStatus() != EpisimPerson.DiseaseStatus.susceptible)
 			return false;
 //		facility separation to households
 //		do agents have a homeFacilityRefId? externals don't
-		if(person1.getAttributes().getAttribute("homeFacilityRefId") != null && person2.getAttributes().getAttribute("homeFacilityRefId") != null) {
+		if(person1.hasHomeFacility() && person2.hasHomeFacility()) {
 //			are they in the same activity in the facilty?
 			if(act1.equals(act2)) {
 //				is this activity home of non externals?
 				if(act1.startsWith("home") && !act1.endsWith("jlm")) {
 //					is the facility id indeed in their home?
-					if(person1.getCurrentContainer().getContainerId().toString().equals(person1.getAttributes().getAttribute("homeFacilityRefId"))) {
+					if(person1.isAtHome(container)) {
 //						are they in the same household?
-						if(!person1.getAttributes().getAttribute("hhid").equals(person2.getAttributes().getAttribute("hhid"))) {
+						if(!person1.isSameHousehold(person2)) {
 							return false;							
 						}
 					}
@@ -104,8 +104,8 @@ public final class HouseholdSecularContactModel extends AbstractContactModel {
 			return false;
 		}
 //		only haredim infect, andonly haredim are infected
-		boolean is1orthodox = person1.getAttributes().getAttribute("subpopulation").toString().equals("internal_Secular") ;
-		boolean is2orthodox = person2.getAttributes().getAttribute("subpopulation").toString().equals("internal_Secular");
+		boolean is1orthodox = "internal_Secular".equals(person1.getSubpopulation()) ;
+		boolean is2orthodox = "internal_Secular".equals(person2.getSubpopulation());
 		if(!is1orthodox || !is2orthodox) {
 			return false;
 		}
@@ -127,23 +127,26 @@ public final class HouseholdSecularContactModel extends AbstractContactModel {
 
 		EpisimConfigGroup.InfectionParams leavingParams = null;
 
-		otherPersonsInContainer.addAll(container.getPersons());
-		otherPersonsInContainer.remove(personLeavingContainer);
+		// the leaving person is never drawn as contact person
+		drawnSlots.clear();
+		int slot = container.getSlot(personLeavingContainer);
+		if (slot >= 0)
+			drawnSlots.add(slot);
 
 		// For the time being, will just assume that the first 10 persons are the ones we interact with.  Note that because of
 		// shuffle, those are 10 different persons every day.
 
 		// persons are scaled to number of agents with sample size, but at least 3 for the small development scenarios
 //		int contactWith = Math.min(otherPersonsInContainer.size(), Math.max((int) (episimConfig.getSampleSize() * 10), 3));
-		int contactWith = Math.min(otherPersonsInContainer.size(), (int)episimConfig.getMaxContacts());
+		int contactWith = Math.min(container.getPersons().size() - drawnSlots.size(), (int) episimConfig.getMaxContacts());
 		for (int ii = 0; ii < contactWith; ii++) {
 
 			// we are essentially looking at the situation when the person leaves the container.  Interactions with other persons who have
 			// already left the container were treated then.  In consequence, we have some "circle of persons around us" (yyyy which should
 			//  depend on the density), and then a probability of infection in either direction.
 
-			// Draw the contact person and remove it -> we don't want to draw it multiple times
-			EpisimPerson contactPerson = otherPersonsInContainer.remove(rnd.nextInt(otherPersonsInContainer.size()));
+			// Draw the contact person without copying all persons in the container -> we don't want to draw it multiple times
+			EpisimPerson contactPerson = container.drawPerson(drawnSlots, rnd);
 
 
 			if (!personRelevantForTrackingOrInfectionDynamics(contactPerson, container, getRestrictions(), rnd)) {
@@ -163,35 +166,31 @@ public final class HouseholdSecularContactModel extends AbstractContactModel {
 				}
 			}
 
-			String leavingPersonsActivity = personLeavingContainer.getTrajectory().get(personLeavingContainer.getCurrentPositionInTrajectory()).actType;
-			String otherPersonsActivity = contactPerson.getTrajectory().get(contactPerson.getCurrentPositionInTrajectory()).actType;
-
-			StringBuilder infectionType = getInfectionType(buffer, container, leavingPersonsActivity, otherPersonsActivity);
+			EpisimPerson.Activity leavingActivity = getCurrentActivity(container, personLeavingContainer);
+			EpisimPerson.Activity otherActivity = getCurrentActivity(container, contactPerson);
+			String leavingPersonsActivity = leavingActivity.actType;
+			String otherPersonsActivity = otherActivity.actType;
 
 			double containerEnterTimeOfPersonLeaving = container.getContainerEnteringTime(personLeavingContainer.getPersonId());
 			double containerEnterTimeOfOtherPerson = container.getContainerEnteringTime(contactPerson.getPersonId());
-			double jointTimeInContainer = calculateJointTimeInContainer(now, personLeavingContainer, containerEnterTimeOfPersonLeaving, containerEnterTimeOfOtherPerson);
+			double jointTimeInContainer = calculateJointTimeInContainer(now, container, personLeavingContainer, containerEnterTimeOfPersonLeaving, containerEnterTimeOfOtherPerson);
 
 			//forbid certain cross-activity interactions, keep track of contacts
 			if (container instanceof InfectionEventHandler.EpisimFacility) {
-				//home can only interact with home, leisure or work
-				if (infectionType.indexOf("home") >= 0 && infectionType.indexOf("leis") == -1 && infectionType.indexOf("work") == -1
-						&& !(leavingPersonsActivity.startsWith("home") && otherPersonsActivity.startsWith("home"))) {
-					continue;
-				} else if (infectionType.indexOf("edu") >= 0 && infectionType.indexOf("work") == -1 && !(leavingPersonsActivity.startsWith("edu") && otherPersonsActivity.startsWith("edu"))) {
-					//edu can only interact with work or edu
+				//home can only interact with home, leisure or work, edu can only interact with work or edu
+				if (!InteractionRules.canInteract(leavingActivity, otherActivity)) {
 					continue;
 				}
 				if (trackingEnabled) {
-					trackContactPerson(personLeavingContainer, contactPerson, now, jointTimeInContainer, infectionType);
+					trackContactPerson(personLeavingContainer, contactPerson, now, jointTimeInContainer, leavingActivity, otherActivity);
 				}
 
 				// Only a subset of contacts are reported at the moment
 				// tracking has to be enabled to report more contacts
-				reporting.reportContact(now, personLeavingContainer, contactPerson, container, infectionType, jointTimeInContainer);
+				reportContact(now, personLeavingContainer, contactPerson, container, leavingPersonsActivity, otherPersonsActivity, jointTimeInContainer);
 			}
 
-			if (!personsCanInfectEachOther(personLeavingContainer, contactPerson,leavingPersonsActivity,otherPersonsActivity)) {
+			if (!personsCanInfectEachOther(personLeavingContainer, contactPerson, container, leavingPersonsActivity, otherPersonsActivity)) {
 				continue;
 			}
 
@@ -221,10 +220,10 @@ public final class HouseholdSecularContactModel extends AbstractContactModel {
 
 			// Parameter will only be retrieved one time
 			if (leavingParams == null)
-				leavingParams = getInfectionParams(container, personLeavingContainer, leavingPersonsActivity);
+				leavingParams = getInfectionParams(container, personLeavingContainer, leavingActivity);
 
 			// activity params of the contact person and leaving person
-			EpisimConfigGroup.InfectionParams contactParams = getInfectionParams(container, contactPerson, otherPersonsActivity);
+			EpisimConfigGroup.InfectionParams contactParams = getInfectionParams(container, contactPerson, otherActivity);
 
 			double contactIntensity = Math.min(leavingParams.getContactIntensity(), contactParams.getContactIntensity());
 
@@ -234,19 +233,16 @@ public final class HouseholdSecularContactModel extends AbstractContactModel {
 				double prob = infectionModel.calcInfectionProbability(personLeavingContainer, contactPerson, getRestrictions(),
 						leavingParams, contactParams, contactIntensity, jointTimeInContainer);
 				if (rnd.nextDouble() < prob)
-					infectPerson(personLeavingContainer, contactPerson, now, infectionType, prob, container);
+					infectPerson(personLeavingContainer, contactPerson, now, getInfectionType(buffer, container, leavingPersonsActivity, otherPersonsActivity), prob, container);
 
 			} else {
 				double prob = infectionModel.calcInfectionProbability(contactPerson, personLeavingContainer, getRestrictions(),
 						contactParams, leavingParams, contactIntensity, jointTimeInContainer);
 
 				if (rnd.nextDouble() < prob)
-					infectPerson(contactPerson, personLeavingContainer, now, infectionType, prob, container);
+					infectPerson(contactPerson, personLeavingContainer, now, getInfectionType(buffer, container, leavingPersonsActivity, otherPersonsActivity), prob, container);
 			}
 		}
-
-		// Clear cached container
-		otherPersonsInContainer.clear();
 	}
 
 
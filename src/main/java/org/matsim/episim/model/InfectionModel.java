@@ -5,6 +5,7 @@ import org.matsim.episim.EpisimPerson;
 import org.matsim.episim.policy.Restriction;
 
 import java.util.Map;
+import java.util.SplittableRandom;
 
 public interface InfectionModel {
 
@@ -17,6 +18,23 @@ public interface InfectionModel {
 	default void setIteration(int iteration) {
 	}
 
+	/**
+	 * Create an independent instance of this model using {@code rnd}, needed for parallel contact evaluation.
+	 *
+	 * @throws UnsupportedOperationException if not supported by this model
+	 * @see ContactModel#createWorker(SplittableRandom, ContactBuffer)
+	 */
+	default InfectionModel createWorker(SplittableRandom rnd) {
+		throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support parallel contact evaluation.");
+	}
+
+	/**
+	 * Whether {@link #createWorker(SplittableRandom)} is supported by this model and the models it depends on.
+	 */
+	default boolean supportsParallel() {
+		return false;
+	}
+
 	/**
 	 * Calculates the probability that person {@code infector} infects {@code target}.
 	 *
@@ -0,0 +1,104 @@
+/*-
+ * #%L
+ * MATSim Episim
+ * %%
+ * Copyright (C) 2020 matsim-org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.matsim.episim.model;
+
+import org.matsim.episim.EpisimPerson;
+
+/**
+ * Rules which activities can interact with each other within a facility and which of these contacts can be traced.
+ * <p>
+ * Activity types are reduced to a set of flags once, based on the naming conventions of the activity types.
+ * The rules are evaluated in advance for all combinations of flags, so that contact models only need a table lookup per contact.
+ */
+public final class InteractionRules {
+
+	private static final int HOME = 1;
+	private static final int LEISURE = 1 << 1;
+	private static final int WORK = 1 << 2;
+	private static final int EDU = 1 << 3;
+	private static final int SHOP = 1 << 4;
+	private static final int PT = 1 << 5;
+	private static final int STARTS_WITH_HOME = 1 << 6;
+	private static final int STARTS_WITH_EDU = 1 << 7;
+
+	/**
+	 * Number of possible flag combinations.
+	 */
+	private static final int SIZE = 1 << 8;
+
+	private static final boolean[] INTERACTION = new boolean[SIZE * SIZE];
+	private static final boolean[] TRACING = new boolean[SIZE * SIZE];
+
+	static {
+		for (int a = 0; a < SIZE; a++) {
+			for (int b = 0; b < SIZE; b++) {
+				INTERACTION[a * SIZE + b] = evaluateInteraction(a, b);
+				TRACING[a * SIZE + b] = ((a | b) & (PT | SHOP)) == 0;
+			}
+		}
+	}
+
+	private InteractionRules() {
+	}
+
+	/**
+	 * Determine the flags of an activity type, which are stored in {@link EpisimPerson.Activity#flags}.
+	 */
+	public static int flags(String actType) {
+		int flags = 0;
+		if (actType.contains("home")) flags |= HOME;
+		if (actType.contains("leis")) flags |= LEISURE;
+		if (actType.contains("work")) flags |= WORK;
+		if (actType.contains("edu")) flags |= EDU;
+		if (actType.contains("shop")) flags |= SHOP;
+		if (actType.contains("pt")) flags |= PT;
+		if (actType.startsWith("home")) flags |= STARTS_WITH_HOME;
+		if (actType.startsWith("edu")) flags |= STARTS_WITH_EDU;
+		return flags;
+	}
+
+	/**
+	 * Whether persons performing these activities can have contact within the same facility.
+	 */
+	public static boolean canInteract(EpisimPerson.Activity a, EpisimPerson.Activity b) {
+		return INTERACTION[a.flags * SIZE + b.flags];
+	}
+
+	/**
+	 * Whether a contact between persons performing these activities can be traced.
+	 */
+	public static boolean isTraceable(EpisimPerson.Activity a, EpisimPerson.Activity b) {
+		return TRACING[a.flags * SIZE + b.flags];
+	}
+
+	private static boolean evaluateInteraction(int a, int b) {
+
+		// a rule applies if one of the activities contains the name
+		int any = a | b;
+
+		// home can only interact with home, leisure or work
+		if ((any & HOME) != 0 && (any & (LEISURE | WORK)) == 0 && (a & b & STARTS_WITH_HOME) == 0)
+			return false;
+
+		// edu can only interact with work or edu
+		return (any & EDU) == 0 || (any & WORK) != 0 || (a & b & STARTS_WITH_EDU) != 0;
+	}
+}
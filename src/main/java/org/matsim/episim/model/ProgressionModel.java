@@ -26,6 +26,7 @@ import org.matsim.episim.EpisimPerson;
 import org.matsim.episim.EpisimReporting;
 
 import java.util.Map;
+import java.util.SplittableRandom;
 
 /**
  * This class models the {@link org.matsim.episim.EpisimPerson.DiseaseStatus} state transitions at the end of the day.
@@ -49,6 +50,33 @@ public interface ProgressionModel {
 	 */
 	default void beforeStateUpdates(Map<Id<Person>, EpisimPerson> persons, int day, EpisimReporting.InfectionReport report) {}
 
+	/**
+	 * Create an instance of this model that updates a subset of persons, in parallel to other workers.
+	 * Workers only change the state of the persons they are called with, all other effects are performed by {@link #merge(ProgressionModel)}.
+	 *
+	 * @param rnd random number generator to be used by the worker
+	 * @throws UnsupportedOperationException if this model can not be updated in parallel
+	 * @see #supportsParallel()
+	 */
+	default ProgressionModel createWorker(SplittableRandom rnd) {
+		throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support parallel state updates.");
+	}
+
+	/**
+	 * Whether {@link #createWorker(SplittableRandom)} is supported.
+	 */
+	default boolean supportsParallel() {
+		return false;
+	}
+
+	/**
+	 * Apply the state of a worker created by {@link #createWorker(SplittableRandom)} to this model.
+	 * Workers need to be merged in the order of their persons.
+	 */
+	default void merge(ProgressionModel worker) {
+		throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support parallel state updates.");
+	}
+
 	/**
 	 * Checks whether any state transitions are possible. Otherwise the simulation will end.
 	 */
@@ -24,6 +24,7 @@ import com.google.inject.Inject;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
 import org.matsim.episim.*;
 
 import java.util.SplittableRandom;
@@ -62,6 +63,24 @@ public final class SymmetricContactModel extends AbstractContactModel {
 		this.traceSusceptible = tracingConfig.getTraceSusceptible();
 	}
 
+	private SymmetricContactModel(SplittableRandom rnd, Config config, EpisimReporting reporting, InfectionModel infectionModel,
+								  ContactBuffer contactBuffer) {
+		super(rnd, config, infectionModel, reporting, contactBuffer);
+		TracingConfigGroup tracingConfig = ConfigUtils.addOrGetModule(config, TracingConfigGroup.class);
+		this.trackingAfterDay = tracingConfig.getPutTraceablePersonsInQuarantineAfterDay();
+		this.traceSusceptible = tracingConfig.getTraceSusceptible();
+	}
+
+	@Override
+	public ContactModel createWorker(SplittableRandom rnd, ContactBuffer contactBuffer) {
+		return new SymmetricContactModel(rnd, config, reporting, infectionModel.createWorker(rnd), contactBuffer);
+	}
+
+	@Override
+	public boolean supportsParallel() {
+		return infectionModel.supportsParallel();
+	}
+
 	@Override
 	public void infectionDynamicsVehicle(EpisimPerson personLeavingVehicle, InfectionEventHandler.EpisimVehicle vehicle, double now) {
 		infectionDynamicsGeneralized(personLeavingVehicle, vehicle, now);
@@ -79,14 +98,43 @@ public final class SymmetricContactModel extends AbstractContactModel {
 			return;
 		}
 
+		// start tracking late as possible because of computational costs
+		boolean trackingEnabled = iteration >= trackingAfterDay;
+
 		if (!personRelevantForTrackingOrInfectionDynamics(personLeavingContainer, container, getRestrictions(), rnd)) {
 			return;
 		}
 
-		// start tracking late as possible because of computational costs
-		boolean trackingEnabled = iteration >= trackingAfterDay;
+		// in most containers no transmission is possible at all, the random numbers are still drawn unless configured otherwise
+		boolean skip = canSkipContainer(personLeavingContainer, container, trackingEnabled);
+		if (skip && episimConfig.isSkipContainers())
+			return;
 
 		EpisimConfigGroup.InfectionParams leavingParams = null;
+		double leavingIntensity = 0;
+
+		// the size of the container does not depend on the contact person and is only computed once
+		int maxPersonsInContainer = (int) (container.getMaxGroupSize() * episimConfig.getSampleSize());
+		// typical size is undefined if no vehicle file is used
+		if (container instanceof InfectionEventHandler.EpisimVehicle && container.getTypicalCapacity() > -1) {
+			maxPersonsInContainer = (int) (container.getTypicalCapacity() * episimConfig.getSampleSize());
+//			if ( container.getMaxGroupSize() > container.getTypicalCapacity() ) {
+//				log.warn("yyyyyy: vehicleId={}: maxGroupSize={} is larger than typicalCapacity={}; need to find organized answer to this.",
+//						container.getContainerId(), container.getMaxGroupSize(), container.getTypicalCapacity() );
+//			}
+//			log.warn("containerId={}; typical capacity={}; maxPersonsInContainer={}" , container.getContainerId(), container.getTypicalCapacity(), maxPersonsInContainer );
+		}
+
+		// it may happen that persons enter and leave an container at the same time
+		// effectively they have a joint time of 0 and will not count towards maximum group size
+		// still the size of the list of persons in the container may be larger than max group size
+		if (maxPersonsInContainer <= 1) {
+			log.debug("maxPersonsInContainer is={} even though there are {} persons in container={}", maxPersonsInContainer, container.getPersons().size(), container.getContainerId());
+			// maxPersonsInContainer = container.getPersons().size();
+		}
+
+		double nSpacesPerFacility = container.getNumSpaces();
+		double personsPerSpace = maxPersonsInContainer / nSpacesPerFacility;
 
 		for (EpisimPerson contactPerson : container.getPersons()) {
 
@@ -95,25 +143,6 @@ public final class SymmetricContactModel extends AbstractContactModel {
 				continue;
 			}
 
-			int maxPersonsInContainer = (int) (container.getMaxGroupSize() * episimConfig.getSampleSize());
-			// typical size is undefined if no vehicle file is used
-			if (container instanceof InfectionEventHandler.EpisimVehicle && container.getTypicalCapacity() > -1) {
-				maxPersonsInContainer = (int) (container.getTypicalCapacity() * episimConfig.getSampleSize());
-//				if ( container.getMaxGroupSize() > container.getTypicalCapacity() ) {
-//					log.warn("yyyyyy: vehicleId={}: maxGroupSize={} is larger than typicalCapacity={}; need to find organized answer to this.",
-//							container.getContainerId(), container.getMaxGroupSize(), container.getTypicalCapacity() );
-//				}
-//				log.warn("containerId={}; typical capacity={}; maxPersonsInContainer={}" , container.getContainerId(), container.getTypicalCapacity(), maxPersonsInContainer );
-			}
-
-			// it may happen that persons enter and leave an container at the same time
-			// effectively they have a joint time of 0 and will not count towards maximum group size
-			// still the size of the list of persons in the container may be larger than max group size
-			if (maxPersonsInContainer <= 1) {
-				log.debug("maxPersonsInContainer is={} even though there are {} persons in container={}", maxPersonsInContainer, container.getPersons().size(), container.getContainerId());
-				// maxPersonsInContainer = container.getPersons().size();
-			}
-
 			/*
 			if ( rnd.nextDouble() >= episimConfig.getMaxContacts()/(maxPersonsInContainer-1) ) {
 				continue;
@@ -123,7 +152,6 @@ public final class SymmetricContactModel extends AbstractContactModel {
 
 			*/
 
-			double nSpacesPerFacility = container.getNumSpaces();
 			if (rnd.nextDouble() > 1. / nSpacesPerFacility) { // i.e. other person is in other space
 				continue;
 			}
@@ -132,6 +160,10 @@ public final class SymmetricContactModel extends AbstractContactModel {
 				continue;
 			}
 
+			if (skip) {
+				continue;
+			}
+
 			// we have thrown the random numbers, so we can bail out in some cases if we are not tracking:
 			if (!trackingEnabled) {
 				if (personLeavingContainer.getDiseaseStatus() == DiseaseStatus.infectedButNotContagious) {
@@ -147,34 +179,28 @@ public final class SymmetricContactModel extends AbstractContactModel {
 					&& contactPerson.getDiseaseStatus() == DiseaseStatus.susceptible)
 				continue;
 
-			String leavingPersonsActivity = personLeavingContainer.getTrajectory().get(personLeavingContainer.getCurrentPositionInTrajectory()).actType;
-			String otherPersonsActivity = contactPerson.getTrajectory().get(contactPerson.getCurrentPositionInTrajectory()).actType;
-
-			StringBuilder infectionType = getInfectionType(buffer, container, leavingPersonsActivity, otherPersonsActivity);
+			EpisimPerson.Activity leavingActivity = getCurrentActivity(container, personLeavingContainer);
+			EpisimPerson.Activity otherActivity = getCurrentActivity(container, contactPerson);
+			String leavingPersonsActivity = leavingActivity.actType;
+			String otherPersonsActivity = otherActivity.actType;
 
 			double containerEnterTimeOfPersonLeaving = container.getContainerEnteringTime(personLeavingContainer.getPersonId());
 			double containerEnterTimeOfOtherPerson = container.getContainerEnteringTime(contactPerson.getPersonId());
-			double jointTimeInContainer = calculateJointTimeInContainer(now, personLeavingContainer, containerEnterTimeOfPersonLeaving, containerEnterTimeOfOtherPerson);
+			double jointTimeInContainer = calculateJointTimeInContainer(now, container, personLeavingContainer, containerEnterTimeOfPersonLeaving, containerEnterTimeOfOtherPerson);
 
 			//forbid certain cross-activity interactions, keep track of contacts
 			if (container instanceof InfectionEventHandler.EpisimFacility) {
-				//home can only interact with home, leisure or work
-				if (infectionType.indexOf("home") >= 0 && infectionType.indexOf("leis") == -1 && infectionType.indexOf("work") == -1
-						&& !(leavingPersonsActivity.startsWith("home") && otherPersonsActivity.startsWith("home"))) {
-					// yyyyyy we need to move out of these string convention based rules in code.  kai, aug'20
-					continue;
-				} else if (infectionType.indexOf("edu") >= 0 && infectionType.indexOf("work") == -1 && !(leavingPersonsActivity.startsWith("edu") && otherPersonsActivity.startsWith("edu"))) {
-					//edu can only interact with work or edu
-					// yyyyyy we need to move out of these string convention based rules in code.  kai, aug'20
+				//home can only interact with home, leisure or work, edu can only interact with work or edu
+				if (!InteractionRules.canInteract(leavingActivity, otherActivity)) {
 					continue;
 				}
 				if (trackingEnabled) {
-					trackContactPerson(personLeavingContainer, contactPerson, now, jointTimeInContainer, infectionType);
+					trackContactPerson(personLeavingContainer, contactPerson, now, jointTimeInContainer, leavingActivity, otherActivity);
 				}
 
 				// Only a subset of contacts are reported at the moment
 				// tracking has to be enabled to report more contacts
-				reporting.reportContact(now, personLeavingContainer, contactPerson, container, infectionType, jointTimeInContainer);
+				reportContact(now, personLeavingContainer, contactPerson, container, leavingPersonsActivity, otherPersonsActivity, jointTimeInContainer);
 			}
 
 			if (!AbstractContactModel.personsCanInfectEachOther(personLeavingContainer, contactPerson)) {
@@ -205,18 +231,16 @@ public final class SymmetricContactModel extends AbstractContactModel {
 			}
 
 			// Parameter will only be retrieved one time
-			if (leavingParams == null)
-				leavingParams = getInfectionParams(container, personLeavingContainer, leavingPersonsActivity);
+			if (leavingParams == null) {
+				leavingParams = getInfectionParams(container, personLeavingContainer, leavingActivity);
+				// this is currently 1 / (sqmPerPerson * airExchangeRate).  Need to multiply sqmPerPerson with maxPersonsInSpace to obtain room size:
+				leavingIntensity = leavingParams.getContactIntensity() / (maxPersonsInContainer / leavingParams.getSpacesPerFacility());
+			}
 
 			// activity params of the contact person and leaving person
-			EpisimConfigGroup.InfectionParams contactParams = getInfectionParams(container, contactPerson, otherPersonsActivity);
+			EpisimConfigGroup.InfectionParams contactParams = getInfectionParams(container, contactPerson, otherActivity);
 
-			// (same computation as above; could just memorize)
-			// this is currently 1 / (sqmPerPerson * airExchangeRate).  Need to multiply sqmPerPerson with maxPersonsInSpace to obtain room size:
-			double contactIntensity = Math.min(
-					leavingParams.getContactIntensity() / (maxPersonsInContainer / leavingParams.getSpacesPerFacility()),
-					contactParams.getContactIntensity() / (maxPersonsInContainer / nSpacesPerFacility)
-			);
+			double contactIntensity = Math.min(leavingIntensity, contactParams.getContactIntensity() / personsPerSpace);
 
 			// need to differentiate which person might be the infector
 			if (personLeavingContainer.getDiseaseStatus() == DiseaseStatus.susceptible) {
@@ -224,14 +248,14 @@ public final class SymmetricContactModel extends AbstractContactModel {
 				double prob = infectionModel.calcInfectionProbability(personLeavingContainer, contactPerson, getRestrictions(),
 						leavingParams, contactParams, contactIntensity, jointTimeInContainer);
 				if (rnd.nextDouble() < prob)
-					infectPerson(personLeavingContainer, contactPerson, now, infectionType, prob, container);
+					infectPerson(personLeavingContainer, contactPerson, now, getInfectionType(buffer, container, leavingPersonsActivity, otherPersonsActivity), prob, container);
 
 			} else {
 				double prob = infectionModel.calcInfectionProbability(contactPerson, personLeavingContainer, getRestrictions(),
 						contactParams, leavingParams, contactIntensity, jointTimeInContainer);
 
 				if (rnd.nextDouble() < prob)
-					infectPerson(contactPerson, personLeavingContainer, now, infectionType, prob, container);
+					infectPerson(contactPerson, personLeavingContainer, now, getInfectionType(buffer, container, leavingPersonsActivity, otherPersonsActivity), prob, container);
 			}
 		}
 	}
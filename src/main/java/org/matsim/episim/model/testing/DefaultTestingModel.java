@@ -37,7 +37,7 @@ public class DefaultTestingModel implements TestingModel {
 	/**
 	 * Ids of households that are not compliant.
 	 */
-	private final Set<String> nonCompliantHouseholds = new HashSet<>();
+	private final Set<String> nonCompliantHouseholds;
 
 	@Inject
 	DefaultTestingModel(SplittableRandom rnd, Config config, TestingConfigGroup testingConfig, EpisimConfigGroup episimConfig) {
@@ -45,6 +45,41 @@ public class DefaultTestingModel implements TestingModel {
 		this.config = config;
 		this.testingConfig = testingConfig;
 		this.episimConfig = episimConfig;
+		this.nonCompliantHouseholds = new HashSet<>();
+	}
+
+	/**
+	 * Constructor for a worker, which shares the configuration of the current day with {@code parent}.
+	 */
+	private DefaultTestingModel(DefaultTestingModel parent, SplittableRandom rnd) {
+		this.rnd = rnd;
+		this.config = parent.config;
+		this.testingConfig = parent.testingConfig;
+		this.episimConfig = parent.episimConfig;
+		this.nonCompliantHouseholds = parent.nonCompliantHouseholds;
+		this.testingCapacity = parent.testingCapacity;
+		this.testingRateForActivities = parent.testingRateForActivities;
+	}
+
+	@Override
+	public TestingModel createWorker(SplittableRandom rnd) {
+		if (!supportsParallel())
+			throw new UnsupportedOperationException("Parallel testing is only possible with unlimited capacity.");
+
+		return new DefaultTestingModel(this, rnd);
+	}
+
+	@Override
+	public boolean supportsParallel() {
+		// a limited capacity can only be distributed sequentially
+		return getClass() == DefaultTestingModel.class && (testingCapacity <= 0 || testingCapacity == Integer.MAX_VALUE);
+	}
+
+	@Override
+	public void merge(TestingModel worker) {
+		// workers only exist for unlimited capacity, there is no state to merge
+		if (!(worker instanceof DefaultTestingModel))
+			throw new IllegalArgumentException("Worker was not created by this model");
 	}
 
 	@Override
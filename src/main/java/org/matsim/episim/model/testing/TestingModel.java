@@ -6,6 +6,7 @@ import org.matsim.episim.EpisimPerson;
 import org.matsim.episim.EpisimReporting;
 
 import java.util.Map;
+import java.util.SplittableRandom;
 
 /**
  * Model to determine which persons are tested at the start of the day.
@@ -22,6 +23,33 @@ public interface TestingModel {
 	 */
 	void performTesting(EpisimPerson person, int day);
 
+	/**
+	 * Create an instance of this model that tests a subset of persons, in parallel to other workers.
+	 *
+	 * @param rnd random number generator to be used by the worker
+	 * @throws UnsupportedOperationException if this model can not be used in parallel, e.g. because of a limited capacity
+	 * @see org.matsim.episim.model.ProgressionModel#createWorker(SplittableRandom)
+	 * @see #supportsParallel()
+	 */
+	default TestingModel createWorker(SplittableRandom rnd) {
+		throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support parallel testing.");
+	}
+
+	/**
+	 * Whether {@link #createWorker(SplittableRandom)} is supported for the current iteration.
+	 * This is checked after {@link #beforeStateUpdates(Map, int, EpisimReporting.InfectionReport)}, as it may depend on the day.
+	 */
+	default boolean supportsParallel() {
+		return false;
+	}
+
+	/**
+	 * Apply the state of a worker created by {@link #createWorker(SplittableRandom)} to this model.
+	 */
+	default void merge(TestingModel worker) {
+		throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support parallel testing.");
+	}
+
 	/**
 	 * Called before {@link #performTesting(EpisimPerson, int)}.
 	 */
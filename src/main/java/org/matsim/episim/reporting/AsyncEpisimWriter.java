@@ -1,13 +1,11 @@
 package org.matsim.episim.reporting;
 
-import com.lmax.disruptor.EventHandler;
-import com.lmax.disruptor.EventTranslatorThreeArg;
+import com.lmax.disruptor.BusySpinWaitStrategy;
+import com.lmax.disruptor.EventPoller;
 import com.lmax.disruptor.EventTranslatorTwoArg;
-import com.lmax.disruptor.SleepingWaitStrategy;
-import com.lmax.disruptor.dsl.Disruptor;
-import com.lmax.disruptor.dsl.ProducerType;
+import com.lmax.disruptor.InsufficientCapacityException;
+import com.lmax.disruptor.RingBuffer;
 import com.lmax.disruptor.util.DaemonThreadFactory;
-import com.lmax.disruptor.util.Util;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.matsim.api.core.v01.events.Event;
@@ -15,111 +13,517 @@ import org.matsim.api.core.v01.events.Event;
 import java.io.BufferedWriter;
 import java.io.Closeable;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
 import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
 
 /**
- * Overwrites the default episim writer to do all IO in an extra thread using the {@link Disruptor} library.
+ * Overwrites the default episim writer to do all IO in extra threads using ring buffers of the Disruptor library.
+ * Each producing thread publishes into its own single-producer ring, so concurrent runs do not contend with each other.
+ * The rings are drained by a shared pool of I/O workers.
+ * <p>
+ * Output of one thread keeps its order. There is no order between entries that different threads publish to the same file,
+ * these may be written in any order. Episim writes each output file from the thread of its run only, events of the parallel
+ * contact and state updates are reported by that thread as well. Only closing a writer waits for the output of all threads.
+ * <p>
+ * Files opened via {@link #open(String)} or {@link #openStream(String)} with gzip compression are compressed block-wise by a pool of
+ * worker threads, so that the I/O workers and the producers of binary output do not need to compress themselves.
  */
-public final class AsyncEpisimWriter extends EpisimWriter implements EventHandler<AsyncEpisimWriter.LogEvent>,
-		EventTranslatorThreeArg<AsyncEpisimWriter.LogEvent, Writer, Event, Double>, Closeable {
+public final class AsyncEpisimWriter extends EpisimWriter implements Closeable {
 
 	private static final Logger log = LogManager.getLogger(AsyncEpisimWriter.class);
-	private final Disruptor<LogEvent> disruptor;
+
+	/**
+	 * Size of the ring of each producer, must be power of 2.
+	 */
+	private static final int RING_SIZE = 8192;
+
 	private final StringEventTranslator translator = new StringEventTranslator();
 	private final StringArrayEventTranslator arrayTranslator = new StringArrayEventTranslator();
 
+	private final WaitStrategy waitStrategy;
+	private final Worker[] workers;
+
 	/**
-	 * Constructor.
+	 * Rings of all producing threads.
+	 */
+	private final List<Ring> rings = new CopyOnWriteArrayList<>();
+	private final ThreadLocal<Ring> ring = ThreadLocal.withInitial(this::register);
+	private final AtomicInteger nextWorker = new AtomicInteger();
+
+	/**
+	 * Writers that will be closed once all previous output has been written.
+	 */
+	private final Queue<PendingClose> pendingCloses = new ConcurrentLinkedQueue<>();
+
+	/**
+	 * Threads compressing the output.
+	 */
+	private final ExecutorService compression;
+	private final int numCompressors;
+
+	/**
+	 * Compressed files, which may still be written in the background.
+	 */
+	private final Queue<ParallelGzipOutputStream> files = new ConcurrentLinkedQueue<>();
+
+	private final LongAdder published = new LongAdder();
+	private final LongAdder stalls = new LongAdder();
+	private final LongAdder stallNanos = new LongAdder();
+
+	private volatile boolean running = true;
+
+	/**
+	 * Constructor using the default number of workers and wait strategy.
 	 *
-	 * @param numProducer Expected number of producer. Does not need to be exact, but has to be larger 1 if there are multiple.
+	 * @param numProducer Expected number of producer. Does not need to be exact.
 	 */
 	public AsyncEpisimWriter(int numProducer) {
+		this(numProducer, 0, WaitStrategy.sleeping);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param numProducer  Expected number of producer. Does not need to be exact.
+	 * @param numWorkers   Number of threads doing the I/O, 0 to determine automatically.
+	 * @param waitStrategy how idle I/O threads wait for new output
+	 */
+	public AsyncEpisimWriter(int numProducer, int numWorkers, WaitStrategy waitStrategy) {
+
+		int cores = Runtime.getRuntime().availableProcessors();
+		if (numWorkers <= 0)
+			numWorkers = Math.max(1, Math.min(numProducer, cores) / 8);
+
+		this.waitStrategy = waitStrategy;
+		this.workers = new Worker[numWorkers];
+
+		// the I/O threads and the producers need cores as well
+		numCompressors = Math.max(1, Math.min(numProducer, cores - numWorkers));
+		compression = Executors.newFixedThreadPool(numCompressors, DaemonThreadFactory.INSTANCE);
+
+		log.info("Using async writer with producer={}, workers={}, ringSize={}, wait={}, compressors={}",
+				numProducer, numWorkers, RING_SIZE, waitStrategy, numCompressors);
+
+		for (int i = 0; i < workers.length; i++) {
+			workers[i] = new Worker();
+			workers[i].thread = DaemonThreadFactory.INSTANCE.newThread(workers[i]);
+			workers[i].thread.setName("episim-writer-" + i);
+			workers[i].thread.start();
+		}
+	}
+
+	/**
+	 * Creates the ring for the current thread and assigns it to one of the workers.
+	 */
+	private Ring register() {
+		if (!running)
+			throw new IllegalStateException("Writer is already closed");
+
+		Worker worker = workers[Math.floorMod(nextWorker.getAndIncrement(), workers.length)];
+		Ring r = new Ring(Thread.currentThread(), worker);
+
+		rings.add(r);
+		worker.rings.add(r);
+
+		return r;
+	}
 
-		// Specify the size of the ring buffer, must be power of 2.
-		int bufferSize = Math.max(16384, Util.ceilingNextPowerOfTwo(4096 * numProducer));
+	@Override
+	public BufferedWriter open(String filename) {
+		if (!filename.endsWith(".gz"))
+			return super.open(filename);
 
-		disruptor = new Disruptor<>(LogEvent::new, bufferSize, DaemonThreadFactory.INSTANCE,
-				numProducer == 1 ? ProducerType.SINGLE : ProducerType.MULTI, new SleepingWaitStrategy());
+		return new BufferedWriter(new OutputStreamWriter(openStream(filename), StandardCharsets.UTF_8), 65536);
+	}
 
-		// Connect the handler
-		disruptor.handleEventsWith(this);
+	/**
+	 * Streams of files ending with .gz are compressed by the worker threads as well, {@link #close()} waits until they are written.
+	 */
+	@Override
+	public OutputStream openStream(String filename) {
+		if (!filename.endsWith(".gz"))
+			return super.openStream(filename);
 
-		log.info("Using async writer with producer={}, bufferSize={}", numProducer, bufferSize);
+		// remove files that are already done
+		files.removeIf(f -> f.completion().isDone());
 
-		disruptor.start();
+		try {
+			// each compressor can have two blocks in flight
+			ParallelGzipOutputStream out = new ParallelGzipOutputStream(Path.of(filename), compression, 2 * numCompressors);
+			files.add(out);
+			return out;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
 	}
 
 	@Override
 	public void append(BufferedWriter writer, String[] array) {
-		disruptor.publishEvent(arrayTranslator, writer, array);
+		Ring r = ring.get();
+		long sequence = r.next();
+		try {
+			arrayTranslator.translateTo(r.buffer.get(sequence), sequence, writer, array);
+		} finally {
+			r.publish(sequence);
+		}
 	}
 
 	@Override
 	public void append(BufferedWriter writer, String content) {
-		disruptor.publishEvent(translator, writer, content, false);
+		Ring r = ring.get();
+		long sequence = r.next();
+		try {
+			translator.translateTo(r.buffer.get(sequence), sequence, writer, content);
+		} finally {
+			r.publish(sequence);
+		}
 	}
 
 	@Override
 	public void append(BufferedWriter writer, Event event) {
-		disruptor.publishEvent(this, writer, event, -1d);
+		append(writer, event, -1);
 	}
 
+	/**
+	 * Renders the event directly into the ring buffer entry, which avoids a translator with boxed arguments.
+	 */
 	@Override
 	public void append(BufferedWriter writer, Event event, double correctedTime) {
-		disruptor.publishEvent(this, writer, event, correctedTime);
+		Ring r = ring.get();
+		long sequence = r.next();
+		try {
+			LogEvent entry = r.buffer.get(sequence);
+			entry.writer = writer;
+			EpisimWriter.writeEvent(entry.content, event, correctedTime);
+		} finally {
+			r.publish(sequence);
+		}
 	}
 
+	/**
+	 * Closes the writer after all output that has been published until now, by any thread, has been written.
+	 */
 	@Override
 	public void close(BufferedWriter writer) {
-		disruptor.publishEvent(translator, writer, null, true);
-	}
+		Ring[] all = rings.toArray(new Ring[0]);
+		long[] cursors = new long[all.length];
+		for (int i = 0; i < all.length; i++)
+			cursors[i] = all[i].buffer.getCursor();
 
-	@Override
-	public void onEvent(LogEvent event, long sequence, boolean endOfBatch) throws Exception {
+		pendingCloses.add(new PendingClose(writer, all, cursors));
+	}
 
-		if (event.close) {
-			event.writer.close();
-		} else {
-			event.writer.append(event.content);
-			// Flushing is not enabled
-			// Events are async anyway, flushing does not make much sense
-			//if (event.flush)
-			//	event.writer.flush();
+	/**
+	 * Closes all writers that are not waiting for output anymore.
+	 *
+	 * @return whether any writer was closed
+	 */
+	private boolean processCloses() {
+		boolean closed = false;
+		for (PendingClose c : pendingCloses) {
+			// remove succeeds only for one thread
+			if (c.isReady() && pendingCloses.remove(c)) {
+				try {
+					c.writer.close();
+				} catch (IOException e) {
+					log.error("Could not close writer", e);
+				}
+				closed = true;
+			}
 		}
 
-		event.reset();
+		return closed;
 	}
 
-	@Override
-	public void translateTo(LogEvent event, long sequence, Writer arg0, Event arg1, Double arg2) {
-		event.writer = arg0;
-		event.flush = false;
-		try {
-			EpisimWriter.writeEvent(event.content, arg1, arg2);
-		} catch (IOException e) {
-			log.error("Could not append event");
-		}
+	/**
+	 * Total number of entries published into the rings.
+	 */
+	public long getPublished() {
+		return published.sum();
+	}
+
+	/**
+	 * Number of times a producer had to wait, because its ring was full.
+	 */
+	public long getStalls() {
+		return stalls.sum();
+	}
+
+	/**
+	 * Total time producers spent waiting for space in their ring.
+	 */
+	public long getStallTime(TimeUnit unit) {
+		return unit.convert(stallNanos.sum(), TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Number of entries currently waiting to be written.
+	 */
+	public long getPending() {
+		long pending = 0;
+		for (Ring r : rings)
+			pending += r.buffer.getCursor() - r.poller.getSequence().get();
+
+		return pending;
 	}
 
 	@Override
 	public void close() throws IOException {
 		log.info("Shutting down...");
-		disruptor.shutdown();
+		running = false;
+
+		try {
+			for (Worker worker : workers) {
+				LockSupport.unpark(worker.thread);
+				worker.thread.join();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for the writer", e);
+		}
+
+		// all rings are drained at this point
+		processCloses();
+
+		log.info("Written {} entries, producers stalled {} times for {} ms in total", getPublished(), getStalls(), getStallTime(TimeUnit.MILLISECONDS));
+
+		try {
+			for (ParallelGzipOutputStream file : files)
+				file.completion().join();
+		} catch (CompletionException e) {
+			throw new IOException("Could not write compressed output", e.getCause());
+		} finally {
+			files.clear();
+			compression.shutdown();
+		}
+	}
+
+	/**
+	 * How idle I/O threads wait for new output.
+	 */
+	public enum WaitStrategy {
+		/**
+		 * Spin continuously, lowest latency but occupies a core per worker.
+		 */
+		busySpin,
+		/**
+		 * Spin and yield to other threads.
+		 */
+		yielding,
+		/**
+		 * Spin, yield and then sleep briefly.
+		 */
+		sleeping,
+		/**
+		 * Park until a producer signals new output, which costs the producers an additional check per entry.
+		 */
+		blocking
+	}
+
+	/**
+	 * Single-producer ring of one thread.
+	 */
+	private final class Ring {
+
+		private final Thread owner;
+		private final Worker worker;
+		private final RingBuffer<LogEvent> buffer;
+		private final EventPoller<LogEvent> poller;
+
+		private Ring(Thread owner, Worker worker) {
+			this.owner = owner;
+			this.worker = worker;
+			// the ring is only polled, its wait strategy must not signal on publish
+			this.buffer = RingBuffer.createSingleProducer(LogEvent::new, RING_SIZE, new BusySpinWaitStrategy());
+			this.poller = buffer.newPoller();
+			this.buffer.addGatingSequences(poller.getSequence());
+		}
+
+		private long next() {
+			try {
+				return buffer.tryNext();
+			} catch (InsufficientCapacityException e) {
+				long start = System.nanoTime();
+				long sequence = buffer.next();
+				stalls.increment();
+				stallNanos.add(System.nanoTime() - start);
+				return sequence;
+			}
+		}
+
+		private void publish(long sequence) {
+			buffer.publish(sequence);
+			published.increment();
+
+			if (worker.waiting)
+				LockSupport.unpark(worker.thread);
+		}
+
+		private boolean isDrained() {
+			return poller.getSequence().get() >= buffer.getCursor();
+		}
+	}
+
+	/**
+	 * Thread writing the output of its assigned rings.
+	 */
+	private final class Worker implements Runnable, EventPoller.Handler<LogEvent> {
+
+		private final List<Ring> rings = new CopyOnWriteArrayList<>();
+
+		private Thread thread;
+		private volatile boolean waiting;
+		private char[] chars = new char[LogEvent.MAX_BUFFER_SIZE];
+
+		@Override
+		public void run() {
+			int counter = 0;
+			while (true) {
+				boolean processed = false;
+				for (Ring r : rings) {
+					try {
+						processed |= r.poller.poll(this) == EventPoller.PollState.PROCESSING;
+					} catch (Exception e) {
+						log.error("Error processing output", e);
+					}
+				}
+
+				processed |= processCloses();
+
+				if (processed) {
+					counter = 0;
+					continue;
+				}
+
+				if (!running && isDrained())
+					break;
+
+				// rings of terminated threads will not receive output anymore
+				for (Ring r : rings) {
+					if (!r.owner.isAlive() && r.isDrained()) {
+						rings.remove(r);
+						AsyncEpisimWriter.this.rings.remove(r);
+					}
+				}
+
+				counter = idle(counter);
+			}
+		}
+
+		@Override
+		public boolean onEvent(LogEvent event, long sequence, boolean endOfBatch) {
+			try {
+				int length = event.content.length();
+				if (chars.length < length)
+					chars = new char[event.content.capacity()];
+
+				event.content.getChars(0, length, chars, 0);
+				event.writer.write(chars, 0, length);
+			} catch (IOException e) {
+				log.error("Could not write content", e);
+			} finally {
+				event.reset();
+			}
+
+			return true;
+		}
+
+		private boolean isDrained() {
+			for (Ring r : rings) {
+				if (!r.isDrained())
+					return false;
+			}
+
+			return true;
+		}
+
+		/**
+		 * Wait according to the strategy, the counter is increased with each idle round.
+		 */
+		private int idle(int counter) {
+			switch (waitStrategy) {
+				case busySpin:
+					Thread.onSpinWait();
+					break;
+				case yielding:
+					if (counter < 100) Thread.onSpinWait();
+					else Thread.yield();
+					break;
+				case sleeping:
+					if (counter < 100) Thread.onSpinWait();
+					else if (counter < 200) Thread.yield();
+					else LockSupport.parkNanos(100);
+					break;
+				case blocking:
+					waiting = true;
+					// pending closes are not signalled, therefore the timeout
+					if (running && isDrained())
+						LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(10));
+					waiting = false;
+					break;
+				default:
+					throw new IllegalStateException("Unknown wait strategy " + waitStrategy);
+			}
+
+			return counter + 1;
+		}
+	}
+
+	/**
+	 * Writer to close, once all rings reached the given sequences.
+	 */
+	private static final class PendingClose {
+
+		private final Writer writer;
+		private final Ring[] rings;
+		private final long[] cursors;
+
+		private PendingClose(Writer writer, Ring[] rings, long[] cursors) {
+			this.writer = writer;
+			this.rings = rings;
+			this.cursors = cursors;
+		}
+
+		private boolean isReady() {
+			for (int i = 0; i < rings.length; i++) {
+				if (rings[i].poller.getSequence().get() < cursors[i])
+					return false;
+			}
+
+			return true;
+		}
 	}
 
 	protected static class LogEvent {
 
 		private static final int BUFFER_SIZE = 120;
 
+		/**
+		 * Buffers keep their grown capacity up to this size, so that reused entries do not need to grow again for each event.
+		 */
+		private static final int MAX_BUFFER_SIZE = 1024;
+
 		private final StringBuilder content = new StringBuilder(BUFFER_SIZE);
 		private Writer writer;
-		private boolean close = false;
-		private boolean flush = true;
 
 		private void reset() {
-			close = false;
-			flush = true;
-			if (content.capacity() > BUFFER_SIZE) {
+			writer = null;
+			if (content.capacity() > MAX_BUFFER_SIZE) {
 				content.setLength(BUFFER_SIZE);
 				content.trimToSize();
 			}
@@ -129,20 +533,14 @@ public final class AsyncEpisimWriter extends EpisimWriter implements EventHandle
 	}
 
 	/**
-	 * Copy the string to buffer and also set close attribute.
+	 * Copy the string to buffer.
 	 */
-	public static final class StringEventTranslator implements EventTranslatorThreeArg<LogEvent, Writer, String, Boolean> {
+	public static final class StringEventTranslator implements EventTranslatorTwoArg<LogEvent, Writer, String> {
 
 		@Override
-		public void translateTo(LogEvent event, long sequence, Writer arg0, String arg1, Boolean arg2) {
-
+		public void translateTo(LogEvent event, long sequence, Writer arg0, String arg1) {
 			event.writer = arg0;
-			if (arg2) {
-				event.close = true;
-			} else {
-				event.content.append(arg1);
-				event.flush = false;
-			}
+			event.content.append(arg1);
 		}
 	}
 
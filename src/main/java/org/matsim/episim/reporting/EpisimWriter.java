@@ -3,13 +3,25 @@ package org.matsim.episim.reporting;
 import com.google.common.base.Joiner;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.*;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.api.internal.HasPersonId;
 import org.matsim.core.utils.io.IOUtils;
+import org.matsim.episim.events.EpisimContactEvent;
+import org.matsim.episim.events.EpisimInfectionEvent;
+import org.matsim.episim.events.EpisimPersonStatusEvent;
+import org.matsim.episim.events.EpisimTracingEvent;
 
 import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Map;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Utility class to write reported data into csv files.
@@ -25,6 +37,11 @@ public class EpisimWriter {
 	 */
 	public static final Joiner JOINER = Joiner.on(SEPARATOR);
 
+	/**
+	 * Buffers reused for writing events, one per thread so that reporting threads do not share a lock.
+	 */
+	private final ThreadLocal<EventBuffer> buffers = ThreadLocal.withInitial(EventBuffer::new);
+
 	/**
 	 * Creates a csv writer and write the header using enum definition.
 	 */
@@ -63,31 +80,154 @@ public class EpisimWriter {
 	}
 
 	/**
-	 * Writes an event as xml representation to {@code out}.
+	 * Opens a writer for an output file, that will be written through this instance. Files ending with .gz are compressed.
+	 */
+	public BufferedWriter open(String filename) {
+		return IOUtils.getBufferedWriter(filename);
+	}
+
+	/**
+	 * Opens a binary output stream, which is written directly by the caller and not through this instance. Files ending with .gz are compressed.
+	 */
+	public OutputStream openStream(String filename) {
+		try {
+			OutputStream out = Files.newOutputStream(Path.of(filename));
+			return filename.endsWith(".gz") ? new GZIPOutputStream(out, 65536) : out;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Writes an event as xml representation to {@code out}. Episim events and the replayed input events are rendered directly,
+	 * without creating their attribute map.
 	 */
-	protected static void writeEvent(final Appendable out, final Event event, final double correctedTime) throws IOException {
+	protected static void writeEvent(final StringBuilder out, final Event event, final double correctedTime) {
 		out.append("\t<event ");
-		Map<String, String> attr = event.getAttributes();
 
-		if (correctedTime >= 0)
-			attr.put(Event.ATTRIBUTE_TIME, Double.toString(correctedTime));
+		double time = correctedTime >= 0 ? correctedTime : event.getTime();
+		if (!writeAttributes(out, event, time)) {
 
-		for (Map.Entry<String, String> entry : attr.entrySet()) {
-			out.append(entry.getKey());
-			out.append("=\"");
+			Map<String, String> attr = event.getAttributes();
 
-			writeAttributeValue(out, entry.getValue());
+			if (correctedTime >= 0)
+				attr.put(Event.ATTRIBUTE_TIME, Double.toString(correctedTime));
 
-			out.append("\" ");
+			for (Map.Entry<String, String> entry : attr.entrySet()) {
+				out.append(entry.getKey());
+				out.append("=\"");
+
+				writeAttributeValue(out, entry.getValue());
+
+				out.append("\" ");
+			}
 		}
+
 		out.append(" />\n");
 	}
 
+	/**
+	 * Writes the attributes of known event types in the same order as {@link Event#getAttributes()}.
+	 *
+	 * @return false if the event type is not known
+	 */
+	private static boolean writeAttributes(final StringBuilder out, final Event event, final double time) {
+
+		if (event instanceof EpisimPersonStatusEvent) {
+			EpisimPersonStatusEvent e = (EpisimPersonStatusEvent) event;
+			writeHeader(out, e, time, e.getPersonId());
+			if (e.getDiseaseStatus() != null)
+				writeAttribute(out, EpisimPersonStatusEvent.DISEASE_STATUS, e.getDiseaseStatus().name());
+			if (e.getQuarantineStatus() != null)
+				writeAttribute(out, EpisimPersonStatusEvent.QUARANTINE_STATUS, e.getQuarantineStatus().name());
+
+		} else if (event instanceof EpisimContactEvent) {
+			EpisimContactEvent e = (EpisimContactEvent) event;
+			writeHeader(out, e, time, e.getPersonId());
+			writeAttribute(out, ActivityEndEvent.ATTRIBUTE_ACTTYPE, e.getActType());
+			writeAttribute(out, EpisimContactEvent.CONTACT_PERSON, e.getContactPersonId());
+			out.append(EpisimContactEvent.DURATION).append("=\"").append(e.getDuration()).append("\" ");
+			writeAttribute(out, EpisimContactEvent.CONTAINER, e.getContainerId());
+			out.append(EpisimContactEvent.GROUP_SIZE).append("=\"").append(e.getGroupSize()).append("\" ");
+
+		} else if (event instanceof EpisimInfectionEvent) {
+			EpisimInfectionEvent e = (EpisimInfectionEvent) event;
+			writeHeader(out, e, time, e.getPersonId());
+			writeAttribute(out, EpisimInfectionEvent.CONTAINER, e.getContainerId());
+			writeAttribute(out, EpisimInfectionEvent.INFECTOR, e.getInfectorId());
+			writeAttribute(out, EpisimInfectionEvent.INFECTION_TYPE, e.getInfectionType());
+			out.append(EpisimInfectionEvent.GROUP_SIZE).append("=\"").append(e.getGroupSize()).append("\" ");
+			out.append(EpisimInfectionEvent.PROBABILITY).append("=\"").append(e.getProbability()).append("\" ");
+			writeAttribute(out, EpisimInfectionEvent.VIRUS_STRAIN, e.getVirusStrain().toString());
+
+		} else if (event instanceof EpisimTracingEvent) {
+			EpisimTracingEvent e = (EpisimTracingEvent) event;
+			writeHeader(out, e, time, e.getPersonId());
+			writeAttribute(out, EpisimContactEvent.CONTACT_PERSON, e.getContactPersonId());
+
+		} else if (event instanceof ActivityStartEvent) {
+			ActivityStartEvent e = (ActivityStartEvent) event;
+			writeHeader(out, e, time, e.getPersonId());
+			writeAttribute(out, ActivityStartEvent.ATTRIBUTE_LINK, e.getLinkId());
+			writeAttribute(out, ActivityStartEvent.ATTRIBUTE_FACILITY, e.getFacilityId());
+			writeAttribute(out, ActivityStartEvent.ATTRIBUTE_ACTTYPE, e.getActType());
+			Coord coord = e.getCoord();
+			if (coord != null) {
+				out.append("x=\"").append(coord.getX()).append("\" ");
+				out.append("y=\"").append(coord.getY()).append("\" ");
+			}
+
+		} else if (event instanceof ActivityEndEvent) {
+			ActivityEndEvent e = (ActivityEndEvent) event;
+			writeHeader(out, e, time, e.getPersonId());
+			writeAttribute(out, ActivityEndEvent.ATTRIBUTE_LINK, e.getLinkId());
+			writeAttribute(out, ActivityEndEvent.ATTRIBUTE_FACILITY, e.getFacilityId());
+			writeAttribute(out, ActivityEndEvent.ATTRIBUTE_ACTTYPE, e.getActType());
+
+		} else if (event instanceof PersonEntersVehicleEvent) {
+			PersonEntersVehicleEvent e = (PersonEntersVehicleEvent) event;
+			writeHeader(out, e, time, e.getPersonId());
+			writeAttribute(out, PersonEntersVehicleEvent.ATTRIBUTE_VEHICLE, e.getVehicleId());
+
+		} else if (event instanceof PersonLeavesVehicleEvent) {
+			PersonLeavesVehicleEvent e = (PersonLeavesVehicleEvent) event;
+			writeHeader(out, e, time, e.getPersonId());
+			writeAttribute(out, PersonLeavesVehicleEvent.ATTRIBUTE_VEHICLE, e.getVehicleId());
+
+		} else
+			return false;
+
+		return true;
+	}
+
+	/**
+	 * Writes the time, type and person attribute.
+	 */
+	private static void writeHeader(final StringBuilder out, final Event event, final double time, final Id<Person> person) {
+		out.append(Event.ATTRIBUTE_TIME).append("=\"").append(time).append("\" ");
+		writeAttribute(out, Event.ATTRIBUTE_TYPE, event.getEventType());
+		writeAttribute(out, HasPersonId.ATTRIBUTE_PERSON, person);
+	}
+
+	private static void writeAttribute(final StringBuilder out, final String key, final Id<?> value) {
+		if (value != null)
+			writeAttribute(out, key, value.toString());
+	}
+
+	private static void writeAttribute(final StringBuilder out, final String key, final String value) {
+		if (value == null)
+			return;
+
+		out.append(key).append("=\"");
+		writeAttributeValue(out, value);
+		out.append("\" ");
+	}
+
 	/**
 	 * Same logic as in {@link org.matsim.core.events.algorithms.EventWriterXML}. But we need to ability to write directly
 	 * to the target {@code out} without creating an intermediate representation.
 	 */
-	private static void writeAttributeValue(final Appendable out, final String attributeValue) throws IOException {
+	private static void writeAttributeValue(final StringBuilder out, final String attributeValue) {
 		if (attributeValue == null) {
 			return;
 		}
@@ -125,9 +265,8 @@ public class EpisimWriter {
 					out.append(ch);
 				}
 			}
-		}
-
-		out.append(attributeValue);
+		} else
+			out.append(attributeValue);
 	}
 
 	/**
@@ -159,12 +298,7 @@ public class EpisimWriter {
 	 * Appends an event as xml representation to the output.
 	 */
 	public void append(BufferedWriter writer, Event event) {
-		try {
-			writeEvent(writer, event, -1);
-		} catch (IOException e) {
-			log.error("Could not write event");
-			throw new UncheckedIOException(e);
-		}
+		append(writer, event, -1);
 	}
 
 	/**
@@ -173,8 +307,18 @@ public class EpisimWriter {
 	 * @see #append(BufferedWriter, Event)
 	 */
 	public void append(BufferedWriter writer, Event event, double correctedTime) {
+		EventBuffer buffer = buffers.get();
+		StringBuilder content = buffer.content;
+		content.setLength(0);
+		writeEvent(content, event, correctedTime);
+
+		if (buffer.chars.length < content.length())
+			buffer.chars = new char[content.capacity()];
+
+		content.getChars(0, content.length(), buffer.chars, 0);
 		try {
-			writeEvent(writer, event, correctedTime);
+			// the writer synchronizes itself
+			writer.write(buffer.chars, 0, content.length());
 		} catch (IOException e) {
 			log.error("Could not write event");
 			throw new UncheckedIOException(e);
@@ -192,4 +336,12 @@ public class EpisimWriter {
 			throw new UncheckedIOException(e);
 		}
 	}
+
+	/**
+	 * Rendered event of one thread.
+	 */
+	private static final class EventBuffer {
+		private final StringBuilder content = new StringBuilder(512);
+		private char[] chars = new char[512];
+	}
 }
@@ -0,0 +1,176 @@
+package org.matsim.episim.reporting;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Gzip output stream that compresses blocks of data in parallel. Each block is compressed into an independent gzip member,
+ * the members are written to the file in order. Concatenated members form a valid gzip file, which can be read by any gzip reader.
+ * <p>
+ * Writing is asynchronous, {@link #close()} does not wait until all data has been written, use {@link #completion()} for that.
+ * This class is not thread-safe, data has to be written by one thread.
+ */
+final class ParallelGzipOutputStream extends OutputStream {
+
+	/**
+	 * Uncompressed size of one block.
+	 */
+	static final int BLOCK_SIZE = 1 << 20;
+
+	private final OutputStream out;
+	private final Executor executor;
+
+	/**
+	 * Maximum number of blocks that are compressed or waiting to be written, before the writing thread is blocked.
+	 */
+	private final int maxPending;
+	private final Queue<CompletableFuture<Void>> pending = new ArrayDeque<>();
+
+	/**
+	 * Completes when the last submitted block has been written.
+	 */
+	private CompletableFuture<Void> tail = CompletableFuture.completedFuture(null);
+
+	private byte[] block = new byte[BLOCK_SIZE];
+	private int size;
+	private boolean submitted;
+	private boolean closed;
+
+	/**
+	 * Creates a new file at {@code path}.
+	 *
+	 * @param executor   executor running the compression
+	 * @param maxPending maximum number of blocks in memory
+	 */
+	ParallelGzipOutputStream(Path path, Executor executor, int maxPending) throws IOException {
+		this.out = Files.newOutputStream(path);
+		this.executor = executor;
+		this.maxPending = maxPending;
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		if (size == block.length)
+			submit();
+
+		block[size++] = (byte) b;
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		while (len > 0) {
+			if (size == block.length)
+				submit();
+
+			int n = Math.min(len, block.length - size);
+			System.arraycopy(b, off, block, size, n);
+			size += n;
+			off += n;
+			len -= n;
+		}
+	}
+
+	/**
+	 * Does nothing, data is only compressed in full blocks to keep the compression ratio.
+	 */
+	@Override
+	public void flush() {
+	}
+
+	/**
+	 * Hand the current block over to the compression.
+	 */
+	private void submit() throws IOException {
+		if (closed)
+			throw new IOException("Stream is closed");
+
+		if (tail.isCompletedExceptionally())
+			await(tail);
+
+		byte[] data = block;
+		int length = size;
+		submitted = true;
+
+		block = new byte[BLOCK_SIZE];
+		size = 0;
+
+		CompletableFuture<byte[]> compressed = CompletableFuture.supplyAsync(() -> compress(data, length), executor);
+
+		// writes are chained, so they happen in order and never concurrently
+		tail = tail.thenCombine(compressed, (v, bytes) -> {
+			try {
+				out.write(bytes);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			return null;
+		});
+
+		pending.add(tail);
+		while (pending.size() > maxPending)
+			await(pending.poll());
+	}
+
+	private static byte[] compress(byte[] data, int length) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(length / 4);
+		try (GZIPOutputStream gzip = new GZIPOutputStream(bytes, 65536)) {
+			gzip.write(data, 0, length);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+
+		return bytes.toByteArray();
+	}
+
+	private static void await(CompletableFuture<Void> future) throws IOException {
+		try {
+			future.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof UncheckedIOException)
+				throw ((UncheckedIOException) e.getCause()).getCause();
+
+			throw new IOException("Could not compress output", e.getCause());
+		}
+	}
+
+	/**
+	 * Submits the remaining data and closes the file once everything has been written.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (closed)
+			return;
+
+		// empty files need one member to be valid
+		if (size > 0 || !submitted)
+			submit();
+
+		closed = true;
+		pending.clear();
+
+		tail = tail.whenComplete((v, e) -> {
+			try {
+				out.close();
+			} catch (IOException ex) {
+				throw new UncheckedIOException(ex);
+			}
+		});
+	}
+
+	/**
+	 * Future that completes when all data has been written and the file is closed.
+	 */
+	CompletableFuture<Void> completion() {
+		return tail;
+	}
+}
@@ -31,6 +31,8 @@ import org.matsim.episim.analysis.CreateContactGraph;
 import org.matsim.episim.analysis.ExtractInfectionGraph;
 import org.matsim.episim.analysis.ExtractInfectionsByAge;
 import org.matsim.episim.analysis.RValuesFromEvents;
+import org.matsim.episim.events.ColumnarEventsReader;
+import org.matsim.episim.events.ColumnarEventsWriter;
 import org.matsim.episim.events.EpisimEventsReader;
 import picocli.AutoComplete;
 import picocli.CommandLine;
@@ -38,10 +40,14 @@ import picocli.CommandLine;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
@@ -69,6 +75,11 @@ public class AnalysisCommand implements Runnable {
 	 */
 	public static Joiner TSV = Joiner.on("\t");
 
+	/**
+	 * Suffix of the xml event files.
+	 */
+	private static final String XML_SUFFIX = ".xml.gz";
+
 	@CommandLine.Spec
 	CommandLine.Model.CommandSpec spec;
 
@@ -106,43 +117,100 @@ public class AnalysisCommand implements Runnable {
 	}
 
 	/**
-	 * Reads in all event file from a scenario.
+	 * Reads in all event files from a scenario, one day after another. The xml and binary files of the same day are read together.
 	 *
 	 * @param scenario path of the scenario, which contains the event folder
-	 * @param callback will be executed before reading an event file and pass the path
-	 * @param handler  handler for the events
+	 * @param callback will be executed once per day before reading its events and passes one of its event files
+	 * @param handlers handlers for the events
+	 * @return number of days read
 	 */
-	public static void forEachEvent(Path scenario, Consumer<Path> callback, EventHandler handler) {
+	public static int forEachEvent(Path scenario, Consumer<Path> callback, EventHandler... handlers) {
 
 		Path eventFolder = scenario.resolve("events");
 		if (!Files.exists(eventFolder)) {
 			log.warn("No events found at {}", eventFolder);
-			return;
+			return 0;
 		}
 
 		EventsManager manager = EventsUtils.createEventsManager();
 		manager.initProcessing();
-		manager.addHandler(handler);
+		for (EventHandler handler : handlers)
+			manager.addHandler(handler);
 
-		List<Path> eventFiles;
+		// event files of each day, days with more digits come last
+		Comparator<String> byDay = Comparator.<String>comparingInt(String::length).thenComparing(Comparator.naturalOrder());
+		Map<String, List<Path>> days;
 		try {
-			eventFiles = Files.list(eventFolder)
-					.filter(p -> p.getFileName().toString().contains("xml.gz"))
-					.collect(Collectors.toList());
+			days = Files.list(eventFolder)
+					.filter(AnalysisCommand::isEventFile)
+					.collect(Collectors.groupingBy(AnalysisCommand::getDay, () -> new TreeMap<>(byDay), Collectors.toList()));
 		} catch (IOException e) {
 			throw new java.io.UncheckedIOException(e);
 		}
 
-		for (Path p : eventFiles) {
-			try {
-				callback.accept(p);
-				new EpisimEventsReader(manager).readFile(p.toString());
-			} catch (UncheckedIOException e) {
-				log.warn("Caught UncheckedIOException. Could not read file {}", p);
-			}
+		for (List<Path> files : days.values()) {
+			callback.accept(files.get(0));
+			readDay(manager, files);
 		}
 
 		manager.finishProcessing();
+
+		return days.size();
+	}
+
+	/**
+	 * Reads the events of one file, together with the other event file written for the same day if present.
+	 *
+	 * @see #forEachEvent(Path, Consumer, EventHandler...)
+	 */
+	public static void readEvents(EventsManager manager, Path file) {
+
+		String day = getDay(file);
+		List<Path> files = new ArrayList<>();
+		files.add(file);
+
+		for (String suffix : List.of(XML_SUFFIX, ColumnarEventsWriter.SUFFIX)) {
+			Path sibling = file.resolveSibling(day + suffix);
+			if (!sibling.equals(file) && Files.exists(sibling))
+				files.add(sibling);
+		}
+
+		readDay(manager, files);
+	}
+
+	private static boolean isEventFile(Path path) {
+		return path.getFileName().toString().endsWith(XML_SUFFIX) || ColumnarEventsReader.isColumnar(path);
+	}
+
+	/**
+	 * File name without the format suffix, which is the same for all event files of one day.
+	 */
+	private static String getDay(Path path) {
+		String name = path.getFileName().toString();
+		if (ColumnarEventsReader.isColumnar(path))
+			return name.substring(0, name.length() - ColumnarEventsWriter.SUFFIX.length());
+		if (name.endsWith(XML_SUFFIX))
+			return name.substring(0, name.length() - XML_SUFFIX.length());
+
+		return name;
+	}
+
+	/**
+	 * Reads the event files of one day. A binary file is merged with the xml file, so that events are processed in the order they were written.
+	 */
+	private static void readDay(EventsManager manager, List<Path> files) {
+
+		Path xml = files.stream().filter(p -> !ColumnarEventsReader.isColumnar(p)).findFirst().orElse(null);
+		Path binary = files.stream().filter(ColumnarEventsReader::isColumnar).findFirst().orElse(null);
+
+		try {
+			if (binary != null)
+				new ColumnarEventsReader(manager).readFile(binary, xml);
+			else if (xml != null)
+				new EpisimEventsReader(manager).readFile(xml.toString());
+		} catch (UncheckedIOException | java.io.UncheckedIOException e) {
+			log.warn("Caught UncheckedIOException. Could not read files {}", files);
+		}
 	}
 
 	/**
@@ -361,7 +361,8 @@ public class KnRunEpisim {
 
 			ControlerUtils.checkConfigConsistencyAndWriteToLog( config, "Just before running init" );
 
-			handler.init( replay.getEvents() );
+			handler.init( replay.getCompactEvents() );
+			handler.close();
 		}
 		if (logToOutput) OutputDirectoryLogging.closeOutputDirLogging();
 
@@ -20,6 +20,7 @@
  */
 package org.matsim.run;
 
+import com.google.common.collect.ImmutableMap;
 import com.google.inject.AbstractModule;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
@@ -31,8 +32,11 @@ import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.core.config.Configurator;
 import org.matsim.api.core.v01.Scenario;
 import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigGroup;
 import org.matsim.core.config.ConfigUtils;
 import org.matsim.episim.*;
+import org.matsim.episim.policy.Restriction;
+import org.matsim.episim.policy.ShutdownPolicy;
 import org.matsim.episim.reporting.AsyncEpisimWriter;
 import org.matsim.episim.reporting.EpisimWriter;
 import org.matsim.run.modules.JlmEpisimEverythingGoes;
@@ -49,9 +53,7 @@ import java.io.InputStreamReader;
 import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Objects;
+import java.util.*;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
@@ -108,12 +110,22 @@ public class RunParallel<T> implements Callable<Integer> {
 	@CommandLine.Option(names = OPTION_ITERATIONS, description = "Maximum number of days to simulate.", defaultValue = ""+JlmEpisimEverythingGoes.iterations)
 	private int maxIterations;
 
+	@CommandLine.Option(names = "--branch-day", defaultValue = "0", description = "Simulate the days before this iteration only once and continue all runs from the resulting state. " +
+			"Runs must not differ before this day, which is checked for the config and policy. Use snapshotSeed=reseed to vary the seed afterwards. (0=disabled)")
+	private int branchDay;
+
 	@CommandLine.Option(names = "--no-reuse", defaultValue = "false", description = "Don't reuse the scenario and events for the runs.")
 	private boolean noReuse;
 
 	@CommandLine.Option(names = "--async-io", defaultValue = "false", description = "Write files asynchronously.")
 	private boolean asyncIO;
 
+	@CommandLine.Option(names = "--io-threads", defaultValue = "0", description = "Number of threads writing files when using async io. (0=automatic)")
+	private int ioThreads;
+
+	@CommandLine.Option(names = "--io-wait", defaultValue = "sleeping", description = "How idle io threads wait for output: ${COMPLETION-CANDIDATES}")
+	private AsyncEpisimWriter.WaitStrategy ioWait;
+
 	@CommandLine.Option(names = "--silent", defaultValue = "false", description = "Disable info and warn logging")
 	private boolean silent;
 
@@ -155,7 +167,7 @@ public class RunParallel<T> implements Callable<Integer> {
 
 		Scenario scenario = null;
 		ReplayHandler replay = null;
-		AsyncEpisimWriter writer = asyncIO ? new AsyncEpisimWriter(threads) : null;
+		AsyncEpisimWriter writer = asyncIO ? new AsyncEpisimWriter(threads, ioThreads, ioWait) : null;
 
 		if (noReuse) {
 			log.info("Reusing scenario and events is disabled.");
@@ -170,6 +182,24 @@ public class RunParallel<T> implements Callable<Integer> {
 			replay = injector.getInstance(ReplayHandler.class);
 		}
 
+		EpisimRunner.Snapshot snapshot = null;
+		if (branchDay > 1) {
+			if (branchDay > maxIterations) {
+				log.error("Branch day {} is after the last iteration {}", branchDay, maxIterations);
+				return 1;
+			}
+
+			for (PreparedRun.Run run : prepare.runs) {
+				String difference = differenceBefore(baseConfig, run.config, branchDay);
+				if (difference != null) {
+					log.error("Run {} can not be branched at day {}, it differs from the first run: {}", run.id, branchDay, difference);
+					return 1;
+				}
+			}
+
+			snapshot = runPrefix(prepare, scenario, replay, context);
+		}
+
 		BufferedWriter infoWriter = null;
 		if (writeMetadata) {
 			CreateBatteryForCluster.writeMetadata(output, prepare);
@@ -210,7 +240,7 @@ public class RunParallel<T> implements Callable<Integer> {
 			run.config.setContext(context);
 
 			futures.add(CompletableFuture.runAsync(
-					new Task(((BatchRun) prepare.setup).getBindings(run.id, run.args), new ParallelModule(run.config, scenario, replay, writer), maxIterations), executor)
+					new Task(((BatchRun) prepare.setup).getBindings(run.id, run.args), new ParallelModule(run.config, scenario, replay, writer), maxIterations, snapshot), executor)
 					.exceptionally(t -> {
 						log.error("Task {} failed", outputPath, t);
 						return null;
@@ -240,6 +270,134 @@ public class RunParallel<T> implements Callable<Integer> {
 		return 0;
 	}
 
+	/**
+	 * Simulate the days shared by all runs, using the setup of the first run.
+	 */
+	private EpisimRunner.Snapshot runPrefix(PreparedRun prepare, @Nullable Scenario scenario, @Nullable ReplayHandler replay, URL context) {
+
+		PreparedRun.Run run = prepare.runs.get(0);
+
+		// output directory and run id will be overwritten when the run itself is scheduled
+		run.config.controler().setOutputDirectory(output + "/prefix");
+		run.config.controler().setRunId(prepare.setup.getMetadata().name + run.id);
+		run.config.setContext(context);
+
+		log.info("Simulating shared days until {} once for all runs...", branchDay);
+
+		// outputs need to be complete when the snapshot is taken, so they are not written asynchronously
+		Injector injector = createInjector(((BatchRun) prepare.setup).getBindings(run.id, run.args), new ParallelModule(run.config, scenario, replay, null));
+
+		return injector.getInstance(EpisimRunner.class).runPrefix(branchDay);
+	}
+
+	/**
+	 * Compares all parameters of two configs and the restrictions of their policies before {@code branchDay}.
+	 * Bindings of the batch setup can not be compared and need to be the same for all runs.
+	 *
+	 * @return description of the first difference, or null if the runs are identical before the branch day
+	 */
+	@Nullable
+	static String differenceBefore(Config base, Config other, int branchDay) {
+
+		EpisimConfigGroup episimConfig = ConfigUtils.addOrGetModule(other, EpisimConfigGroup.class);
+
+		Map<String, String> baseParams = flatten(base);
+		Map<String, String> otherParams = flatten(other);
+
+		Set<String> keys = new TreeSet<>(baseParams.keySet());
+		keys.addAll(otherParams.keySet());
+
+		for (String key : keys) {
+			if (BRANCH_IGNORED.contains(key))
+				continue;
+
+			// the seed is only used after branching if it is taken from the config
+			if (key.equals("global.randomSeed") && episimConfig.getSnapshotSeed() == EpisimConfigGroup.SnapshotSeed.reseed)
+				continue;
+
+			if (!Objects.equals(baseParams.get(key), otherParams.get(key)))
+				return String.format("parameter %s is %s instead of %s", key, otherParams.get(key), baseParams.get(key));
+		}
+
+		List<Map<String, Map<String, Object>>> baseRestrictions = restrictionsBefore(base, branchDay);
+		List<Map<String, Map<String, Object>>> otherRestrictions = restrictionsBefore(other, branchDay);
+
+		for (int i = 0; i < baseRestrictions.size(); i++) {
+			if (!baseRestrictions.get(i).equals(otherRestrictions.get(i)))
+				return String.format("restrictions of day %d differ", i + 1);
+		}
+
+		return null;
+	}
+
+	/**
+	 * Parameters that do not affect the simulated days, the policy is compared by its restrictions instead.
+	 */
+	private static final Set<String> BRANCH_IGNORED = Set.of("controler.outputDirectory", "controler.runId",
+			"episim.policyConfig", "episim.snapshotInterval", "episim.startFromSnapshot", "episim.snapshotSeed");
+
+	/**
+	 * All parameters of a config by their module and parameter set.
+	 */
+	private static Map<String, String> flatten(Config config) {
+		Map<String, String> result = new HashMap<>();
+		for (ConfigGroup group : config.getModules().values())
+			flatten(group.getName() + ".", group, result);
+
+		return result;
+	}
+
+	private static void flatten(String prefix, ConfigGroup group, Map<String, String> result) {
+		group.getParams().forEach((k, v) -> result.put(prefix + k, v));
+
+		for (Map.Entry<String, ? extends Collection<? extends ConfigGroup>> e : group.getParameterSets().entrySet()) {
+			int i = 0;
+			for (ConfigGroup set : e.getValue())
+				flatten(prefix + e.getKey() + "[" + i++ + "].", set, result);
+		}
+	}
+
+	/**
+	 * Restrictions of each day before {@code branchDay}, as given by the policy of the config.
+	 * Reports passed to the policy only contain the date, so adaptive policies are compared by their restrictions without infections.
+	 */
+	private static List<Map<String, Map<String, Object>>> restrictionsBefore(Config config, int branchDay) {
+
+		EpisimConfigGroup episimConfig = ConfigUtils.addOrGetModule(config, EpisimConfigGroup.class);
+
+		ShutdownPolicy policy = episimConfig.createPolicyInstance();
+		ImmutableMap<String, Restriction> restrictions = ImmutableMap.copyOf(episimConfig.createInitialRestrictions());
+		policy.init(episimConfig.getStartDate(), restrictions);
+
+		List<Map<String, Map<String, Object>>> result = new ArrayList<>();
+		for (int day = 1; day < branchDay; day++) {
+			double time = EpisimUtils.getCorrectedTime(episimConfig.getStartOffset(), 0., day);
+			String date = episimConfig.getStartDate().plusDays(day - 1).toString();
+
+			policy.updateRestrictions(new EpisimReporting.InfectionReport("total", time, date, day), restrictions);
+
+			Map<String, Map<String, Object>> current = new LinkedHashMap<>();
+			restrictions.forEach((act, r) -> current.put(act, r.asMap()));
+			result.add(current);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Create injector for one run, with the scenario definition overwritten by {@code module}.
+	 */
+	private static Injector createInjector(@Nullable Module bindings, ParallelModule module) {
+
+		Module base;
+		if (bindings == null)
+			base = new EpisimModule();
+		else
+			base = Modules.override(new EpisimModule()).with(bindings);
+
+		return Guice.createInjector(Modules.override(base).with(module));
+	}
+
 	private static final class ParallelModule extends AbstractModule {
 
 		private final Config config;
@@ -277,25 +435,21 @@ public class RunParallel<T> implements Callable<Integer> {
 		private final Module bindings;
 		private final ParallelModule module;
 		private final int maxIterations;
+		@Nullable
+		private final EpisimRunner.Snapshot snapshot;
 
-		private Task(@Nullable Module bindings, ParallelModule module, int maxIterations) {
+		private Task(@Nullable Module bindings, ParallelModule module, int maxIterations, @Nullable EpisimRunner.Snapshot snapshot) {
 			this.bindings = bindings;
 			this.module = module;
 			this.maxIterations = maxIterations;
+			this.snapshot = snapshot;
 		}
 
 		@Override
 		public void run() {
 
-			Module base;
-			if (bindings == null)
-				base = new EpisimModule();
-			else
-				base = Modules.override(new EpisimModule()).with(bindings);
-
-
 			// overwrite the scenario definition
-			Injector injector = Guice.createInjector(Modules.override(base).with(this.module));
+			Injector injector = createInjector(bindings, this.module);
 
 			if (i.getAndIncrement() == 0) {
 				RunEpisim.printBindings(injector);
@@ -305,7 +459,7 @@ public class RunParallel<T> implements Callable<Integer> {
 
 			EpisimRunner runner = injector.getInstance(EpisimRunner.class);
 
-			runner.run(maxIterations);
+			runner.run(maxIterations, snapshot);
 
 			log.info("Task finished: {}", this.module.config.controler().getOutputDirectory());
 		}
@@ -129,8 +129,8 @@ public final class BerlinClusterTracing implements BatchRun<BerlinClusterTracing
 		@Inject
 		public CustomProgressionModel(
 				@Named("symptomatic") double symptomatic,
-				SplittableRandom rnd, EpisimConfigGroup episimConfig, TracingConfigGroup tracingConfig) {
-			super(rnd, episimConfig, tracingConfig);
+				SplittableRandom rnd, EpisimConfigGroup episimConfig, TracingConfigGroup tracingConfig, PersonStore personStore) {
+			super(rnd, episimConfig, tracingConfig, personStore);
 			this.symptomatic = symptomatic;
 		}
 
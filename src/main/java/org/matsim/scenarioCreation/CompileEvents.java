@@ -0,0 +1,87 @@
+/*-
+ * #%L
+ * MATSim Episim
+ * %%
+ * Copyright (C) 2020 matsim-org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.matsim.scenarioCreation;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.episim.EpisimConfigGroup;
+import org.matsim.episim.ReplayEventsFile;
+import org.matsim.episim.ReplayHandler;
+import picocli.CommandLine;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Callable;
+
+import static picocli.CommandLine.*;
+
+/**
+ * Compiles the input events of an episim config into the binary format read by {@link ReplayEventsFile}.
+ * The compiled file can be used as single input events file for all weekdays.
+ */
+@Command(
+		name = "compileEvents",
+		description = "Compile the event files of an episim config into a binary file for faster startup.",
+		mixinStandardHelpOptions = true
+)
+public class CompileEvents implements Callable<Integer> {
+
+	private static final Logger log = LogManager.getLogger(CompileEvents.class);
+
+	@Parameters(paramLabel = "config", arity = "1", description = "Path to config containing the episim module with input event files")
+	private Path config;
+
+	@Option(names = "--output", description = "Output file, should end with " + ReplayEventsFile.EXTENSION, defaultValue = "output/events" + ReplayEventsFile.EXTENSION)
+	private Path output;
+
+	public static void main(String[] args) {
+		System.exit(new CommandLine(new CompileEvents()).execute(args));
+	}
+
+	@Override
+	public Integer call() throws Exception {
+
+		if (!Files.exists(config)) {
+			log.error("Config file {} does not exists", config);
+			return 2;
+		}
+
+		if (!ReplayEventsFile.isCompiled(output.toString()))
+			log.warn("Output {} does not end with {} and will not be recognized as compiled events file", output, ReplayEventsFile.EXTENSION);
+
+		if (output.getParent() != null && !Files.exists(output.getParent())) Files.createDirectories(output.getParent());
+
+		Config config = ConfigUtils.loadConfig(this.config.toString(), new EpisimConfigGroup());
+		EpisimConfigGroup episimConfig = ConfigUtils.addOrGetModule(config, EpisimConfigGroup.class);
+
+		// the network is only needed for missing coordinates, which will be added when reading the compiled file
+		ReplayHandler replay = new ReplayHandler(episimConfig, null);
+
+		ReplayEventsFile.write(output, replay.getCompactEvents());
+
+		log.info("Written compiled events to {}", output);
+
+		return 0;
+	}
+
+}
@@ -0,0 +1,118 @@
+package org.matsim.episim;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.util.Modules;
+import org.matsim.core.config.Config;
+import org.matsim.episim.model.DefaultContactModel;
+import org.matsim.run.batch.SyntheticBatch;
+import org.matsim.run.modules.SyntheticScenario;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the parts of one simulated day on the {@link SyntheticScenario}, which does not need any input files.
+ * In contrast to {@link BenchmarkIteration}, this can be run on every machine.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class BenchmarkSimulation {
+
+	@Param({"20000"})
+	private int persons;
+
+	@Param({"3"})
+	private int homeSize;
+
+	@Param({"1000"})
+	private int numFacilities;
+
+	private EpisimRunner runner;
+	private InfectionEventHandler handler;
+	private ReplayHandler replay;
+	private EpisimReporting reporting;
+	private byte[] state;
+	private int iteration = 1;
+
+	public static void main(String[] args) throws RunnerException {
+
+		Options opt = new OptionsBuilder()
+				.include(BenchmarkSimulation.class.getSimpleName())
+				.warmupIterations(5).warmupTime(TimeValue.seconds(1))
+				.measurementIterations(10).measurementTime(TimeValue.seconds(1))
+				.forks(1)
+				.build();
+
+		new Runner(opt).run();
+	}
+
+	@Setup
+	public void setup() throws IOException {
+
+		SyntheticBatch.Params params = new SyntheticBatch.Params();
+		params.persons = persons;
+		params.homeSize = homeSize;
+		params.numFacilities = numFacilities;
+		params.numActivitiesPerDay = 2;
+		params.initialPerFacility = 1;
+		params.contactModel = DefaultContactModel.class;
+
+		Injector injector = Guice.createInjector(Modules.override(new EpisimModule()).with(new SyntheticScenario(params)));
+
+		injector.getInstance(Config.class).controler().setOutputDirectory(Files.createTempDirectory("episim-benchmark").toString());
+
+		runner = injector.getInstance(EpisimRunner.class);
+		replay = injector.getInstance(ReplayHandler.class);
+		handler = injector.getInstance(InfectionEventHandler.class);
+		reporting = injector.getInstance(EpisimReporting.class);
+
+		handler.init(replay.getCompactEvents());
+
+		// simulate some days to get a mix of disease states
+		for (; iteration <= 10; iteration++) {
+			runner.doStep(replay, handler, reporting, iteration);
+		}
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			handler.writeState(out);
+		}
+
+		state = bytes.toByteArray();
+	}
+
+	@Benchmark
+	public void day() {
+		runner.doStep(replay, handler, reporting, iteration++);
+	}
+
+	@Benchmark
+	public void createReports(Blackhole bh) {
+		bh.consume(reporting.createReports(handler.getPersonStore(), iteration));
+	}
+
+	@Benchmark
+	public void writeState(Blackhole bh) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(state.length);
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			handler.writeState(out);
+		}
+
+		bh.consume(bytes.size());
+	}
+
+	@Benchmark
+	public void readState() throws IOException {
+		handler.readState(new DataInputStream(new ByteArrayInputStream(state)));
+	}
+}
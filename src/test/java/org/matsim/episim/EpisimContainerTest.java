@@ -0,0 +1,174 @@
+/*-
+ * #%L
+ * MATSim Episim
+ * %%
+ * Copyright (C) 2020 matsim-org
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * #L%
+ */
+package org.matsim.episim;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class EpisimContainerTest {
+
+	@Test
+	public void addAndRemove() {
+
+		InfectionEventHandler.EpisimFacility container = EpisimTestUtils.createFacility();
+
+		List<EpisimPerson> persons = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			EpisimPerson p = EpisimTestUtils.createPerson("work", null);
+			container.addOccupant(p, i, i);
+			persons.add(p);
+		}
+
+		container.removeOccupant(persons.get(2));
+		container.removeOccupant(persons.get(9));
+		container.removeOccupant(persons.get(0));
+
+		assertThat(container.getPersons())
+				.hasSize(7)
+				.doesNotContain(persons.get(0), persons.get(2), persons.get(9))
+				.containsExactly(persons.get(1), persons.get(3), persons.get(4), persons.get(5), persons.get(6), persons.get(7), persons.get(8));
+
+		for (int i : new int[]{1, 3, 4, 5, 6, 7, 8}) {
+			assertThat(container.getContainerEnteringTime(persons.get(i).getPersonId())).isEqualTo(i);
+			assertThat(container.getPositionInTrajectory(persons.get(i))).isEqualTo(i);
+		}
+
+		assertThat(container.getContainerEnteringTime(persons.get(2).getPersonId())).isEqualTo(Double.NEGATIVE_INFINITY);
+
+		container.addOccupant(persons.get(2), 20, 2);
+		assertThat(container.getPersons()).hasSize(8).contains(persons.get(2));
+		assertThat(container.getContainerEnteringTime(persons.get(2).getPersonId())).isEqualTo(20);
+	}
+
+	@Test
+	public void drawPerson() {
+
+		InfectionEventHandler.EpisimFacility container = EpisimTestUtils.createFacility();
+
+		for (int i = 0; i < 20; i++) {
+			container.addOccupant(EpisimTestUtils.createPerson("work", null), i, i);
+		}
+
+		// removed persons leave empty slots
+		container.removeOccupant(container.getPersons().get(3));
+		container.removeOccupant(container.getPersons().get(11));
+
+		EpisimPerson leaving = container.getPersons().get(7);
+
+		// reference: removing random persons from a copy
+		List<EpisimPerson> copy = new ArrayList<>(container.getPersons());
+		copy.remove(leaving);
+
+		SplittableRandom rnd = new SplittableRandom(1);
+		List<EpisimPerson> expected = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			expected.add(copy.remove(rnd.nextInt(copy.size())));
+		}
+
+		rnd = new SplittableRandom(1);
+		IntList drawn = new IntArrayList();
+		drawn.add(container.getSlot(leaving));
+
+		List<EpisimPerson> actual = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			actual.add(container.drawPerson(drawn, rnd));
+		}
+
+		assertThat(actual).isEqualTo(expected);
+	}
+
+	@Test
+	public void compact() {
+
+		InfectionEventHandler.EpisimFacility container = EpisimTestUtils.createFacility();
+
+		List<EpisimPerson> persons = new ArrayList<>();
+		for (int i = 0; i < 40; i++) {
+			persons.add(EpisimTestUtils.createPerson("work", null));
+		}
+
+		List<EpisimPerson> expected = new ArrayList<>();
+		for (int i = 0; i < 30; i++) {
+			container.addOccupant(persons.get(i), i, i);
+			expected.add(persons.get(i));
+
+			// remove every second person, which compacts the slots several times
+			if (i % 2 == 1) {
+				container.removeOccupant(persons.get(i - 1));
+				expected.remove(persons.get(i - 1));
+			}
+		}
+
+		for (int i = 0; i < 25; i += 3) {
+			if (expected.remove(persons.get(i)))
+				container.removeOccupant(persons.get(i));
+		}
+
+		for (int i = 30; i < 40; i++) {
+			container.addOccupant(persons.get(i), i, i);
+			expected.add(persons.get(i));
+		}
+
+		assertThat(container.getPersons()).containsExactlyElementsOf(expected);
+
+		int last = -1;
+		for (int i = 0; i < expected.size(); i++) {
+			EpisimPerson p = expected.get(i);
+			assertThat(container.getPersons().get(i)).isSameAs(p);
+			assertThat(container.getSlot(p)).isGreaterThan(last);
+			assertThat(container.getContainerEnteringTime(p.getPersonId())).isEqualTo(persons.indexOf(p));
+			last = container.getSlot(p);
+		}
+
+		for (int i = 0; i < 40; i++) {
+			if (!expected.contains(persons.get(i)))
+				assertThat(container.getSlot(persons.get(i))).isEqualTo(-1);
+		}
+	}
+
+	@Test
+	public void statusCounts() {
+
+		InfectionEventHandler.EpisimFacility container = EpisimTestUtils.createFacility(3, "work", EpisimTestUtils.CONTAGIOUS);
+		EpisimTestUtils.addPersons(container, 2, "work", p -> {});
+
+		assertThat(container.getNumContagious()).isEqualTo(3);
+		assertThat(container.getNumSusceptible()).isEqualTo(2);
+
+		EpisimPerson p = container.getPersons().get(0);
+		p.setDiseaseStatus(0, EpisimPerson.DiseaseStatus.recovered);
+		p.setTraceable(false);
+
+		assertThat(container.getNumContagious()).isEqualTo(2);
+		assertThat(container.getNumTraceable()).isEqualTo(4);
+
+		EpisimTestUtils.removePerson(container, p);
+		assertThat(container.getNumContagious()).isEqualTo(2);
+		assertThat(container.getNumTraceable()).isEqualTo(4);
+	}
+}
@@ -3,6 +3,8 @@ package org.matsim.episim;
 import org.junit.Test;
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.population.Person;
+import org.matsim.facilities.ActivityFacility;
+import org.matsim.utils.objectattributes.attributable.Attributes;
 
 import java.io.*;
 import java.util.HashMap;
@@ -48,7 +50,7 @@ public class EpisimPersonTest {
 		p1.addTraceableContactPerson(p2, 0);
 		assertThat(p1.getTraceableContactPersons(0)).containsExactly(p2);
 
-		p1.clearTraceableContractPersons(Integer.MAX_VALUE);
+		EpisimTestUtils.getPersonStore().clearContacts(Integer.MAX_VALUE);
 
 		p1.setTraceable(true);
 		p2.setTraceable(false);
@@ -67,6 +69,236 @@ public class EpisimPersonTest {
 
 	}
 
+	@Test
+	public void traceableContactsByDay() {
+
+		double day = 24 * 3600;
+
+		EpisimPerson p1 = EpisimTestUtils.createPerson("work", null);
+		EpisimPerson p2 = EpisimTestUtils.createPerson("work", null);
+		EpisimPerson p3 = EpisimTestUtils.createPerson("work", null);
+
+		p1.addTraceableContactPerson(p2, day + 100);
+		p1.addTraceableContactPerson(p3, 2 * day + 100);
+		p1.addTraceableContactPerson(p3, 2 * day + 150);
+		p1.addTraceableContactPerson(p2, 3 * day + 100);
+
+		// persons contacted multiple times are only contained once
+		assertThat(p1.getTraceableContactPersons(0)).containsExactly(p2, p3);
+		assertThat(p1.getTraceableContactPersons(2 * day + 120)).containsExactly(p2, p3);
+		assertThat(p1.getTraceableContactPersons(2 * day + 200)).containsExactly(p2);
+
+		// p2 keeps its position, because it still has a contact after clearing
+		EpisimTestUtils.getPersonStore().clearContacts(2 * day);
+		assertThat(p1.getTraceableContactPersons(0)).containsExactly(p2, p3);
+
+		EpisimTestUtils.getPersonStore().clearContacts(3 * day + 200);
+		assertThat(p1.getTraceableContactPersons(0)).isEmpty();
+	}
+
+	@Test
+	public void sameContactOnOneDay() {
+
+		double day = 24 * 3600;
+
+		EpisimPerson p1 = EpisimTestUtils.createPerson("work", null);
+		EpisimPerson p2 = EpisimTestUtils.createPerson("work", null);
+
+		ContactStore store = new ContactStore();
+		store.add(p1, p2, day + 100);
+		store.add(p1, p2, day + 300);
+		store.add(p1, p2, day + 200);
+
+		// only the latest contact of the day is kept
+		assertThat(store.size()).isEqualTo(1);
+		assertThat(store.get(p1, 0)).containsExactly(p2);
+		assertThat(store.get(p1, day + 250)).containsExactly(p2);
+		assertThat(store.get(p1, day + 350)).isEmpty();
+
+		store.clear(day + 250);
+		assertThat(store.get(p1, 0)).containsExactly(p2);
+	}
+
+	@Test
+	public void contactStoreState() throws IOException {
+
+		double day = 24 * 3600;
+
+		EpisimPerson[] persons = new EpisimPerson[3];
+		for (int i = 0; i < persons.length; i++) {
+			persons[i] = EpisimTestUtils.createPerson("work", null);
+			persons[i].setIndex(i);
+		}
+
+		ContactStore store = new ContactStore();
+		store.add(persons[2], persons[0], 100);
+		store.add(persons[0], persons[1], 200);
+		store.add(persons[2], persons[1], day + 100);
+		store.add(persons[0], persons[2], day + 200);
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		store.write(new DataOutputStream(bytes));
+
+		ContactStore restored = new ContactStore();
+		restored.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), persons);
+
+		// contacts are restored in the order they have been added
+		ByteArrayOutputStream copy = new ByteArrayOutputStream();
+		restored.write(new DataOutputStream(copy));
+		assertThat(copy.toByteArray()).isEqualTo(bytes.toByteArray());
+
+		// contacts of older snapshots are added by person, which gives the same order for each person
+		ContactStore legacy = new ContactStore();
+		legacy.add(persons[0], persons[1], 200);
+		legacy.add(persons[0], persons[2], day + 200);
+		legacy.add(persons[2], persons[0], 100);
+		legacy.add(persons[2], persons[1], day + 100);
+
+		for (EpisimPerson person : persons)
+			assertThat(legacy.get(person, 0)).isEqualTo(store.get(person, 0));
+
+		// ids are compacted when the first day is dropped
+		restored.clear(day);
+		assertThat(restored.size()).isEqualTo(2);
+		assertThat(restored.get(persons[2], 0)).containsExactly(persons[1]);
+		assertThat(restored.get(persons[0], 0)).containsExactly(persons[2]);
+		assertThat(restored.get(persons[1], 0)).isEmpty();
+	}
+
+	@Test
+	public void infectedAt() {
+
+		InfectionEventHandler.EpisimFacility f1 = EpisimTestUtils.createFacility();
+		InfectionEventHandler.EpisimFacility f2 = EpisimTestUtils.createFacility();
+		Id<ActivityFacility> id1 = f1.getContainerId();
+
+		PersonStore store = new PersonStore(3);
+		EpisimPerson p1 = new EpisimPerson(Id.createPersonId("i1"), new Attributes(), true, EpisimTestUtils.getReporting(), store);
+		EpisimPerson p2 = new EpisimPerson(Id.createPersonId("i2"), new Attributes(), true, EpisimTestUtils.getReporting(), store);
+		EpisimPerson p3 = new EpisimPerson(Id.createPersonId("i3"), new Attributes(), true, EpisimTestUtils.getReporting(), store);
+
+		EpisimPerson[] persons = {p2, p1, p3};
+		for (int i = 0; i < persons.length; i++)
+			persons[i].setIndex(i);
+
+		store.reorder(persons);
+
+		p1.setInfectionContainer(f1);
+		p2.setInfectionContainer(f1);
+		p3.setInfectionContainer(f2);
+
+		assertThat(store.getInfectedAt(id1)).containsExactly(p2, p1);
+		assertThat(store.getInfectedAt(f2.getContainerId())).containsExactly(p3);
+
+		p2.setInfectionContainer(f2);
+		assertThat(store.getInfectedAt(id1)).containsExactly(p1);
+		assertThat(store.getInfectedAt(f2.getContainerId())).containsExactly(p2, p3);
+	}
+
+	@Test
+	public void reorder() {
+
+		PersonStore store = new PersonStore(2);
+		EpisimPerson p1 = new EpisimPerson(Id.createPersonId("r1"), new Attributes(), true, EpisimTestUtils.getReporting(), store);
+		EpisimPerson p2 = new EpisimPerson(Id.createPersonId("r2"), new Attributes(), true, EpisimTestUtils.getReporting(), store);
+
+		p1.setDiseaseStatus(100, EpisimPerson.DiseaseStatus.contagious);
+		p1.setQuarantineStatus(EpisimPerson.QuarantineStatus.atHome, 2);
+		p1.setVaccinationStatus(EpisimPerson.VaccinationStatus.yes, 1);
+		p2.setTestStatus(EpisimPerson.TestStatus.positive, 3);
+
+		p1.addTraceableContactPerson(p2, 100);
+		store.reorder(new EpisimPerson[]{p2, p1});
+
+		assertThat(p1.getDiseaseStatus()).isEqualTo(EpisimPerson.DiseaseStatus.contagious);
+		assertThat(p1.hadDiseaseStatus(EpisimPerson.DiseaseStatus.contagious)).isTrue();
+		assertThat(p1.hadDiseaseStatus(EpisimPerson.DiseaseStatus.recovered)).isFalse();
+		assertThat(p1.daysSinceQuarantine(4)).isEqualTo(2);
+		assertThat(p1.daysSince(EpisimPerson.VaccinationStatus.yes, 3)).isEqualTo(2);
+		assertThat(p2.getDiseaseStatus()).isEqualTo(EpisimPerson.DiseaseStatus.susceptible);
+		assertThat(p2.getTestStatus()).isEqualTo(EpisimPerson.TestStatus.positive);
+
+		assertThat(p1.getTraceableContactPersons(0)).containsExactly(p2);
+
+		// state is stored in the new slot
+		p2.setDiseaseStatus(200, EpisimPerson.DiseaseStatus.recovered);
+		assertThat(PersonStore.DISEASE_STATUS[store.diseaseStatus[0]]).isEqualTo(EpisimPerson.DiseaseStatus.recovered);
+		assertThat(p1.getDiseaseStatus()).isEqualTo(EpisimPerson.DiseaseStatus.contagious);
+	}
+
+	@Test
+	public void districtCounts() {
+
+		PersonStore store = new PersonStore(2);
+		Attributes attrs = new Attributes();
+		attrs.putAttribute("district", "Berlin");
+
+		EpisimPerson p1 = new EpisimPerson(Id.createPersonId("d1"), attrs, true, null, store);
+		EpisimPerson p2 = new EpisimPerson(Id.createPersonId("d2"), new Attributes(), true, null, store);
+
+		assertThat(store.getNumDistricts()).isEqualTo(2);
+		assertThat(store.getDistrictName(1)).isEqualTo(PersonStore.UNKNOWN_DISTRICT);
+		assertThat(store.count(0, EpisimPerson.DiseaseStatus.susceptible)).isEqualTo(1);
+
+		p1.setQuarantineStatus(EpisimPerson.QuarantineStatus.full, 1);
+		p2.setVaccinationStatus(EpisimPerson.VaccinationStatus.yes, 1);
+
+		store.setTestDay(2);
+		p1.setTestStatus(EpisimPerson.TestStatus.negative, 2);
+		p2.setTestStatus(EpisimPerson.TestStatus.negative, 1);
+
+		assertThat(store.count(0, EpisimPerson.QuarantineStatus.full)).isEqualTo(1);
+		assertThat(store.count(1, EpisimPerson.QuarantineStatus.full)).isEqualTo(0);
+		assertThat(store.count(1, EpisimPerson.VaccinationStatus.yes)).isEqualTo(1);
+		assertThat(store.countTested(0, 2)).isEqualTo(1);
+		assertThat(store.countTested(1, 2)).isEqualTo(0);
+
+		// back-dated test is not counted anymore
+		p1.setTestStatus(EpisimPerson.TestStatus.untested, 1);
+		assertThat(store.countTested(0, 2)).isEqualTo(0);
+
+		// counts are the same after reordering
+		store.reorder(new EpisimPerson[]{p2, p1});
+		store.recount();
+
+		assertThat(store.count(0, EpisimPerson.QuarantineStatus.full)).isEqualTo(1);
+		assertThat(store.count(1, EpisimPerson.VaccinationStatus.yes)).isEqualTo(1);
+		assertThat(store.countTested(0, 2)).isEqualTo(0);
+	}
+
+	@Test
+	public void household() {
+
+		PersonStore store = new PersonStore(3);
+		Attributes attrs = new Attributes();
+		attrs.putAttribute("hhid", 42);
+		attrs.putAttribute("homeFacilityRefId", "h1");
+
+		EpisimPerson p1 = new EpisimPerson(Id.createPersonId("h1"), attrs, true, null, store);
+		EpisimPerson p2 = new EpisimPerson(Id.createPersonId("h2"), attrs, true, null, store);
+		EpisimPerson p3 = new EpisimPerson(Id.createPersonId("h3"), new Attributes(), true, null, store);
+
+		InfectionEventHandler.EpisimFacility home = new InfectionEventHandler.EpisimFacility(Id.create("h1", ActivityFacility.class));
+		InfectionEventHandler.EpisimFacility other = new InfectionEventHandler.EpisimFacility(Id.create("h2", ActivityFacility.class));
+
+		assertThat(p1.getHouseholdId()).isEqualTo(p2.getHouseholdId()).isGreaterThanOrEqualTo(0);
+		assertThat(p3.getHouseholdId()).isNegative();
+		assertThat(p3.hasHomeFacility()).isFalse();
+
+		assertThat(p1.isSameHousehold(p2)).isTrue();
+		assertThat(p1.isSameHousehold(p3)).isFalse();
+		assertThat(p3.isSameHousehold(p3)).isFalse();
+
+		assertThat(p1.isAtHome(home)).isTrue();
+		assertThat(p1.isAtHome(other)).isFalse();
+		assertThat(p3.isAtHome(home)).isFalse();
+
+		store.reorder(new EpisimPerson[]{p3, p2, p1});
+
+		assertThat(p1.getHouseholdId()).isEqualTo(p2.getHouseholdId()).isEqualTo(0);
+		assertThat(p3.getHouseholdId()).isNegative();
+	}
+
 	@Test
 	public void readWrite() throws IOException {
 
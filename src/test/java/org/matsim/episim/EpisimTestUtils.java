@@ -31,6 +31,11 @@ public class EpisimTestUtils {
 	private static final AtomicLong ID = new AtomicLong(0);
 	private static final EpisimReporting reporting = Mockito.mock(EpisimReporting.class, Mockito.withSettings().stubOnly());
 
+	/**
+	 * Store shared by all created persons.
+	 */
+	private static PersonStore store = new PersonStore(1024);
+
 	public static final EpisimConfigGroup TEST_CONFIG = ConfigUtils.addOrGetModule(createTestConfig(), EpisimConfigGroup.class);
 
 	/**
@@ -41,10 +46,18 @@ public class EpisimTestUtils {
 	}
 
 	/**
-	 * Reset the person id counter.
+	 * Get the store shared by all created persons.
+	 */
+	public static PersonStore getPersonStore() {
+		return store;
+	}
+
+	/**
+	 * Reset the person id counter and the state of all persons.
 	 */
 	public static void resetIds() {
 		ID.set(0);
+		store = new PersonStore(1024);
 	}
 
 	/**
@@ -102,7 +115,7 @@ public class EpisimTestUtils {
 	 * Create a person and add to container.
 	 */
 	public static EpisimPerson createPerson(String currentAct, @Nullable EpisimContainer<?> container) {
-		EpisimPerson p = new EpisimPerson(Id.createPersonId(ID.getAndIncrement()), new Attributes(), reporting);
+		EpisimPerson p = new EpisimPerson(Id.createPersonId(ID.getAndIncrement()), new Attributes(), true, reporting, store);
 
 		p.getTrajectory().add(new EpisimPerson.Activity(currentAct, TEST_CONFIG.selectInfectionParams(currentAct)));
 
@@ -117,7 +130,7 @@ public class EpisimTestUtils {
 	 * Create a person with specific reporting.
 	 */
 	public static EpisimPerson createPerson(EpisimReporting reporting) {
-		return new EpisimPerson(Id.createPersonId(ID.getAndIncrement()), new Attributes(), reporting);
+		return new EpisimPerson(Id.createPersonId(ID.getAndIncrement()), new Attributes(), true, reporting, store);
 	}
 
 	/**
@@ -18,6 +18,7 @@ import org.matsim.run.modules.SnzBerlinScenario25pct2020;
 import java.io.*;
 import java.time.DayOfWeek;
 import java.time.LocalDate;
+import java.util.Arrays;
 import java.util.Map;
 import java.util.SplittableRandom;
 import java.util.TreeMap;
@@ -95,6 +96,36 @@ public class EpisimUtilsTest {
 				.isEqualTo("");
 	}
 
+	@Test
+	public void arrays() throws IOException {
+
+		int[] ints = new int[20000];
+		double[] doubles = new double[20000];
+		for (int i = 0; i < ints.length; i++) {
+			ints[i] = i * 31 - 5000;
+			doubles[i] = i / 7d;
+		}
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		DataOutputStream dout = new DataOutputStream(out);
+
+		EpisimUtils.writeInts(dout, ints, 19999);
+		EpisimUtils.writeDoubles(dout, doubles, ints.length);
+
+		DataInputStream din = new DataInputStream(new ByteArrayInputStream(out.toByteArray()));
+
+		int[] readInts = new int[ints.length];
+		double[] readDoubles = new double[doubles.length];
+
+		EpisimUtils.readInts(din, readInts, 19999);
+		EpisimUtils.readDoubles(din, readDoubles, doubles.length);
+
+		assertThat(readInts).startsWith(Arrays.copyOf(ints, 19999));
+		assertThat(readInts[19999]).isEqualTo(0);
+		assertThat(readDoubles).containsExactly(doubles);
+		assertThat(din.available()).isEqualTo(0);
+	}
+
 	@Test
 	public void nextLogNormal() {
 
@@ -0,0 +1,99 @@
+package org.matsim.episim;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.*;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.facilities.ActivityFacility;
+import org.matsim.testcases.MatsimTestUtils;
+import org.matsim.vehicles.Vehicle;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.DayOfWeek;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ReplayEventsFileTest {
+
+	@Rule
+	public MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Test
+	public void roundTrip() throws IOException {
+
+		Id<Person> p1 = Id.createPersonId("p1");
+		Id<Person> p2 = Id.createPersonId("p2");
+		Id<Link> link = Id.createLinkId("l1");
+		Id<ActivityFacility> home = Id.create("home1", ActivityFacility.class);
+		Id<Vehicle> bus = Id.createVehicleId("bus");
+
+		List<Event> weekday = List.of(
+				new ActivityEndEvent(3600, p1, link, home, "home"),
+				new PersonEntersVehicleEvent(3700, p1, bus),
+				new PersonEntersVehicleEvent(3800, p2, bus),
+				new PersonLeavesVehicleEvent(4000, p1, bus),
+				new ActivityStartEvent(4100, p1, link, home, "work", new Coord(1.5, 2.5)),
+				new ActivityStartEvent(4200, p2, link, home, "home", null)
+		);
+
+		List<Event> sunday = List.of(
+				// not representable as float
+				new ActivityEndEvent(16_777_217.25, p2, link, home, "home")
+		);
+
+		Map<DayOfWeek, List<Event>> events = new EnumMap<>(DayOfWeek.class);
+		for (DayOfWeek day : DayOfWeek.values()) {
+			events.put(day, day == DayOfWeek.SUNDAY ? sunday : weekday);
+		}
+
+		Path file = Path.of(utils.getOutputDirectory(), "events" + ReplayEventsFile.EXTENSION);
+		ReplayEventsFile.write(file, CompactEvents.of(events));
+
+		Map<DayOfWeek, List<Event>> read = ReplayEventsFile.read(file).toEvents(null);
+
+		assertThat(read).containsOnlyKeys(DayOfWeek.values());
+
+		// days of the same block share the list
+		assertThat(read.get(DayOfWeek.MONDAY)).isSameAs(read.get(DayOfWeek.FRIDAY));
+		assertThat(read.get(DayOfWeek.SUNDAY)).hasSize(1);
+		assertThat(read.get(DayOfWeek.SUNDAY).get(0).getTime()).isEqualTo(16_777_217.25);
+
+		List<Event> monday = read.get(DayOfWeek.MONDAY);
+		assertThat(monday).hasSize(weekday.size());
+
+		for (int i = 0; i < weekday.size(); i++) {
+			assertThat(monday.get(i).getClass()).isEqualTo(weekday.get(i).getClass());
+			assertThat(monday.get(i).getAttributes()).isEqualTo(weekday.get(i).getAttributes());
+		}
+
+		ActivityStartEvent start = (ActivityStartEvent) monday.get(4);
+		assertThat(start.getActType()).isSameAs("work");
+		assertThat(start.getCoord()).isEqualTo(new Coord(1.5, 2.5));
+
+		assertThat(((ActivityStartEvent) monday.get(5)).getCoord()).isNull();
+	}
+
+	@Test
+	public void facilitiesHandling() throws IOException {
+
+		CompactEvents.Builder builder = new CompactEvents.Builder(EpisimConfigGroup.FacilitiesHandling.snz);
+		builder.activityEnd(3600, Id.createPersonId("p1"), Id.createLinkId("l1"), Id.create("home1", ActivityFacility.class), "home");
+
+		CompactEvents.Day day = builder.finishDay();
+		for (DayOfWeek d : DayOfWeek.values())
+			builder.put(d, day);
+
+		Path file = Path.of(utils.getOutputDirectory(), "events" + ReplayEventsFile.EXTENSION);
+		ReplayEventsFile.write(file, builder.build());
+
+		assertThat(ReplayEventsFile.read(file).facilitiesHandling).isEqualTo(EpisimConfigGroup.FacilitiesHandling.snz);
+	}
+
+}
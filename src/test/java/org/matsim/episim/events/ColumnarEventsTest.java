@@ -0,0 +1,117 @@
+package org.matsim.episim.events;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.ActivityEndEvent;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.events.handler.BasicEventHandler;
+import org.matsim.episim.EpisimPerson;
+import org.matsim.episim.model.VirusStrain;
+import org.matsim.episim.reporting.EpisimWriter;
+import org.matsim.facilities.ActivityFacility;
+import org.matsim.testcases.MatsimTestUtils;
+
+import java.io.BufferedWriter;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ColumnarEventsTest {
+
+	@Rule
+	public MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Test
+	public void roundTrip() {
+
+		Id<Person> p1 = Id.createPersonId("p1");
+		Id<Person> p2 = Id.createPersonId("p2");
+		Id<ActivityFacility> work = Id.create("work1", ActivityFacility.class);
+
+		// types are interleaved, but stored in separate batches
+		List<Event> events = List.of(
+				new EpisimPersonStatusEvent(100, p1, EpisimPerson.DiseaseStatus.contagious),
+				new EpisimContactEvent(3000, p1, p2, work, "work", 600, 3),
+				new EpisimPersonStatusEvent(200, p2, EpisimPerson.QuarantineStatus.atHome),
+				new EpisimInfectionEvent(3600, p2, p1, work, "work_work", 3, VirusStrain.B117, 0.25),
+				new EpisimTracingEvent(4000, p1, p2)
+		);
+
+		Path file = Path.of(utils.getOutputDirectory(), "day_001" + ColumnarEventsWriter.SUFFIX);
+		ColumnarEventsWriter writer = new ColumnarEventsWriter(file);
+		events.forEach(writer::append);
+		writer.close();
+
+		assertThat(ColumnarEventsReader.isColumnar(file)).isTrue();
+
+		List<Event> read = new ArrayList<>();
+		EventsManager manager = EventsUtils.createEventsManager();
+		manager.addHandler((BasicEventHandler) read::add);
+		manager.initProcessing();
+		new ColumnarEventsReader(manager).readFile(file.toString());
+		manager.finishProcessing();
+
+		assertThat(attributes(read)).isEqualTo(attributes(events));
+	}
+
+	@Test
+	public void mergeWithXml() {
+
+		Id<Person> p1 = Id.createPersonId("p1");
+		Id<Person> p2 = Id.createPersonId("p2");
+		Id<ActivityFacility> work = Id.create("work1", ActivityFacility.class);
+		Id<Link> link = Id.createLinkId("l1");
+
+		List<Event> events = List.of(
+				new ActivityEndEvent(50, p1, link, work, "home"),
+				new EpisimPersonStatusEvent(100, p1, EpisimPerson.DiseaseStatus.contagious),
+				new EpisimContactEvent(3000, p1, p2, work, "work", 600, 3),
+				new ActivityEndEvent(3000, p2, link, work, "work"),
+				new ActivityEndEvent(3100, p1, link, work, "work"),
+				new EpisimInfectionEvent(3100, p2, p1, work, "work_work", 3, VirusStrain.SARS_CoV_2, 0.25)
+		);
+
+		Path binary = Path.of(utils.getOutputDirectory(), "day_001" + ColumnarEventsWriter.SUFFIX);
+		Path xml = Path.of(utils.getOutputDirectory(), "day_001.xml.gz");
+
+		EpisimWriter xmlWriter = new EpisimWriter();
+		BufferedWriter out = xmlWriter.open(xml.toString());
+		xmlWriter.append(out, "<?xml version=\"1.0\" encoding=\"utf-8\"?>\n<events version=\"1.0\">\n");
+
+		ColumnarEventsWriter writer = new ColumnarEventsWriter(binary);
+		for (Event event : events) {
+			if (ColumnarEventsWriter.supports(event))
+				writer.append(event);
+			else {
+				xmlWriter.append(out, event);
+				writer.skip();
+			}
+		}
+
+		writer.close();
+		xmlWriter.append(out, "</events>");
+		xmlWriter.close(out);
+
+		List<Event> read = new ArrayList<>();
+		EventsManager manager = EventsUtils.createEventsManager();
+		manager.addHandler((BasicEventHandler) read::add);
+		manager.initProcessing();
+		new ColumnarEventsReader(manager).readFile(binary, xml);
+		manager.finishProcessing();
+
+		assertThat(attributes(read)).isEqualTo(attributes(events));
+	}
+
+	private static List<Map<String, String>> attributes(List<Event> events) {
+		return events.stream().map(Event::getAttributes).collect(Collectors.toList());
+	}
+}
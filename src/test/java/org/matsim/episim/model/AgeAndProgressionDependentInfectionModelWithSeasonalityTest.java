@@ -40,7 +40,8 @@ public class AgeAndProgressionDependentInfectionModelWithSeasonalityTest {
 
 		progression = new ConfigurableProgressionModel(rnd,
 				ConfigUtils.addOrGetModule(config, EpisimConfigGroup.class),
-				ConfigUtils.addOrGetModule(config, TracingConfigGroup.class)
+				ConfigUtils.addOrGetModule(config, TracingConfigGroup.class),
+				EpisimTestUtils.getPersonStore()
 		);
 		reporting = EpisimTestUtils.getReporting();
 		model = new AgeAndProgressionDependentInfectionModelWithSeasonality(
@@ -0,0 +1,120 @@
+package org.matsim.episim.model;
+
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.episim.*;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the contact models on a single synthetic facility, without any input files.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class BenchmarkContactModels {
+
+	@Param({"default", "symmetric", "pairWise", "direct", "household"})
+	private String model;
+
+	@Param({"10", "100", "1000"})
+	private int size;
+
+	@Param({"0.01", "0.2"})
+	private double contagious;
+
+	private ContactModel contactModel;
+	private InfectionEventHandler.EpisimFacility facility;
+	private List<EpisimPerson> persons;
+	private int next;
+
+	public static void main(String[] args) throws RunnerException {
+
+		Options opt = new OptionsBuilder()
+				.include(BenchmarkContactModels.class.getSimpleName())
+				.warmupIterations(5).warmupTime(TimeValue.seconds(1))
+				.measurementIterations(10).measurementTime(TimeValue.seconds(1))
+				.forks(1)
+				.build();
+
+		new Runner(opt).run();
+	}
+
+	@Setup
+	public void setup() {
+
+		EpisimReporting reporting = Mockito.mock(EpisimReporting.class, Mockito.withSettings().stubOnly());
+		SplittableRandom rnd = new SplittableRandom(1);
+
+		Config config = EpisimTestUtils.createTestConfig();
+		EpisimConfigGroup episimConfig = ConfigUtils.addOrGetModule(config, EpisimConfigGroup.class);
+		TracingConfigGroup tracingConfig = ConfigUtils.addOrGetModule(config, TracingConfigGroup.class);
+
+		InfectionModel infectionModel = new DefaultInfectionModel(new DefaultFaceMaskModel(rnd), config);
+
+		switch (model) {
+			case "default":
+				contactModel = new DefaultContactModel(rnd, config, reporting, infectionModel);
+				break;
+			case "symmetric":
+				contactModel = new SymmetricContactModel(rnd, config, tracingConfig, reporting, infectionModel);
+				break;
+			case "pairWise":
+				contactModel = new PairWiseContactModel(rnd, config, tracingConfig, reporting, infectionModel);
+				break;
+			case "direct":
+				contactModel = new DirectContactModel(rnd, config, tracingConfig, reporting, infectionModel);
+				break;
+			case "household":
+				contactModel = new HouseholdContactModel(rnd, config, reporting, infectionModel);
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown contact model: " + model);
+		}
+
+		contactModel.setRestrictionsForIteration(1, episimConfig.createInitialRestrictions());
+	}
+
+	/**
+	 * Create a fresh facility for each iteration, so that infections of previous iterations do not change the disease state mix.
+	 */
+	@Setup(Level.Iteration)
+	public void createFacility() {
+
+		SplittableRandom rnd = new SplittableRandom(size);
+
+		facility = EpisimTestUtils.createFacility(size, "work", size, p -> {
+			if (rnd.nextDouble() < contagious)
+				EpisimTestUtils.CONTAGIOUS.accept(p);
+		});
+
+		persons = new ArrayList<>(facility.getPersons());
+		for (EpisimPerson p : persons) {
+			contactModel.notifyEnterFacility(p, facility, 0);
+		}
+
+		next = 0;
+	}
+
+	/**
+	 * One person leaves and enters the facility again, which keeps the group state of the pair based models intact.
+	 */
+	@Benchmark
+	public void leaveFacility() {
+
+		EpisimPerson person = persons.get(next++ % persons.size());
+		contactModel.infectionDynamicsFacility(person, facility, 8 * 3600, "work");
+		contactModel.notifyEnterFacility(person, facility, 8 * 3600);
+
+	}
+}
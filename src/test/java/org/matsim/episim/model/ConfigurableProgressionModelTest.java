@@ -9,6 +9,7 @@ import org.junit.Test;
 import org.matsim.episim.*;
 import org.matsim.episim.EpisimPerson.DiseaseStatus;
 
+import java.io.*;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.SplittableRandom;
@@ -57,7 +58,7 @@ public class ConfigurableProgressionModelTest {
 		episimConfig = new EpisimConfigGroup();
 		episimConfig.setProgressionConfig(TEST_CONFIG);
 
-		model = new ConfigurableProgressionModel(new SplittableRandom(1), episimConfig, tracingConfig);
+		model = new ConfigurableProgressionModel(new SplittableRandom(1), episimConfig, tracingConfig, EpisimTestUtils.getPersonStore());
 		model.setIteration(1);
 	}
 
@@ -82,6 +83,68 @@ public class ConfigurableProgressionModelTest {
 		assertThat(p.getTraceableContactPersons(0)).allMatch(t -> t.getQuarantineStatus() == EpisimPerson.QuarantineStatus.atHome);
 	}
 
+	@Test
+	public void workerDefersTracing() {
+
+		tracingConfig.setTracingProbability(1);
+		tracingConfig.setPutTraceablePersonsInQuarantineAfterDay(0);
+		tracingConfig.setTracingDelay_days(0);
+
+		model.setIteration(1);
+
+		EpisimPerson p = EpisimTestUtils.createPerson(reporting);
+		p.setDiseaseStatus(0, DiseaseStatus.infectedButNotContagious);
+		for (int day = 0; day <= 5; day++) {
+			model.updateState(p, day);
+		}
+
+		EpisimPerson contact = EpisimTestUtils.createPerson(reporting);
+		p.addTraceableContactPerson(contact, 5 * 24 * 3600);
+
+		ProgressionModel worker = model.createWorker(new SplittableRandom(1));
+		worker.updateState(p, 6);
+
+		assertThat(p.getDiseaseStatus()).isEqualTo(DiseaseStatus.showingSymptoms);
+		assertThat(contact.getQuarantineStatus()).isEqualTo(EpisimPerson.QuarantineStatus.no);
+
+		// next transition is only known to the model after merging
+		assertThat(model.getNextDiseaseStatus(p.getPersonId())).isEqualTo(DiseaseStatus.showingSymptoms);
+
+		model.merge(worker);
+
+		assertThat(contact.getQuarantineStatus()).isEqualTo(EpisimPerson.QuarantineStatus.atHome);
+		assertThat(model.getNextDiseaseStatus(p.getPersonId())).isIn(DiseaseStatus.seriouslySick, DiseaseStatus.recovered);
+	}
+
+	@Test
+	public void restoreTransitions() throws IOException {
+
+		EpisimPerson p = EpisimTestUtils.createPerson(reporting);
+		p.setDiseaseStatus(0, DiseaseStatus.infectedButNotContagious);
+		model.updateState(p, 1);
+
+		assertThat(model.getNextDiseaseStatus(p.getPersonId())).isEqualTo(DiseaseStatus.contagious);
+		assertThat(model.getNextTransitionDays(p.getPersonId())).isEqualTo(4);
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			((ConfigurableProgressionModel) model).writeExternal(out);
+		}
+
+		ConfigurableProgressionModel restored = new ConfigurableProgressionModel(new SplittableRandom(1), episimConfig, tracingConfig, EpisimTestUtils.getPersonStore());
+		try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+			restored.readExternal(in);
+		}
+
+		assertThat(restored.getNextTransitionDays(p.getPersonId())).isEqualTo(4);
+
+		restored.updateState(p, 3);
+		assertThat(p.getDiseaseStatus()).isEqualTo(DiseaseStatus.infectedButNotContagious);
+
+		restored.updateState(p, 4);
+		assertThat(p.getDiseaseStatus()).isEqualTo(DiseaseStatus.contagious);
+	}
+
 	@Test
 	public void tracingCapacity() {
 
@@ -296,7 +359,7 @@ public class ConfigurableProgressionModelTest {
 						to(DiseaseStatus.recovered, Transition.fixed(0)))
 				.build());
 
-		model = new ConfigurableProgressionModel(new SplittableRandom(1), config, tracingConfig);
+		model = new ConfigurableProgressionModel(new SplittableRandom(1), config, tracingConfig, EpisimTestUtils.getPersonStore());
 
 		List<Double> recoveredDays = new ArrayList<>();
 
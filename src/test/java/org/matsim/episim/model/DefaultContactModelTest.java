@@ -65,6 +65,9 @@ public class DefaultContactModelTest {
 
 		int infections = 0;
 
+		// restrictions are changed by the tests, which is only seen by the model after setting them again
+		model.setRestrictionsForIteration(1, model.getRestrictions());
+
 		for (int i = 0; i < 30_000; i++) {
 			InfectionEventHandler.EpisimFacility container = f.get();
 			EpisimPerson person = p.apply(container);
@@ -85,6 +88,9 @@ public class DefaultContactModelTest {
 
 		double rate = 0;
 
+		// restrictions are changed by the tests, which is only seen by the model after setting them again
+		model.setRestrictionsForIteration(1, model.getRestrictions());
+
 		Random r = new Random(0);
 
 		for (int i = 0; i < n; i++) {
@@ -120,6 +126,59 @@ public class DefaultContactModelTest {
 		assertThat(rate).isCloseTo(0, OFFSET);
 	}
 
+	@Test
+	public void skipContainers() {
+
+		EpisimConfigGroup episimConfig = ConfigUtils.addOrGetModule(config, EpisimConfigGroup.class);
+		episimConfig.setSkipContainers(true);
+
+		// transmission is still evaluated when possible
+		model = new DefaultContactModel(new SplittableRandom(1), config, EpisimTestUtils.getReporting(), infectionModel);
+		double rate = sampleInfectionRate(Duration.ofMinutes(15), "c10",
+				() -> EpisimTestUtils.createFacility(1, "c10", EpisimTestUtils.CONTAGIOUS),
+				(f) -> EpisimTestUtils.createPerson("c10", f)
+		);
+		assertThat(rate).isCloseTo(1, OFFSET);
+
+		// without any contagious person the random numbers drawn do not depend on the number of persons
+		long[] next = new long[2];
+		int[] sizes = {2, 50};
+		for (int i = 0; i < sizes.length; i++) {
+			SplittableRandom rnd = new SplittableRandom(1);
+			model = new DefaultContactModel(rnd, config, EpisimTestUtils.getReporting(), infectionModel);
+			model.setRestrictionsForIteration(1, restrictions);
+
+			InfectionEventHandler.EpisimFacility container = EpisimTestUtils.createFacility(sizes[i], "c10", p -> { });
+			EpisimPerson person = EpisimTestUtils.createPerson("c10", container);
+			model.infectionDynamicsFacility(person, container, Duration.ofMinutes(15).getSeconds(), "c10");
+			next[i] = rnd.nextLong();
+		}
+
+		assertThat(next[0]).isEqualTo(next[1]);
+	}
+
+	@Test
+	public void workerBuffersInfections() {
+
+		ContactBuffer buffer = new ContactBuffer();
+		ContactModel worker = model.createWorker(new SplittableRandom(1), buffer);
+		worker.setRestrictionsForIteration(1, restrictions);
+
+		InfectionEventHandler.EpisimFacility container = EpisimTestUtils.createFacility(1, "c10", EpisimTestUtils.CONTAGIOUS);
+		EpisimPerson person = EpisimTestUtils.createPerson("c10", container);
+
+		worker.infectionDynamicsFacility(person, container, Duration.ofMinutes(15).getSeconds(), "c10");
+
+		// infection is only recorded
+		assertThat(person.getDiseaseStatus()).isEqualTo(EpisimPerson.DiseaseStatus.susceptible);
+		assertThat(buffer.isEmpty()).isFalse();
+
+		buffer.apply(EpisimTestUtils.getReporting());
+
+		assertThat(person.getDiseaseStatus()).isEqualTo(EpisimPerson.DiseaseStatus.infectedButNotContagious);
+		assertThat(buffer.isEmpty()).isTrue();
+	}
+
 	@Test
 	public void alone() {
 		double rate = sampleInfectionRate(Duration.ofMinutes(10), "c10",
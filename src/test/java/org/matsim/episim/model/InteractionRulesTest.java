@@ -0,0 +1,42 @@
+package org.matsim.episim.model;
+
+import org.junit.Test;
+import org.matsim.episim.EpisimPerson;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class InteractionRulesTest {
+
+	private static final List<String> TYPES = List.of("home", "home_2", "work", "leisure", "edu_kiga", "edu_primary", "educ_higher",
+			"shop_daily", "business", "errands", "visit", "pt", "work_home", "leisure_edu");
+
+	/**
+	 * Previous string based rules, which need to be reproduced by the table.
+	 */
+	private static boolean canInteract(String a, String b) {
+		String type = a + "$" + b;
+		if (type.contains("home") && !type.contains("leis") && !type.contains("work") && !(a.startsWith("home") && b.startsWith("home")))
+			return false;
+		return !type.contains("edu") || type.contains("work") || (a.startsWith("edu") && b.startsWith("edu"));
+	}
+
+	@Test
+	public void sameAsStringRules() {
+		for (String a : TYPES) {
+			for (String b : TYPES) {
+				EpisimPerson.Activity actA = new EpisimPerson.Activity(a, null);
+				EpisimPerson.Activity actB = new EpisimPerson.Activity(b, null);
+
+				assertThat(InteractionRules.canInteract(actA, actB))
+						.as("%s - %s", a, b)
+						.isEqualTo(canInteract(a, b));
+
+				assertThat(InteractionRules.isTraceable(actA, actB))
+						.as("%s - %s", a, b)
+						.isEqualTo(!(a + "$" + b).contains("pt") && !(a + "$" + b).contains("shop"));
+			}
+		}
+	}
+}
@@ -0,0 +1,67 @@
+package org.matsim.episim.reporting;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.testcases.MatsimTestUtils;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AsyncEpisimWriterTest {
+
+	@Rule
+	public MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Test
+	public void multipleProducers() throws Exception {
+
+		int producers = 4;
+		int lines = 20000;
+
+		for (AsyncEpisimWriter.WaitStrategy wait : AsyncEpisimWriter.WaitStrategy.values()) {
+
+			AsyncEpisimWriter writer = new AsyncEpisimWriter(producers, 2, wait);
+
+			String filename = utils.getOutputDirectory() + wait + ".txt.gz";
+			BufferedWriter out = writer.open(filename);
+
+			List<Thread> threads = new ArrayList<>();
+			for (int t = 0; t < producers; t++) {
+				String name = String.valueOf(t);
+				// more lines than fit into one ring
+				threads.add(new Thread(() -> {
+					for (int i = 0; i < lines; i++)
+						writer.append(out, new String[]{name, String.valueOf(i)});
+				}));
+			}
+
+			threads.forEach(Thread::start);
+			for (Thread thread : threads)
+				thread.join();
+
+			writer.close(out);
+			writer.close();
+
+			assertThat(writer.getPublished()).isEqualTo((long) producers * lines);
+			assertThat(writer.getPending()).isZero();
+
+			// output of each producer is complete and in order
+			int[] next = new int[producers];
+			try (BufferedReader in = IOUtils.getBufferedReader(filename)) {
+				String line;
+				while ((line = in.readLine()) != null) {
+					String[] split = line.split(EpisimWriter.SEPARATOR);
+					int t = Integer.parseInt(split[0]);
+					assertThat(Integer.parseInt(split[1])).isEqualTo(next[t]++);
+				}
+			}
+
+			assertThat(next).containsOnly(lines);
+		}
+	}
+}
@@ -0,0 +1,80 @@
+package org.matsim.episim.reporting;
+
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.*;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.episim.EpisimPerson;
+import org.matsim.episim.events.EpisimContactEvent;
+import org.matsim.episim.events.EpisimInfectionEvent;
+import org.matsim.episim.events.EpisimPersonStatusEvent;
+import org.matsim.episim.events.EpisimTracingEvent;
+import org.matsim.episim.model.VirusStrain;
+import org.matsim.facilities.ActivityFacility;
+import org.matsim.vehicles.Vehicle;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class EpisimWriterTest {
+
+	private static final Pattern ATTRIBUTE = Pattern.compile("(\\w+)=\"([^\"]*)\"");
+
+	@Test
+	public void writeEvent() {
+
+		Id<Person> p1 = Id.createPersonId("p1");
+		Id<Person> p2 = Id.createPersonId("p2");
+		Id<Link> link = Id.createLinkId("l1");
+		Id<ActivityFacility> facility = Id.create("f<1>", ActivityFacility.class);
+		Id<Vehicle> bus = Id.createVehicleId("bus");
+
+		List<Event> events = List.of(
+				new EpisimInfectionEvent(3600, p2, p1, facility, "work_work", 3, VirusStrain.SARS_CoV_2, 0.25),
+				new EpisimPersonStatusEvent(100, p1, EpisimPerson.DiseaseStatus.contagious),
+				new EpisimPersonStatusEvent(200, p2, EpisimPerson.QuarantineStatus.atHome),
+				new EpisimContactEvent(3000, p1, p2, facility, "work", 600, 3),
+				new EpisimTracingEvent(4000, p1, p2),
+				new ActivityStartEvent(4100, p1, link, facility, "work", new Coord(1.5, 2.5)),
+				new ActivityEndEvent(4200, p2, link, null, "home"),
+				new PersonEntersVehicleEvent(3700, p1, bus),
+				new PersonLeavesVehicleEvent(4000, p1, bus)
+		);
+
+		StringBuilder out = new StringBuilder();
+		for (Event event : events) {
+			out.setLength(0);
+			EpisimWriter.writeEvent(out, event, -1);
+
+			assertThat(out.toString()).startsWith("\t<event ").endsWith(" />\n");
+			assertThat(parse(out)).isEqualTo(escape(event.getAttributes()));
+		}
+
+		// corrected time replaces the time of the event
+		out.setLength(0);
+		EpisimWriter.writeEvent(out, events.get(1), 86500);
+		assertThat(parse(out)).containsEntry(Event.ATTRIBUTE_TIME, "86500.0");
+	}
+
+	private static Map<String, String> parse(CharSequence line) {
+		Map<String, String> attr = new HashMap<>();
+		Matcher m = ATTRIBUTE.matcher(line);
+		while (m.find())
+			attr.put(m.group(1), m.group(2));
+
+		return attr;
+	}
+
+	private static Map<String, String> escape(Map<String, String> attr) {
+		Map<String, String> result = new HashMap<>();
+		attr.forEach((k, v) -> result.put(k, v.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;")));
+		return result;
+	}
+}
@@ -0,0 +1,48 @@
+package org.matsim.episim.reporting;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.testcases.MatsimTestUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ParallelGzipOutputStreamTest {
+
+	@Rule
+	public MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Test
+	public void roundTrip() throws IOException {
+
+		ExecutorService executor = Executors.newFixedThreadPool(3);
+
+		// spans multiple blocks and ends with a partial one
+		byte[] data = new byte[ParallelGzipOutputStream.BLOCK_SIZE * 5 + 1234];
+		SplittableRandom rnd = new SplittableRandom(1);
+		for (int i = 0; i < data.length; i++)
+			data[i] = (byte) ('a' + rnd.nextInt(4));
+
+		Path file = Path.of(utils.getOutputDirectory(), "out.txt.gz");
+		ParallelGzipOutputStream out = new ParallelGzipOutputStream(file, executor, 2);
+		out.write(data, 0, 100);
+		out.write(data[100]);
+		out.write(data, 101, data.length - 101);
+		out.close();
+
+		out.completion().join();
+		executor.shutdown();
+
+		try (InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+			assertThat(in.readAllBytes()).isEqualTo(data);
+		}
+	}
+}
@@ -105,20 +105,68 @@ public class RunEpisimSnapshotTest {
 
 		runner.run(30);
 
+		assertSameOutput(fromSnapshot);
+	}
+
+	@Test
+	public void compareBranch() {
+
+		runner.run(30);
+
+		setup();
+
+		config.controler().setOutputDirectory(utils.getOutputDirectory().replace(utils.getMethodName(), "prefix"));
+		EpisimRunner.Snapshot snapshot = runner.runPrefix(15);
+
+		assertThat(snapshot.getIteration()).isEqualTo(15);
+
+		setup();
+
+		String fromBranch = utils.getOutputDirectory().replace(utils.getMethodName(), "fromBranch");
+		config.controler().setOutputDirectory(fromBranch);
+
+		runner.run(30, snapshot);
+
+		assertSameOutput(fromBranch);
+	}
+
+	/**
+	 * Parallel evaluation draws from generators seeded per container and chunk, so results must not depend on the number of threads.
+	 * A single thread uses the sequential code path with the global generator and is therefore not comparable.
+	 */
+	@Test
+	public void compareContactThreads() {
+
+		episimConfig.setContactThreads(2);
+		runner.run(30);
+
+		setup();
+
+		String parallel = utils.getOutputDirectory().replace(utils.getMethodName(), "parallel");
+		config.controler().setOutputDirectory(parallel);
+		episimConfig.setContactThreads(4);
+
+		runner.run(30);
+
+		assertSameOutput(parallel);
+	}
+
+	private void assertSameOutput(String other) {
+
 		for (File file : Objects.requireNonNull(new File(utils.getOutputDirectory()).listFiles())) {
 
 			// check event files
 			if (file.getName().equals("events")) {
 				for (File event : Objects.requireNonNull(file.listFiles())) {
 					assertThat(event)
-							.hasSameBinaryContentAs(new File(fromSnapshot, "events/" + event.getName()));
+							.hasSameBinaryContentAs(new File(other, "events/" + event.getName()));
 				}
 			}
 
 			if (file.isDirectory() || file.getName().endsWith(".zip") || file.getName().endsWith(".xml") || file.getName().endsWith(".gz")) continue;
 
 			assertThat(file)
-					.hasSameTextualContentAs(new File(fromSnapshot, file.getName()));
+					.hasSameTextualContentAs(new File(other, file.getName()));
 		}
 
 	}